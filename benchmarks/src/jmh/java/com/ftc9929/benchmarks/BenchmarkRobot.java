@@ -0,0 +1,77 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.benchmarks;
+
+import com.ftc9929.corelib.control.NinjaGamePad;
+import com.ftc9929.testing.fakes.FakeTelemetry;
+import com.ftc9929.testing.fakes.util.FakeHardwareMapFactory;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A fake robot, built from the benchmark_robot.xml hardware map, that benchmarks
+ * use the same way an OpMode would use the real thing.
+ */
+@State(Scope.Thread)
+public class BenchmarkRobot {
+    HardwareMap hardwareMap;
+
+    DcMotorEx leftFrontDriveMotor;
+
+    DcMotorEx leftRearDriveMotor;
+
+    DcMotorEx rightFrontDriveMotor;
+
+    DcMotorEx rightRearDriveMotor;
+
+    Gamepad gamepad;
+
+    NinjaGamePad driverControls;
+
+    FakeTelemetry telemetry;
+
+    @Setup
+    public void setUp() {
+        hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("benchmark_robot.xml");
+
+        leftFrontDriveMotor = hardwareMap.get(DcMotorEx.class, "leftFrontDriveMotor");
+        leftRearDriveMotor = hardwareMap.get(DcMotorEx.class, "leftRearDriveMotor");
+        rightFrontDriveMotor = hardwareMap.get(DcMotorEx.class, "rightFrontDriveMotor");
+        rightRearDriveMotor = hardwareMap.get(DcMotorEx.class, "rightRearDriveMotor");
+
+        gamepad = new Gamepad();
+        gamepad.left_stick_x = 0.25f;
+        gamepad.left_stick_y = -0.5f;
+        gamepad.right_trigger = 0.75f;
+        gamepad.a = true;
+
+        driverControls = new NinjaGamePad(gamepad);
+
+        telemetry = new FakeTelemetry();
+    }
+}
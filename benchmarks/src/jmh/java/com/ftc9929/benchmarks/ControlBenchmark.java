@@ -0,0 +1,93 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.benchmarks;
+
+import com.ftc9929.corelib.control.AnyButton;
+import com.ftc9929.corelib.control.DebouncedButton;
+import com.ftc9929.corelib.control.LowPassFilteredRangeInput;
+import com.ftc9929.corelib.control.NinjaGamePad;
+import com.ftc9929.corelib.control.ParametricScaledRangeInput;
+import com.ftc9929.testing.fakes.control.FakeOnOffButton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the button and input adapters from com.ftc9929.corelib.control
+ */
+@State(Scope.Thread)
+public class ControlBenchmark {
+    private FakeOnOffButton fakeButton;
+
+    private DebouncedButton debouncedButton;
+
+    private AnyButton anyDpadButton;
+
+    private LowPassFilteredRangeInput lowPassFilteredInput;
+
+    private ParametricScaledRangeInput parametricScaledInput;
+
+    @Setup
+    public void setUp(BenchmarkRobot robot) {
+        NinjaGamePad driverControls = robot.driverControls;
+
+        fakeButton = new FakeOnOffButton();
+        debouncedButton = new DebouncedButton(fakeButton);
+
+        anyDpadButton = new AnyButton(driverControls.getDpadUp(), driverControls.getDpadDown(),
+                driverControls.getDpadLeft(), driverControls.getDpadRight());
+
+        lowPassFilteredInput = new LowPassFilteredRangeInput(driverControls.getLeftStickX(), 0.12F);
+
+        parametricScaledInput = ParametricScaledRangeInput.builder()
+                .rawInput(driverControls.getLeftStickY())
+                .throttleDeadband(0.02F)
+                .throttleGain(0.8F)
+                .throttleExponent(5).build();
+    }
+
+    @Benchmark
+    public boolean debouncedButtonRise() {
+        // Toggle so that the button sees edges, rather than always taking the same branch
+        fakeButton.setPressed(!fakeButton.isPressed());
+
+        return debouncedButton.getRise();
+    }
+
+    @Benchmark
+    public boolean anyButtonIsPressed() {
+        return anyDpadButton.isPressed();
+    }
+
+    @Benchmark
+    public float lowPassFilteredPosition() {
+        return lowPassFilteredInput.getPosition();
+    }
+
+    @Benchmark
+    public float parametricScaledPosition() {
+        return parametricScaledInput.getPosition();
+    }
+}
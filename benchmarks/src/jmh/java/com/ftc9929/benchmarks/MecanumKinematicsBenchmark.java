@@ -0,0 +1,62 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.benchmarks;
+
+import com.ftc9929.corelib.drive.OpenLoopMecanumKinematics;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures OpenLoopMecanumKinematics driving the fake motors of a BenchmarkRobot
+ */
+@State(Scope.Thread)
+public class MecanumKinematicsBenchmark {
+    private OpenLoopMecanumKinematics kinematics;
+
+    private double rotationPower;
+
+    @Setup
+    public void setUp(final BenchmarkRobot robot) {
+        kinematics = new OpenLoopMecanumKinematics() {
+            @Override
+            protected void setMotorPowers(WheelSpeeds wheelSpeeds) {
+                robot.leftFrontDriveMotor.setPower(wheelSpeeds.getLeftFront());
+                robot.leftRearDriveMotor.setPower(wheelSpeeds.getLeftRear());
+                robot.rightFrontDriveMotor.setPower(wheelSpeeds.getRightFront());
+                robot.rightRearDriveMotor.setPower(wheelSpeeds.getRightRear());
+            }
+        };
+    }
+
+    @Benchmark
+    public void driveCartesian() {
+        // Vary the input a little, so the normalization code paths are all taken
+        rotationPower = rotationPower > 1.0 ? -1.0 : rotationPower + 0.1;
+
+        kinematics.driveCartesian(0.5, 0.75, rotationPower, false);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.benchmarks;
+
+import com.ftc9929.metrics.recorder.FixedMetricCodec;
+import com.ftc9929.metrics.recorder.GorillaMetricCodec;
+import com.ftc9929.metrics.recorder.MetricCodec;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures encoding and decoding one sample with each of the flight recorder's MetricCodecs,
+ * for series shaped like a servo position (rarely changes), a button (0 or 1) and a motor
+ * current (noisy), sampled every 10ms with some jitter.
+ *
+ * Bytes per sample for each combination is encodedBytes / encodedSamples, reported as
+ * secondary results of encodeSample. (JMH adds up these counters across iterations, so a
+ * ratio can't be reported directly.)
+ */
+@State(Scope.Thread)
+public class MetricCodecBenchmark {
+    private static final int SERIES_LENGTH = 4096;
+
+    @Param({"fixed", "gorilla"})
+    public String codecName;
+
+    @Param({"servo", "button", "current"})
+    public String signal;
+
+    private MetricCodec codec;
+
+    private final long[] timestamps = new long[SERIES_LENGTH];
+
+    private final double[] values = new double[SERIES_LENGTH];
+
+    private MetricCodec.Encoder encoder;
+
+    private int sampleIndex;
+
+    private byte[] encoded;
+
+    private MetricCodec.Decoder decoder;
+
+    /**
+     * Size of every complete series encoded during an iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long encodedBytes;
+
+        public long encodedSamples;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            encodedBytes = 0;
+            encodedSamples = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = FixedMetricCodec.NAME.equals(codecName) ? new FixedMetricCodec() : new GorillaMetricCodec();
+
+        Random random = new Random(9929);
+        long timestamp = 1600000000000L;
+
+        for (int i = 0; i < SERIES_LENGTH; i++) {
+            timestamp += random.nextInt(20) == 0 ? 11 : 10;
+            timestamps[i] = timestamp;
+
+            switch (signal) {
+                case "servo":
+                    values[i] = (i / 500) % 2 == 0 ? 0.25 : 0.8;
+                    break;
+                case "button":
+                    values[i] = (i / 37) % 3 == 0 ? 1 : 0;
+                    break;
+                default:
+                    values[i] = 1.5 + random.nextGaussian() * 0.2;
+            }
+        }
+
+        MetricCodec.Encoder wholeSeries = codec.newEncoder();
+
+        for (int i = 0; i < SERIES_LENGTH; i++) {
+            wholeSeries.append(timestamps[i], values[i]);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wholeSeries.writeTo(out);
+        encoded = out.toByteArray();
+
+        encoder = codec.newEncoder();
+        decoder = codec.newDecoder(encoded, SERIES_LENGTH);
+    }
+
+    @Benchmark
+    public int encodeSample(EncodedSize encodedSize) {
+        if (sampleIndex == SERIES_LENGTH) {
+            encodedSize.encodedBytes += encoder.getEncodedLength();
+            encodedSize.encodedSamples += SERIES_LENGTH;
+
+            encoder.reset();
+            sampleIndex = 0;
+        }
+
+        encoder.append(timestamps[sampleIndex], values[sampleIndex]);
+        sampleIndex++;
+
+        return encoder.getSampleCount();
+    }
+
+    @Benchmark
+    public double decodeSample() {
+        if (!decoder.next()) {
+            decoder = codec.newDecoder(encoded, SERIES_LENGTH);
+            decoder.next();
+        }
+
+        return decoder.getValue();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.benchmarks;
+
+import com.ftc9929.corelib.control.NinjaGamePad;
+import com.ftc9929.corelib.control.OnOffButton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Set;
+
+/**
+ * Measures getting buttons and inputs from a NinjaGamePad, the way teleop code does
+ * every time through loop().
+ */
+@State(Scope.Thread)
+public class NinjaGamePadBenchmark {
+    private NinjaGamePad liveGamePad;
+
+    private NinjaGamePad sampledGamePad;
+
+    @Setup
+    public void setUp(BenchmarkRobot robot) {
+        liveGamePad = robot.driverControls;
+
+        sampledGamePad = new NinjaGamePad(robot.gamepad);
+        sampledGamePad.sample();
+    }
+
+    @Benchmark
+    public boolean getButtonAndRead() {
+        return liveGamePad.getAButton().isPressed();
+    }
+
+    @Benchmark
+    public float getStickAndRead() {
+        return liveGamePad.getLeftStickY().getPosition();
+    }
+
+    @Benchmark
+    public boolean getAllButtonsAndRead() {
+        Set<OnOffButton> allButtons = liveGamePad.getAllButtons();
+
+        for (OnOffButton button : allButtons) {
+            if (button.isPressed()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Benchmark
+    public boolean debouncedRise() {
+        return liveGamePad.getBButton().debounced().getRise();
+    }
+
+    @Benchmark
+    public boolean sampleAndRead() {
+        sampledGamePad.sample();
+
+        return sampledGamePad.getAButton().isPressed()
+                && sampledGamePad.getBButton().debounced().getRise();
+    }
+}
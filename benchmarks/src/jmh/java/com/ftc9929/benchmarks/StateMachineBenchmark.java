@@ -0,0 +1,114 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.benchmarks;
+
+import com.ftc9929.corelib.state.SequenceOfStates;
+import com.ftc9929.corelib.state.StateMachine;
+import com.ftc9929.testing.fakes.FakeTelemetry;
+import com.google.common.base.Ticker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures StateMachine.doOneStateLoop() for a sequence of states that repeats forever,
+ * so that every loop is a state transition, and for one state that never transitions,
+ * with and without the state machine's low-overhead mode, and compiled into a StateTable.
+ */
+@State(Scope.Thread)
+public class StateMachineBenchmark {
+    @Param({"false", "true"})
+    public boolean lowOverheadMode;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private StateMachine transitioningStateMachine;
+
+    private StateMachine waitingStateMachine;
+
+    private FakeTelemetry telemetry;
+
+    private int counter;
+
+    @Setup
+    public void setUp(BenchmarkRobot robot) {
+        telemetry = robot.telemetry;
+
+        SequenceOfStates transitioningSequence = new SequenceOfStates(Ticker.systemTicker(), robot.telemetry);
+
+        for (int i = 0; i < 10; i++) {
+            transitioningSequence.addRunnableStep("step " + i, new Runnable() {
+                @Override
+                public void run() {
+                    counter++;
+                }
+            });
+        }
+
+        transitioningSequence.getLastState().setNextState(transitioningSequence.getFirstState());
+
+        transitioningStateMachine = new StateMachine(robot.telemetry);
+        transitioningStateMachine.setLowOverheadMode(lowOverheadMode);
+        transitioningStateMachine.addSequence(transitioningSequence);
+
+        if (compiled) {
+            transitioningStateMachine.compile();
+        }
+
+        SequenceOfStates waitingSequence = new SequenceOfStates(Ticker.systemTicker(), robot.telemetry);
+        waitingSequence.addWaitStep("wait forever", 1, TimeUnit.DAYS);
+        waitingSequence.getLastState().setNextState(waitingSequence.getFirstState());
+
+        waitingStateMachine = new StateMachine(robot.telemetry);
+        waitingStateMachine.setLowOverheadMode(lowOverheadMode);
+        waitingStateMachine.addSequence(waitingSequence);
+
+        if (compiled) {
+            waitingStateMachine.compile();
+        }
+    }
+
+    @Benchmark
+    public int transitionEveryLoop() {
+        transitioningStateMachine.doOneStateLoop();
+
+        // The SDK sends (and clears) telemetry after every loop, without this
+        // telemetry would grow without bound during the benchmark
+        telemetry.clear();
+
+        return counter;
+    }
+
+    @Benchmark
+    public void stayInState() {
+        waitingStateMachine.doOneStateLoop();
+
+        telemetry.clear();
+    }
+}
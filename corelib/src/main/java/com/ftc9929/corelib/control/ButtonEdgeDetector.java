@@ -0,0 +1,118 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.control;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects rising and falling edges, and how long buttons have been held, for up to 32 buttons
+ * at once. Button states are given to update() as a bit mask (bit n set when button n is pressed)
+ * and edges for all buttons are found in one pass by XOR-ing the previous and current masks.
+ *
+ * Unlike DebouncedButton, asking for a rise does not "use it up", all callers between two
+ * calls to update() see the same edges, and asking for rises does not affect falls.
+ */
+public class ButtonEdgeDetector {
+    private final long[] pressedSinceNanos = new long[Integer.SIZE];
+
+    private int currentButtons;
+
+    private int rises;
+
+    private int falls;
+
+    private long lastUpdateNanos;
+
+    private boolean haveUpdated = false;
+
+    /**
+     * Records the current state of all buttons, the first call establishes the
+     * starting state, and will not report any edges.
+     *
+     * @param buttons bit mask of the currently pressed buttons
+     * @param nowNanos the current time, in nanoseconds, from a Ticker or System.nanoTime()
+     */
+    public void update(int buttons, long nowNanos) {
+        final int previousButtons = haveUpdated ? currentButtons : buttons;
+        final int changed = previousButtons ^ buttons;
+
+        rises = changed & buttons;
+        falls = changed & previousButtons;
+
+        int newlyPressed = haveUpdated ? rises : buttons;
+
+        while (newlyPressed != 0) {
+            pressedSinceNanos[Integer.numberOfTrailingZeros(newlyPressed)] = nowNanos;
+            newlyPressed &= newlyPressed - 1;
+        }
+
+        currentButtons = buttons;
+        lastUpdateNanos = nowNanos;
+        haveUpdated = true;
+    }
+
+    /**
+     * Did the button go from unpressed to pressed at the most recent update()?
+     */
+    public boolean isRise(int buttonIndex) {
+        return (rises & (1 << buttonIndex)) != 0;
+    }
+
+    /**
+     * Did the button go from pressed to unpressed at the most recent update()?
+     */
+    public boolean isFall(int buttonIndex) {
+        return (falls & (1 << buttonIndex)) != 0;
+    }
+
+    public boolean isPressed(int buttonIndex) {
+        return (currentButtons & (1 << buttonIndex)) != 0;
+    }
+
+    /**
+     * @return bit mask of all buttons that went from unpressed to pressed at the most recent update()
+     */
+    public int getRises() {
+        return rises;
+    }
+
+    /**
+     * @return bit mask of all buttons that went from pressed to unpressed at the most recent update()
+     */
+    public int getFalls() {
+        return falls;
+    }
+
+    /**
+     * How long has the given button been held down, as of the most recent update()?
+     *
+     * @return the amount of time the button has been held, or 0 if not pressed
+     */
+    public long getHeldTime(int buttonIndex, TimeUnit unit) {
+        if (!isPressed(buttonIndex)) {
+            return 0;
+        }
+
+        return unit.convert(lastUpdateNanos - pressedSinceNanos[buttonIndex], TimeUnit.NANOSECONDS);
+    }
+}
@@ -22,381 +22,373 @@
 
 package com.ftc9929.corelib.control;
 
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableSet;
 import com.qualcomm.robotcore.hardware.Gamepad;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import lombok.NonNull;
 
 /**
  * A more usable/adaptable game pad class. Creates OnOff and RangeInput buttons
  * for those present on an FTC Gamepad.
+ *
+ * The buttons and inputs are created once, when the NinjaGamePad is constructed, and
+ * every call to getAButton(), getLeftStickX(), etc. returns the same instance. This means
+ * that calling these methods from inside loop() does not create garbage, and that
+ * a button's debounced() state is kept between calls.
+ *
+ * By default, buttons and inputs read the FTC Gamepad every time they are asked for their
+ * state. Once sample() has been called, the game pad is in "frame" mode - all buttons
+ * and inputs read from the snapshot taken by the most recent call to sample(), so call it
+ * once at the start of every loop() to have every subsystem see the same button states.
+ *
+ * In frame mode, edges for all buttons are found once per sample() by a ButtonEdgeDetector,
+ * and the DebouncedButtons from debounced() report those edges - every caller in the same
+ * loop sees the same rise or fall, and calling getRise() does not affect getFall().
  */
 public class NinjaGamePad {
+    static final int A_BUTTON = 0;
+    static final int B_BUTTON = 1;
+    static final int X_BUTTON = 2;
+    static final int Y_BUTTON = 3;
+    static final int LEFT_BUMPER = 4;
+    static final int RIGHT_BUMPER = 5;
+    static final int DPAD_UP = 6;
+    static final int DPAD_DOWN = 7;
+    static final int DPAD_LEFT = 8;
+    static final int DPAD_RIGHT = 9;
+    static final int LEFT_STICK_BUTTON = 10;
+    static final int RIGHT_STICK_BUTTON = 11;
+
+    static final int NUM_BUTTONS = 12;
+
+    static final int LEFT_STICK_X = 0;
+    static final int LEFT_STICK_Y = 1;
+    static final int RIGHT_STICK_X = 2;
+    static final int RIGHT_STICK_Y = 3;
+    static final int LEFT_TRIGGER = 4;
+    static final int RIGHT_TRIGGER = 5;
+
+    static final int NUM_AXES = 6;
+
     private final Gamepad gamepad;
 
-    public NinjaGamePad(final Gamepad originalGamepad) {
-        gamepad = originalGamepad;
-    }
+    private final GamepadButton[] buttons = new GamepadButton[NUM_BUTTONS];
 
-    public OnOffButton getAButton(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    private final GamepadAxis[] axes = new GamepadAxis[NUM_AXES];
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.a;
-            }
+    private final Set<OnOffButton> allButtons;
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+    private final float[] sampledAxes = new float[NUM_AXES];
 
-                return debounced;
-            }
-        };
-    }
+    private int sampledButtons;
 
-    public OnOffButton getBButton(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    private boolean sampling = false;
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.b;
-            }
+    private final ButtonEdgeDetector edgeDetector = new ButtonEdgeDetector();
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+    private final Ticker ticker;
 
-                return debounced;
-            }
-        };
+    public NinjaGamePad(final Gamepad originalGamepad) {
+        this(originalGamepad, Ticker.systemTicker());
     }
 
-    public OnOffButton getXButton() {
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    /**
+     * Creates a NinjaGamePad that uses the given Ticker to measure how long buttons
+     * have been held while in frame mode (see sample()).
+     */
+    public NinjaGamePad(final Gamepad originalGamepad, @NonNull final Ticker ticker) {
+        gamepad = originalGamepad;
+        this.ticker = ticker;
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.x;
-            }
+        for (int i = 0; i < NUM_BUTTONS; i++) {
+            buttons[i] = new GamepadButton(i);
+        }
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+        axes[LEFT_STICK_X] = new GamepadAxis(LEFT_STICK_X, -1.0f);
+        axes[LEFT_STICK_Y] = new GamepadAxis(LEFT_STICK_Y, -1.0f);
+        axes[RIGHT_STICK_X] = new GamepadAxis(RIGHT_STICK_X, -1.0f);
+        axes[RIGHT_STICK_Y] = new GamepadAxis(RIGHT_STICK_Y, -1.0f);
+        axes[LEFT_TRIGGER] = new GamepadAxis(LEFT_TRIGGER, 0.0f);
+        axes[RIGHT_TRIGGER] = new GamepadAxis(RIGHT_TRIGGER, 0.0f);
 
-                return debounced;
-            }
-        };
+        allButtons = ImmutableSet.<OnOffButton>of(
+                getRightStickButton(), getLeftStickButton(),
+                getDpadUp(), getDpadDown(), getDpadLeft(), getDpadRight(),
+                getRightBumper(), getLeftBumper(),
+                getXButton(), getYButton(), getAButton(), getBButton());
     }
 
-    public OnOffButton getYButton(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    public OnOffButton getAButton(){
+        return buttons[A_BUTTON];
+    }
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.y;
-            }
+    public OnOffButton getBButton(){
+        return buttons[B_BUTTON];
+    }
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+    public OnOffButton getXButton() {
+        return buttons[X_BUTTON];
+    }
 
-                return debounced;
-            }
-        };
+    public OnOffButton getYButton(){
+        return buttons[Y_BUTTON];
     }
 
     public OnOffButton getLeftBumper(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
-
-            @Override
-            public boolean isPressed() {
-                return gamepad.left_bumper;
-            }
-
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
-
-                return debounced;
-            }
-        };
+        return buttons[LEFT_BUMPER];
     }
 
     public OnOffButton getRightBumper(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
-
-            @Override
-            public boolean isPressed() {
-                return gamepad.right_bumper;
-            }
-
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
-
-                return debounced;
-            }
-        };
+        return buttons[RIGHT_BUMPER];
     }
 
     public OnOffButton getDpadUp(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+        return buttons[DPAD_UP];
+    }
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.dpad_up;
-            }
+    public OnOffButton getDpadDown(){
+        return buttons[DPAD_DOWN];
+    }
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+    public OnOffButton getDpadLeft(){
+        return buttons[DPAD_LEFT];
+    }
 
-                return debounced;
-            }
-        };
+    public OnOffButton getDpadRight(){
+        return buttons[DPAD_RIGHT];
     }
 
-    public OnOffButton getDpadDown(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    public OnOffButton getLeftStickButton(){
+        return buttons[LEFT_STICK_BUTTON];
+    }
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.dpad_down;
-            }
+    public OnOffButton getRightStickButton(){
+        return buttons[RIGHT_STICK_BUTTON];
+    }
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+    /**
+     * Takes a snapshot of all buttons and inputs on the FTC Gamepad. After the first
+     * call, all buttons and inputs from this game pad read from the snapshot instead of
+     * the Gamepad, until sample() is called again.
+     */
+    public void sample() {
+        int buttonBits = 0;
 
-                return debounced;
+        for (int i = 0; i < NUM_BUTTONS; i++) {
+            if (readButton(i)) {
+                buttonBits |= 1 << i;
             }
-        };
-    }
+        }
 
-    public OnOffButton getDpadLeft(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+        sampledButtons = buttonBits;
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.dpad_left;
-            }
+        for (int i = 0; i < NUM_AXES; i++) {
+            sampledAxes[i] = readAxis(i);
+        }
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+        edgeDetector.update(buttonBits, ticker.read());
 
-                return debounced;
-            }
-        };
+        sampling = true;
     }
 
-    public OnOffButton getDpadRight(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    /**
+     * How long has the given button (which must be from this game pad) been held, as of the
+     * last call to sample()?
+     *
+     * @return the amount of time the button has been held, or 0 if not pressed or not sampling
+     */
+    public long getHeldTime(@NonNull OnOffButton button, @NonNull TimeUnit unit) {
+        if (!(button instanceof GamepadButton) || ((GamepadButton) button).getGamePad() != this) {
+            throw new IllegalArgumentException("Button is not from this NinjaGamePad");
+        }
+
+        if (!sampling) {
+            return 0;
+        }
+
+        return edgeDetector.getHeldTime(((GamepadButton) button).buttonIndex, unit);
+    }
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.dpad_right;
-            }
+    /**
+     * Is this game pad in "frame" mode (has sample() been called)?
+     */
+    public boolean isSampling() {
+        return sampling;
+    }
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+    public Set<OnOffButton> getAllButtons() {
+        return allButtons;
+    }
 
-                return debounced;
-            }
-        };
+    public RangeInput getLeftStickY(){
+        return axes[LEFT_STICK_Y];
     }
 
-    public OnOffButton getLeftStickButton(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    public RangeInput getLeftStickX(){
+        return axes[LEFT_STICK_X];
+    }
 
-            @Override
-            public boolean isPressed() {
-                return gamepad.left_stick_button;
-            }
+    public RangeInput getRightStickY(){
+        return axes[RIGHT_STICK_Y];
+    }
 
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
+    public RangeInput getRightStickX(){
+        return axes[RIGHT_STICK_X];
+    }
 
-                return debounced;
-            }
-        };
+    public RangeInput getLeftTrigger(){
+        return axes[LEFT_TRIGGER];
     }
 
-    public OnOffButton getRightStickButton(){
-        return new OnOffButton() {
-            private DebouncedButton debounced;
+    public RangeInput getRightTrigger(){
+        return axes[RIGHT_TRIGGER];
+    }
 
-            @Override
-            public boolean isPressed() {
+    private boolean readButton(int buttonIndex) {
+        switch (buttonIndex) {
+            case A_BUTTON:
+                return gamepad.a;
+            case B_BUTTON:
+                return gamepad.b;
+            case X_BUTTON:
+                return gamepad.x;
+            case Y_BUTTON:
+                return gamepad.y;
+            case LEFT_BUMPER:
+                return gamepad.left_bumper;
+            case RIGHT_BUMPER:
+                return gamepad.right_bumper;
+            case DPAD_UP:
+                return gamepad.dpad_up;
+            case DPAD_DOWN:
+                return gamepad.dpad_down;
+            case DPAD_LEFT:
+                return gamepad.dpad_left;
+            case DPAD_RIGHT:
+                return gamepad.dpad_right;
+            case LEFT_STICK_BUTTON:
+                return gamepad.left_stick_button;
+            case RIGHT_STICK_BUTTON:
                 return gamepad.right_stick_button;
-            }
-
-            @Override
-            public DebouncedButton debounced() {
-                if (debounced == null) {
-                    debounced = new DebouncedButton(this);
-                }
-
-                return debounced;
-            }
-        };
+            default:
+                throw new IllegalArgumentException("Unknown button index " + buttonIndex);
+        }
     }
 
-    public Set<OnOffButton> getAllButtons() {
-        return ImmutableSet.of(
-                getRightStickButton(), getLeftStickButton(),
-                getDpadUp(), getDpadDown(), getDpadLeft(), getDpadRight(),
-                getRightBumper(), getLeftBumper(),
-                getXButton(), getYButton(), getAButton(), getBButton());
+    private float readAxis(int axisIndex) {
+        switch (axisIndex) {
+            case LEFT_STICK_X:
+                return gamepad.left_stick_x;
+            case LEFT_STICK_Y:
+                return gamepad.left_stick_y;
+            case RIGHT_STICK_X:
+                return gamepad.right_stick_x;
+            case RIGHT_STICK_Y:
+                return gamepad.right_stick_y;
+            case LEFT_TRIGGER:
+                return gamepad.left_trigger;
+            case RIGHT_TRIGGER:
+                return gamepad.right_trigger;
+            default:
+                throw new IllegalArgumentException("Unknown axis index " + axisIndex);
+        }
     }
 
-    public RangeInput getLeftStickY(){
-        return new RangeInput() {
-            @Override
-            public float getPosition() {
-                return gamepad.left_stick_y;
-            }
+    private class GamepadButton implements OnOffButton {
+        private final int buttonIndex;
 
-            @Override
-            public float getMaxPosition() {
-                return 1.0f;
-            }
+        private DebouncedButton debounced;
 
-            @Override
-            public float getMinPosition() {
-                return -1.0f;
-            }
-        };
-    }
+        GamepadButton(int buttonIndex) {
+            this.buttonIndex = buttonIndex;
+        }
 
-    public RangeInput getLeftStickX(){
-        return new RangeInput() {
-            @Override
-            public float getPosition() {
-                return gamepad.left_stick_x;
+        @Override
+        public boolean isPressed() {
+            if (sampling) {
+                return (sampledButtons & (1 << buttonIndex)) != 0;
             }
 
-            @Override
-            public float getMaxPosition() {
-                return 1.0f;
-            }
+            return readButton(buttonIndex);
+        }
 
-            @Override
-            public float getMinPosition() {
-                return -1.0f;
+        @Override
+        public DebouncedButton debounced() {
+            if (debounced == null) {
+                debounced = new GamepadDebouncedButton(this);
             }
-        };
+
+            return debounced;
+        }
+
+        NinjaGamePad getGamePad() {
+            return NinjaGamePad.this;
+        }
     }
 
-    public RangeInput getRightStickY(){
-        return new RangeInput() {
-            @Override
-            public float getPosition() {
-                return gamepad.right_stick_y;
-            }
+    /**
+     * A DebouncedButton that reports the edges found by the game pad's ButtonEdgeDetector
+     * when in frame mode, and behaves like any other DebouncedButton when not.
+     */
+    private class GamepadDebouncedButton extends DebouncedButton {
+        private final int buttonIndex;
 
-            @Override
-            public float getMaxPosition() {
-                return 1.0f;
-            }
+        GamepadDebouncedButton(GamepadButton button) {
+            super(button);
 
-            @Override
-            public float getMinPosition() {
-                return -1.0f;
-            }
-        };
-    }
+            this.buttonIndex = button.buttonIndex;
+        }
 
-    public RangeInput getRightStickX(){
-        return new RangeInput() {
-            @Override
-            public float getPosition() {
-                return gamepad.right_stick_x;
+        @Override
+        public boolean getRise() {
+            if (sampling) {
+                return edgeDetector.isRise(buttonIndex);
             }
 
-            @Override
-            public float getMaxPosition() {
-                return 1.0f;
-            }
+            return super.getRise();
+        }
 
-            @Override
-            public float getMinPosition() {
-                return -1.0f;
+        @Override
+        public boolean getFall() {
+            if (sampling) {
+                return edgeDetector.isFall(buttonIndex);
             }
-        };
+
+            return super.getFall();
+        }
     }
 
-    public RangeInput getLeftTrigger(){
-        return new RangeInput() {
-            @Override
-            public float getPosition() {
-                return gamepad.left_trigger;
-            }
+    private class GamepadAxis implements RangeInput {
+        private final int axisIndex;
 
-            @Override
-            public float getMaxPosition() {
-                return 1.0f;
-            }
+        private final float minPosition;
 
-            @Override
-            public float getMinPosition() {
-                return 0.0f;
-            }
-        };
-    }
+        GamepadAxis(int axisIndex, float minPosition) {
+            this.axisIndex = axisIndex;
+            this.minPosition = minPosition;
+        }
 
-    public RangeInput getRightTrigger(){
-        return new RangeInput() {
-            @Override
-            public float getPosition() {
-                return gamepad.right_trigger;
+        @Override
+        public float getPosition() {
+            if (sampling) {
+                return sampledAxes[axisIndex];
             }
 
-            @Override
-            public float getMaxPosition() {
-                return 1.0f;
-            }
+            return readAxis(axisIndex);
+        }
 
-            @Override
-            public float getMinPosition() {
-                return 0.0f;
-            }
-        };
+        @Override
+        public float getMaxPosition() {
+            return 1.0f;
+        }
+
+        @Override
+        public float getMinPosition() {
+            return minPosition;
+        }
     }
 }
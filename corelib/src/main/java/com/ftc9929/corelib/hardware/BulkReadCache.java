@@ -0,0 +1,320 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.AnalogInput;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.DigitalChannel;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.VoltageUnit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.NonNull;
+
+/**
+ * Shares one bulk read of each hub per loop between control code and metrics.
+ *
+ * Puts every LynxModule into MANUAL bulk caching mode, so encoder positions, velocities,
+ * digital channels and analog inputs are read from the hub in one transaction the first time
+ * any of them are needed, until clearCache() is called - which must be done at the start
+ * of every loop, or values will never change.
+ *
+ * Reads that are not part of a bulk read (motor current and power, hub voltages, voltage
+ * sensors) are remembered for the rest of the loop by the handles returned from this class,
+ * so asking for the same value twice in a loop only reads it from the hub once.
+ *
+ * The metric sources for these values take an optional BulkReadCache - when it is null they
+ * read from the hardware themselves, otherwise their reads are shared with other users of
+ * the cache.
+ */
+public class BulkReadCache {
+    private final List<LynxModule> hubs;
+
+    // Incremented every loop, handles re-read values when it changes
+    private long generation;
+
+    private final Map<Object, Object> handlesByDevice = new IdentityHashMap<>();
+
+    public BulkReadCache(@NonNull HardwareMap hardwareMap) {
+        this(hardwareMap.getAll(LynxModule.class));
+    }
+
+    public BulkReadCache(@NonNull List<LynxModule> hubs) {
+        this.hubs = new ArrayList<>(hubs);
+
+        for (LynxModule hub : this.hubs) {
+            hub.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+    }
+
+    /**
+     * Throws away last loop's values, call at the start of every loop
+     */
+    public void clearCache() {
+        generation++;
+
+        for (int i = 0; i < hubs.size(); i++) {
+            hubs.get(i).clearBulkCache();
+        }
+    }
+
+    public List<LynxModule> getHubs() {
+        return Collections.unmodifiableList(hubs);
+    }
+
+    public MotorReads getMotor(@NonNull DcMotorEx motor) {
+        MotorReads handle = (MotorReads) handlesByDevice.get(motor);
+
+        if (handle == null) {
+            handle = new MotorReads(this, motor);
+            handlesByDevice.put(motor, handle);
+        }
+
+        return handle;
+    }
+
+    public DigitalChannelReads getDigitalChannel(@NonNull DigitalChannel digitalChannel) {
+        DigitalChannelReads handle = (DigitalChannelReads) handlesByDevice.get(digitalChannel);
+
+        if (handle == null) {
+            handle = new DigitalChannelReads(this, digitalChannel);
+            handlesByDevice.put(digitalChannel, handle);
+        }
+
+        return handle;
+    }
+
+    public AnalogInputReads getAnalogInput(@NonNull AnalogInput analogInput) {
+        AnalogInputReads handle = (AnalogInputReads) handlesByDevice.get(analogInput);
+
+        if (handle == null) {
+            handle = new AnalogInputReads(this, analogInput);
+            handlesByDevice.put(analogInput, handle);
+        }
+
+        return handle;
+    }
+
+    public VoltageSensorReads getVoltageSensor(@NonNull VoltageSensor voltageSensor) {
+        VoltageSensorReads handle = (VoltageSensorReads) handlesByDevice.get(voltageSensor);
+
+        if (handle == null) {
+            handle = new VoltageSensorReads(this, voltageSensor);
+            handlesByDevice.put(voltageSensor, handle);
+        }
+
+        return handle;
+    }
+
+    public HubReads getHub(@NonNull LynxModule hub) {
+        HubReads handle = (HubReads) handlesByDevice.get(hub);
+
+        if (handle == null) {
+            handle = new HubReads(this, hub);
+            handlesByDevice.put(hub, handle);
+        }
+
+        return handle;
+    }
+
+    /**
+     * A value that is read at most once per loop
+     */
+    abstract static class CachedRead {
+        private final BulkReadCache cache;
+
+        private long generation = -1;
+
+        private double value;
+
+        CachedRead(BulkReadCache cache) {
+            this.cache = cache;
+        }
+
+        protected abstract double read();
+
+        double get() {
+            if (generation != cache.generation) {
+                value = read();
+                generation = cache.generation;
+            }
+
+            return value;
+        }
+    }
+
+    public static class MotorReads {
+        private final CachedRead currentPosition;
+
+        private final CachedRead velocity;
+
+        private final CachedRead current;
+
+        private final CachedRead power;
+
+        MotorReads(BulkReadCache cache, final DcMotorEx motor) {
+            currentPosition = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return motor.getCurrentPosition();
+                }
+            };
+
+            velocity = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return motor.getVelocity();
+                }
+            };
+
+            current = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return motor.getCurrent(CurrentUnit.AMPS);
+                }
+            };
+
+            power = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return motor.getPower();
+                }
+            };
+        }
+
+        public int getCurrentPosition() {
+            return (int) currentPosition.get();
+        }
+
+        /**
+         * @return velocity in encoder ticks per second
+         */
+        public double getVelocity() {
+            return velocity.get();
+        }
+
+        public double getCurrentAmps() {
+            return current.get();
+        }
+
+        public double getPower() {
+            return power.get();
+        }
+    }
+
+    public static class DigitalChannelReads {
+        private final CachedRead state;
+
+        DigitalChannelReads(BulkReadCache cache, final DigitalChannel digitalChannel) {
+            state = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return digitalChannel.getState() ? 1 : 0;
+                }
+            };
+        }
+
+        public boolean getState() {
+            return state.get() != 0;
+        }
+    }
+
+    public static class AnalogInputReads {
+        private final CachedRead voltage;
+
+        AnalogInputReads(BulkReadCache cache, final AnalogInput analogInput) {
+            voltage = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return analogInput.getVoltage();
+                }
+            };
+        }
+
+        public double getVoltage() {
+            return voltage.get();
+        }
+    }
+
+    public static class VoltageSensorReads {
+        private final CachedRead voltage;
+
+        VoltageSensorReads(BulkReadCache cache, final VoltageSensor voltageSensor) {
+            voltage = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return voltageSensor.getVoltage();
+                }
+            };
+        }
+
+        public double getVoltage() {
+            return voltage.get();
+        }
+    }
+
+    public static class HubReads {
+        private final CachedRead inputVoltage;
+
+        private final CachedRead auxiliaryVoltage;
+
+        HubReads(BulkReadCache cache, final LynxModule hub) {
+            inputVoltage = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return hub.getInputVoltage(VoltageUnit.VOLTS);
+                }
+            };
+
+            auxiliaryVoltage = new CachedRead(cache) {
+                @Override
+                protected double read() {
+                    return hub.getAuxiliaryVoltage(VoltageUnit.VOLTS);
+                }
+            };
+        }
+
+        /**
+         * @return the 12V battery input voltage
+         */
+        public double getInputVoltage() {
+            return inputVoltage.get();
+        }
+
+        /**
+         * @return the 5V auxiliary voltage
+         */
+        public double getAuxiliaryVoltage() {
+            return auxiliaryVoltage.get();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+/**
+ * Remembers the last value written to one setting of a device (power, position, ...) and
+ * only writes again when the new value differs by more than epsilon. A change to exactly
+ * zero is always written, so motors can always be stopped.
+ *
+ * When deferred, values are held until flush(), and only the last value set is written.
+ */
+abstract class CachedWrite {
+    private final double epsilon;
+
+    private final boolean deferred;
+
+    private boolean hasWritten;
+
+    private double lastWritten;
+
+    private boolean hasPending;
+
+    private double pending;
+
+    private long writesIssued;
+
+    private long writesSuppressed;
+
+    CachedWrite(double epsilon, boolean deferred) {
+        this.epsilon = epsilon;
+        this.deferred = deferred;
+    }
+
+    /**
+     * Writes the value to the device
+     */
+    protected abstract void write(double value);
+
+    void set(double value) {
+        if (deferred) {
+            if (hasPending) {
+                // The previously set value will never be written
+                writesSuppressed++;
+            }
+
+            pending = value;
+            hasPending = true;
+
+            return;
+        }
+
+        writeIfChanged(value);
+    }
+
+    void flush() {
+        if (hasPending) {
+            hasPending = false;
+            writeIfChanged(pending);
+        }
+    }
+
+    /**
+     * The device may no longer have the last written value, so the next value set is always written
+     */
+    void forget() {
+        hasWritten = false;
+    }
+
+    /**
+     * Drops any value waiting to be flushed
+     */
+    void cancel() {
+        hasPending = false;
+    }
+
+    boolean hasCommandedValue() {
+        return hasPending || hasWritten;
+    }
+
+    /**
+     * @return the value waiting to be flushed, or if there isn't one, the last value written
+     */
+    double getCommandedValue() {
+        return hasPending ? pending : lastWritten;
+    }
+
+    long getWritesIssued() {
+        return writesIssued;
+    }
+
+    long getWritesSuppressed() {
+        return writesSuppressed;
+    }
+
+    private void writeIfChanged(double value) {
+        if (hasWritten && !isChanged(value)) {
+            writesSuppressed++;
+
+            return;
+        }
+
+        write(value);
+        lastWritten = value;
+        hasWritten = true;
+        writesIssued++;
+    }
+
+    private boolean isChanged(double value) {
+        if (value == lastWritten) {
+            return false;
+        }
+
+        if (value == 0) {
+            return true;
+        }
+
+        return Math.abs(value - lastWritten) > epsilon;
+    }
+}
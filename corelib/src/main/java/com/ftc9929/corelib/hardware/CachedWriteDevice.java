@@ -0,0 +1,50 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+/**
+ * A device wrapper that skips writes that would not change anything, created
+ * by HardwareWriteCache.
+ */
+public interface CachedWriteDevice {
+    /**
+     * Writes any values held back since the last flush (only when writes are deferred)
+     */
+    void flush();
+
+    /**
+     * Forgets the last values written, so the next values are always written. Use this
+     * if the device was changed without going through this wrapper.
+     */
+    void invalidate();
+
+    /**
+     * @return the number of writes that went to the device
+     */
+    long getWritesIssued();
+
+    /**
+     * @return the number of writes skipped because they would not have changed anything
+     */
+    long getWritesSuppressed();
+}
@@ -0,0 +1,110 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+import com.qualcomm.robotcore.hardware.CRServo;
+
+import lombok.NonNull;
+import lombok.experimental.Delegate;
+
+/**
+ * A CRServo that does not send power to the hub when it has not changed
+ * (see HardwareWriteCache). Everything else goes straight to the servo, after any
+ * deferred power has been flushed, so the servo sees calls in the order they were made.
+ */
+public class CachingCRServo implements CRServo, CachedWriteDevice {
+    // Methods we handle ourselves, rather than delegating to the servo
+    private interface CachedMethods {
+        void setPower(double power);
+
+        double getPower();
+
+        void setDirection(Direction direction);
+
+        void resetDeviceConfigurationForOpMode();
+    }
+
+    @Delegate(types = CRServo.class, excludes = CachedMethods.class)
+    private final CRServo crServo;
+
+    private final CachedWrite power;
+
+    CachingCRServo(@NonNull final CRServo crServo, double epsilon, boolean deferWrites) {
+        this.crServo = crServo;
+
+        power = new CachedWrite(epsilon, deferWrites) {
+            @Override
+            protected void write(double value) {
+                crServo.setPower(value);
+            }
+        };
+    }
+
+    @Override
+    public void setPower(double power) {
+        this.power.set(power);
+    }
+
+    @Override
+    public double getPower() {
+        if (power.hasCommandedValue()) {
+            return power.getCommandedValue();
+        }
+
+        return crServo.getPower();
+    }
+
+    @Override
+    public void setDirection(Direction direction) {
+        flush();
+        crServo.setDirection(direction);
+        invalidate();
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+        flush();
+        crServo.resetDeviceConfigurationForOpMode();
+        invalidate();
+    }
+
+    @Override
+    public void flush() {
+        power.flush();
+    }
+
+    @Override
+    public void invalidate() {
+        power.forget();
+    }
+
+    @Override
+    public long getWritesIssued() {
+        return power.getWritesIssued();
+    }
+
+    @Override
+    public long getWritesSuppressed() {
+        return power.getWritesSuppressed();
+    }
+}
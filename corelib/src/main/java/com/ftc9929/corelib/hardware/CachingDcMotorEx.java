@@ -0,0 +1,236 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+
+import lombok.NonNull;
+import lombok.experimental.Delegate;
+
+/**
+ * A DcMotorEx that does not send power, velocity or target position to the hub when
+ * they have not changed (see HardwareWriteCache). Everything else goes straight to the motor.
+ *
+ * Deferred writes are flushed before anything that goes straight to the motor, so the motor
+ * sees calls in the order they were made - the SDK needs a target position before switching
+ * to RUN_TO_POSITION, for example.
+ */
+public class CachingDcMotorEx implements DcMotorEx, CachedWriteDevice {
+    // Methods we handle ourselves, rather than delegating to the motor
+    private interface CachedMethods {
+        void setPower(double power);
+
+        double getPower();
+
+        void setVelocity(double angularRate);
+
+        void setVelocity(double angularRate, AngleUnit unit);
+
+        void setTargetPosition(int position);
+
+        int getTargetPosition();
+
+        void setMode(RunMode mode);
+
+        void setMotorEnable();
+
+        void setMotorDisable();
+
+        void setDirection(Direction direction);
+
+        void setZeroPowerBehavior(ZeroPowerBehavior zeroPowerBehavior);
+
+        void setPowerFloat();
+
+        void resetDeviceConfigurationForOpMode();
+    }
+
+    @Delegate(types = DcMotorEx.class, excludes = CachedMethods.class)
+    private final DcMotorEx motor;
+
+    private final CachedWrite power;
+
+    private final CachedWrite velocity;
+
+    private final CachedWrite targetPosition;
+
+    // null for ticks per second
+    private AngleUnit velocityUnit;
+
+    CachingDcMotorEx(@NonNull final DcMotorEx motor, double epsilon, boolean deferWrites) {
+        this.motor = motor;
+
+        power = new CachedWrite(epsilon, deferWrites) {
+            @Override
+            protected void write(double value) {
+                motor.setPower(value);
+            }
+        };
+
+        velocity = new CachedWrite(epsilon, deferWrites) {
+            @Override
+            protected void write(double value) {
+                if (velocityUnit == null) {
+                    motor.setVelocity(value);
+                } else {
+                    motor.setVelocity(value, velocityUnit);
+                }
+            }
+        };
+
+        // Encoder positions are whole numbers, only skip exact repeats
+        targetPosition = new CachedWrite(0, deferWrites) {
+            @Override
+            protected void write(double value) {
+                motor.setTargetPosition((int) value);
+            }
+        };
+    }
+
+    @Override
+    public void setPower(double power) {
+        // Power and velocity both set what the motor is doing, the last one set wins
+        velocity.forget();
+        velocity.cancel();
+
+        this.power.set(power);
+    }
+
+    @Override
+    public double getPower() {
+        if (power.hasCommandedValue()) {
+            return power.getCommandedValue();
+        }
+
+        return motor.getPower();
+    }
+
+    @Override
+    public void setVelocity(double angularRate) {
+        setVelocity(angularRate, null);
+    }
+
+    @Override
+    public void setVelocity(double angularRate, AngleUnit unit) {
+        power.forget();
+        power.cancel();
+
+        if (unit != velocityUnit) {
+            velocity.forget();
+            velocity.cancel();
+            velocityUnit = unit;
+        }
+
+        velocity.set(angularRate);
+    }
+
+    @Override
+    public void setTargetPosition(int position) {
+        targetPosition.set(position);
+    }
+
+    @Override
+    public int getTargetPosition() {
+        if (targetPosition.hasCommandedValue()) {
+            return (int) targetPosition.getCommandedValue();
+        }
+
+        return motor.getTargetPosition();
+    }
+
+    @Override
+    public void setMode(RunMode mode) {
+        flush();
+        motor.setMode(mode);
+        invalidate();
+    }
+
+    @Override
+    public void setMotorEnable() {
+        flush();
+        motor.setMotorEnable();
+        invalidate();
+    }
+
+    @Override
+    public void setMotorDisable() {
+        flush();
+        motor.setMotorDisable();
+        invalidate();
+    }
+
+    @Override
+    public void setDirection(Direction direction) {
+        flush();
+        motor.setDirection(direction);
+        invalidate();
+    }
+
+    @Override
+    public void setZeroPowerBehavior(ZeroPowerBehavior zeroPowerBehavior) {
+        flush();
+        motor.setZeroPowerBehavior(zeroPowerBehavior);
+        invalidate();
+    }
+
+    @Override
+    public void setPowerFloat() {
+        flush();
+        motor.setPowerFloat();
+        invalidate();
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+        flush();
+        motor.resetDeviceConfigurationForOpMode();
+        invalidate();
+    }
+
+    @Override
+    public void flush() {
+        // Target position first, in case power starts the motor moving in RUN_TO_POSITION
+        targetPosition.flush();
+        power.flush();
+        velocity.flush();
+    }
+
+    @Override
+    public void invalidate() {
+        power.forget();
+        velocity.forget();
+        targetPosition.forget();
+    }
+
+    @Override
+    public long getWritesIssued() {
+        return power.getWritesIssued() + velocity.getWritesIssued() + targetPosition.getWritesIssued();
+    }
+
+    @Override
+    public long getWritesSuppressed() {
+        return power.getWritesSuppressed() + velocity.getWritesSuppressed() + targetPosition.getWritesSuppressed();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+import com.qualcomm.robotcore.hardware.Servo;
+
+import lombok.NonNull;
+import lombok.experimental.Delegate;
+
+/**
+ * A Servo that does not send positions to the hub when they have not changed
+ * (see HardwareWriteCache). Everything else goes straight to the servo, after any
+ * deferred position has been flushed, so the servo sees calls in the order they were made.
+ */
+public class CachingServo implements Servo, CachedWriteDevice {
+    // Methods we handle ourselves, rather than delegating to the servo
+    private interface CachedMethods {
+        void setPosition(double position);
+
+        double getPosition();
+
+        void setDirection(Direction direction);
+
+        void scaleRange(double min, double max);
+
+        void resetDeviceConfigurationForOpMode();
+    }
+
+    @Delegate(types = Servo.class, excludes = CachedMethods.class)
+    private final Servo servo;
+
+    private final CachedWrite position;
+
+    CachingServo(@NonNull final Servo servo, double epsilon, boolean deferWrites) {
+        this.servo = servo;
+
+        position = new CachedWrite(epsilon, deferWrites) {
+            @Override
+            protected void write(double value) {
+                servo.setPosition(value);
+            }
+        };
+    }
+
+    @Override
+    public void setPosition(double position) {
+        this.position.set(position);
+    }
+
+    @Override
+    public double getPosition() {
+        if (position.hasCommandedValue()) {
+            return position.getCommandedValue();
+        }
+
+        return servo.getPosition();
+    }
+
+    @Override
+    public void setDirection(Direction direction) {
+        flush();
+        servo.setDirection(direction);
+        invalidate();
+    }
+
+    @Override
+    public void scaleRange(double min, double max) {
+        flush();
+        servo.scaleRange(min, max);
+        invalidate();
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+        flush();
+        servo.resetDeviceConfigurationForOpMode();
+        invalidate();
+    }
+
+    @Override
+    public void flush() {
+        position.flush();
+    }
+
+    @Override
+    public void invalidate() {
+        position.forget();
+    }
+
+    @Override
+    public long getWritesIssued() {
+        return position.getWritesIssued();
+    }
+
+    @Override
+    public long getWritesSuppressed() {
+        return position.getWritesSuppressed();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+import com.qualcomm.robotcore.hardware.CRServo;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * Wraps motors and servos so that writes which would not change anything - setting the same
+ * power or position every loop, as most states and drive code do - are not sent to the hub,
+ * where each one is a separate (slow) command.
+ *
+ * A value within epsilon of the last value written is skipped, except that a change to exactly
+ * zero is always written. With deferWrites, values are held until flush() is called at the end
+ * of the loop, so only the last value set in a loop is ever written.
+ *
+ * Wrapping the same device more than once returns the same wrapper, so states can share it.
+ */
+public class HardwareWriteCache {
+    private final double epsilon;
+
+    private final boolean deferWrites;
+
+    private final Map<HardwareDevice, CachedWriteDevice> wrappersByDevice = new IdentityHashMap<>();
+
+    // For flushing in a consistent order
+    private final List<CachedWriteDevice> wrappers = new ArrayList<>();
+
+    @Builder
+    private HardwareWriteCache(double epsilon, boolean deferWrites) {
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("Epsilon must not be negative");
+        }
+
+        this.epsilon = epsilon;
+        this.deferWrites = deferWrites;
+    }
+
+    public CachingDcMotorEx wrap(@NonNull DcMotorEx motor) {
+        if (motor instanceof CachingDcMotorEx) {
+            return (CachingDcMotorEx) motor;
+        }
+
+        CachedWriteDevice wrapper = wrappersByDevice.get(motor);
+
+        if (wrapper == null) {
+            wrapper = add(motor, new CachingDcMotorEx(motor, epsilon, deferWrites));
+        }
+
+        return (CachingDcMotorEx) wrapper;
+    }
+
+    public CachingServo wrap(@NonNull Servo servo) {
+        if (servo instanceof CachingServo) {
+            return (CachingServo) servo;
+        }
+
+        CachedWriteDevice wrapper = wrappersByDevice.get(servo);
+
+        if (wrapper == null) {
+            wrapper = add(servo, new CachingServo(servo, epsilon, deferWrites));
+        }
+
+        return (CachingServo) wrapper;
+    }
+
+    public CachingCRServo wrap(@NonNull CRServo crServo) {
+        if (crServo instanceof CachingCRServo) {
+            return (CachingCRServo) crServo;
+        }
+
+        CachedWriteDevice wrapper = wrappersByDevice.get(crServo);
+
+        if (wrapper == null) {
+            wrapper = add(crServo, new CachingCRServo(crServo, epsilon, deferWrites));
+        }
+
+        return (CachingCRServo) wrapper;
+    }
+
+    /**
+     * Writes any values held back during this loop, call at the end of the OpMode's loop()
+     * (does nothing unless writes are deferred)
+     */
+    public void flush() {
+        for (int i = 0; i < wrappers.size(); i++) {
+            wrappers.get(i).flush();
+        }
+    }
+
+    /**
+     * Forgets the last values written to all devices, so the next values are always written
+     */
+    public void invalidate() {
+        for (int i = 0; i < wrappers.size(); i++) {
+            wrappers.get(i).invalidate();
+        }
+    }
+
+    public long getWritesIssued() {
+        long writesIssued = 0;
+
+        for (int i = 0; i < wrappers.size(); i++) {
+            writesIssued += wrappers.get(i).getWritesIssued();
+        }
+
+        return writesIssued;
+    }
+
+    public long getWritesSuppressed() {
+        long writesSuppressed = 0;
+
+        for (int i = 0; i < wrappers.size(); i++) {
+            writesSuppressed += wrappers.get(i).getWritesSuppressed();
+        }
+
+        return writesSuppressed;
+    }
+
+    private CachedWriteDevice add(HardwareDevice device, CachedWriteDevice wrapper) {
+        wrappersByDevice.put(device, wrapper);
+        wrappers.add(wrapper);
+
+        return wrapper;
+    }
+}
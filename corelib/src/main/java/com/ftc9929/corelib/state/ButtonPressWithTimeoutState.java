@@ -28,6 +28,9 @@ import com.google.common.base.Ticker;
 
 import org.firstinspires.ftc.robotcore.external.Telemetry;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import lombok.NonNull;
 import lombok.Setter;
 
@@ -70,4 +73,13 @@ public class ButtonPressWithTimeoutState extends StopwatchTimeoutSafetyState {
 
         return this;
     }
+
+    @Override
+    protected Collection<State> getPossibleNextStates() {
+        if (whenTimedOutState == null) {
+            return super.getPossibleNextStates();
+        }
+
+        return Arrays.asList(nextState, whenTimedOutState);
+    }
 }
@@ -0,0 +1,278 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.state;
+
+import com.ftc9929.corelib.util.LatencyHistogram;
+import com.google.common.base.Ticker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Runs StateMachines and other periodic work (metrics sampling, telemetry) from an OpMode's
+ * loop() with priorities and a time budget, so that a spike in low-priority work does not
+ * stretch the control loop.
+ *
+ * Each call to runOneLoop() runs tasks that are due in priority order, CRITICAL first:
+ *
+ * - CRITICAL tasks always run.
+ * - NORMAL tasks are deferred to the next loop once the loop budget has been used up.
+ * - BACKGROUND tasks are deferred if their (average) run time would not fit in what is left
+ *   of the budget.
+ *
+ * NORMAL and BACKGROUND tasks run anyway once they have been deferred setMaxDeferrals() times
+ * in a row (default 10). Otherwise, a NORMAL task would never run while the CRITICAL tasks
+ * alone take more than the budget, and a BACKGROUND task whose average is above the budget
+ * (after one slow run, for example) would never run again to bring its average back down.
+ *
+ * Within a priority, tasks run in the order they were added. A task with a period runs at
+ * most once per period, and does not try to "catch up" after being deferred.
+ */
+public class LoopScheduler {
+    public enum Priority {
+        CRITICAL,
+        NORMAL,
+        BACKGROUND
+    }
+
+    public static final int DEFAULT_MAX_DEFERRALS = 10;
+
+    private final Ticker ticker;
+
+    private final long loopBudgetNanos;
+
+    private int maxDeferrals = DEFAULT_MAX_DEFERRALS;
+
+    private final List<ScheduledTask> tasks = new ArrayList<>();
+
+    /**
+     * Time each call to runOneLoop() took
+     */
+    @Getter
+    private final LatencyHistogram loopHistogram = new LatencyHistogram();
+
+    /**
+     * Number of loops that took longer than the budget
+     */
+    @Getter
+    private long overBudgetLoops;
+
+    public LoopScheduler(@NonNull Ticker ticker, long loopBudget, @NonNull TimeUnit unit) {
+        if (loopBudget <= 0) {
+            throw new IllegalArgumentException("Loop budget must be greater than 0");
+        }
+
+        this.ticker = ticker;
+        this.loopBudgetNanos = unit.toNanos(loopBudget);
+    }
+
+    /**
+     * Runs one loop of the given state machine every loop
+     */
+    public ScheduledTask addStateMachine(@NonNull String name, @NonNull final StateMachine stateMachine,
+                                         @NonNull Priority priority) {
+        return addTask(name, new Runnable() {
+            @Override
+            public void run() {
+                stateMachine.doOneStateLoop();
+            }
+        }, priority);
+    }
+
+    /**
+     * Runs the given task every loop
+     */
+    public ScheduledTask addTask(@NonNull String name, @NonNull Runnable task, @NonNull Priority priority) {
+        return addPeriodicTask(name, task, priority, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs the given task at most once per period, for example
+     * RobotMetricsSampler.doSamples() every 100 ms.
+     */
+    public ScheduledTask addPeriodicTask(@NonNull String name, @NonNull Runnable task,
+                                         @NonNull Priority priority, long period,
+                                         @NonNull TimeUnit unit) {
+        if (period < 0) {
+            throw new IllegalArgumentException("Period must not be negative");
+        }
+
+        ScheduledTask scheduledTask = new ScheduledTask(name, task, priority, unit.toNanos(period));
+
+        // Keep tasks sorted by priority, in the order they were added within a priority
+        int insertAt = tasks.size();
+
+        while (insertAt > 0 && tasks.get(insertAt - 1).priority.compareTo(priority) > 0) {
+            insertAt--;
+        }
+
+        tasks.add(insertAt, scheduledTask);
+
+        return scheduledTask;
+    }
+
+    /**
+     * Sets how many loops in a row a NORMAL or BACKGROUND task may be deferred because the
+     * budget is used up, before it is run anyway
+     */
+    public LoopScheduler setMaxDeferrals(int maxDeferrals) {
+        if (maxDeferrals < 0) {
+            throw new IllegalArgumentException("Maximum deferrals must not be negative");
+        }
+
+        this.maxDeferrals = maxDeferrals;
+
+        return this;
+    }
+
+    public List<ScheduledTask> getTasks() {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    /**
+     * Runs all tasks that are due and fit in the budget, call this from the OpMode's loop()
+     */
+    public void runOneLoop() {
+        final long loopStartNanos = ticker.read();
+
+        for (int i = 0; i < tasks.size(); i++) {
+            final ScheduledTask task = tasks.get(i);
+
+            long nowNanos = ticker.read();
+
+            if (!task.isDue(nowNanos)) {
+                continue;
+            }
+
+            final long elapsedNanos = nowNanos - loopStartNanos;
+
+            if (shouldDefer(task, elapsedNanos)) {
+                task.deferredCount++;
+                task.consecutiveDeferrals++;
+
+                continue;
+            }
+
+            task.run(nowNanos, ticker);
+        }
+
+        final long loopNanos = ticker.read() - loopStartNanos;
+        loopHistogram.record(loopNanos);
+
+        if (loopNanos > loopBudgetNanos) {
+            overBudgetLoops++;
+        }
+    }
+
+    private boolean shouldDefer(ScheduledTask task, long elapsedNanos) {
+        switch (task.priority) {
+            case NORMAL:
+                return elapsedNanos >= loopBudgetNanos
+                        && task.consecutiveDeferrals < maxDeferrals;
+            case BACKGROUND:
+                return elapsedNanos + task.averageRunNanos > loopBudgetNanos
+                        && task.consecutiveDeferrals < maxDeferrals;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A task registered with the scheduler, and how it has been running
+     */
+    public static class ScheduledTask {
+        @Getter
+        private final String name;
+
+        @Getter
+        private final Priority priority;
+
+        private final Runnable task;
+
+        private final long periodNanos;
+
+        private boolean hasRun;
+
+        private long nextDueNanos;
+
+        @Getter
+        private long runCount;
+
+        /**
+         * Number of times the task was due, but did not run because the loop was over budget
+         */
+        @Getter
+        private long deferredCount;
+
+        private int consecutiveDeferrals;
+
+        /**
+         * Exponentially weighted average of how long the task takes to run
+         */
+        @Getter
+        private long averageRunNanos;
+
+        @Getter
+        private long maxRunNanos;
+
+        ScheduledTask(String name, Runnable task, Priority priority, long periodNanos) {
+            this.name = name;
+            this.task = task;
+            this.priority = priority;
+            this.periodNanos = periodNanos;
+        }
+
+        boolean isDue(long nowNanos) {
+            return !hasRun || nowNanos - nextDueNanos >= 0;
+        }
+
+        void run(long startNanos, Ticker ticker) {
+            task.run();
+
+            final long runNanos = ticker.read() - startNanos;
+
+            if (hasRun) {
+                averageRunNanos += (runNanos - averageRunNanos) / 8;
+            } else {
+                averageRunNanos = runNanos;
+                hasRun = true;
+            }
+
+            maxRunNanos = Math.max(maxRunNanos, runNanos);
+            runCount++;
+            consecutiveDeferrals = 0;
+
+            // Stay on the original schedule, unless we have fallen a whole period behind
+            nextDueNanos += periodNanos;
+
+            if (startNanos - nextDueNanos >= 0) {
+                nextDueNanos = startNanos + periodNanos;
+            }
+        }
+    }
+}
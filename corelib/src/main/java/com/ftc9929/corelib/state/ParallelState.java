@@ -0,0 +1,279 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.state;
+
+import android.util.Log;
+
+import com.google.common.base.Ticker;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import static com.ftc9929.corelib.Constants.LOG_TAG;
+
+/**
+ * A State that runs several sequences of states (regions) at the same time, for example
+ * moving an arm while driving. Each loop, the current state of every region that has not
+ * completed is run once. A region completes when its current state returns null as the next
+ * state, typically the end of a SequenceOfStates.
+ *
+ * With Join.ALL, this state transitions to its next state when every region has completed,
+ * with Join.ANY, as soon as one region completes (the others are abandoned where they are).
+ * The regions are reset when this state transitions - every state in each region, so a
+ * region that is re-entered starts from its first state - so it can be re-used in a cyclic
+ * state machine.
+ *
+ * An optional per-loop time budget stops one slow region from starving the others - once
+ * the budget is used up, the remaining regions are deferred to the next loop, where they run
+ * first. At least one region always runs each loop.
+ */
+public class ParallelState extends State {
+    public enum Join {
+        ALL,
+        ANY
+    }
+
+    private final Join join;
+
+    private final Ticker ticker;
+
+    private final List<Region> regions = new ArrayList<>();
+
+    private long loopBudgetNanos;
+
+    private int firstRegionToRun;
+
+    private boolean started;
+
+    /**
+     * Number of loops where at least one region was deferred because the budget was used up
+     */
+    @Getter
+    private long budgetOverruns;
+
+    public ParallelState(@NonNull String name,
+                         Telemetry telemetry,
+                         @NonNull Ticker ticker,
+                         @NonNull Join join) {
+        super(name, telemetry);
+        this.ticker = ticker;
+        this.join = join;
+    }
+
+    /**
+     * Adds a region that starts with the first state of the given sequence
+     *
+     * @throws IllegalArgumentException if the sequence is empty, or this state has already run
+     */
+    public ParallelState addRegion(@NonNull SequenceOfStates sequence) {
+        if (sequence.getFirstState() == null) {
+            throw new IllegalArgumentException("Can not add an empty sequence as a region");
+        }
+
+        return addRegion(sequence.getFirstState());
+    }
+
+    /**
+     * Adds a region that starts with the given state
+     *
+     * @throws IllegalArgumentException if this state has already run
+     */
+    public ParallelState addRegion(@NonNull State firstState) {
+        if (started) {
+            throw new IllegalArgumentException("Can not add regions once the parallel state has run");
+        }
+
+        regions.add(new Region(firstState));
+
+        return this;
+    }
+
+    /**
+     * Limits how long all regions may take, combined, in a single loop. A budget of 0 (the default)
+     * means no limit.
+     */
+    public ParallelState setLoopBudget(long budget, @NonNull TimeUnit unit) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Loop budget must not be negative");
+        }
+
+        loopBudgetNanos = unit.toNanos(budget);
+
+        return this;
+    }
+
+    public int getRegionCount() {
+        return regions.size();
+    }
+
+    public boolean isRegionComplete(int regionIndex) {
+        return regions.get(regionIndex).complete;
+    }
+
+    /**
+     * @return the current state of the given region, which is the last state it ran
+     * if the region has completed
+     */
+    public State getRegionCurrentState(int regionIndex) {
+        return regions.get(regionIndex).currentState;
+    }
+
+    @Override
+    public State doStuffAndGetNextState() {
+        started = true;
+
+        final int regionCount = regions.size();
+        final long startNanos = ticker.read();
+
+        int regionsRun = 0;
+        int deferredFrom = -1;
+
+        for (int i = 0; i < regionCount; i++) {
+            final int regionIndex = (firstRegionToRun + i) % regionCount;
+            final Region region = regions.get(regionIndex);
+
+            if (region.complete) {
+                continue;
+            }
+
+            if (regionsRun > 0 && loopBudgetNanos > 0 && ticker.read() - startNanos >= loopBudgetNanos) {
+                deferredFrom = regionIndex;
+
+                break;
+            }
+
+            region.run();
+            regionsRun++;
+
+            if (region.complete) {
+                Log.d(LOG_TAG, String.format("%s - region %d complete", getClassAndName(), regionIndex));
+
+                if (join == Join.ANY) {
+                    return finish();
+                }
+            }
+        }
+
+        if (allRegionsComplete()) {
+            return finish();
+        }
+
+        if (deferredFrom != -1) {
+            budgetOverruns++;
+            firstRegionToRun = deferredFrom;
+        } else if (regionCount > 0) {
+            firstRegionToRun = (firstRegionToRun + 1) % regionCount;
+        }
+
+        return this;
+    }
+
+    @Override
+    public void resetToStart() {
+        for (Region region : regions) {
+            region.reset();
+        }
+
+        firstRegionToRun = 0;
+    }
+
+    private boolean allRegionsComplete() {
+        for (Region region : regions) {
+            if (!region.complete) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private State finish() {
+        resetToStart();
+
+        return nextState;
+    }
+
+    private static class Region {
+        private final State firstState;
+
+        private State currentState;
+
+        private boolean complete;
+
+        Region(State firstState) {
+            this.firstState = firstState;
+            this.currentState = firstState;
+        }
+
+        void run() {
+            State possibleNextState = currentState.doStuffAndGetNextState();
+
+            if (possibleNextState == null) {
+                complete = true;
+            } else {
+                currentState = possibleNextState;
+            }
+        }
+
+        /**
+         * Resets every state the region can reach from its first state, not only the one it
+         * stopped in, so that the region starts over when the parallel state is re-entered
+         */
+        void reset() {
+            final Set<State> statesToReset = Collections.newSetFromMap(new IdentityHashMap<State, Boolean>());
+            final Deque<State> toVisit = new ArrayDeque<>();
+
+            toVisit.add(firstState);
+
+            while (!toVisit.isEmpty()) {
+                final State state = toVisit.remove();
+
+                if (!statesToReset.add(state)) {
+                    continue;
+                }
+
+                state.resetToStart();
+
+                for (State possibleNextState : state.getPossibleNextStates()) {
+                    if (possibleNextState != null) {
+                        toVisit.add(possibleNextState);
+                    }
+                }
+            }
+
+            currentState = firstState;
+            complete = false;
+        }
+    }
+}
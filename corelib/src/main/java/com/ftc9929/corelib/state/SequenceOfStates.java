@@ -93,4 +93,22 @@ public class SequenceOfStates {
 
         addSequential(delayState);
     }
+
+    /**
+     * Runs the given sequences at the same time, continuing with the states that follow in
+     * this sequence when all (or any) of them have completed. Use the returned ParallelState
+     * to set a per-loop time budget, if needed.
+     */
+    public ParallelState addParallel(@NonNull String name, @NonNull ParallelState.Join join,
+                                     @NonNull SequenceOfStates... regions) {
+        ParallelState parallelState = new ParallelState(name, telemetry, ticker, join);
+
+        for (SequenceOfStates region : regions) {
+            parallelState.addRegion(region);
+        }
+
+        addSequential(parallelState);
+
+        return parallelState;
+    }
 }
@@ -29,6 +29,9 @@ import com.ftc9929.corelib.control.NinjaGamePad;
 
 import org.firstinspires.ftc.robotcore.external.Telemetry;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import lombok.NonNull;
 
 import static com.ftc9929.corelib.Constants.LOG_TAG;
@@ -42,6 +45,16 @@ public abstract class State {
 
     protected final String name;
 
+    // Display strings are computed once, so the state machine loop does not have to
+    private String classAndName;
+
+    private String stateDisplay;
+
+    // Set when this state is compiled into a StateTable
+    StateTable stateTable;
+
+    int stateId = StateTable.NO_STATE;
+
     protected State(@NonNull final String name, Telemetry telemetry) {
         this.telemetry = telemetry;
         this.name = name;
@@ -59,7 +72,34 @@ public abstract class State {
 
     public abstract void resetToStart();
 
+    /**
+     * Returns the states this state may return from doStuffAndGetNextState(), other than
+     * itself, used by StateMachine.compile() to build and validate the state graph.
+     *
+     * The default is the next state - override this in states that can transition
+     * elsewhere (or that never transition).
+     */
+    protected Collection<State> getPossibleNextStates() {
+        return Collections.singletonList(nextState);
+    }
+
     public String getName() {
         return name;
     }
+
+    String getClassAndName() {
+        if (classAndName == null) {
+            classAndName = String.format("%s - '%s'", getClass().getSimpleName(), name);
+        }
+
+        return classAndName;
+    }
+
+    String getStateDisplay() {
+        if (stateDisplay == null) {
+            stateDisplay = "> state " + name;
+        }
+
+        return stateDisplay;
+    }
 }
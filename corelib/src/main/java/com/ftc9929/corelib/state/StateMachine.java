@@ -46,6 +46,22 @@ public class StateMachine {
 
     private Telemetry telemetry;
 
+    private final Ticker ticker;
+
+    private StateProfiler profiler;
+
+    private static final String NO_STATE_DISPLAY = "> state null";
+
+    private boolean lowOverheadMode;
+
+    private Telemetry.Item stateTelemetryItem;
+
+    private State displayedState;
+
+    private StateTable stateTable;
+
+    private int currentStateId = StateTable.NO_STATE;
+
     public String getCurrentStateName() {
         // This is a little bit of a hack, as the API to this is changing
         // until doOneStateLoop() has run, currentState will be null,
@@ -59,7 +75,100 @@ public class StateMachine {
     }
 
     public StateMachine(@NonNull Telemetry telemetry) {
+        this(telemetry, Ticker.systemTicker());
+    }
+
+    /**
+     * Creates a state machine that uses the given ticker for profiling
+     */
+    public StateMachine(@NonNull Telemetry telemetry, @NonNull Ticker ticker) {
         this.telemetry = telemetry;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Starts recording per-state and whole-loop timings, which are available from
+     * getProfiler(). Profiling is off by default.
+     */
+    public void enableProfiling() {
+        if (profiler == null) {
+            profiler = new StateProfiler(ticker);
+
+            if (stateTable != null) {
+                profiler.useStateTable(stateTable);
+            }
+        }
+    }
+
+    /**
+     * Freezes the states reachable from the first state into a StateTable, checking that
+     * every state has somewhere to go next. Once compiled, the state machine tracks the current
+     * state by id, and a state returning a next state that is not in the table is an error.
+     *
+     * Compiling is optional, and must be done after all states have been added.
+     *
+     * @throws IllegalArgumentException if the state machine is running, already compiled, has
+     * no first state, or the states are not valid (see StateTable)
+     */
+    public StateTable compile() {
+        checkStateMachineNotRunning();
+        checkNotCompiled();
+
+        if (firstState == null) {
+            throw new IllegalArgumentException("State machine has no first state to compile from");
+        }
+
+        stateTable = StateTable.compile(firstState);
+
+        Log.d(LOG_TAG, "compile() - " + stateTable.size() + " states");
+
+        if (profiler != null) {
+            profiler.useStateTable(stateTable);
+        }
+
+        return stateTable;
+    }
+
+    /**
+     * @return the compiled table of states, or null if compile() has not been called
+     */
+    public StateTable getStateTable() {
+        return stateTable;
+    }
+
+    /**
+     * @return the id of the current state in the compiled StateTable, or StateTable.NO_STATE
+     * when not compiled or not running
+     */
+    public int getCurrentStateId() {
+        return currentStateId;
+    }
+
+    /**
+     * In low-overhead mode, the state machine loop avoids work that is only needed
+     * for debugging - the current state is shown in a retained telemetry item that
+     * is only updated when the state changes (rather than being re-added every loop),
+     * and state transitions are only logged when Log.isLoggable(LOG_TAG, Log.DEBUG).
+     *
+     * If telemetry.clearAll() removes the item, it is added again at the next state change.
+     *
+     * @throws IllegalArgumentException if the state machine is already running
+     */
+    public void setLowOverheadMode(boolean lowOverheadMode) {
+        checkStateMachineNotRunning();
+
+        this.lowOverheadMode = lowOverheadMode;
+    }
+
+    public boolean isLowOverheadMode() {
+        return lowOverheadMode;
+    }
+
+    /**
+     * @return the profiler for this state machine, or null if profiling has not been enabled
+     */
+    public StateProfiler getProfiler() {
+        return profiler;
     }
 
     /**
@@ -72,6 +181,7 @@ public class StateMachine {
      */
     public void addSequence(@NonNull SequenceOfStates sequenceOfStates) {
         checkStateMachineNotRunning();
+        checkNotCompiled();
         checkFirstStateNotSet();
 
         final State sequenceFirstState = sequenceOfStates.getFirstState();
@@ -90,6 +200,7 @@ public class StateMachine {
      */
     public void addSequential(@NonNull State nextState) {
         checkStateMachineNotRunning();
+        checkNotCompiled();
 
         Log.d(LOG_TAG, String.format("addSequential(%s)",
                 stateClassAndName(nextState)));
@@ -119,6 +230,7 @@ public class StateMachine {
      */
     public void setFirstState(@NonNull State state) {
         checkStateMachineNotRunning();
+        checkNotCompiled();
 
         checkFirstStateNotSet();
 
@@ -136,6 +248,7 @@ public class StateMachine {
 
     public void addStartDelay(long numberOfSeconds, @NonNull Ticker ticker) {
         checkStateMachineNotRunning();
+        checkNotCompiled();
 
         StopwatchDelayState startDelay = new StopwatchDelayState("Delayed start",
                 telemetry, ticker, numberOfSeconds, TimeUnit.SECONDS);
@@ -143,33 +256,62 @@ public class StateMachine {
         firstState = startDelay;
     }
 
+    /**
+     * @return true once the last state has run, after which there is nothing left to execute
+     */
+    public boolean isFinished() {
+        return stateMachineRunning && currentState == null;
+    }
+
     public void doOneStateLoop() {
+        final long loopStartNanos = profiler != null ? profiler.now() : 0;
+
         try {
             if (currentState == null) {
                 if (!stateMachineRunning) {
                     currentState = firstState;
+                    currentStateId = stateTable != null ? 0 : StateTable.NO_STATE;
                     stateMachineRunning = true;
                 } else {
                     Log.w(LOG_TAG, "No state left to execute");
                 }
             }
 
+            final State executedState = currentState;
+
             State possibleNextState = currentState.doStuffAndGetNextState();
 
-            if (possibleNextState == null) {
+            if (profiler != null) {
+                profiler.recordState(executedState, profiler.now() - loopStartNanos);
+            }
+
+            if (stateTable != null) {
+                final int nextStateId = stateTable.getStateId(possibleNextState);
+
+                if (nextStateId != currentStateId) {
+                    if (nextStateId != StateTable.NO_STATE) {
+                        logTransition(currentState, possibleNextState);
+                    }
+
+                    currentState = possibleNextState;
+                    currentStateId = nextStateId;
+                }
+            } else if (possibleNextState == null) {
                 //noinspection ConstantConditions
                 currentState = possibleNextState;
             } else if (!possibleNextState.equals(currentState)) {
                 // We've changed states, Yay time to party
-                Log.d(LOG_TAG, String.format("state %s -> %s",
-                        stateClassAndName(currentState),
-                        stateClassAndName(possibleNextState)));
+                logTransition(currentState, possibleNextState);
 
                 currentState = possibleNextState;
             }
 
             if (telemetry != null) {
-                telemetry.addData("00", String.format("> state %s", currentState != null ? currentState.getName() : "null"));
+                updateStateTelemetry();
+            }
+
+            if (profiler != null) {
+                profiler.recordLoop(profiler.now() - loopStartNanos);
             }
         } catch (Throwable t) {
             // Better logging than the FTC SDK provides :(
@@ -186,6 +328,42 @@ public class StateMachine {
         }
     }
 
+    private void logTransition(State fromState, State toState) {
+        if (lowOverheadMode && !Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            return;
+        }
+
+        Log.d(LOG_TAG, "state " + fromState.getClassAndName() + " -> " + toState.getClassAndName());
+    }
+
+    private void updateStateTelemetry() {
+        final String stateDisplay = currentState != null ? currentState.getStateDisplay() : NO_STATE_DISPLAY;
+
+        if (!lowOverheadMode) {
+            telemetry.addData("00", stateDisplay);
+
+            return;
+        }
+
+        if (stateTelemetryItem == null || displayedState != currentState) {
+            // Replaced rather than updated, in case telemetry.clearAll() has removed it
+            if (stateTelemetryItem != null) {
+                telemetry.removeItem(stateTelemetryItem);
+            }
+
+            stateTelemetryItem = telemetry.addData("00", stateDisplay);
+            stateTelemetryItem.setRetained(true);
+        }
+
+        displayedState = currentState;
+    }
+
+    private void checkNotCompiled() {
+        if (stateTable != null) {
+            throw new IllegalArgumentException("State machine already compiled, cannot change configuration");
+        }
+    }
+
     private void checkStateMachineNotRunning() {
         if (stateMachineRunning) {
             throw new IllegalArgumentException("State machine already running, cannot change configuration");
@@ -193,6 +371,6 @@ public class StateMachine {
     }
 
     static String stateClassAndName(@NonNull State state) {
-        return String.format("%s - '%s'", state.getClass().getSimpleName(), state.getName());
+        return state.getClassAndName();
     }
 }
@@ -0,0 +1,216 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.state;
+
+import android.util.Log;
+
+import com.ftc9929.corelib.util.LatencyHistogram;
+import com.google.common.base.Ticker;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import static com.ftc9929.corelib.Constants.LOG_TAG;
+
+/**
+ * Records how long each State's doStuffAndGetNextState() takes, and how long each
+ * full StateMachine loop takes, so that slow states can be found without guesswork.
+ *
+ * Use StateMachine.enableProfiling() to turn this on, and dump the results with
+ * logReport() or addToTelemetry() when the OpMode stops. Once a state has been seen,
+ * recording its timing does not allocate.
+ */
+public class StateProfiler {
+    private final Ticker ticker;
+
+    private final Map<State, StateTiming> timingsByState = new IdentityHashMap<>();
+
+    // Kept in the order states were first seen, for reporting
+    private final List<StateTiming> timings = new ArrayList<>();
+
+    // When the state machine is compiled, timings are looked up by state id
+    private StateTable stateTable;
+
+    private StateTiming[] timingsById;
+
+    @Getter
+    private final LatencyHistogram loopHistogram = new LatencyHistogram();
+
+    StateProfiler(@NonNull Ticker ticker) {
+        this.ticker = ticker;
+    }
+
+    long now() {
+        return ticker.read();
+    }
+
+    void useStateTable(@NonNull StateTable stateTable) {
+        this.stateTable = stateTable;
+        timingsById = new StateTiming[stateTable.size()];
+    }
+
+    void recordState(State state, long elapsedNanos) {
+        final boolean compiled = stateTable != null && state.stateTable == stateTable;
+
+        StateTiming timing = compiled ? timingsById[state.stateId] : null;
+
+        if (timing == null) {
+            timing = timingsByState.get(state);
+
+            if (timing == null) {
+                timing = new StateTiming(StateMachine.stateClassAndName(state));
+                timingsByState.put(state, timing);
+                timings.add(timing);
+            }
+
+            if (compiled) {
+                timingsById[state.stateId] = timing;
+            }
+        }
+
+        timing.histogram.record(elapsedNanos);
+    }
+
+    void recordLoop(long elapsedNanos) {
+        loopHistogram.record(elapsedNanos);
+    }
+
+    /**
+     * @return the timings for all states executed so far, in the order they were first executed
+     */
+    public List<StateTiming> getStateTimings() {
+        return Collections.unmodifiableList(timings);
+    }
+
+    public void reset() {
+        timingsByState.clear();
+        timings.clear();
+
+        if (timingsById != null) {
+            timingsById = new StateTiming[timingsById.length];
+        }
+
+        loopHistogram.reset();
+    }
+
+    /**
+     * @return a human-readable table of loop and per-state timings, in microseconds
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+
+        report.append(String.format("%-40s %8s %10s %10s %10s %10s %10s%n",
+                "state", "count", "min", "mean", "p50", "p99", "max"));
+        appendRow(report, "(whole loop)", loopHistogram);
+
+        for (StateTiming timing : timings) {
+            appendRow(report, timing.getName(), timing.histogram);
+        }
+
+        return report.toString();
+    }
+
+    public void logReport() {
+        for (String line : report().split(String.format("%n"))) {
+            Log.i(LOG_TAG, line);
+        }
+    }
+
+    /**
+     * Adds a one-line summary for each state (count, mean and max in microseconds)
+     */
+    public void addToTelemetry(@NonNull Telemetry telemetry) {
+        telemetry.addData("loop", summarize(loopHistogram));
+
+        for (StateTiming timing : timings) {
+            telemetry.addData(timing.getName(), summarize(timing.histogram));
+        }
+    }
+
+    private static String summarize(LatencyHistogram histogram) {
+        return String.format("n=%d mean=%.1fus max=%.1fus", histogram.getCount(),
+                toMicros(histogram.getMean()), toMicros(histogram.getMax()));
+    }
+
+    private static void appendRow(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format("%-40s %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                name,
+                histogram.getCount(),
+                toMicros(histogram.getMin()),
+                toMicros(histogram.getMean()),
+                toMicros(histogram.getValueAtPercentile(50)),
+                toMicros(histogram.getValueAtPercentile(99)),
+                toMicros(histogram.getMax())));
+    }
+
+    private static double toMicros(double nanos) {
+        return nanos / 1000D;
+    }
+
+    /**
+     * Timing of a single state, as class and name
+     */
+    public static class StateTiming {
+        @Getter
+        private final String name;
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        StateTiming(String name) {
+            this.name = name;
+        }
+
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        public long getMin(TimeUnit unit) {
+            return unit.convert(histogram.getMin(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getMax(TimeUnit unit) {
+            return unit.convert(histogram.getMax(), TimeUnit.NANOSECONDS);
+        }
+
+        public double getMeanNanos() {
+            return histogram.getMean();
+        }
+
+        public long getValueAtPercentile(double percentile, TimeUnit unit) {
+            return unit.convert(histogram.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+}
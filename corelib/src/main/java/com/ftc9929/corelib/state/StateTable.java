@@ -0,0 +1,273 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.state;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.NonNull;
+
+/**
+ * The states of a StateMachine, frozen into a table by StateMachine.compile(). Every state
+ * reachable from the first state is given an integer id (the first state is always 0), in
+ * the order they are reached, along with the ids of the states it can transition to.
+ *
+ * Compiling finds problems before the robot moves (a state with no next state, which would
+ * otherwise stop the state machine part way through autonomous, or a loop that can never
+ * reach the terminal state), and lets the state machine and the profiler work with ids
+ * rather than comparing and hashing states.
+ */
+public final class StateTable {
+    public static final int NO_STATE = -1;
+
+    private final State[] states;
+
+    private final int[][] possibleNextStateIds;
+
+    private StateTable(State[] states, int[][] possibleNextStateIds) {
+        this.states = states;
+        this.possibleNextStateIds = possibleNextStateIds;
+    }
+
+    /**
+     * Walks the graph of states reachable from the first state (using
+     * State.getPossibleNextStates()), and freezes it into a table.
+     *
+     * State machines that have a terminal state (one with no possible next states) must be
+     * able to reach a terminal state from every state. State machines with no terminal state,
+     * which loop until the OpMode stops, are not checked.
+     *
+     * @throws IllegalArgumentException if any state has a missing (null) next state, can never
+     * reach a terminal state, or already belongs to another compiled state machine
+     */
+    static StateTable compile(@NonNull State firstState) {
+        final Map<State, Integer> idsByState = new IdentityHashMap<>();
+        final List<State> statesInOrder = new ArrayList<>();
+        final List<Collection<State>> nextStatesInOrder = new ArrayList<>();
+        final List<String> problems = new ArrayList<>();
+
+        final Deque<State> toVisit = new ArrayDeque<>();
+        idsByState.put(firstState, 0);
+        statesInOrder.add(firstState);
+        toVisit.add(firstState);
+
+        while (!toVisit.isEmpty()) {
+            State state = toVisit.remove();
+
+            if (state.stateTable != null) {
+                problems.add(String.format("%s already belongs to another compiled state machine",
+                        state.getClassAndName()));
+            }
+
+            Collection<State> nextStates = state.getPossibleNextStates();
+            nextStatesInOrder.add(nextStates);
+
+            for (State nextState : nextStates) {
+                if (nextState == null) {
+                    problems.add(String.format("%s has no next state", state.getClassAndName()));
+
+                    continue;
+                }
+
+                if (!idsByState.containsKey(nextState)) {
+                    idsByState.put(nextState, statesInOrder.size());
+                    statesInOrder.add(nextState);
+                    toVisit.add(nextState);
+                }
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Can not compile state machine: " + problems);
+        }
+
+        final State[] states = statesInOrder.toArray(new State[0]);
+        final int[][] possibleNextStateIds = new int[states.length][];
+
+        for (int id = 0; id < states.length; id++) {
+            Collection<State> nextStates = nextStatesInOrder.get(id);
+
+            int[] nextIds = new int[nextStates.size()];
+            int i = 0;
+
+            for (State nextState : nextStates) {
+                nextIds[i++] = idsByState.get(nextState);
+            }
+
+            possibleNextStateIds[id] = nextIds;
+        }
+
+        checkTerminalStatesReachable(states, possibleNextStateIds);
+
+        final StateTable table = new StateTable(states, possibleNextStateIds);
+
+        for (int id = 0; id < states.length; id++) {
+            states[id].stateTable = table;
+            states[id].stateId = id;
+        }
+
+        return table;
+    }
+
+    /**
+     * Walks the state graph backwards from the terminal states, and reports every state
+     * that was not reached - those states are stuck in a loop with no way out.
+     */
+    private static void checkTerminalStatesReachable(State[] states, int[][] possibleNextStateIds) {
+        final List<List<Integer>> previousStateIds = new ArrayList<>(states.length);
+
+        for (int id = 0; id < states.length; id++) {
+            previousStateIds.add(new ArrayList<Integer>());
+        }
+
+        final boolean[] reachesTerminal = new boolean[states.length];
+        final Deque<Integer> toVisit = new ArrayDeque<>();
+
+        for (int id = 0; id < states.length; id++) {
+            if (possibleNextStateIds[id].length == 0) {
+                reachesTerminal[id] = true;
+                toVisit.add(id);
+            }
+
+            for (int nextId : possibleNextStateIds[id]) {
+                previousStateIds.get(nextId).add(id);
+            }
+        }
+
+        if (toVisit.isEmpty()) {
+            // Loops until the OpMode stops, by design
+            return;
+        }
+
+        while (!toVisit.isEmpty()) {
+            for (int previousId : previousStateIds.get(toVisit.remove())) {
+                if (!reachesTerminal[previousId]) {
+                    reachesTerminal[previousId] = true;
+                    toVisit.add(previousId);
+                }
+            }
+        }
+
+        final List<String> problems = new ArrayList<>();
+
+        for (int id = 0; id < states.length; id++) {
+            if (!reachesTerminal[id]) {
+                problems.add(String.format("%s can never reach a terminal state",
+                        states[id].getClassAndName()));
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Can not compile state machine: " + problems);
+        }
+    }
+
+    public int size() {
+        return states.length;
+    }
+
+    public State getState(int stateId) {
+        return states[stateId];
+    }
+
+    /**
+     * @return the id of the given state, or NO_STATE if the state is null
+     *
+     * @throws IllegalStateException if the state is not part of this table, which happens when
+     * a state returns a next state that it did not declare in getPossibleNextStates()
+     */
+    public int getStateId(State state) {
+        if (state == null) {
+            return NO_STATE;
+        }
+
+        if (state.stateTable != this) {
+            throw new IllegalStateException(String.format(
+                    "%s is not part of this compiled state machine, is it missing from getPossibleNextStates()?",
+                    state.getClassAndName()));
+        }
+
+        return state.stateId;
+    }
+
+    /**
+     * @return a copy of the ids of the states the given state declares it may transition to
+     * (a state may always transition to itself)
+     */
+    public int[] getPossibleNextStateIds(int stateId) {
+        return possibleNextStateIds[stateId].clone();
+    }
+
+    /**
+     * @return the state graph in Graphviz DOT format
+     */
+    public String toDot() {
+        StringBuilder dot = new StringBuilder();
+        dot.append("digraph StateMachine {\n");
+
+        for (int id = 0; id < states.length; id++) {
+            dot.append(String.format("  s%d [label=\"%s\"%s];\n", id,
+                    states[id].getClassAndName().replace("\"", "\\\""),
+                    id == 0 ? ", shape=doublecircle" : ""));
+        }
+
+        for (int id = 0; id < states.length; id++) {
+            for (int nextId : possibleNextStateIds[id]) {
+                dot.append(String.format("  s%d -> s%d;\n", id, nextId));
+            }
+        }
+
+        dot.append("}\n");
+
+        return dot.toString();
+    }
+
+    /**
+     * @return the state graph as text, one state per line, with the ids of its next states
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+
+        for (int id = 0; id < states.length; id++) {
+            text.append(String.format("%d: %s ->", id, states[id].getClassAndName()));
+
+            if (possibleNextStateIds[id].length == 0) {
+                text.append(" (none)");
+            }
+
+            for (int nextId : possibleNextStateIds[id]) {
+                text.append(' ').append(nextId);
+            }
+
+            text.append('\n');
+        }
+
+        return text.toString();
+    }
+}
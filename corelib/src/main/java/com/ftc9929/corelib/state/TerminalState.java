@@ -26,6 +26,9 @@ import com.ftc9929.corelib.control.NinjaGamePad;
 
 import org.firstinspires.ftc.robotcore.external.Telemetry;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import lombok.NonNull;
 
 /**
@@ -57,5 +60,10 @@ public abstract class TerminalState extends State {
         hasRun = false;
     }
 
+    @Override
+    protected Collection<State> getPossibleNextStates() {
+        return Collections.emptyList();
+    }
+
     protected abstract void runTerminalCode();
 }
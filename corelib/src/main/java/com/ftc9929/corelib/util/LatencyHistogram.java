@@ -0,0 +1,198 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.util;
+
+/**
+ * A fixed-size histogram of latencies (or any other non-negative long values), in the
+ * style of HdrHistogram - values are counted in buckets that double in width for each
+ * power of two, with each power of two split into 8 equally sized sub-buckets, so any
+ * recorded value is known to within 12.5%.
+ *
+ * Values up to 2^38 (about 4.5 minutes in nanoseconds) are tracked, larger values are counted
+ * in the largest bucket. Recording a value does not allocate, and takes constant time.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 38;
+
+    private static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[NUM_BUCKETS];
+
+    private long totalCount;
+
+    private long sum;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max = Long.MIN_VALUE;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        sum += value;
+
+        if (value < min) {
+            min = value;
+        }
+
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the smallest value recorded, or 0 if nothing has been recorded
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * @return the largest value recorded, or 0 if nothing has been recorded
+     */
+    public long getMax() {
+        return totalCount == 0 ? 0 : max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the value that the given percentage of recorded values are less than or
+     * equal to (within the precision of the histogram).
+     *
+     * @param percentile a value between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long countAtPercentile = (long) Math.ceil((Math.min(percentile, 100.0) / 100.0) * totalCount);
+
+        if (countAtPercentile < 1) {
+            countAtPercentile = 1;
+        }
+
+        long cumulativeCount = 0;
+
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulativeCount += counts[i];
+
+            if (cumulativeCount >= countAtPercentile) {
+                if (i == NUM_BUCKETS - 1) {
+                    // The last bucket has no upper bound
+                    return max;
+                }
+
+                return Math.max(min, Math.min(max, highestValueInBucket(i)));
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Adds all values recorded in the other histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        if (other.totalCount == 0) {
+            return;
+        }
+
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = 0;
+        }
+
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        if (exponent > MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long lowestValueInBucket(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+
+        int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+        int subBucket = bucketIndex % SUB_BUCKET_COUNT;
+
+        return ((long) (SUB_BUCKET_COUNT + subBucket)) << shift;
+    }
+
+    static long highestValueInBucket(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+
+        int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+
+        return lowestValueInBucket(bucketIndex) + (1L << shift) - 1;
+    }
+}
@@ -24,6 +24,18 @@ package android.util;
 
 // Used to avoid errors when these methods aren't mocked when testing
 public class Log {
+    public static final int VERBOSE = 2;
+
+    public static final int DEBUG = 3;
+
+    public static final int INFO = 4;
+
+    public static final int WARN = 5;
+
+    public static final int ERROR = 6;
+
+    public static final int ASSERT = 7;
+
     public static int d(String tag, String msg) {
         System.err.println("DEBUG: " + tag + ": " + msg);
         return 0;
@@ -49,5 +61,9 @@ public class Log {
         return 0;
     }
 
+    public static boolean isLoggable(String tag, int level) {
+        return true;
+    }
+
     // add other methods if required...
 }
@@ -0,0 +1,73 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.control;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ButtonEdgeDetectorTest {
+    @Test
+    public void risesAndFallsForAllButtons() {
+        ButtonEdgeDetector edgeDetector = new ButtonEdgeDetector();
+
+        // First update is the starting state, no edges
+        edgeDetector.update(0b0001, 0);
+        Assert.assertEquals(0, edgeDetector.getRises());
+        Assert.assertEquals(0, edgeDetector.getFalls());
+
+        edgeDetector.update(0b0110, 10);
+        Assert.assertEquals(0b0110, edgeDetector.getRises());
+        Assert.assertEquals(0b0001, edgeDetector.getFalls());
+
+        // Asking more than once, or for both edges, does not change the answer
+        Assert.assertTrue(edgeDetector.isRise(1));
+        Assert.assertTrue(edgeDetector.isRise(1));
+        Assert.assertFalse(edgeDetector.isFall(1));
+        Assert.assertTrue(edgeDetector.isFall(0));
+        Assert.assertTrue(edgeDetector.isFall(0));
+
+        // No change, no edges
+        edgeDetector.update(0b0110, 20);
+        Assert.assertEquals(0, edgeDetector.getRises());
+        Assert.assertEquals(0, edgeDetector.getFalls());
+    }
+
+    @Test
+    public void heldTime() {
+        ButtonEdgeDetector edgeDetector = new ButtonEdgeDetector();
+
+        edgeDetector.update(0b01, TimeUnit.MILLISECONDS.toNanos(100));
+        edgeDetector.update(0b11, TimeUnit.MILLISECONDS.toNanos(200));
+        edgeDetector.update(0b11, TimeUnit.MILLISECONDS.toNanos(450));
+
+        Assert.assertEquals(350, edgeDetector.getHeldTime(0, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(250, edgeDetector.getHeldTime(1, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, edgeDetector.getHeldTime(2, TimeUnit.MILLISECONDS));
+
+        edgeDetector.update(0b10, TimeUnit.MILLISECONDS.toNanos(500));
+        Assert.assertEquals(0, edgeDetector.getHeldTime(0, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(300, edgeDetector.getHeldTime(1, TimeUnit.MILLISECONDS));
+    }
+}
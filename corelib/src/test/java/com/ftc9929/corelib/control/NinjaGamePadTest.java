@@ -0,0 +1,157 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.control;
+
+import com.google.common.testing.FakeTicker;
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class NinjaGamePadTest {
+    private Gamepad gamepad;
+
+    private NinjaGamePad ninjaGamePad;
+
+    @Before
+    public void setUp() {
+        gamepad = new Gamepad();
+        ninjaGamePad = new NinjaGamePad(gamepad);
+    }
+
+    @Test
+    public void sameInstancesEveryCall() {
+        Assert.assertSame(ninjaGamePad.getAButton(), ninjaGamePad.getAButton());
+        Assert.assertSame(ninjaGamePad.getDpadLeft(), ninjaGamePad.getDpadLeft());
+        Assert.assertSame(ninjaGamePad.getLeftStickX(), ninjaGamePad.getLeftStickX());
+        Assert.assertSame(ninjaGamePad.getRightTrigger(), ninjaGamePad.getRightTrigger());
+        Assert.assertSame(ninjaGamePad.getAllButtons(), ninjaGamePad.getAllButtons());
+        Assert.assertSame(ninjaGamePad.getBButton().debounced(), ninjaGamePad.getBButton().debounced());
+
+        Set<OnOffButton> allButtons = ninjaGamePad.getAllButtons();
+        Assert.assertEquals(12, allButtons.size());
+        Assert.assertTrue(allButtons.contains(ninjaGamePad.getYButton()));
+    }
+
+    @Test
+    public void readsLiveGamepad() {
+        OnOffButton aButton = ninjaGamePad.getAButton();
+        RangeInput leftStickY = ninjaGamePad.getLeftStickY();
+
+        Assert.assertFalse(aButton.isPressed());
+        gamepad.a = true;
+        Assert.assertTrue(aButton.isPressed());
+        Assert.assertFalse(ninjaGamePad.getBButton().isPressed());
+
+        gamepad.left_stick_y = -0.5f;
+        Assert.assertEquals(-0.5f, leftStickY.getPosition(), 0.001);
+        Assert.assertEquals(-1.0f, leftStickY.getMinPosition(), 0.001);
+        Assert.assertEquals(0.0f, ninjaGamePad.getLeftTrigger().getMinPosition(), 0.001);
+    }
+
+    @Test
+    public void debounceStateKeptBetweenCalls() {
+        gamepad.x = true;
+
+        // Previously, each call to getXButton() created a new DebouncedButton, losing edges
+        Assert.assertFalse(ninjaGamePad.getXButton().debounced().getRise());
+        gamepad.x = false;
+        Assert.assertFalse(ninjaGamePad.getXButton().debounced().getRise());
+        gamepad.x = true;
+        Assert.assertTrue(ninjaGamePad.getXButton().debounced().getRise());
+    }
+
+    @Test
+    public void readsFromSnapshotOnceSampled() {
+        OnOffButton aButton = ninjaGamePad.getAButton();
+        OnOffButton dpadRight = ninjaGamePad.getDpadRight();
+        RangeInput rightStickX = ninjaGamePad.getRightStickX();
+
+        Assert.assertFalse(ninjaGamePad.isSampling());
+
+        gamepad.a = true;
+        gamepad.right_stick_x = 0.25f;
+        ninjaGamePad.sample();
+
+        Assert.assertTrue(ninjaGamePad.isSampling());
+        Assert.assertTrue(aButton.isPressed());
+        Assert.assertFalse(dpadRight.isPressed());
+        Assert.assertEquals(0.25f, rightStickX.getPosition(), 0.001);
+
+        // Changes to the gamepad are not seen until the next sample
+        gamepad.a = false;
+        gamepad.dpad_right = true;
+        gamepad.right_stick_x = 0.75f;
+
+        Assert.assertTrue(aButton.isPressed());
+        Assert.assertFalse(dpadRight.isPressed());
+        Assert.assertEquals(0.25f, rightStickX.getPosition(), 0.001);
+
+        ninjaGamePad.sample();
+
+        Assert.assertFalse(aButton.isPressed());
+        Assert.assertTrue(dpadRight.isPressed());
+        Assert.assertEquals(0.75f, rightStickX.getPosition(), 0.001);
+    }
+
+    @Test
+    public void edgesInFrameMode() {
+        FakeTicker ticker = new FakeTicker();
+        ninjaGamePad = new NinjaGamePad(gamepad, ticker);
+
+        OnOffButton yButton = ninjaGamePad.getYButton();
+        DebouncedButton debouncedY = yButton.debounced();
+
+        ninjaGamePad.sample();
+
+        gamepad.y = true;
+        ninjaGamePad.sample();
+
+        // Every caller in the same frame sees the rise, and asking for the fall doesn't eat it
+        Assert.assertTrue(debouncedY.getRise());
+        Assert.assertFalse(debouncedY.getFall());
+        Assert.assertTrue(debouncedY.getRise());
+
+        ticker.advance(300, TimeUnit.MILLISECONDS);
+        ninjaGamePad.sample();
+        Assert.assertFalse(debouncedY.getRise());
+        Assert.assertEquals(300, ninjaGamePad.getHeldTime(yButton, TimeUnit.MILLISECONDS));
+
+        gamepad.y = false;
+        ninjaGamePad.sample();
+        Assert.assertTrue(debouncedY.getFall());
+        Assert.assertFalse(debouncedY.getRise());
+        Assert.assertEquals(0, ninjaGamePad.getHeldTime(yButton, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void heldTimeOnlyForOwnButtons() {
+        NinjaGamePad otherPad = new NinjaGamePad(new Gamepad());
+
+        ninjaGamePad.getHeldTime(otherPad.getAButton(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+import com.ftc9929.testing.fakes.drive.FakeDcMotorEx;
+import com.ftc9929.testing.fakes.sensors.FakeDigitalChannel;
+import com.ftc9929.testing.fakes.sensors.FakeVoltageSensor;
+
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkReadCacheTest {
+    @Test
+    public void motorReadsOncePerLoop() {
+        BulkReadCache cache = new BulkReadCache(Collections.emptyList());
+        CountingDcMotorEx motor = new CountingDcMotorEx();
+
+        BulkReadCache.MotorReads motorReads = cache.getMotor(motor);
+        assertSame(motorReads, cache.getMotor(motor));
+
+        motor.setVelocity(250);
+
+        assertEquals(250, motorReads.getVelocity(), 0.0001);
+        assertEquals(250, cache.getMotor(motor).getVelocity(), 0.0001);
+        assertEquals(0, motorReads.getCurrentAmps(), 0.0001);
+        motorReads.getCurrentAmps();
+        assertEquals(1, motor.velocityReads);
+        assertEquals(1, motor.currentReads);
+
+        // Same loop, same (stale) value
+        motor.setVelocity(500);
+        assertEquals(250, motorReads.getVelocity(), 0.0001);
+
+        cache.clearCache();
+        assertEquals(500, motorReads.getVelocity(), 0.0001);
+        assertEquals(2, motor.velocityReads);
+    }
+
+    @Test
+    public void sensorReads() {
+        BulkReadCache cache = new BulkReadCache(Collections.emptyList());
+
+        FakeDigitalChannel digitalChannel = new FakeDigitalChannel();
+        digitalChannel.setState(true);
+        assertTrue(cache.getDigitalChannel(digitalChannel).getState());
+
+        digitalChannel.setState(false);
+        assertTrue(cache.getDigitalChannel(digitalChannel).getState());
+
+        cache.clearCache();
+        assertFalse(cache.getDigitalChannel(digitalChannel).getState());
+
+        FakeVoltageSensor voltageSensor = new FakeVoltageSensor();
+        voltageSensor.setVoltage(12.5);
+        assertEquals(12.5, cache.getVoltageSensor(voltageSensor).getVoltage(), 0.0001);
+    }
+
+    static class CountingDcMotorEx extends FakeDcMotorEx {
+        int velocityReads;
+
+        int currentReads;
+
+        @Override
+        public double getVelocity() {
+            velocityReads++;
+
+            return super.getVelocity();
+        }
+
+        @Override
+        public double getCurrent(CurrentUnit unit) {
+            currentReads++;
+
+            return super.getCurrent(unit);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.hardware;
+
+import com.ftc9929.testing.fakes.drive.FakeCRServo;
+import com.ftc9929.testing.fakes.drive.FakeDcMotorEx;
+import com.ftc9929.testing.fakes.drive.FakeServo;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class HardwareWriteCacheTest {
+    @Test
+    public void suppressesUnchangedMotorPower() {
+        HardwareWriteCache cache = HardwareWriteCache.builder().epsilon(0.01).build();
+        CountingDcMotorEx fakeMotor = new CountingDcMotorEx();
+        DcMotorEx motor = cache.wrap(fakeMotor);
+
+        motor.setPower(0.5);
+        motor.setPower(0.5);
+        motor.setPower(0.505);
+        assertEquals(1, fakeMotor.powerWrites);
+        assertEquals(0.5, fakeMotor.getPower(), 0.0001);
+
+        motor.setPower(0.52);
+        assertEquals(2, fakeMotor.powerWrites);
+
+        // Always able to stop
+        motor.setPower(0.005);
+        motor.setPower(0);
+        assertEquals(4, fakeMotor.powerWrites);
+        assertEquals(0, fakeMotor.getPower(), 0.0001);
+
+        assertEquals(4, cache.getWritesIssued());
+        assertEquals(2, cache.getWritesSuppressed());
+    }
+
+    @Test
+    public void modeChangeForcesNextWrite() {
+        HardwareWriteCache cache = HardwareWriteCache.builder().build();
+        CountingDcMotorEx fakeMotor = new CountingDcMotorEx();
+        DcMotorEx motor = cache.wrap(fakeMotor);
+
+        motor.setPower(1);
+        motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        motor.setPower(1);
+
+        assertEquals(2, fakeMotor.powerWrites);
+    }
+
+    @Test
+    public void powerAndVelocity() {
+        HardwareWriteCache cache = HardwareWriteCache.builder().build();
+        CountingDcMotorEx fakeMotor = new CountingDcMotorEx();
+        DcMotorEx motor = cache.wrap(fakeMotor);
+
+        motor.setVelocity(100);
+        motor.setVelocity(100);
+        assertEquals(1, fakeMotor.velocityWrites);
+
+        // Different units are different values
+        motor.setVelocity(100, AngleUnit.DEGREES);
+        assertEquals(2, fakeMotor.velocityWrites);
+
+        motor.setPower(0.5);
+        motor.setVelocity(100, AngleUnit.DEGREES);
+        assertEquals(3, fakeMotor.velocityWrites);
+
+        motor.setTargetPosition(1000);
+        motor.setTargetPosition(1000);
+        assertEquals(1000, motor.getTargetPosition());
+        assertEquals(5, cache.getWritesIssued());
+    }
+
+    @Test
+    public void deferredWrites() {
+        HardwareWriteCache cache = HardwareWriteCache.builder().deferWrites(true).build();
+        CountingDcMotorEx fakeMotor = new CountingDcMotorEx();
+        DcMotorEx motor = cache.wrap(fakeMotor);
+
+        motor.setPower(0.25);
+        motor.setPower(0.75);
+        assertEquals(0, fakeMotor.powerWrites);
+        assertEquals(0.75, motor.getPower(), 0.0001);
+
+        cache.flush();
+        assertEquals(1, fakeMotor.powerWrites);
+        assertEquals(0.75, fakeMotor.getPower(), 0.0001);
+
+        motor.setPower(0.75);
+        cache.flush();
+        cache.flush();
+        assertEquals(1, fakeMotor.powerWrites);
+
+        assertEquals(1, cache.getWritesIssued());
+        assertEquals(2, cache.getWritesSuppressed());
+    }
+
+    @Test
+    public void deferredWritesStayInOrder() {
+        HardwareWriteCache cache = HardwareWriteCache.builder().deferWrites(true).build();
+        RecordingDcMotorEx fakeMotor = new RecordingDcMotorEx();
+        DcMotorEx motor = cache.wrap(fakeMotor);
+
+        motor.setTargetPosition(1000);
+        motor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        motor.setPower(0.5);
+        motor.setDirection(DcMotorSimple.Direction.REVERSE);
+        motor.setPower(-0.5);
+        motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
+        motor.setTargetPosition(2000);
+        cache.flush();
+
+        assertEquals(Arrays.asList(
+                "setTargetPosition 1000",
+                "setMode RUN_TO_POSITION",
+                "setPower 0.5",
+                "setDirection REVERSE",
+                "setPower -0.5",
+                "setZeroPowerBehavior FLOAT",
+                "setTargetPosition 2000"), fakeMotor.calls);
+    }
+
+    @Test
+    public void servos() {
+        HardwareWriteCache cache = HardwareWriteCache.builder().epsilon(0.001).build();
+
+        FakeServo fakeServo = new FakeServo();
+        CachingServo servo = cache.wrap(fakeServo);
+        assertSame(servo, cache.wrap(fakeServo));
+        assertSame(servo, cache.wrap(servo));
+
+        servo.setPosition(0.3);
+        servo.setPosition(0.3);
+        servo.setPosition(0.6);
+        assertEquals(0.6, fakeServo.getPosition(), 0.0001);
+        assertEquals(2, servo.getWritesIssued());
+        assertEquals(1, servo.getWritesSuppressed());
+
+        FakeCRServo fakeCrServo = new FakeCRServo();
+        CachingCRServo crServo = cache.wrap(fakeCrServo);
+        crServo.setPower(-1);
+        crServo.setPower(-1);
+        assertEquals(-1, fakeCrServo.getPower(), 0.0001);
+        assertEquals(1, crServo.getWritesIssued());
+
+        assertEquals(3, cache.getWritesIssued());
+        assertEquals(2, cache.getWritesSuppressed());
+    }
+
+    static class RecordingDcMotorEx extends FakeDcMotorEx {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void setTargetPosition(int position) {
+            calls.add("setTargetPosition " + position);
+            super.setTargetPosition(position);
+        }
+
+        @Override
+        public void setMode(RunMode mode) {
+            calls.add("setMode " + mode);
+            super.setMode(mode);
+        }
+
+        @Override
+        public void setPower(double power) {
+            calls.add("setPower " + power);
+            super.setPower(power);
+        }
+
+        @Override
+        public void setDirection(Direction direction) {
+            calls.add("setDirection " + direction);
+            super.setDirection(direction);
+        }
+
+        @Override
+        public void setZeroPowerBehavior(ZeroPowerBehavior zeroPowerBehavior) {
+            calls.add("setZeroPowerBehavior " + zeroPowerBehavior);
+            super.setZeroPowerBehavior(zeroPowerBehavior);
+        }
+    }
+
+    static class CountingDcMotorEx extends FakeDcMotorEx {
+        int powerWrites;
+
+        int velocityWrites;
+
+        @Override
+        public void setPower(double power) {
+            powerWrites++;
+            super.setPower(power);
+        }
+
+        @Override
+        public void setVelocity(double angularRate) {
+            velocityWrites++;
+            super.setVelocity(angularRate);
+        }
+
+        @Override
+        public void setVelocity(double angularRate, AngleUnit unit) {
+            velocityWrites++;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.state;
+
+import com.ftc9929.testing.fakes.FakeTelemetry;
+import com.google.common.testing.FakeTicker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LoopSchedulerTest {
+    private FakeTicker ticker;
+
+    private LoopScheduler scheduler;
+
+    private List<String> ran;
+
+    @BeforeEach
+    public void setUp() {
+        ticker = new FakeTicker();
+        scheduler = new LoopScheduler(ticker, 10, TimeUnit.MILLISECONDS);
+        ran = new ArrayList<>();
+    }
+
+    @Test
+    public void runsInPriorityOrder() {
+        scheduler.addTask("background", task("background", 0), LoopScheduler.Priority.BACKGROUND);
+        scheduler.addTask("normal", task("normal", 0), LoopScheduler.Priority.NORMAL);
+        scheduler.addTask("critical", task("critical", 0), LoopScheduler.Priority.CRITICAL);
+        scheduler.addTask("normal 2", task("normal 2", 0), LoopScheduler.Priority.NORMAL);
+
+        scheduler.runOneLoop();
+
+        assertEquals("[critical, normal, normal 2, background]", ran.toString());
+    }
+
+    @Test
+    public void periodicTasks() {
+        LoopScheduler.ScheduledTask sampler = scheduler.addPeriodicTask("sampler", task("sampler", 0),
+                LoopScheduler.Priority.NORMAL, 100, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 30; i++) {
+            scheduler.runOneLoop();
+            ticker.advance(10, TimeUnit.MILLISECONDS);
+        }
+
+        // t = 0, 100, 200
+        assertEquals(3, sampler.getRunCount());
+
+        // No catching up after a long pause
+        ticker.advance(1, TimeUnit.SECONDS);
+        scheduler.runOneLoop();
+        scheduler.runOneLoop();
+        assertEquals(4, sampler.getRunCount());
+    }
+
+    @Test
+    public void overBudget() {
+        LoopScheduler.ScheduledTask critical = scheduler.addTask("critical", task("critical", 12),
+                LoopScheduler.Priority.CRITICAL);
+        LoopScheduler.ScheduledTask normal = scheduler.addTask("normal", task("normal", 1),
+                LoopScheduler.Priority.NORMAL);
+
+        scheduler.runOneLoop();
+
+        assertEquals(1, critical.getRunCount());
+        assertEquals(0, normal.getRunCount());
+        assertEquals(1, normal.getDeferredCount());
+        assertEquals(1, scheduler.getOverBudgetLoops());
+    }
+
+    @Test
+    public void normalEventuallyRunsWhenCriticalIsOverBudget() {
+        scheduler.setMaxDeferrals(3);
+
+        scheduler.addTask("critical 1", task("critical 1", 6), LoopScheduler.Priority.CRITICAL);
+        scheduler.addTask("critical 2", task("critical 2", 6), LoopScheduler.Priority.CRITICAL);
+        LoopScheduler.ScheduledTask normal = scheduler.addTask("normal", task("normal", 1),
+                LoopScheduler.Priority.NORMAL);
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.runOneLoop();
+        }
+
+        assertEquals(0, normal.getRunCount());
+        assertEquals(3, normal.getDeferredCount());
+
+        // Deferred as many times as allowed, so it runs even though the budget is used up
+        scheduler.runOneLoop();
+        assertEquals(1, normal.getRunCount());
+
+        for (int i = 0; i < 8; i++) {
+            scheduler.runOneLoop();
+        }
+
+        assertEquals(3, normal.getRunCount());
+        assertEquals(9, normal.getDeferredCount());
+        assertEquals(12, scheduler.getOverBudgetLoops());
+    }
+
+    @Test
+    public void backgroundOnlyRunsWhenItFits() {
+        scheduler.addTask("critical", task("critical", 5), LoopScheduler.Priority.CRITICAL);
+        LoopScheduler.ScheduledTask background = scheduler.addTask("telemetry", task("telemetry", 4),
+                LoopScheduler.Priority.BACKGROUND);
+
+        // No estimate of how long the background task takes yet, so it runs
+        scheduler.runOneLoop();
+        assertEquals(1, background.getRunCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(4), background.getAverageRunNanos());
+
+        // 5 + 4 fits in 10
+        scheduler.runOneLoop();
+        assertEquals(2, background.getRunCount());
+
+        LoopScheduler tightScheduler = new LoopScheduler(ticker, 8, TimeUnit.MILLISECONDS);
+        tightScheduler.addTask("critical", task("critical", 5), LoopScheduler.Priority.CRITICAL);
+        LoopScheduler.ScheduledTask tightBackground = tightScheduler.addTask("telemetry",
+                task("telemetry", 4), LoopScheduler.Priority.BACKGROUND);
+
+        tightScheduler.runOneLoop();
+        tightScheduler.runOneLoop();
+        tightScheduler.runOneLoop();
+
+        // Deferred, but only for a limited number of loops, see backgroundEventuallyRuns()
+        assertEquals(1, tightBackground.getRunCount());
+        assertEquals(2, tightBackground.getDeferredCount());
+        assertEquals(1, tightScheduler.getOverBudgetLoops());
+    }
+
+    @Test
+    public void backgroundEventuallyRuns() {
+        scheduler.setMaxDeferrals(3);
+
+        scheduler.addTask("critical", task("critical", 5), LoopScheduler.Priority.CRITICAL);
+        final long[] slowRuns = {1};
+        LoopScheduler.ScheduledTask background = scheduler.addTask("telemetry", new Runnable() {
+            @Override
+            public void run() {
+                ran.add("telemetry");
+
+                // One slow run, which on its own would keep the average above what fits
+                ticker.advance(slowRuns[0]-- > 0 ? 50 : 1, TimeUnit.MILLISECONDS);
+            }
+        }, LoopScheduler.Priority.BACKGROUND);
+
+        scheduler.runOneLoop();
+        assertEquals(1, background.getRunCount());
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.runOneLoop();
+        }
+
+        assertEquals(1, background.getRunCount());
+        assertEquals(3, background.getDeferredCount());
+
+        // Deferred as many times as allowed, so it runs, and its average comes down
+        scheduler.runOneLoop();
+        assertEquals(2, background.getRunCount());
+
+        for (int i = 0; i < 200; i++) {
+            scheduler.runOneLoop();
+        }
+
+        // Runs every loop once the average fits again
+        long runsBefore = background.getRunCount();
+
+        for (int i = 0; i < 20; i++) {
+            scheduler.runOneLoop();
+        }
+
+        assertEquals(runsBefore + 20, background.getRunCount());
+    }
+
+    @Test
+    public void stateMachines() {
+        FakeTelemetry telemetry = new FakeTelemetry();
+        SequenceOfStates sequence = new SequenceOfStates(ticker, telemetry);
+        sequence.addRunnableStep("one", task("one", 0));
+        sequence.addRunnableStep("two", task("two", 0));
+        sequence.getLastState().setNextState(sequence.getFirstState());
+
+        StateMachine stateMachine = new StateMachine(telemetry, ticker);
+        stateMachine.addSequence(sequence);
+
+        scheduler.addStateMachine("drive", stateMachine, LoopScheduler.Priority.CRITICAL);
+
+        scheduler.runOneLoop();
+        scheduler.runOneLoop();
+        scheduler.runOneLoop();
+
+        assertEquals("[one, two, one]", ran.toString());
+        assertEquals(3, scheduler.getLoopHistogram().getCount());
+    }
+
+    @Test
+    public void badArguments() {
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                new LoopScheduler(ticker, 0, TimeUnit.MILLISECONDS);
+            }
+        });
+
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                scheduler.addPeriodicTask("negative", task("negative", 0),
+                        LoopScheduler.Priority.NORMAL, -1, TimeUnit.SECONDS);
+            }
+        });
+
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                scheduler.setMaxDeferrals(-1);
+            }
+        });
+    }
+
+    private Runnable task(final String name, final long millisToTake) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(name);
+                ticker.advance(millisToTake, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+}
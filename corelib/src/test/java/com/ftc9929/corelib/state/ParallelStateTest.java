@@ -0,0 +1,243 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.state;
+
+import com.ftc9929.testing.fakes.FakeTelemetry;
+import com.google.common.testing.FakeTicker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelStateTest {
+    private FakeTelemetry telemetry;
+
+    private FakeTicker ticker;
+
+    private List<String> ranSteps;
+
+    @BeforeEach
+    public void setUp() {
+        telemetry = new FakeTelemetry();
+        ticker = new FakeTicker();
+        ranSteps = new ArrayList<>();
+    }
+
+    @Test
+    public void joinAll() {
+        ParallelState parallelState = new ParallelState("parallel", telemetry, ticker, ParallelState.Join.ALL);
+        parallelState.addRegion(steps("drive", 3));
+        parallelState.addRegion(steps("arm", 1));
+
+        State afterwards = new RunnableState("afterwards", telemetry, recordingRunnable("afterwards"));
+        parallelState.setNextState(afterwards);
+
+        assertSame(parallelState, parallelState.doStuffAndGetNextState());
+        assertTrue(parallelState.isRegionComplete(1));
+        assertFalse(parallelState.isRegionComplete(0));
+
+        assertSame(parallelState, parallelState.doStuffAndGetNextState());
+        assertSame(afterwards, parallelState.doStuffAndGetNextState());
+
+        assertEquals(4, ranSteps.size());
+        assertTrue(ranSteps.contains("drive 2"));
+        assertTrue(ranSteps.contains("arm 0"));
+
+        // Reset and ready to run again
+        assertFalse(parallelState.isRegionComplete(1));
+    }
+
+    @Test
+    public void joinAny() {
+        ParallelState parallelState = new ParallelState("parallel", telemetry, ticker, ParallelState.Join.ANY);
+        parallelState.addRegion(steps("drive", 3));
+        parallelState.addRegion(steps("arm", 2));
+
+        State afterwards = new RunnableState("afterwards", telemetry, recordingRunnable("afterwards"));
+        parallelState.setNextState(afterwards);
+
+        assertSame(parallelState, parallelState.doStuffAndGetNextState());
+        assertSame(afterwards, parallelState.doStuffAndGetNextState());
+
+        assertFalse(ranSteps.contains("drive 2"));
+        assertTrue(ranSteps.contains("arm 1"));
+    }
+
+    @Test
+    public void resetsEveryStateInAbandonedRegions() {
+        ParallelState parallelState = new ParallelState("parallel", telemetry, ticker, ParallelState.Join.ANY);
+
+        SequenceOfStates drive = new SequenceOfStates(ticker, telemetry);
+        drive.addSequential(new ResetRecordingState("drive 0"));
+        drive.addSequential(new ResetRecordingState("drive 1"));
+        drive.addSequential(new ResetRecordingState("drive 2"));
+
+        parallelState.addRegion(drive);
+        parallelState.addRegion(steps("arm", 2));
+
+        State afterwards = new RunnableState("afterwards", telemetry, recordingRunnable("afterwards"));
+        parallelState.setNextState(afterwards);
+
+        parallelState.doStuffAndGetNextState();
+        assertSame(afterwards, parallelState.doStuffAndGetNextState());
+
+        // Abandoned after "drive 1" ran, every state in the region is reset, not only the current one
+        assertTrue(ranSteps.contains("reset drive 0"));
+        assertTrue(ranSteps.contains("reset drive 1"));
+        assertTrue(ranSteps.contains("reset drive 2"));
+        assertEquals("drive 0", parallelState.getRegionCurrentState(0).getName());
+
+        ranSteps.clear();
+        parallelState.doStuffAndGetNextState();
+        assertEquals("drive 0", ranSteps.get(0));
+    }
+
+    @Test
+    public void budgetDefersSlowRegionsRoundRobin() {
+        ParallelState parallelState = new ParallelState("parallel", telemetry, ticker, ParallelState.Join.ALL);
+        parallelState.setLoopBudget(10, TimeUnit.MILLISECONDS);
+
+        parallelState.addRegion(new SlowState("slow", 20));
+        parallelState.addRegion(new SlowState("fast", 1));
+
+        // Slow region uses up the budget, so the fast region is deferred
+        parallelState.doStuffAndGetNextState();
+        assertEquals(1, parallelState.getBudgetOverruns());
+        assertEquals(1, ranSteps.size());
+
+        // ...and goes first the next loop
+        parallelState.doStuffAndGetNextState();
+        assertEquals("fast", ranSteps.get(1));
+        assertEquals("slow", ranSteps.get(2));
+        assertEquals(1, parallelState.getBudgetOverruns());
+    }
+
+    @Test
+    public void inSequence() {
+        SequenceOfStates sequence = new SequenceOfStates(ticker, telemetry);
+        sequence.addRunnableStep("before", recordingRunnable("before"));
+        sequence.addParallel("both", ParallelState.Join.ALL, steps("drive", 2), steps("arm", 3));
+        sequence.addSequential(new TerminalState("done", telemetry) {
+            @Override
+            protected void runTerminalCode() {
+                ranSteps.add("done");
+            }
+        });
+
+        StateMachine stateMachine = new StateMachine(telemetry, ticker);
+        stateMachine.addSequence(sequence);
+        stateMachine.compile();
+
+        for (int i = 0; i < 5; i++) {
+            stateMachine.doOneStateLoop();
+        }
+
+        assertEquals("done", stateMachine.getCurrentStateName());
+        assertEquals(7, ranSteps.size());
+        assertEquals("done", ranSteps.get(6));
+    }
+
+    @Test
+    public void noRegionsAfterStart() {
+        final ParallelState parallelState = new ParallelState("parallel", telemetry, ticker, ParallelState.Join.ALL);
+        parallelState.addRegion(steps("drive", 2));
+        parallelState.doStuffAndGetNextState();
+
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                parallelState.addRegion(steps("arm", 1));
+            }
+        });
+    }
+
+    private SequenceOfStates steps(String prefix, int count) {
+        SequenceOfStates sequence = new SequenceOfStates(ticker, telemetry);
+
+        for (int i = 0; i < count; i++) {
+            String name = prefix + " " + i;
+            sequence.addRunnableStep(name, recordingRunnable(name));
+        }
+
+        return sequence;
+    }
+
+    private Runnable recordingRunnable(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ranSteps.add(name);
+            }
+        };
+    }
+
+    class ResetRecordingState extends State {
+        ResetRecordingState(String name) {
+            super(name, null);
+        }
+
+        @Override
+        public State doStuffAndGetNextState() {
+            ranSteps.add(name);
+
+            return nextState;
+        }
+
+        @Override
+        public void resetToStart() {
+            ranSteps.add("reset " + name);
+        }
+    }
+
+    class SlowState extends State {
+        private final long millisToTake;
+
+        SlowState(String name, long millisToTake) {
+            super(name, null);
+            this.millisToTake = millisToTake;
+        }
+
+        @Override
+        public State doStuffAndGetNextState() {
+            ranSteps.add(name);
+            ticker.advance(millisToTake, TimeUnit.MILLISECONDS);
+
+            return this;
+        }
+
+        @Override
+        public void resetToStart() {
+
+        }
+    }
+}
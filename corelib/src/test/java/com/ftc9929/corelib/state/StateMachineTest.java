@@ -30,10 +30,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class StateMachineTest {
 
@@ -190,6 +194,145 @@ public class StateMachineTest {
         assertEquals(5, counter[0]);
     }
 
+    @Test
+    public void testLowOverheadMode() {
+        stateMachine.setLowOverheadMode(true);
+
+        TestState startState = new TestState("start", null);
+        TestState state2 = new TestState("state2", null);
+        startState.setNextState(state2);
+        state2.setNextState(state2);
+
+        stateMachine.setFirstState(startState);
+
+        stateMachine.doOneStateLoop();
+        testTelemetry.update();
+        assertEquals("00 : > state state2\n", testTelemetry.getCurrentTelemetryData());
+
+        // Retained, and not re-added while staying in the same state
+        stateMachine.doOneStateLoop();
+        testTelemetry.addData("other", "value");
+        testTelemetry.update();
+        assertEquals("00 : > state state2\nother : value\n", testTelemetry.getCurrentTelemetryData());
+
+        state2.setNextState(null);
+        stateMachine.doOneStateLoop();
+        testTelemetry.addData("other", "changed");
+        testTelemetry.update();
+        assertEquals("00 : > state null\nother : changed\n", testTelemetry.getCurrentTelemetryData());
+    }
+
+    @Test
+    public void testLowOverheadModeAfterClearAll() {
+        stateMachine.setLowOverheadMode(true);
+
+        TestState startState = new TestState("start", null);
+        TestState state2 = new TestState("state2", null);
+        startState.setNextState(state2);
+        state2.setNextState(state2);
+
+        stateMachine.setFirstState(startState);
+
+        stateMachine.doOneStateLoop();
+        testTelemetry.clearAll();
+
+        // Shown again at the next state change
+        state2.setNextState(startState);
+        startState.setNextState(startState);
+        stateMachine.doOneStateLoop();
+        testTelemetry.update();
+        assertEquals("00 : > state start\n", testTelemetry.getCurrentTelemetryData());
+
+        // ...and only once
+        stateMachine.doOneStateLoop();
+        testTelemetry.update();
+        assertEquals("00 : > state start\n", testTelemetry.getCurrentTelemetryData());
+    }
+
+    @Test
+    public void testLowOverheadModeCannotChangeWhileRunning() {
+        stateMachine.setFirstState(new TestState("abcdef", null));
+        stateMachine.doOneStateLoop();
+
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                stateMachine.setLowOverheadMode(true);
+            }
+        });
+    }
+
+    @Test
+    public void testStateDisplayStrings() {
+        TestState testState = new TestState("abcdef", null);
+
+        assertEquals("TestState - 'abcdef'", StateMachine.stateClassAndName(testState));
+        assertSame(testState.getClassAndName(), testState.getClassAndName());
+        assertEquals("> state abcdef", testState.getStateDisplay());
+    }
+
+    @Test
+    public void testProfiling() {
+        StateMachine profiledStateMachine = new StateMachine(testTelemetry, fakeTicker);
+        profiledStateMachine.enableProfiling();
+
+        SlowState slowState = new SlowState("slow", 5);
+        SlowState fastState = new SlowState("fast", 1);
+        slowState.setNextState(slowState);
+
+        profiledStateMachine.setFirstState(fastState);
+        fastState.setNextState(slowState);
+
+        for (int i = 0; i < 4; i++) {
+            profiledStateMachine.doOneStateLoop();
+        }
+
+        StateProfiler profiler = profiledStateMachine.getProfiler();
+        List<StateProfiler.StateTiming> timings = profiler.getStateTimings();
+
+        assertEquals(2, timings.size());
+
+        StateProfiler.StateTiming fastTiming = timings.get(0);
+        assertEquals("SlowState - 'fast'", fastTiming.getName());
+        assertEquals(1, fastTiming.getCount());
+        assertEquals(1, fastTiming.getMax(TimeUnit.MILLISECONDS));
+
+        StateProfiler.StateTiming slowTiming = timings.get(1);
+        assertEquals(3, slowTiming.getCount());
+        assertEquals(5, slowTiming.getMin(TimeUnit.MILLISECONDS));
+        assertEquals(5, slowTiming.getMax(TimeUnit.MILLISECONDS));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), slowTiming.getMeanNanos(), 0.1);
+
+        assertEquals(4, profiler.getLoopHistogram().getCount());
+        assertTrue(profiler.report().contains("SlowState - 'slow'"));
+    }
+
+    @Test
+    public void testProfilingOffByDefault() {
+        assertNull(stateMachine.getProfiler());
+    }
+
+    class SlowState extends State {
+        private final long millisToTake;
+
+        SlowState(String name, long millisToTake) {
+            super(name, null);
+            this.millisToTake = millisToTake;
+        }
+
+        @Override
+        public State doStuffAndGetNextState() {
+            fakeTicker.advance(millisToTake, TimeUnit.MILLISECONDS);
+
+            return nextState;
+        }
+
+        @Override
+        public void resetToStart() {
+
+        }
+    }
+
     class TestState extends State {
         private int executionCount = 0;
 
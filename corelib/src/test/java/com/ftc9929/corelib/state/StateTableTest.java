@@ -0,0 +1,265 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.corelib.state;
+
+import com.ftc9929.corelib.control.NinjaGamePad;
+import com.ftc9929.testing.fakes.FakeTelemetry;
+import com.google.common.testing.FakeTicker;
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StateTableTest {
+    private FakeTelemetry telemetry;
+
+    private FakeTicker ticker;
+
+    private StateMachine stateMachine;
+
+    private int counter;
+
+    @BeforeEach
+    public void setUp() {
+        telemetry = new FakeTelemetry();
+        ticker = new FakeTicker();
+        stateMachine = new StateMachine(telemetry, ticker);
+    }
+
+    @Test
+    public void compileAndRun() {
+        SequenceOfStates sequence = new SequenceOfStates(ticker, telemetry);
+        sequence.addRunnableStep("first", countingRunnable());
+        sequence.addWaitStep("wait", 1, TimeUnit.SECONDS);
+        sequence.addRunnableStep("second", countingRunnable());
+        sequence.addSequential(new CountingTerminalState());
+
+        stateMachine.addSequence(sequence);
+        StateTable table = stateMachine.compile();
+
+        assertEquals(4, table.size());
+        assertSame(sequence.getFirstState(), table.getState(0));
+        assertArrayEquals(new int[] {1}, table.getPossibleNextStateIds(0));
+        assertArrayEquals(new int[0], table.getPossibleNextStateIds(3));
+
+        assertEquals("0: RunnableState - 'first' -> 1\n"
+                + "1: StopwatchDelayState - 'wait' -> 2\n"
+                + "2: RunnableState - 'second' -> 3\n"
+                + "3: CountingTerminalState - 'done' -> (none)\n", table.toString());
+
+        String dot = table.toDot();
+        assertTrue(dot.startsWith("digraph StateMachine {\n"));
+        assertTrue(dot.contains("  s0 [label=\"RunnableState - 'first'\", shape=doublecircle];\n"));
+        assertTrue(dot.contains("  s2 -> s3;\n"));
+
+        assertEquals(StateTable.NO_STATE, stateMachine.getCurrentStateId());
+
+        stateMachine.doOneStateLoop();
+        assertEquals(1, stateMachine.getCurrentStateId());
+        assertEquals(1, counter);
+
+        // Starts the wait
+        stateMachine.doOneStateLoop();
+        assertEquals(1, stateMachine.getCurrentStateId());
+
+        ticker.advance(2, TimeUnit.SECONDS);
+
+        stateMachine.doOneStateLoop();
+        assertEquals(2, stateMachine.getCurrentStateId());
+
+        stateMachine.doOneStateLoop();
+        stateMachine.doOneStateLoop();
+        stateMachine.doOneStateLoop();
+
+        assertEquals(3, stateMachine.getCurrentStateId());
+        assertEquals("done", stateMachine.getCurrentStateName());
+        assertEquals(3, counter);
+    }
+
+    @Test
+    public void danglingNextState() {
+        SequenceOfStates sequence = new SequenceOfStates(ticker, telemetry);
+        sequence.addRunnableStep("first", countingRunnable());
+        sequence.addRunnableStep("last", countingRunnable());
+
+        stateMachine.addSequence(sequence);
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                stateMachine.compile();
+            }
+        });
+
+        assertTrue(thrown.getMessage().contains("RunnableState - 'last' has no next state"));
+    }
+
+    @Test
+    public void loopWithNoExit() {
+        SequenceOfStates loop = new SequenceOfStates(ticker, telemetry);
+        loop.addRunnableStep("loop start", countingRunnable());
+        loop.addRunnableStep("loop end", countingRunnable());
+        loop.getLastState().setNextState(loop.getFirstState());
+
+        ButtonPressWithTimeoutState waitForButton = new ButtonPressWithTimeoutState("button",
+                new NinjaGamePad(new Gamepad()).getAButton().debounced(),
+                loop.getFirstState(), telemetry, ticker, 1000);
+
+        waitForButton.setNextState(new CountingTerminalState());
+
+        stateMachine.setFirstState(waitForButton);
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                stateMachine.compile();
+            }
+        });
+
+        assertTrue(thrown.getMessage().contains("RunnableState - 'loop start' can never reach a terminal state"));
+        assertTrue(thrown.getMessage().contains("RunnableState - 'loop end' can never reach a terminal state"));
+        assertFalse(thrown.getMessage().contains("'button'"));
+    }
+
+    @Test
+    public void loopWithoutTerminalState() {
+        SequenceOfStates loop = new SequenceOfStates(ticker, telemetry);
+        loop.addRunnableStep("loop start", countingRunnable());
+        loop.addRunnableStep("loop end", countingRunnable());
+        loop.getLastState().setNextState(loop.getFirstState());
+
+        stateMachine.addSequence(loop);
+
+        assertEquals(2, stateMachine.compile().size());
+    }
+
+    @Test
+    public void alternateNextStates() {
+        ButtonPressWithTimeoutState waitForButton = new ButtonPressWithTimeoutState("button",
+                new NinjaGamePad(new Gamepad()).getAButton().debounced(),
+                new CountingTerminalState(), telemetry, ticker, 1000);
+
+        waitForButton.setNextState(new CountingTerminalState());
+
+        stateMachine.setFirstState(waitForButton);
+
+        StateTable table = stateMachine.compile();
+
+        assertEquals(3, table.size());
+        assertArrayEquals(new int[] {1, 2}, table.getPossibleNextStateIds(0));
+    }
+
+    @Test
+    public void undeclaredNextState() {
+        final State elsewhere = new CountingTerminalState();
+
+        State sneaky = new RunnableState("sneaky", telemetry, countingRunnable()) {
+            @Override
+            public State doStuffAndGetNextState() {
+                return elsewhere;
+            }
+        };
+
+        sneaky.setNextState(new CountingTerminalState());
+
+        stateMachine.setFirstState(sneaky);
+        stateMachine.compile();
+
+        assertThrows(IllegalStateException.class, new Executable() {
+            @Override
+            public void execute() {
+                stateMachine.doOneStateLoop();
+            }
+        });
+    }
+
+    @Test
+    public void configurationFrozenAfterCompile() {
+        stateMachine.setFirstState(new CountingTerminalState());
+        stateMachine.compile();
+
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                stateMachine.addStartDelay(1, ticker);
+            }
+        });
+
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                stateMachine.compile();
+            }
+        });
+    }
+
+    @Test
+    public void profilerUsesStateIds() {
+        State first = new RunnableState("first", telemetry, countingRunnable());
+        first.setNextState(new CountingTerminalState());
+
+        stateMachine.setFirstState(first);
+        stateMachine.compile();
+        stateMachine.enableProfiling();
+
+        for (int i = 0; i < 5; i++) {
+            stateMachine.doOneStateLoop();
+        }
+
+        StateProfiler profiler = stateMachine.getProfiler();
+
+        assertEquals(2, profiler.getStateTimings().size());
+        assertEquals(1, profiler.getStateTimings().get(0).getCount());
+        assertEquals(4, profiler.getStateTimings().get(1).getCount());
+    }
+
+    private Runnable countingRunnable() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                counter++;
+            }
+        };
+    }
+
+    class CountingTerminalState extends TerminalState {
+        CountingTerminalState() {
+            super("done", null);
+        }
+
+        @Override
+        protected void runTerminalCode() {
+            counter++;
+        }
+    }
+}
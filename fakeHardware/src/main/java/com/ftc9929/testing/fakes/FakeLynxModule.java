@@ -0,0 +1,145 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.ftc9929.testing.fakes;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.hardware.lynx.LynxUsbDevice;
+import com.qualcomm.robotcore.util.SerialNumber;
+
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.VoltageUnit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A REV hub (LynxModule) that talks to nothing, added to fake hardware maps for each
+ * LynxModule in the file, so that code which asks the hardware map for hubs (BulkReadCache,
+ * hub voltage metrics) works. Tests set the voltages and current it reports.
+ *
+ * Bulk caching only remembers its mode, reads from fake devices are never cached.
+ */
+@SuppressWarnings("unused")
+public class FakeLynxModule extends LynxModule {
+    @Setter
+    private double inputVolts = 12;
+
+    @Setter
+    private double auxiliaryVolts = 5;
+
+    @Setter
+    private double currentAmps;
+
+    @Getter
+    private BulkCachingMode bulkCachingMode = BulkCachingMode.OFF;
+
+    @Getter
+    private int bulkCacheClears;
+
+    public FakeLynxModule(int moduleAddress) {
+        super(newFakeUsbDevice(), moduleAddress, false, true);
+    }
+
+    /**
+     * The LynxModule constructor only asks its USB device for a serial number, and to be
+     * told when it is armed (which never happens)
+     */
+    private static LynxUsbDevice newFakeUsbDevice() {
+        final SerialNumber serialNumber = SerialNumber.createFake();
+
+        return (LynxUsbDevice) Proxy.newProxyInstance(LynxUsbDevice.class.getClassLoader(),
+                new Class<?>[] {LynxUsbDevice.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getSerialNumber".equals(method.getName())) {
+                            return serialNumber;
+                        }
+
+                        if (method.getReturnType() == boolean.class) {
+                            return false;
+                        }
+
+                        if (method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+                            return 0;
+                        }
+
+                        return null;
+                    }
+                });
+    }
+
+    @Override
+    protected void startExecutor() {
+        // Nothing to send commands to
+    }
+
+    @Override
+    protected void stopExecutor() {
+
+    }
+
+    @Override
+    public void setBulkCachingMode(BulkCachingMode mode) {
+        bulkCachingMode = mode;
+    }
+
+    @Override
+    public void clearBulkCache() {
+        bulkCacheClears++;
+    }
+
+    @Override
+    public double getInputVoltage(VoltageUnit unit) {
+        return unit.convert(inputVolts, VoltageUnit.VOLTS);
+    }
+
+    @Override
+    public double getAuxiliaryVoltage(VoltageUnit unit) {
+        return unit.convert(auxiliaryVolts, VoltageUnit.VOLTS);
+    }
+
+    @Override
+    public double getCurrent(CurrentUnit unit) {
+        return unit.convert(currentAmps, CurrentUnit.AMPS);
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "TNT Fake Lynx Module";
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "";
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
@@ -22,10 +22,14 @@
 
 package com.ftc9929.testing.fakes.drive;
 
+import com.ftc9929.testing.fakes.sim.DcMotorModel;
+import com.ftc9929.testing.fakes.sim.DcMotorSimulation;
+import com.ftc9929.testing.fakes.sim.SimulatedDevice;
 import com.qualcomm.robotcore.hardware.DcMotorController;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.PIDCoefficients;
 import com.qualcomm.robotcore.hardware.PIDFCoefficients;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
 import com.qualcomm.robotcore.hardware.configuration.typecontainers.MotorConfigurationType;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
@@ -34,8 +38,22 @@ import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * A DcMotorEx that only remembers what it was told, unless given a DcMotorModel with
+ * setMotorModel(), after which each step() moves the simulated motor along: the encoder
+ * counts, velocity and current follow from the power, run mode, direction and battery
+ * voltage, and RUN_TO_POSITION finishes when the motor gets there.
+ */
 @SuppressWarnings("unused")
-public class FakeDcMotorEx implements DcMotorEx {
+public class FakeDcMotorEx implements DcMotorEx, SimulatedDevice {
+    // The REV hub's default
+    private static final int DEFAULT_TARGET_POSITION_TOLERANCE = 5;
+
+    // Gains of the simulated motor controller, in the spirit of the REV hub's defaults
+    private static final double POSITION_GAIN = 10;
+
+    private static final double VELOCITY_GAIN = 2;
+
     private boolean motorEnable = true;
 
     private Map<RunMode, PIDCoefficients> pidCoefficients = new HashMap<>();
@@ -46,7 +64,7 @@ public class FakeDcMotorEx implements DcMotorEx {
 
     private int currentEncoderPosition;
 
-    private int targetPositionTolerance;
+    private int targetPositionTolerance = DEFAULT_TARGET_POSITION_TOLERANCE;
 
     private double simpleVelocity;
     
@@ -56,10 +74,106 @@ public class FakeDcMotorEx implements DcMotorEx {
 
     private RunMode runMode;
 
+    private Direction direction = Direction.FORWARD;
+
+    private ZeroPowerBehavior zeroPowerBehavior = ZeroPowerBehavior.BRAKE;
+
+    private double currentAlertAmps;
+
+    // Simulation, when there is a motor model
+
+    private DcMotorSimulation simulation;
+
+    private VoltageSensor batteryVoltageSensor;
+
+    // Ticks per second, NaN when the velocity comes from the power
+    private double targetVelocity = Double.NaN;
+
+    // Simulated ticks at the last encoder reset, in the motor's own (FORWARD) direction, so
+    // that changing direction afterwards only changes the sign of the position
+    private double encoderZeroTicks;
+
     public FakeDcMotorEx() {
 
     }
 
+    /**
+     * Simulates this motor with the given model, powered by the battery the given voltage
+     * sensor measures (or a steady 12V when null), from now on
+     */
+    public void setMotorModel(DcMotorModel motorModel, VoltageSensor batteryVoltageSensor) {
+        this.simulation = new DcMotorSimulation(motorModel);
+        this.batteryVoltageSensor = batteryVoltageSensor;
+
+        encoderZeroTicks = -getDirectionSign() * currentEncoderPosition;
+    }
+
+    /**
+     * @return the simulation of this motor, or null when there is no motor model
+     */
+    public DcMotorSimulation getSimulation() {
+        return simulation;
+    }
+
+    @Override
+    public void step(long deltaNanos) {
+        if (simulation == null) {
+            return;
+        }
+
+        final double deltaSeconds = deltaNanos / 1E9;
+        final double dutyCycle = motorEnable ? getDutyCycle() : 0;
+
+        if (dutyCycle == 0 && (!motorEnable || zeroPowerBehavior == ZeroPowerBehavior.FLOAT)) {
+            simulation.stepFloating(deltaSeconds);
+        } else {
+            final double batteryVolts = batteryVoltageSensor == null
+                    ? DcMotorModel.NOMINAL_VOLTAGE : batteryVoltageSensor.getVoltage();
+
+            simulation.stepDriven(dutyCycle * getDirectionSign() * batteryVolts, deltaSeconds);
+        }
+
+        updateEncoderPosition();
+
+        if (runMode == RunMode.RUN_TO_POSITION) {
+            isBusy = Math.abs(targetPosition - currentEncoderPosition) > targetPositionTolerance;
+        }
+    }
+
+    /**
+     * @return fraction of the battery voltage to apply, from -1 to 1, in this motor's direction
+     */
+    private double getDutyCycle() {
+        if (runMode == null || runMode == RunMode.RUN_WITHOUT_ENCODER) {
+            return clip(motorPower, 1);
+        }
+
+        if (runMode == RunMode.STOP_AND_RESET_ENCODER) {
+            return 0;
+        }
+
+        final double maxVelocity = simulation.getFreeSpeedTicksPerSecond();
+
+        double velocity = Double.isNaN(targetVelocity) ? motorPower * maxVelocity : targetVelocity;
+
+        if (runMode == RunMode.RUN_TO_POSITION) {
+            velocity = clip(POSITION_GAIN * (targetPosition - currentEncoderPosition),
+                    Math.abs(motorPower) * maxVelocity);
+        }
+
+        final double velocityError = velocity - getVelocity();
+
+        return clip((velocity + VELOCITY_GAIN * velocityError) / maxVelocity, 1);
+    }
+
+    private int getDirectionSign() {
+        return direction == Direction.REVERSE ? -1 : 1;
+    }
+
+    private static double clip(double value, double limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+
     @Override
     public void setMotorEnable() {
         motorEnable = true;
@@ -78,16 +192,27 @@ public class FakeDcMotorEx implements DcMotorEx {
     @Override
     public void setVelocity(double angularRate) {
         simpleVelocity = angularRate;
+        targetVelocity = angularRate;
     }
 
     @Override
     public void setVelocity(double angularRate, AngleUnit unit) {
-        throw new IllegalArgumentException("Not implemented");
+        if (simulation == null) {
+            throw new IllegalArgumentException("Not implemented");
+        }
+
+        final double radiansPerSecond = unit.getUnnormalized().toRadians(angularRate);
+
+        setVelocity(radiansPerSecond / (2 * Math.PI) * simulation.getMotorModel().getTicksPerOutputRev());
     }
 
     @Override
     public double getVelocity(AngleUnit unit) {
-        throw new IllegalArgumentException("Not implemented");
+        if (simulation == null) {
+            throw new IllegalArgumentException("Not implemented");
+        }
+
+        return unit.getUnnormalized().fromRadians(getDirectionSign() * simulation.getOutputRadiansPerSecond());
     }
 
     @Override
@@ -117,22 +242,26 @@ public class FakeDcMotorEx implements DcMotorEx {
 
     @Override
     public double getCurrent(CurrentUnit unit) {
-        return 0;
+        if (simulation == null) {
+            return 0;
+        }
+
+        return unit.convert(simulation.getCurrentAmps(), CurrentUnit.AMPS);
     }
 
     @Override
     public double getCurrentAlert(CurrentUnit unit) {
-        return 0;
+        return unit.convert(currentAlertAmps, CurrentUnit.AMPS);
     }
 
     @Override
     public void setCurrentAlert(double current, CurrentUnit unit) {
-
+        currentAlertAmps = CurrentUnit.AMPS.convert(current, unit);
     }
 
     @Override
     public boolean isOverCurrent() {
-        return false;
+        return currentAlertAmps > 0 && getCurrent(CurrentUnit.AMPS) > currentAlertAmps;
     }
 
     @Override
@@ -172,27 +301,32 @@ public class FakeDcMotorEx implements DcMotorEx {
 
     @Override
     public void setZeroPowerBehavior(ZeroPowerBehavior zeroPowerBehavior) {
-
+        this.zeroPowerBehavior = zeroPowerBehavior;
     }
 
     @Override
     public ZeroPowerBehavior getZeroPowerBehavior() {
-        return null;
+        return zeroPowerBehavior;
     }
 
     @Override
     public void setPowerFloat() {
-
+        setZeroPowerBehavior(ZeroPowerBehavior.FLOAT);
+        setPower(0);
     }
 
     @Override
     public double getVelocity(){
-        return simpleVelocity;
+        if (simulation == null) {
+            return simpleVelocity;
+        }
+
+        return getDirectionSign() * simulation.getTicksPerSecond();
     }
 
     @Override
     public boolean getPowerFloat() {
-        return false;
+        return zeroPowerBehavior == ZeroPowerBehavior.FLOAT && motorPower == 0;
     }
 
     @Override
@@ -210,6 +344,10 @@ public class FakeDcMotorEx implements DcMotorEx {
         return isBusy;
     }
 
+    private void updateEncoderPosition() {
+        currentEncoderPosition = (int) Math.round(getDirectionSign() * (simulation.getTicks() - encoderZeroTicks));
+    }
+
     public void setBusy(final boolean isBusy) {
         this.isBusy = isBusy;
     }
@@ -221,6 +359,10 @@ public class FakeDcMotorEx implements DcMotorEx {
 
     public void setCurrentPosition(int currentMotorPosition) {
         this.currentEncoderPosition = currentMotorPosition;
+
+        if (simulation != null) {
+            encoderZeroTicks = simulation.getTicks() - getDirectionSign() * currentMotorPosition;
+        }
     }
 
     @Deprecated
@@ -233,6 +375,10 @@ public class FakeDcMotorEx implements DcMotorEx {
         runMode = mode;
 
         isBusy = mode == RunMode.RUN_TO_POSITION;
+
+        if (mode == RunMode.STOP_AND_RESET_ENCODER && simulation != null) {
+            setCurrentPosition(0);
+        }
     }
 
     @Override
@@ -242,17 +388,22 @@ public class FakeDcMotorEx implements DcMotorEx {
 
     @Override
     public void setDirection(Direction direction) {
+        this.direction = direction;
 
+        if (simulation != null) {
+            updateEncoderPosition();
+        }
     }
 
     @Override
     public Direction getDirection() {
-        return null;
+        return direction;
     }
 
     @Override
     public void setPower(double power) {
         this.motorPower = power;
+        this.targetVelocity = Double.NaN;
     }
 
     @Override
@@ -22,21 +22,32 @@
 
 package com.ftc9929.testing.fakes.sensors;
 
+import com.ftc9929.testing.fakes.sim.SensorNoise;
 import com.qualcomm.robotcore.hardware.DistanceSensor;
 
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 
+import lombok.Setter;
+
 @SuppressWarnings("unused")
 public class FakeDistanceSensor implements DistanceSensor {
 
     private double distance;
 
+    // Added to every reading, when set
+    @Setter
+    private SensorNoise noise;
+
     public void setDistance(double distance) {
         this.distance = distance;
     }
 
     @Override
     public double getDistance(DistanceUnit unit) {
+        if (noise != null) {
+            return noise.addTo(distance);
+        }
+
         return distance;
     }
 
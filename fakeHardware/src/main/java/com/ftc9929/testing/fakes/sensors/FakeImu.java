@@ -0,0 +1,192 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sensors;
+
+import com.ftc9929.testing.fakes.sim.SensorNoise;
+import com.google.common.base.Ticker;
+import com.qualcomm.robotcore.hardware.IMU;
+
+import org.firstinspires.ftc.robotcore.external.matrices.GeneralMatrixF;
+import org.firstinspires.ftc.robotcore.external.matrices.MatrixF;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+
+/**
+ * A fake of the universal IMU interface, used for every IMU found in a hardware map file.
+ * Tests set the robot's yaw, pitch and roll (and the yaw rate), resetYaw() behaves as on
+ * the real device.
+ *
+ * Readings are timestamped with the ticker given to setTicker() - SimulationClock.addAllDevices()
+ * gives it the simulation's clock - or System.nanoTime() when not set.
+ */
+@SuppressWarnings("unused")
+public class FakeImu implements IMU {
+    // All in degrees
+    private double yaw;
+
+    private double pitch;
+
+    private double roll;
+
+    private double yawAtReset;
+
+    // Degrees per second
+    private double yawRate;
+
+    @Getter
+    private Parameters parameters;
+
+    // Added to every yaw reading, when set
+    @Setter
+    private SensorNoise yawNoise;
+
+    // Acquisition time of readings
+    @Setter
+    @NonNull
+    private Ticker ticker = Ticker.systemTicker();
+
+    /**
+     * Sets the orientation of the robot, as measured before any call to resetYaw()
+     */
+    public void setOrientation(AngleUnit angleUnit, double yaw, double pitch, double roll) {
+        this.yaw = angleUnit.toDegrees(yaw);
+        this.pitch = angleUnit.toDegrees(pitch);
+        this.roll = angleUnit.toDegrees(roll);
+    }
+
+    /**
+     * Sets the rate the robot is turning at, counter-clockwise is positive
+     */
+    public void setYawRate(AngleUnit angleUnit, double yawRatePerSecond) {
+        this.yawRate = angleUnit.toDegrees(yawRatePerSecond);
+    }
+
+    @Override
+    public boolean initialize(Parameters parameters) {
+        this.parameters = parameters;
+
+        return true;
+    }
+
+    @Override
+    public void resetYaw() {
+        yawAtReset = yaw;
+    }
+
+    @Override
+    public YawPitchRollAngles getRobotYawPitchRollAngles() {
+        return new YawPitchRollAngles(AngleUnit.DEGREES, getYawDegrees(), pitch, roll, ticker.read());
+    }
+
+    @Override
+    public Orientation getRobotOrientation(AxesReference reference, AxesOrder order, AngleUnit angleUnit) {
+        return Orientation.getOrientation(getRotationMatrix(), reference, order, angleUnit);
+    }
+
+    @Override
+    public Quaternion getRobotOrientationAsQuaternion() {
+        return Quaternion.fromMatrix(getRotationMatrix(), ticker.read());
+    }
+
+    @Override
+    public AngularVelocity getRobotAngularVelocity(AngleUnit angleUnit) {
+        return new AngularVelocity(AngleUnit.DEGREES, 0, 0, (float) yawRate, ticker.read())
+                .toAngleUnit(angleUnit);
+    }
+
+    // Yaw, pitch and roll are intrinsic rotations about Z, X then Y. Built here because
+    // Orientation.getRotationMatrix() needs android.opengl, which unit tests don't have.
+    private MatrixF getRotationMatrix() {
+        final double yawRadians = Math.toRadians(getYawDegrees());
+        final double pitchRadians = Math.toRadians(pitch);
+        final double rollRadians = Math.toRadians(roll);
+
+        final double cosYaw = Math.cos(yawRadians);
+        final double sinYaw = Math.sin(yawRadians);
+        final double cosPitch = Math.cos(pitchRadians);
+        final double sinPitch = Math.sin(pitchRadians);
+        final double cosRoll = Math.cos(rollRadians);
+        final double sinRoll = Math.sin(rollRadians);
+
+        return new GeneralMatrixF(3, 3, new float[] {
+                (float) (cosYaw * cosRoll - sinYaw * sinPitch * sinRoll),
+                (float) (-sinYaw * cosPitch),
+                (float) (cosYaw * sinRoll + sinYaw * sinPitch * cosRoll),
+
+                (float) (sinYaw * cosRoll + cosYaw * sinPitch * sinRoll),
+                (float) (cosYaw * cosPitch),
+                (float) (sinYaw * sinRoll - cosYaw * sinPitch * cosRoll),
+
+                (float) (-cosPitch * sinRoll),
+                (float) sinPitch,
+                (float) (cosPitch * cosRoll)});
+    }
+
+    private double getYawDegrees() {
+        double yawDegrees = yaw - yawAtReset;
+
+        if (yawNoise != null) {
+            yawDegrees = yawNoise.addTo(yawDegrees);
+        }
+
+        return AngleUnit.normalizeDegrees(yawDegrees);
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return Manufacturer.Other;
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "TNT Fake IMU";
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "";
+    }
+
+    @Override
+    public int getVersion() {
+        return 0;
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
@@ -21,6 +21,7 @@
  */
 package com.ftc9929.testing.fakes.sensors;
 
+import com.ftc9929.testing.fakes.sim.SensorNoise;
 import com.qualcomm.hardware.lynx.LynxI2cColorRangeSensor;
 import com.qualcomm.robotcore.hardware.I2cAddr;
 import com.qualcomm.robotcore.hardware.I2cDeviceSynchSimple;
@@ -47,6 +48,14 @@ public class FakeLynxI2cColorRangeSensor extends LynxI2cColorRangeSensor {
     @Setter
     private double distanceCm;
 
+    // Added to every color reading, when set
+    @Setter
+    private SensorNoise colorNoise;
+
+    // Added to every distance reading, in cm, when set
+    @Setter
+    private SensorNoise distanceNoise;
+
     public FakeLynxI2cColorRangeSensor() {
         super(new I2cDeviceSynchSimple() {
             @Override
@@ -233,26 +242,32 @@ public class FakeLynxI2cColorRangeSensor extends LynxI2cColorRangeSensor {
 
     @Override
     public synchronized int red() {
-        return red;
+        return withColorNoise(red);
     }
 
     @Override
     public synchronized int green() {
-        return green;
+        return withColorNoise(green);
     }
 
     @Override
     public synchronized int blue() {
-        return blue;
+        return withColorNoise(blue);
     }
 
     @Override
     public synchronized int alpha() {
-        return alpha;
+        return withColorNoise(alpha);
     }
 
     @Override
     public double getDistance(final DistanceUnit unit) {
-        return unit.fromUnit(DistanceUnit.CM, distanceCm);
+        final double measuredCm = distanceNoise == null ? distanceCm : distanceNoise.addTo(distanceCm);
+
+        return unit.fromUnit(DistanceUnit.CM, measuredCm);
+    }
+
+    private int withColorNoise(int count) {
+        return colorNoise == null ? count : colorNoise.addToCount(count);
     }
 }
@@ -0,0 +1,157 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import java.util.Random;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The physical constants of a (brushed DC) gear motor and what it is driving, used by
+ * FakeDcMotorEx to simulate encoder ticks, velocity and current. Specifications are for
+ * the bare motor at 12V, as found on manufacturer data sheets, the defaults are those of a
+ * goBILDA 5202/5203 series (Yellow Jacket) motor with no gearbox and nothing attached.
+ *
+ * The motor is modelled as a resistance plus a back-EMF proportional to speed, with
+ * friction (taken from the free-running current, plus any load torque) and an inertia
+ * reflected through the gearbox - good enough for autonomous routines to see realistic acceleration, top
+ * speed, stalls and voltage sag, not for tuning control loops.
+ */
+@Getter
+public final class DcMotorModel {
+    public static final double NOMINAL_VOLTAGE = 12.0;
+
+    // Rotor inertia of a typical FTC motor, kg m^2, keeps an unloaded motor from being infinitely fast to respond
+    private static final double ROTOR_INERTIA = 1.0E-5;
+
+    private final double freeSpeedRpm;
+
+    private final double stallTorqueNm;
+
+    private final double stallCurrentAmps;
+
+    private final double freeCurrentAmps;
+
+    private final double gearRatio;
+
+    private final double encoderTicksPerMotorRev;
+
+    private final double loadInertia;
+
+    private final double loadTorqueNm;
+
+    /**
+     * @param freeSpeedRpm bare motor free speed, default 6000 RPM
+     * @param stallTorqueNm bare motor stall torque, default 0.124 N m
+     * @param stallCurrentAmps stall current, default 9.2 A
+     * @param freeCurrentAmps free-running current, default 0.25 A
+     * @param gearRatio gearbox reduction (e.g. 19.2 for a 19.2:1 gearbox), default 1
+     * @param encoderTicksPerMotorRev encoder counts per turn of the motor (before the gearbox), default 28
+     * @param loadInertia inertia of what the output shaft drives, in kg m^2, default 0
+     * @param loadTorqueNm torque with which what the output shaft drives resists turning, in
+     *                     N m, default 0 - the motor stalls when this is more than it can give
+     */
+    @Builder(toBuilder = true)
+    private DcMotorModel(double freeSpeedRpm, double stallTorqueNm, double stallCurrentAmps,
+                         double freeCurrentAmps, double gearRatio, double encoderTicksPerMotorRev,
+                         double loadInertia, double loadTorqueNm) {
+        this.freeSpeedRpm = freeSpeedRpm == 0 ? 6000 : freeSpeedRpm;
+        this.stallTorqueNm = stallTorqueNm == 0 ? 0.124 : stallTorqueNm;
+        this.stallCurrentAmps = stallCurrentAmps == 0 ? 9.2 : stallCurrentAmps;
+        this.freeCurrentAmps = freeCurrentAmps == 0 ? 0.25 : freeCurrentAmps;
+        this.gearRatio = gearRatio == 0 ? 1 : gearRatio;
+        this.encoderTicksPerMotorRev = encoderTicksPerMotorRev == 0 ? 28 : encoderTicksPerMotorRev;
+        this.loadInertia = loadInertia;
+        this.loadTorqueNm = loadTorqueNm;
+
+        if (this.freeSpeedRpm < 0 || this.stallTorqueNm < 0 || this.stallCurrentAmps < 0
+                || this.freeCurrentAmps < 0 || this.gearRatio < 0 || this.encoderTicksPerMotorRev < 0
+                || loadInertia < 0 || loadTorqueNm < 0) {
+            throw new IllegalArgumentException("Motor model constants can not be negative");
+        }
+
+        if (this.freeCurrentAmps >= this.stallCurrentAmps) {
+            throw new IllegalArgumentException("Free current must be less than stall current");
+        }
+    }
+
+    /**
+     * @return a copy of this model with free speed and stall torque each scaled by a random
+     * factor, normally distributed around 1 with the given standard deviation (e.g. 0.05
+     * for 5%) - for motors that aren't quite alike
+     */
+    public DcMotorModel withVariation(@NonNull Random random, double standardDeviation) {
+        return toBuilder()
+                .freeSpeedRpm(freeSpeedRpm * Math.max(0.1, 1 + random.nextGaussian() * standardDeviation))
+                .stallTorqueNm(stallTorqueNm * Math.max(0.1, 1 + random.nextGaussian() * standardDeviation))
+                .build();
+    }
+
+    /**
+     * @return encoder ticks per turn of the output shaft
+     */
+    public double getTicksPerOutputRev() {
+        return encoderTicksPerMotorRev * gearRatio;
+    }
+
+    /**
+     * @return winding resistance, in ohms
+     */
+    double getResistance() {
+        return NOMINAL_VOLTAGE / stallCurrentAmps;
+    }
+
+    /**
+     * @return torque per amp, in N m / A, at the motor
+     */
+    double getTorqueConstant() {
+        return stallTorqueNm / stallCurrentAmps;
+    }
+
+    /**
+     * @return volts of back-EMF per rad/s, at the motor, such that the motor runs at free
+     * speed drawing free current at the nominal voltage
+     */
+    double getBackEmfConstant() {
+        return (NOMINAL_VOLTAGE - freeCurrentAmps * getResistance()) / getFreeSpeedRadiansPerSecond();
+    }
+
+    /**
+     * @return torque lost to friction and the load, in N m, at the motor
+     */
+    double getFrictionTorque() {
+        return freeCurrentAmps * getTorqueConstant() + loadTorqueNm / gearRatio;
+    }
+
+    /**
+     * @return inertia of the rotor plus the load, as seen from the motor
+     */
+    double getReflectedInertia() {
+        return ROTOR_INERTIA + loadInertia / (gearRatio * gearRatio);
+    }
+
+    double getFreeSpeedRadiansPerSecond() {
+        return freeSpeedRpm * 2 * Math.PI / 60;
+    }
+}
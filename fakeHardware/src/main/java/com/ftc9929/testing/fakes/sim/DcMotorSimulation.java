@@ -0,0 +1,164 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The state of a simulated motor (angle, speed and current, all at the motor, before the
+ * gearbox) and how it changes with the voltage applied to it, see DcMotorModel.
+ *
+ * Speed has a closed-form solution for a constant voltage over a step, which is used rather
+ * than integrating numerically, so that any step size is stable.
+ */
+public final class DcMotorSimulation {
+    @Getter
+    private final DcMotorModel motorModel;
+
+    private final double resistance;
+
+    private final double torqueConstant;
+
+    private final double backEmfConstant;
+
+    private final double frictionTorque;
+
+    private final double inertia;
+
+    // Radians at the motor
+    private double angle;
+
+    // Radians per second at the motor
+    private double speed;
+
+    // Amps, signed in the direction of the applied voltage
+    private double current;
+
+    public DcMotorSimulation(@NonNull DcMotorModel motorModel) {
+        this.motorModel = motorModel;
+
+        resistance = motorModel.getResistance();
+        torqueConstant = motorModel.getTorqueConstant();
+        backEmfConstant = motorModel.getBackEmfConstant();
+        frictionTorque = motorModel.getFrictionTorque();
+        inertia = motorModel.getReflectedInertia();
+    }
+
+    /**
+     * Advances the motor by the given time, with the given voltage applied to its terminals
+     */
+    public void stepDriven(double volts, double deltaSeconds) {
+        final double speedStart = speed;
+        final double stallTorque = torqueConstant * volts / resistance;
+
+        if (speedStart == 0 && Math.abs(stallTorque) <= frictionTorque) {
+            // Not enough to overcome friction
+            current = volts / resistance;
+
+            return;
+        }
+
+        final double frictionDirection = speedStart != 0 ? Math.signum(speedStart) : Math.signum(stallTorque);
+
+        // d(speed)/dt = acceleration - decay * speed
+        final double decay = torqueConstant * backEmfConstant / (resistance * inertia);
+        final double acceleration = (stallTorque - frictionDirection * frictionTorque) / inertia;
+        final double steadySpeed = acceleration / decay;
+        final double remaining = Math.exp(-decay * deltaSeconds);
+
+        double speedEnd = steadySpeed + (speedStart - steadySpeed) * remaining;
+
+        if (Math.signum(speedEnd) == -frictionDirection) {
+            // Slowed to a stop, friction does not push it the other way
+            speedEnd = 0;
+            angle += speedStart / 2 * deltaSeconds;
+        } else {
+            angle += steadySpeed * deltaSeconds + (speedStart - steadySpeed) * (1 - remaining) / decay;
+        }
+
+        speed = speedEnd;
+        current = (volts - backEmfConstant * speed) / resistance;
+    }
+
+    /**
+     * Advances the motor by the given time with its terminals disconnected (floating),
+     * so that only friction slows it
+     */
+    public void stepFloating(double deltaSeconds) {
+        current = 0;
+
+        if (speed == 0) {
+            return;
+        }
+
+        final double deceleration = frictionTorque / inertia;
+        final double speedChange = deceleration * deltaSeconds;
+
+        if (speedChange >= Math.abs(speed)) {
+            final double secondsToStop = Math.abs(speed) / deceleration;
+
+            angle += speed / 2 * secondsToStop;
+            speed = 0;
+        } else {
+            final double speedEnd = speed - Math.signum(speed) * speedChange;
+
+            angle += (speed + speedEnd) / 2 * deltaSeconds;
+            speed = speedEnd;
+        }
+    }
+
+    /**
+     * @return turns of the motor shaft, in encoder ticks
+     */
+    public double getTicks() {
+        return angle / (2 * Math.PI) * motorModel.getEncoderTicksPerMotorRev();
+    }
+
+    /**
+     * @return speed of the motor shaft, in encoder ticks per second
+     */
+    public double getTicksPerSecond() {
+        return speed / (2 * Math.PI) * motorModel.getEncoderTicksPerMotorRev();
+    }
+
+    /**
+     * @return speed of the output shaft (after the gearbox), in radians per second
+     */
+    public double getOutputRadiansPerSecond() {
+        return speed / motorModel.getGearRatio();
+    }
+
+    /**
+     * @return the current drawn, in amps - always positive
+     */
+    public double getCurrentAmps() {
+        return Math.abs(current);
+    }
+
+    /**
+     * @return the highest speed the encoder can count at, when running at the nominal voltage
+     */
+    public double getFreeSpeedTicksPerSecond() {
+        return motorModel.getFreeSpeedRpm() / 60 * motorModel.getEncoderTicksPerMotorRev();
+    }
+}
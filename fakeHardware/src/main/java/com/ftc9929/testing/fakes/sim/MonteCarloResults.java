@@ -0,0 +1,146 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import com.ftc9929.corelib.util.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+/**
+ * What happened over the trials run by a MonteCarloRunner - how many succeeded, how long
+ * (in simulated time) the trials took, and how long was spent in each state.
+ */
+public final class MonteCarloResults {
+    @Getter
+    private int trials;
+
+    @Getter
+    private int successes;
+
+    /**
+     * Number of trials whose state machines finished before the time limit
+     */
+    @Getter
+    private int finished;
+
+    private final LatencyHistogram completionNanos = new LatencyHistogram();
+
+    private final Map<String, LatencyHistogram> timeInStateNanos = new TreeMap<>();
+
+    void addTrial(boolean successful, boolean trialFinished, long elapsedNanos) {
+        trials++;
+
+        if (successful) {
+            successes++;
+        }
+
+        if (trialFinished) {
+            finished++;
+            completionNanos.record(elapsedNanos);
+        }
+    }
+
+    void addTimeInState(String stateName, long nanos) {
+        LatencyHistogram histogram = timeInStateNanos.get(stateName);
+
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            timeInStateNanos.put(stateName, histogram);
+        }
+
+        histogram.record(nanos);
+    }
+
+    void add(MonteCarloResults other) {
+        trials += other.trials;
+        successes += other.successes;
+        finished += other.finished;
+        completionNanos.add(other.completionNanos);
+
+        for (Map.Entry<String, LatencyHistogram> stateTime : other.timeInStateNanos.entrySet()) {
+            LatencyHistogram histogram = timeInStateNanos.get(stateTime.getKey());
+
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                timeInStateNanos.put(stateTime.getKey(), histogram);
+            }
+
+            histogram.add(stateTime.getValue());
+        }
+    }
+
+    public double getSuccessRate() {
+        return trials == 0 ? 0 : (double) successes / trials;
+    }
+
+    /**
+     * @return the simulated time taken by the given percentile of finished trials
+     */
+    public long getCompletionTime(double percentile, TimeUnit unit) {
+        return unit.convert(completionNanos.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the simulated time taken by trials that finished - one value per finished trial
+     */
+    public LatencyHistogram getCompletionNanos() {
+        return completionNanos;
+    }
+
+    /**
+     * @return the simulated time spent in each state, by state name - one value for each
+     * trial that reached the state
+     */
+    public Map<String, LatencyHistogram> getTimeInStateNanos() {
+        return Collections.unmodifiableMap(timeInStateNanos);
+    }
+
+    public String report() {
+        final StringBuilder report = new StringBuilder();
+
+        report.append(String.format("%d trials, %d succeeded (%.1f%%), %d finished%n",
+                trials, successes, getSuccessRate() * 100, finished));
+
+        if (finished > 0) {
+            appendRow(report, "completion", completionNanos);
+        }
+
+        for (Map.Entry<String, LatencyHistogram> stateTime : timeInStateNanos.entrySet()) {
+            appendRow(report, stateTime.getKey(), stateTime.getValue());
+        }
+
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format("%s: p50 %d ms, p90 %d ms, p99 %d ms, max %d ms%n", name,
+                TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(50)),
+                TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(90)),
+                TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(99)),
+                TimeUnit.NANOSECONDS.toMillis(histogram.getMax())));
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import com.ftc9929.corelib.state.StateMachine;
+import com.ftc9929.corelib.state.StateProfiler;
+import com.ftc9929.testing.fakes.util.FakeHardwareMapFactory;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * Runs an autonomous routine many times against fake hardware, each trial with its own
+ * hardware map (built from the same XML file), SimulationClock and Random, spread across
+ * all cores with a ForkJoinPool, and sums up how it went in MonteCarloResults.
+ *
+ * Trials share nothing, so the Trial must not either - anything it needs (including
+ * noise, see SensorNoise, DcMotorModel.withVariation() and SimulatedBattery) should be
+ * created in setUp(), from the Random it is given. Each trial's Random is seeded from
+ * the runner's seed and the trial number, so results don't depend on scheduling.
+ */
+public class MonteCarloRunner {
+    public static final int DEFAULT_TRIALS = 1000;
+
+    public static final long DEFAULT_TIME_LIMIT_SECONDS = 30;
+
+    // Trials run by one fork-join task before it stops splitting
+    private static final int TRIALS_PER_TASK = 8;
+
+    /**
+     * One run of the autonomous routine
+     */
+    public interface Trial {
+        /**
+         * Sets up simulated devices, noise and the state machine(s) for this trial,
+         * adding them to the clock
+         */
+        void setUp(HardwareMap hardwareMap, SimulationClock clock, Random random);
+
+        /**
+         * @param finished true if the state machines finished before the time limit
+         * @return true if the trial succeeded
+         */
+        boolean isSuccessful(boolean finished);
+    }
+
+    public interface TrialFactory {
+        /**
+         * Called from many threads, must return a new Trial every time
+         */
+        Trial newTrial();
+    }
+
+    private final File hardwareMapFile;
+
+    private final int trials;
+
+    private final long timeLimitNanos;
+
+    private final long loopPeriodNanos;
+
+    private final long seed;
+
+    private final int parallelism;
+
+    /**
+     * @param hardwareMapName name of the hardware map XML file, as for FakeHardwareMapFactory
+     * @param hardwareMapFile the hardware map XML file, when not given by name
+     * @param trials number of trials to run, default 1000
+     * @param timeLimitSeconds simulated time each trial may take, default 30
+     * @param loopPeriodMillis simulated time of each loop, default 10
+     * @param seed seed for the trials' Randoms
+     * @param parallelism number of threads, default one per core
+     */
+    @Builder
+    private MonteCarloRunner(String hardwareMapName, File hardwareMapFile,
+                             int trials, long timeLimitSeconds, long loopPeriodMillis,
+                             long seed, int parallelism) {
+        if ((hardwareMapName == null) == (hardwareMapFile == null)) {
+            throw new IllegalArgumentException("Give one of hardwareMapName or hardwareMapFile");
+        }
+
+        this.hardwareMapFile = hardwareMapFile != null
+                ? hardwareMapFile : new File(String.format("src/main/res/xml/%s", hardwareMapName));
+        this.trials = trials == 0 ? DEFAULT_TRIALS : trials;
+        this.timeLimitNanos = TimeUnit.SECONDS.toNanos(timeLimitSeconds == 0 ? DEFAULT_TIME_LIMIT_SECONDS : timeLimitSeconds);
+        this.loopPeriodNanos = loopPeriodMillis == 0
+                ? SimulationClock.DEFAULT_LOOP_PERIOD_NANOS : TimeUnit.MILLISECONDS.toNanos(loopPeriodMillis);
+        this.seed = seed;
+        this.parallelism = parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+
+        if (this.trials < 0 || this.parallelism < 0 || this.timeLimitNanos < 0 || this.loopPeriodNanos < 0) {
+            throw new IllegalArgumentException("trials, timeLimitSeconds, loopPeriodMillis and parallelism must be positive");
+        }
+    }
+
+    public MonteCarloResults run(@NonNull TrialFactory trialFactory) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            return pool.invoke(new TrialsTask(trialFactory, 0, trials));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs a single trial on the calling thread, trial numbers start from 0
+     */
+    public MonteCarloResults runTrial(@NonNull TrialFactory trialFactory, int trialNumber) {
+        final Trial trial = trialFactory.newTrial();
+        final HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile);
+        final SimulationClock clock = new SimulationClock(loopPeriodNanos);
+
+        trial.setUp(hardwareMap, clock, new Random(trialSeed(seed, trialNumber)));
+
+        for (StateMachine stateMachine : clock.getStateMachines()) {
+            stateMachine.enableProfiling();
+        }
+
+        final boolean finished = clock.runUntilFinished(timeLimitNanos, TimeUnit.NANOSECONDS);
+        final MonteCarloResults results = new MonteCarloResults();
+
+        results.addTrial(trial.isSuccessful(finished), finished, clock.read());
+
+        // States with the same class and name (in one or more state machines) are one state in the results
+        final Map<String, Long> timeInStateNanos = new HashMap<>();
+
+        for (StateMachine stateMachine : clock.getStateMachines()) {
+            for (StateProfiler.StateTiming timing : stateMachine.getProfiler().getStateTimings()) {
+                final Long nanosSoFar = timeInStateNanos.get(timing.getName());
+                final long nanos = timing.getCount() * loopPeriodNanos;
+
+                timeInStateNanos.put(timing.getName(), nanosSoFar == null ? nanos : nanosSoFar + nanos);
+            }
+        }
+
+        for (Map.Entry<String, Long> stateTime : timeInStateNanos.entrySet()) {
+            results.addTimeInState(stateTime.getKey(), stateTime.getValue());
+        }
+
+        return results;
+    }
+
+    /**
+     * java.util.Random gives nearly the same first values for seeds that are close together,
+     * so each trial's seed is spread out with the SplitMix64 mixing function
+     */
+    static long trialSeed(long seed, int trialNumber) {
+        long z = seed + (trialNumber + 1) * 0x9E3779B97F4A7C15L;
+
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+
+    private class TrialsTask extends RecursiveTask<MonteCarloResults> {
+        private static final long serialVersionUID = 1L;
+
+        private final TrialFactory trialFactory;
+
+        private final int fromTrial;
+
+        private final int toTrial;
+
+        TrialsTask(TrialFactory trialFactory, int fromTrial, int toTrial) {
+            this.trialFactory = trialFactory;
+            this.fromTrial = fromTrial;
+            this.toTrial = toTrial;
+        }
+
+        @Override
+        protected MonteCarloResults compute() {
+            if (toTrial - fromTrial <= TRIALS_PER_TASK) {
+                final MonteCarloResults results = new MonteCarloResults();
+
+                for (int trialNumber = fromTrial; trialNumber < toTrial; trialNumber++) {
+                    results.add(runTrial(trialFactory, trialNumber));
+                }
+
+                return results;
+            }
+
+            final int middle = (fromTrial + toTrial) >>> 1;
+
+            final TrialsTask firstHalf = new TrialsTask(trialFactory, fromTrial, middle);
+            firstHalf.fork();
+
+            final MonteCarloResults results = new TrialsTask(trialFactory, middle, toTrial).compute();
+            results.add(firstHalf.join());
+
+            return results;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import java.util.Random;
+
+import lombok.NonNull;
+
+/**
+ * Gaussian noise for fake sensor readings. Give each simulation its own Random (and so its
+ * own SensorNoise), a Random shared between threads makes results depend on scheduling.
+ */
+public final class SensorNoise {
+    private final Random random;
+
+    private final double standardDeviation;
+
+    public SensorNoise(@NonNull Random random, double standardDeviation) {
+        if (standardDeviation < 0) {
+            throw new IllegalArgumentException("Standard deviation can not be negative");
+        }
+
+        this.random = random;
+        this.standardDeviation = standardDeviation;
+    }
+
+    /**
+     * @return the value, plus noise
+     */
+    public double addTo(double value) {
+        return value + random.nextGaussian() * standardDeviation;
+    }
+
+    /**
+     * @return the value, plus noise, rounded and no less than zero (for raw sensor counts)
+     */
+    public int addToCount(int value) {
+        return (int) Math.max(0, Math.round(addTo(value)));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import com.ftc9929.testing.fakes.drive.FakeDcMotorEx;
+import com.ftc9929.testing.fakes.sensors.FakeVoltageSensor;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * A battery with internal resistance, so the voltage a FakeVoltageSensor measures sags
+ * while simulated motors draw current (which in turn slows the motors down).
+ *
+ * Step the battery before the motors, it uses the current the motors drew in their last step.
+ */
+public class SimulatedBattery implements SimulatedDevice {
+    public static final double DEFAULT_OPEN_CIRCUIT_VOLTAGE = 12.0;
+
+    public static final double DEFAULT_INTERNAL_RESISTANCE = 0.1;
+
+    private final FakeVoltageSensor voltageSensor;
+
+    private final double openCircuitVoltage;
+
+    private final double internalResistance;
+
+    private final List<FakeDcMotorEx> motors = new ArrayList<>();
+
+    /**
+     * @param voltageSensor sensor that measures this battery
+     * @param openCircuitVoltage voltage with no load, default 12V
+     * @param internalResistance internal resistance of battery and wiring in ohms, default 0.1
+     */
+    @Builder
+    private SimulatedBattery(@NonNull FakeVoltageSensor voltageSensor,
+                             double openCircuitVoltage,
+                             double internalResistance) {
+        this.voltageSensor = voltageSensor;
+        this.openCircuitVoltage = openCircuitVoltage == 0 ? DEFAULT_OPEN_CIRCUIT_VOLTAGE : openCircuitVoltage;
+        this.internalResistance = internalResistance == 0 ? DEFAULT_INTERNAL_RESISTANCE : internalResistance;
+
+        if (this.openCircuitVoltage < 0 || this.internalResistance < 0) {
+            throw new IllegalArgumentException("Battery voltage and resistance can not be negative");
+        }
+
+        voltageSensor.setVoltage(this.openCircuitVoltage);
+    }
+
+    /**
+     * Simulates the given motor with the given model, powered by this battery
+     */
+    public void addMotor(@NonNull FakeDcMotorEx motor, @NonNull DcMotorModel motorModel) {
+        motor.setMotorModel(motorModel, voltageSensor);
+
+        motors.add(motor);
+    }
+
+    /**
+     * Simulates every FakeDcMotorEx in the hardware map with the given model, powered by
+     * this battery
+     *
+     * @return the motors, which need to be stepped along with this battery
+     */
+    public List<FakeDcMotorEx> addAllMotors(@NonNull HardwareMap hardwareMap, @NonNull DcMotorModel motorModel) {
+        final List<FakeDcMotorEx> addedMotors = new ArrayList<>();
+
+        for (DcMotor motor : hardwareMap.dcMotor) {
+            if (motor instanceof FakeDcMotorEx) {
+                addMotor((FakeDcMotorEx) motor, motorModel);
+                addedMotors.add((FakeDcMotorEx) motor);
+            }
+        }
+
+        return addedMotors;
+    }
+
+    @Override
+    public void step(long deltaNanos) {
+        voltageSensor.setVoltage(Math.max(0, openCircuitVoltage - internalResistance * getTotalCurrentAmps()));
+    }
+
+    public double getTotalCurrentAmps() {
+        double totalCurrent = 0;
+
+        for (FakeDcMotorEx motor : motors) {
+            totalCurrent += motor.getCurrent(CurrentUnit.AMPS);
+        }
+
+        return totalCurrent;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import com.ftc9929.corelib.state.StateMachine;
+import com.ftc9929.testing.fakes.sensors.FakeImu;
+import com.google.common.base.Ticker;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.firstinspires.ftc.robotcore.external.Supplier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import lombok.NonNull;
+
+/**
+ * Simulated time, for running OpMode code against fake hardware as fast as the CPU allows,
+ * deterministically, on one thread.
+ *
+ * It is a Ticker, give it to StateMachines, SequenceOfStates, StallDetectors and anything
+ * else that tells time with a Ticker. Each step() moves time along, then steps every added
+ * SimulatedDevice (in the order they were added), then runs each loop action and added
+ * StateMachine once, the way an OpMode's loop() would.
+ */
+public class SimulationClock extends Ticker {
+    public static final long DEFAULT_LOOP_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final long loopPeriodNanos;
+
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+
+    private final Set<SimulatedDevice> addedDevices = Collections.newSetFromMap(new IdentityHashMap<SimulatedDevice, Boolean>());
+
+    private final List<Runnable> loopActions = new ArrayList<>();
+
+    private final List<StateMachine> stateMachines = new ArrayList<>();
+
+    private long nowNanos;
+
+    private long loopCount;
+
+    public SimulationClock() {
+        this(DEFAULT_LOOP_PERIOD_NANOS);
+    }
+
+    /**
+     * @param loopPeriodNanos the simulated time each loop takes, used by runFor() and runUntil()
+     */
+    public SimulationClock(long loopPeriodNanos) {
+        if (loopPeriodNanos <= 0) {
+            throw new IllegalArgumentException("Loop period must be positive");
+        }
+
+        this.loopPeriodNanos = loopPeriodNanos;
+    }
+
+    @Override
+    public long read() {
+        return nowNanos;
+    }
+
+    /**
+     * Adds a device to be stepped, devices already added are ignored
+     */
+    public void addDevice(@NonNull SimulatedDevice device) {
+        if (addedDevices.add(device)) {
+            devices.add(device);
+        }
+    }
+
+    /**
+     * Adds every SimulatedDevice in the hardware map (for example, FakeDcMotorExs
+     * given a motor model), add a SimulatedBattery before this. FakeImus are given
+     * this clock, to timestamp their readings.
+     */
+    public void addAllDevices(@NonNull HardwareMap hardwareMap) {
+        for (SimulatedDevice device : hardwareMap.getAll(SimulatedDevice.class)) {
+            addDevice(device);
+        }
+
+        for (FakeImu imu : hardwareMap.getAll(FakeImu.class)) {
+            imu.setTicker(this);
+        }
+    }
+
+    /**
+     * Adds something to run once every loop, after the devices are stepped and before the
+     * state machines run (clearing a BulkReadCache, or the body of an OpMode's loop())
+     */
+    public void addLoopAction(@NonNull Runnable loopAction) {
+        loopActions.add(loopAction);
+    }
+
+    /**
+     * Adds a state machine to run once every loop, until it finishes
+     */
+    public void addStateMachine(@NonNull StateMachine stateMachine) {
+        stateMachines.add(stateMachine);
+    }
+
+    /**
+     * Moves time along by the given amount, and runs one loop
+     */
+    public void step(long deltaNanos) {
+        if (deltaNanos < 0) {
+            throw new IllegalArgumentException("Time can only move forwards");
+        }
+
+        nowNanos += deltaNanos;
+
+        for (int i = 0; i < devices.size(); i++) {
+            devices.get(i).step(deltaNanos);
+        }
+
+        for (int i = 0; i < loopActions.size(); i++) {
+            loopActions.get(i).run();
+        }
+
+        for (int i = 0; i < stateMachines.size(); i++) {
+            final StateMachine stateMachine = stateMachines.get(i);
+
+            if (!stateMachine.isFinished()) {
+                stateMachine.doOneStateLoop();
+            }
+        }
+
+        loopCount++;
+    }
+
+    /**
+     * Runs loops, one loop period apart, for the given amount of simulated time
+     */
+    public void runFor(long duration, @NonNull TimeUnit unit) {
+        final long endNanos = nowNanos + unit.toNanos(duration);
+
+        while (nowNanos < endNanos) {
+            step(Math.min(loopPeriodNanos, endNanos - nowNanos));
+        }
+    }
+
+    /**
+     * Runs loops, one loop period apart, until the condition is true (checked before
+     * each loop), or the given amount of simulated time has passed
+     *
+     * @return true if the condition became true, false if time ran out
+     */
+    public boolean runUntil(@NonNull Supplier<Boolean> condition, long timeout, @NonNull TimeUnit unit) {
+        final long endNanos = nowNanos + unit.toNanos(timeout);
+
+        while (!condition.get()) {
+            if (nowNanos >= endNanos) {
+                return false;
+            }
+
+            step(loopPeriodNanos);
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs loops until every added state machine has finished, or the given amount
+     * of simulated time has passed
+     *
+     * @return true if the state machines finished, false if time ran out
+     */
+    public boolean runUntilFinished(long timeout, @NonNull TimeUnit unit) {
+        return runUntil(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                for (int i = 0; i < stateMachines.size(); i++) {
+                    if (!stateMachines.get(i).isFinished()) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+        }, timeout, unit);
+    }
+
+    public List<StateMachine> getStateMachines() {
+        return Collections.unmodifiableList(stateMachines);
+    }
+
+    public long getLoopPeriodNanos() {
+        return loopPeriodNanos;
+    }
+
+    /**
+     * @return the number of loops run so far
+     */
+    public long getLoopCount() {
+        return loopCount;
+    }
+}
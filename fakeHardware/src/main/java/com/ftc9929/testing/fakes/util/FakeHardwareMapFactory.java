@@ -22,6 +22,7 @@
 
 package com.ftc9929.testing.fakes.util;
 
+import com.ftc9929.testing.fakes.FakeLynxModule;
 import com.ftc9929.testing.fakes.drive.FakeCRServo;
 import com.ftc9929.testing.fakes.drive.FakeDcMotorEx;
 import com.ftc9929.testing.fakes.drive.FakeRevBlinkinLedDriver;
@@ -29,30 +30,38 @@ import com.ftc9929.testing.fakes.drive.FakeServo;
 import com.ftc9929.testing.fakes.sensors.FakeAnalogInput;
 import com.ftc9929.testing.fakes.sensors.FakeDigitalChannel;
 import com.ftc9929.testing.fakes.sensors.FakeDistanceSensor;
+import com.ftc9929.testing.fakes.sensors.FakeImu;
 import com.ftc9929.testing.fakes.sensors.FakeLynxI2cColorRangeSensor;
 import com.ftc9929.testing.fakes.sensors.FakeRevTouchSensor;
+import com.ftc9929.testing.fakes.sensors.FakeTouchSensor;
 import com.ftc9929.testing.fakes.sensors.FakeVoltageSensor;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.eventloop.opmode.OpModeManagerNotifier;
 import com.qualcomm.robotcore.hardware.HardwareDevice;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
 
 import lombok.NonNull;
 import lombok.SneakyThrows;
@@ -71,6 +80,175 @@ public class FakeHardwareMapFactory {
     public static final String CR_SERVO_TAG_NAME = "ContinuousRotationServo";
     public static final String ANALOG_INPUT_TAG_NAME = "AnalogInput";
     public static final String LYNX_COLOR_SENSOR_TAG_NAME = "LynxColorSensor";
+    public static final String REV_COLOR_SENSOR_V3_TAG_NAME = "RevColorSensorV3";
+    public static final String REV_SPARK_MINI_TAG_NAME = "RevSPARKMini";
+    public static final String LYNX_EMBEDDED_IMU_TAG_NAME = "LynxEmbeddedIMU";
+    public static final String BHI260_IMU_TAG_NAME = "ControlHubImuBHI260AP";
+    public static final String ADAFRUIT_IMU_TAG_NAME = "AdafruitBNO055IMU";
+    public static final String REV_EXTERNAL_IMU_TAG_NAME = "RevExternalImu";
+    public static final String ANDYMARK_IMU_TAG_NAME = "AndyMarkIMU";
+    public static final String SERVO_FULL_RANGE_TAG_NAME = "ServoFullRange";
+    public static final String ANDYMARK_TOF_TAG_NAME = "AndyMarkTOF";
+    public static final String MR_TOUCH_SENSOR_TAG_NAME = "ModernRoboticsAnalogTouchSensor";
+
+    // The fake added to the HardwareMap for each device tag, as of SDK 11.0 (the xmlTag of
+    // each @DeviceProperties, @MotorType and @ServoType)
+    private static final Map<String, DeviceFromXml> deviceAddersByTag;
+
+    // Devices that may be found on a hub, but that we don't have fakes for, and so are
+    // skipped - any other tag on a hub is an error
+    private static final Set<String> skippedDeviceTags = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "goBILDAPinpoint", "SparkFunOTOS", "KauaiLabsNavxMicro", "OctoQuadFTC", "HuskyLens",
+            "AndyMarkColor", "MaxSonarI2CXL", "QWIIC_LED_STICK", "Led",
+            "ModernRoboticsI2cCompassSensor", "ModernRoboticsI2cRangeSensor", "OpticalDistanceSensor",
+            "Gyro", "Compass", "IrSeeker", "IrSeekerV3", "LightSensor", "Accelerometer", "PulseWidthDevice",
+            "UltrasonicSensor", "AdafruitColorSensor", "ColorSensor", "ServoHub", "Webcam", "Nothing")));
+
+    static {
+        final Map<String, DeviceFromXml> adders = new HashMap<>();
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                final FakeDcMotorEx fakeDcMotorEx = new FakeDcMotorEx();
+
+                hardwareMap.put(name, fakeDcMotorEx);
+                hardwareMap.dcMotor.put(name, fakeDcMotorEx);
+            }
+        }, MOTOR_TAG_NAME,
+                "NeveRest3.7v1Gearmotor", "NeveRest20Gearmotor", "NeveRest40Gearmotor", "NeveRest60Gearmotor",
+                "RevRobotics20HDHexMotor", "RevRobotics40HDHexMotor", "RevRoboticsCoreHexMotor",
+                "RevRoboticsUltraplanetaryHDHexMotor",
+                "goBILDA5201SeriesMotor", "goBILDA5202SeriesMotor",
+                "Matrix12vMotor", "TetrixMotor", "StudicaMaverick");
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                final FakeServo fakeServo = new FakeServo(portNumber);
+
+                hardwareMap.put(name, fakeServo);
+                hardwareMap.servo.put(name, fakeServo);
+            }
+        }, SERVO_TAG_NAME, SERVO_FULL_RANGE_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                final FakeCRServo fakeCrServo = new FakeCRServo();
+
+                hardwareMap.put(name, fakeCrServo);
+                hardwareMap.crservo.put(name, fakeCrServo);
+            }
+        }, CR_SERVO_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                // Used as a DcMotorSimple, which a CRServo is
+                hardwareMap.put(name, new FakeCRServo());
+            }
+        }, REV_SPARK_MINI_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                final FakeDigitalChannel fakeDigitalChannel = new FakeDigitalChannel();
+
+                hardwareMap.put(name, fakeDigitalChannel);
+                hardwareMap.digitalChannel.put(name, fakeDigitalChannel);
+            }
+        }, DIGITAL_DEVICE_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                final FakeRevTouchSensor fakeRevTouchSensor = new FakeRevTouchSensor(portNumber);
+
+                hardwareMap.put(name, fakeRevTouchSensor);
+                hardwareMap.touchSensor.put(name, fakeRevTouchSensor);
+            }
+        }, REV_TOUCH_SENSOR_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                final FakeTouchSensor fakeTouchSensor = new FakeTouchSensor();
+
+                hardwareMap.put(name, fakeTouchSensor);
+                hardwareMap.touchSensor.put(name, fakeTouchSensor);
+            }
+        }, MR_TOUCH_SENSOR_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                final FakeAnalogInput fakeAnalogInput = new FakeAnalogInput();
+
+                hardwareMap.put(name, fakeAnalogInput);
+                hardwareMap.analogInput.put(name, fakeAnalogInput);
+            }
+        }, ANALOG_INPUT_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                // No DeviceMapping for the Rev2mDistanceSensor
+                hardwareMap.put(name, new FakeDistanceSensor());
+            }
+        }, REV_DISTANCE_SENSOR_TAG_NAME, ANDYMARK_TOF_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                // Also stands in for the v3 sensor, as a ColorSensor and DistanceSensor
+                final FakeLynxI2cColorRangeSensor fakeColorSensor = new FakeLynxI2cColorRangeSensor();
+
+                hardwareMap.put(name, fakeColorSensor);
+                hardwareMap.colorSensor.put(name, fakeColorSensor);
+            }
+        }, LYNX_COLOR_SENSOR_TAG_NAME, REV_COLOR_SENSOR_V3_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                hardwareMap.put(name, new FakeRevBlinkinLedDriver(portNumber));
+            }
+        }, REV_BLINKINLED_DRIVER_TAG_NAME);
+
+        addDeviceTags(adders, new DeviceFromXml() {
+            @Override
+            public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+                // No DeviceMapping for the IMU
+                hardwareMap.put(name, new FakeImu());
+            }
+        }, LYNX_EMBEDDED_IMU_TAG_NAME, BHI260_IMU_TAG_NAME, ADAFRUIT_IMU_TAG_NAME,
+                REV_EXTERNAL_IMU_TAG_NAME, ANDYMARK_IMU_TAG_NAME);
+
+        deviceAddersByTag = Collections.unmodifiableMap(adders);
+    }
+
+    private static final DeviceFromXml lynxModuleAdder = new DeviceFromXml() {
+        @Override
+        public void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber) {
+            // The port of a LynxModule is its module address
+            hardwareMap.put(name, new FakeLynxModule(portNumber));
+        }
+    };
+
+    /**
+     * @return the device tags that fake devices are added to the HardwareMap for
+     */
+    static Set<String> getSupportedDeviceTags() {
+        return deviceAddersByTag.keySet();
+    }
+
+    private static void addDeviceTags(Map<String, DeviceFromXml> adders, DeviceFromXml deviceAdder,
+                                      String... tagNames) {
+        for (String tagName : tagNames) {
+            adders.put(tagName, deviceAdder);
+        }
+    }
 
     /**
      * Loads the hardware map with the name &quot;hardwareMapName&quot; from the location used by
@@ -87,13 +265,17 @@ public class FakeHardwareMapFactory {
         return getFakeHardwareMap(new File(path));
     }
 
+    // Parsed hardware map files, by canonical path
+    private static final ConcurrentMap<String, HardwareMapTemplate> templateCache = new ConcurrentHashMap<>();
+
     /**
-     * Loads the hardware map from the given path
+     * Loads the hardware map from the given path.
+     *
+     * Each file is only parsed once (and again if it changes), every call returns a new
+     * HardwareMap with its own fake devices.
      */
     @SneakyThrows
     public static HardwareMap getFakeHardwareMap(@NonNull final File hardwareMapFile) {
-        HardwareMapCreator hwMapCreator = new HardwareMapCreator();
-
         if (!hardwareMapFile.exists()) {
             throw new IOException("Hardware map file '" + hardwareMapFile.getAbsolutePath() + "' does not exist");
         }
@@ -102,15 +284,40 @@ public class FakeHardwareMapFactory {
             throw new IOException("Hardware map file '" + hardwareMapFile.getAbsolutePath() + "' is not readable");
         }
 
-        hwMapCreator.parseUsingDocBuilder(new FileInputStream(hardwareMapFile));
+        return getTemplate(hardwareMapFile).newHardwareMap();
+    }
 
-        return hwMapCreator.hardwareMap;
+    /**
+     * Forgets all parsed hardware map files, only needed when a file is rewritten with the same
+     * size within the file system's timestamp resolution
+     */
+    public static void clearTemplateCache() {
+        templateCache.clear();
     }
 
-    private static class HardwareMapCreator {
-        private Set<String> deviceNames = new HashSet<>();
+    private static HardwareMapTemplate getTemplate(File hardwareMapFile) throws Exception {
+        final String path = hardwareMapFile.getCanonicalPath();
+        final long lastModified = hardwareMapFile.lastModified();
+        final long length = hardwareMapFile.length();
+
+        HardwareMapTemplate template = templateCache.get(path);
+
+        if (template == null || template.lastModified != lastModified || template.length != length) {
+            template = new HardwareMapTemplate(lastModified, length);
+
+            try (InputStream fileInput = new FileInputStream(hardwareMapFile)) {
+                template.parse(fileInput);
+            }
+
+            // Two threads may both parse a changed file, either template will do
+            templateCache.put(path, template);
+        }
 
-        private HardwareMap hardwareMap = new HardwareMap(null, new OpModeManagerNotifier() {
+        return template;
+    }
+
+    private static HardwareMap newEmptyHardwareMap() {
+        return new HardwareMap(null, new OpModeManagerNotifier() {
             @Override
             public OpMode registerListener(Notifications listener) {
                 return null;
@@ -143,205 +350,151 @@ public class FakeHardwareMapFactory {
                 }
             }
         };
+    }
 
-        @SneakyThrows
-        private void parseUsingDocBuilder(InputStream fileInput) {
-            DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder docBuilder = builderFactory.newDocumentBuilder();
-            Document doc = docBuilder.parse(fileInput);
-
-            // FIXME: Create LynxUsbModules by "lookback" from device nodes so that we can
-            //        build fake motor controllers and the like eventually
-            addAllMotors(doc);
-            addAllServos(doc);
+    /**
+     * The devices found in a hardware map file, which are never changed once parsed
+     */
+    private static class HardwareMapTemplate {
+        private final long lastModified;
 
-            addAllDigitalChannels(doc);
-            addAllAnalogInputs(doc);
-            addAllLynxColorSensors(doc);
-            addAllRevTouchSensors(doc);
-            addAllRevBlinkinledDrivers(doc);
+        private final long length;
 
-            addAllDistanceSensors(doc);
+        private final Set<String> deviceNames = new HashSet<>();
 
-            // FIXME: Add implementations for things we don't support, but need:
-            // IMU, LynxColorSensor, RevColorSensorV3, AnalogInput
+        private final List<DeviceDescriptor> devices = new ArrayList<>();
 
-            hardwareMap.voltageSensor.put("Voltage Sensor", new FakeVoltageSensor());
+        HardwareMapTemplate(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
         }
 
-        private void addAllDistanceSensors(Document doc) {
-            NodeList distanceSensors = doc.getElementsByTagName(REV_DISTANCE_SENSOR_TAG_NAME);
+        HardwareMap newHardwareMap() {
+            final HardwareMap hardwareMap = newEmptyHardwareMap();
 
-            addDevices(distanceSensors, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeDistanceSensor fakeDistanceSensor = new FakeDistanceSensor();
+            for (DeviceDescriptor device : devices) {
+                device.deviceAdder.addDeviceToHardwareMap(hardwareMap, device.name, device.portNumber);
+            }
 
-                    hardwareMap.put(name, fakeDistanceSensor);
+            hardwareMap.voltageSensor.put("Voltage Sensor", new FakeVoltageSensor());
 
-                    // No DeviceMapping for the Rev2mDistanceSensor
-                }
-            });
+            return hardwareMap;
         }
 
-        private void addAllDigitalChannels(Document doc) {
-            NodeList digitalChannels = doc.getElementsByTagName(DIGITAL_DEVICE_TAG_NAME);
-
-            addDevices(digitalChannels, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeDigitalChannel fakeDigitalChannel = new FakeDigitalChannel();
-
-                    hardwareMap.put(name, fakeDigitalChannel);
-
-                    hardwareMap.digitalChannel.put(name, fakeDigitalChannel);
-                }
-            });
+        private void parse(InputStream fileInput) throws Exception {
+            SAXParserFactory.newInstance().newSAXParser().parse(fileInput, new HardwareMapHandler());
         }
 
-        private void addAllAnalogInputs(Document doc) {
-            NodeList analogInputs = doc.getElementsByTagName(ANALOG_INPUT_TAG_NAME);
+        /**
+         * Adds devices to the template as their tags are read, keeping track of the hub
+         * (LynxUsbDevice and LynxModule) each one is on
+         */
+        private class HardwareMapHandler extends DefaultHandler {
+            private final Deque<String> hubNames = new ArrayDeque<>();
 
-            addDevices(analogInputs, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeAnalogInput fakeAnalogInput = new FakeAnalogInput();
+            private int lynxModuleDepth;
 
-                    hardwareMap.put(name, fakeAnalogInput);
-                    hardwareMap.analogInput.put(name, fakeAnalogInput);
-                }
-            });
-        }
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (LYNX_USB_DEVICE_TAG_NAME.equals(qName) || LYNX_MODULE_TAG_NAME.equals(qName)) {
+                    final String hubName = attributes.getValue("name");
 
-        private void addAllLynxColorSensors(Document doc) {
-            NodeList lynxColorSensors = doc.getElementsByTagName(LYNX_COLOR_SENSOR_TAG_NAME);
+                    hubNames.push(hubName != null ? hubName.trim() : qName);
 
-            addDevices(lynxColorSensors, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeLynxI2cColorRangeSensor fakeColorSensor = new FakeLynxI2cColorRangeSensor();
+                    if (LYNX_MODULE_TAG_NAME.equals(qName)) {
+                        addLynxModule(attributes);
+                        lynxModuleDepth++;
+                    }
 
-                    hardwareMap.put(name, fakeColorSensor);
-                    hardwareMap.colorSensor.put(name, fakeColorSensor);
+                    return;
                 }
-            });
-        }
-
-        private void addAllRevTouchSensors(Document doc) {
-            NodeList revTouchSensors = doc.getElementsByTagName(REV_TOUCH_SENSOR_TAG_NAME);
-
-            addDevices(revTouchSensors, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeRevTouchSensor fakeRevTouchSensor = new FakeRevTouchSensor(portNumber);
 
-                    hardwareMap.put(name, fakeRevTouchSensor);
+                final DeviceFromXml deviceAdder = deviceAddersByTag.get(qName);
 
-                    hardwareMap.touchSensor.put(name, fakeRevTouchSensor);
+                if (deviceAdder != null) {
+                    addDevice(qName, attributes, deviceAdder);
+                } else if (lynxModuleDepth > 0 && !skippedDeviceTags.contains(qName)) {
+                    // Rather than a missing device, and a confusing failure, later
+                    throw new IllegalArgumentException(String.format(
+                            "Unrecognized device type '%s' on '%s'", qName, getHubName()));
                 }
-            });
-        }
 
-        private void addAllRevBlinkinledDrivers(Document doc) {
-            NodeList blinkinLeds = doc.getElementsByTagName(REV_BLINKINLED_DRIVER_TAG_NAME);
+                // otherwise, the robot, a webcam or a device we don't provide a fake for
+            }
 
-            addDevices(blinkinLeds, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    hardwareMap.put(name, new FakeRevBlinkinLedDriver(portNumber));
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                if (LYNX_USB_DEVICE_TAG_NAME.equals(qName) || LYNX_MODULE_TAG_NAME.equals(qName)) {
+                    hubNames.pop();
                 }
-            });
-        }
 
-        private void addAllMotors(Document doc) {
-            // FIXME: There are other motor tag names:
-            // Bonus points - how do you add these without a lot of copy-and-paste code?
-            //                NeveRest3.7v1Gearmotor
-            //                NeveRest20Gearmotor
-            //                NeveRest40Gearmotor
-            //                NeveRest60Gearmotor
-            //                Matrix12vMotor
-            //                TetrixMotor
-            //                goBILDA5201SeriesMotor name="[...]" port="[...]" />
-            //                goBILDA5202SeriesMotor
-            //                RevRobotics20HDHexMotor name="[...]" port="[...]" />
-            //                RevRobotics40HDHexMotor name="[...]" port="[...]" />
-            //                RevRoboticsCoreHexMotor name="[...]" port="[...]" />
-
-            NodeList dcMotors = doc.getElementsByTagName(MOTOR_TAG_NAME);
-
-            addDevices(dcMotors, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeDcMotorEx fakeDcMotorEx = new FakeDcMotorEx();
-
-                    hardwareMap.put(name, fakeDcMotorEx);
-
-                    hardwareMap.dcMotor.put(name, fakeDcMotorEx);
+                if (LYNX_MODULE_TAG_NAME.equals(qName)) {
+                    lynxModuleDepth--;
                 }
-            });
-        }
-
-        private void addAllServos(Document doc) {
-            // FIXME: We don't yet support ContinuousRotationServo or RevSPARKMini
-            NodeList servos = doc.getElementsByTagName(SERVO_TAG_NAME);
-
-            addDevices(servos, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeServo fakeServo = new FakeServo(portNumber);
+            }
 
-                    hardwareMap.put(name, fakeServo);
+            private void addLynxModule(Attributes attributes) {
+                final String portValue = attributes.getValue("port");
 
-                    hardwareMap.servo.put(name, fakeServo);
+                if (portValue == null) {
+                    throw new IllegalArgumentException(String.format(
+                            "%s '%s' has no port", LYNX_MODULE_TAG_NAME, getHubName()));
                 }
-            });
-
-            NodeList crServos = doc.getElementsByTagName(CR_SERVO_TAG_NAME);
 
-            addDevices(crServos, new DeviceFromXml() {
-                @Override
-                public void addDeviceToHardwareMap(String name, int portNumber) {
-                    final FakeCRServo fakeCrServo = new FakeCRServo();
+                devices.add(new DeviceDescriptor(lynxModuleAdder, getHubName(), Integer.parseInt(portValue.trim())));
+            }
 
-                    hardwareMap.put(name, fakeCrServo);
+            private void addDevice(String tagName, Attributes attributes, DeviceFromXml deviceAdder) {
+                String nameValue = attributes.getValue("name");
 
-                    hardwareMap.crservo.put(name, fakeCrServo);
+                if (nameValue == null) {
+                    throw new IllegalArgumentException(String.format(
+                            "Device of type '%s' on '%s' has no name", tagName, getHubName()));
                 }
-            });
-        }
 
-        private void addDevices(NodeList deviceNodeList, DeviceFromXml deviceAdder) {
-            for (int i = 0; i < deviceNodeList.getLength(); i++) {
-                Node deviceNode = deviceNodeList.item(i);
-                NamedNodeMap attributesByName = deviceNode.getAttributes();
-
-                Node nameNode = attributesByName.getNamedItem("name");
-                String nameValue = nameNode.getNodeValue();
-
-                if (nameValue != null) {
-                    nameValue = nameValue.trim();
-                }
+                nameValue = nameValue.trim();
 
                 if (deviceNames.contains(nameValue)) {
                     // This isn't exactly real hardware map behavior, but it prevents
                     // problems at runtime if you are using
                     throw new IllegalArgumentException(String.format(
-                            "Non unique device name '%s' for device type '%s'",
-                            nameValue, deviceNode.getNodeName()));
+                            "Non unique device name '%s' for device type '%s' on '%s'",
+                            nameValue, tagName, getHubName()));
                 }
 
                 deviceNames.add(nameValue);
 
-                Node portNode = attributesByName.getNamedItem("port");
-                int portValue = Integer.valueOf(portNode.getNodeValue());
+                final String portValue = attributes.getValue("port");
+
+                if (portValue == null) {
+                    throw new IllegalArgumentException(String.format(
+                            "Device '%s' of type '%s' on '%s' has no port", nameValue, tagName, getHubName()));
+                }
+
+                devices.add(new DeviceDescriptor(deviceAdder, nameValue, Integer.parseInt(portValue.trim())));
+            }
 
-                deviceAdder.addDeviceToHardwareMap(nameValue, portValue);
+            private String getHubName() {
+                return hubNames.isEmpty() ? ROBOT_TAG_NAME : hubNames.peek();
             }
         }
     }
 
+    private static class DeviceDescriptor {
+        private final DeviceFromXml deviceAdder;
+
+        private final String name;
+
+        private final int portNumber;
+
+        DeviceDescriptor(DeviceFromXml deviceAdder, String name, int portNumber) {
+            this.deviceAdder = deviceAdder;
+            this.name = name;
+            this.portNumber = portNumber;
+        }
+    }
+
     interface DeviceFromXml {
-        void addDeviceToHardwareMap(String name, int portNumber);
+        void addDeviceToHardwareMap(HardwareMap hardwareMap, String name, int portNumber);
     }
 }
@@ -0,0 +1,214 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.drive;
+
+import com.ftc9929.testing.fakes.sensors.FakeVoltageSensor;
+import com.ftc9929.testing.fakes.sim.DcMotorModel;
+import com.ftc9929.testing.fakes.sim.SimulatedBattery;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FakeDcMotorExTest {
+    private static final long STEP_NANOS = 1_000_000;
+
+    // 312 RPM goBILDA Yellow Jacket
+    private static final DcMotorModel MOTOR_MODEL = DcMotorModel.builder().gearRatio(19.2).build();
+
+    @Test
+    public void notSimulatedByDefault() {
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+        motor.setPower(1);
+        motor.step(STEP_NANOS);
+
+        Assert.assertEquals(0, motor.getCurrentPosition());
+        Assert.assertEquals(0, motor.getCurrent(CurrentUnit.AMPS), 0);
+    }
+
+    @Test
+    public void reachesFreeSpeed() {
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+        motor.setMotorModel(MOTOR_MODEL, null);
+        motor.setPower(1);
+
+        motor.step(STEP_NANOS);
+
+        // Nearly stalled when starting
+        Assert.assertEquals(9.2, motor.getCurrent(CurrentUnit.AMPS), 1);
+
+        stepFor(motor, 2);
+
+        // 6000 RPM * 28 ticks
+        Assert.assertEquals(2800, motor.getVelocity(), 1);
+        Assert.assertEquals(312.5 / 60 * 360, motor.getVelocity(AngleUnit.DEGREES), 1);
+        Assert.assertEquals(0.25, motor.getCurrent(CurrentUnit.AMPS), 0.01);
+        Assert.assertTrue(motor.getCurrentPosition() > 2800);
+
+        // Braking stops it quickly, with nothing attached
+        motor.setPower(0);
+        stepFor(motor, 1);
+
+        Assert.assertEquals(0, motor.getVelocity(), 0);
+    }
+
+    @Test
+    public void reversedAndReset() {
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+        motor.setMotorModel(MOTOR_MODEL, null);
+        motor.setDirection(DcMotorSimple.Direction.REVERSE);
+        motor.setPower(0.5);
+
+        stepFor(motor, 1);
+
+        Assert.assertTrue(motor.getCurrentPosition() > 0);
+        Assert.assertTrue(motor.getVelocity() > 0);
+        Assert.assertTrue(motor.getSimulation().getTicks() < 0);
+
+        motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+
+        Assert.assertEquals(0, motor.getCurrentPosition());
+    }
+
+    @Test
+    public void reversedAfterReset() {
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+        motor.setMotorModel(MOTOR_MODEL, null);
+        motor.setPower(0.5);
+
+        stepFor(motor, 1);
+
+        motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        motor.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+
+        stepFor(motor, 1);
+
+        final int forwardPosition = motor.getCurrentPosition();
+        Assert.assertTrue(forwardPosition > 0);
+
+        // Only the sign changes, the reset still counts
+        motor.setDirection(DcMotorSimple.Direction.REVERSE);
+        Assert.assertEquals(-forwardPosition, motor.getCurrentPosition());
+
+        motor.setCurrentPosition(100);
+        motor.setDirection(DcMotorSimple.Direction.FORWARD);
+        Assert.assertEquals(-100, motor.getCurrentPosition());
+    }
+
+    @Test
+    public void stallsUnderLoad() {
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+
+        // More than the 0.124 N m * 19.2 the gearbox can give
+        motor.setMotorModel(MOTOR_MODEL.toBuilder().loadTorqueNm(2.5).build(), null);
+        motor.setPower(1);
+
+        stepFor(motor, 1);
+
+        Assert.assertEquals(0, motor.getCurrentPosition());
+        Assert.assertEquals(0, motor.getVelocity(), 0);
+        Assert.assertEquals(9.2, motor.getCurrent(CurrentUnit.AMPS), 0.01);
+
+        motor.setMotorModel(MOTOR_MODEL.toBuilder().loadTorqueNm(1).build(), null);
+        stepFor(motor, 2);
+
+        // Turns, but slower than free speed
+        Assert.assertTrue(motor.getVelocity() > 0);
+        Assert.assertTrue(motor.getVelocity() < 2800 * 0.7);
+    }
+
+    @Test
+    public void runToPosition() {
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+        motor.setMotorModel(DcMotorModel.builder().gearRatio(19.2).loadInertia(0.005).build(), null);
+
+        motor.setTargetPosition(1000);
+        motor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        motor.setPower(0.5);
+
+        Assert.assertTrue(motor.isBusy());
+
+        int steps = 0;
+
+        while (motor.isBusy()) {
+            motor.step(STEP_NANOS);
+            steps++;
+
+            Assert.assertTrue("Never got there", steps < 5000);
+        }
+
+        // At half speed, 1000 ticks takes at least 1000 / 1400 seconds
+        Assert.assertTrue(steps > 700);
+        Assert.assertEquals(1000, motor.getCurrentPosition(), motor.getTargetPositionTolerance());
+
+        // Holds position
+        stepFor(motor, 1);
+        Assert.assertEquals(1000, motor.getCurrentPosition(), motor.getTargetPositionTolerance());
+    }
+
+    @Test
+    public void runUsingEncoderFollowsVelocity() {
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+        motor.setMotorModel(MOTOR_MODEL, null);
+        motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+
+        motor.setVelocity(1000);
+        stepFor(motor, 1);
+
+        Assert.assertEquals(1000, motor.getVelocity(), 20);
+    }
+
+    @Test
+    public void batterySags() {
+        FakeVoltageSensor voltageSensor = new FakeVoltageSensor();
+        SimulatedBattery battery = SimulatedBattery.builder().voltageSensor(voltageSensor)
+                .openCircuitVoltage(13).internalResistance(0.2).build();
+
+        FakeDcMotorEx motor = new FakeDcMotorEx();
+        battery.addMotor(motor, DcMotorModel.builder().gearRatio(19.2).loadInertia(0.01).build());
+        motor.setPower(1);
+
+        motor.step(STEP_NANOS);
+        battery.step(STEP_NANOS);
+
+        Assert.assertTrue(voltageSensor.getVoltage() < 13 - 0.2 * 8);
+
+        for (int i = 0; i < 3000; i++) {
+            battery.step(STEP_NANOS);
+            motor.step(STEP_NANOS);
+        }
+
+        Assert.assertEquals(13 - 0.2 * 0.25, voltageSensor.getVoltage(), 0.01);
+
+        // Faster than at 12V
+        Assert.assertTrue(motor.getVelocity() > 2800);
+    }
+
+    private static void stepFor(FakeDcMotorEx motor, double seconds) {
+        for (int i = 0; i < seconds * 1E9 / STEP_NANOS; i++) {
+            motor.step(STEP_NANOS);
+        }
+    }
+}
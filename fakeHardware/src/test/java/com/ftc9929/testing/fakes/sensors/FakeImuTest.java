@@ -0,0 +1,99 @@
+/*
+ Copyright (c) 2025 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sensors;
+
+import static junit.framework.Assert.assertEquals;
+
+import com.ftc9929.testing.fakes.sim.SimulationClock;
+import com.ftc9929.testing.fakes.util.FakeHardwareMapFactory;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class FakeImuTest {
+    @Test
+    public void simple() {
+        HardwareMap fakeHwMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+
+        IMU imu = fakeHwMap.get(IMU.class, "imu");
+
+        ((FakeImu) imu).setOrientation(AngleUnit.DEGREES, 90, 5, -3);
+
+        YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+        assertEquals(90, angles.getYaw(AngleUnit.DEGREES), 0.001D);
+        assertEquals(5, angles.getPitch(AngleUnit.DEGREES), 0.001D);
+        assertEquals(-3, angles.getRoll(AngleUnit.DEGREES), 0.001D);
+
+        Orientation orientation = imu.getRobotOrientation(AxesReference.INTRINSIC, AxesOrder.ZXY, AngleUnit.DEGREES);
+        assertEquals(90, orientation.firstAngle, 0.01D);
+        assertEquals(5, orientation.secondAngle, 0.01D);
+        assertEquals(-3, orientation.thirdAngle, 0.01D);
+
+        orientation = imu.getRobotOrientation(AxesReference.EXTRINSIC, AxesOrder.YXZ, AngleUnit.DEGREES);
+        assertEquals(-3, orientation.firstAngle, 0.01D);
+        assertEquals(5, orientation.secondAngle, 0.01D);
+        assertEquals(90, orientation.thirdAngle, 0.01D);
+
+        Quaternion quaternion = imu.getRobotOrientationAsQuaternion();
+        assertEquals(1, quaternion.magnitude(), 0.001D);
+
+        ((FakeImu) imu).setYawRate(AngleUnit.DEGREES, 45);
+        assertEquals(45, imu.getRobotAngularVelocity(AngleUnit.DEGREES).zRotationRate, 0.001D);
+    }
+
+    @Test
+    public void readingsTimestampedBySimulationClock() {
+        HardwareMap fakeHwMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+        SimulationClock clock = new SimulationClock();
+        clock.addAllDevices(fakeHwMap);
+
+        clock.step(TimeUnit.SECONDS.toNanos(3));
+
+        IMU imu = fakeHwMap.get(IMU.class, "imu");
+
+        assertEquals(clock.read(), imu.getRobotYawPitchRollAngles().getAcquisitionTime());
+        assertEquals(clock.read(), imu.getRobotAngularVelocity(AngleUnit.DEGREES).acquisitionTime);
+        assertEquals(clock.read(), imu.getRobotOrientationAsQuaternion().acquisitionTime);
+    }
+
+    @Test
+    public void resetYaw() {
+        FakeImu imu = new FakeImu();
+
+        imu.setOrientation(AngleUnit.DEGREES, 170, 0, 0);
+        imu.resetYaw();
+        assertEquals(0, imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES), 0.001D);
+
+        // Wraps around like the real IMU
+        imu.setOrientation(AngleUnit.DEGREES, -170, 0, 0);
+        assertEquals(20, imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES), 0.001D);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import com.ftc9929.corelib.state.SequenceOfStates;
+import com.ftc9929.corelib.state.State;
+import com.ftc9929.corelib.state.StateMachine;
+import com.ftc9929.corelib.util.LatencyHistogram;
+import com.ftc9929.testing.fakes.FakeTelemetry;
+import com.ftc9929.testing.fakes.drive.FakeDcMotorEx;
+import com.ftc9929.testing.fakes.sensors.FakeVoltageSensor;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.firstinspires.ftc.robotcore.external.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class MonteCarloRunnerTest {
+    private static final int TARGET_POSITION = 2000;
+
+    @Test
+    public void runsTrials() {
+        MonteCarloResults results = runner(4).run(new DriveTrialFactory());
+
+        Assert.assertEquals(40, results.getTrials());
+        Assert.assertEquals(40, results.getFinished());
+        Assert.assertEquals(40, results.getSuccesses());
+        Assert.assertEquals(1.0, results.getSuccessRate(), 0.0);
+
+        Assert.assertEquals(40, results.getCompletionNanos().getCount());
+
+        // Motors and batteries vary between trials, so the time taken does too
+        Assert.assertTrue(results.getCompletionNanos().getMax() > results.getCompletionNanos().getMin());
+        Assert.assertTrue(results.getCompletionTime(50, TimeUnit.MILLISECONDS) > 1500);
+        Assert.assertTrue(results.getTimeInStateNanos().size() > 0);
+    }
+
+    @Test
+    public void sameResultsWithAnyParallelism() {
+        MonteCarloResults oneThread = runner(1).run(new DriveTrialFactory());
+        MonteCarloResults manyThreads = runner(4).run(new DriveTrialFactory());
+
+        Assert.assertEquals(oneThread.getSuccesses(), manyThreads.getSuccesses());
+        Assert.assertEquals(oneThread.getCompletionNanos().getSum(), manyThreads.getCompletionNanos().getSum());
+        Assert.assertEquals(oneThread.getCompletionNanos().getMax(), manyThreads.getCompletionNanos().getMax());
+        Assert.assertEquals(oneThread.report(), manyThreads.report());
+    }
+
+    @Test
+    public void countsTrialsThatRunOutOfTime() {
+        MonteCarloResults results = MonteCarloRunner.builder()
+                .hardwareMapName("sample_hardware_map.xml")
+                .trials(3)
+                .timeLimitSeconds(1)
+                .build().run(new DriveTrialFactory());
+
+        Assert.assertEquals(3, results.getTrials());
+        Assert.assertEquals(0, results.getFinished());
+        Assert.assertEquals(0, results.getSuccesses());
+        Assert.assertEquals(0, results.getCompletionNanos().getCount());
+    }
+
+    @Test
+    public void trialsGetUnrelatedRandoms() {
+        final double[] firstDraws = new double[100];
+
+        MonteCarloRunner runner = MonteCarloRunner.builder()
+                .hardwareMapName("sample_hardware_map.xml")
+                .trials(firstDraws.length)
+                .seed(9929)
+                .parallelism(1)
+                .build();
+
+        for (int trialNumber = 0; trialNumber < firstDraws.length; trialNumber++) {
+            final int thisTrial = trialNumber;
+
+            runner.runTrial(new MonteCarloRunner.TrialFactory() {
+                @Override
+                public MonteCarloRunner.Trial newTrial() {
+                    return new MonteCarloRunner.Trial() {
+                        @Override
+                        public void setUp(HardwareMap hardwareMap, SimulationClock clock, Random random) {
+                            firstDraws[thisTrial] = random.nextDouble();
+                        }
+
+                        @Override
+                        public boolean isSuccessful(boolean finished) {
+                            return true;
+                        }
+                    };
+                }
+            }, trialNumber);
+        }
+
+        // Seeds from consecutive trial numbers, passed straight to java.util.Random,
+        // would put every first draw in the same tenth
+        boolean[] tenthsUsed = new boolean[10];
+        int tenthsUsedCount = 0;
+
+        for (double draw : firstDraws) {
+            int tenth = (int) (draw * 10);
+
+            if (!tenthsUsed[tenth]) {
+                tenthsUsed[tenth] = true;
+                tenthsUsedCount++;
+            }
+        }
+
+        Assert.assertEquals(10, tenthsUsedCount);
+    }
+
+    @Test
+    public void sumsTimeInStatesWithTheSameName() {
+        MonteCarloResults results = MonteCarloRunner.builder()
+                .hardwareMapName("sample_hardware_map.xml")
+                .trials(3)
+                .build().run(new MonteCarloRunner.TrialFactory() {
+                    @Override
+                    public MonteCarloRunner.Trial newTrial() {
+                        return new MonteCarloRunner.Trial() {
+                            @Override
+                            public void setUp(HardwareMap hardwareMap, SimulationClock clock, Random random) {
+                                for (int i = 0; i < 2; i++) {
+                                    FakeTelemetry telemetry = new FakeTelemetry();
+
+                                    SequenceOfStates sequence = new SequenceOfStates(clock, telemetry);
+                                    sequence.addWaitStep("wait", 1, TimeUnit.SECONDS);
+
+                                    StateMachine stateMachine = new StateMachine(telemetry, clock);
+                                    stateMachine.addSequence(sequence);
+
+                                    clock.addStateMachine(stateMachine);
+                                }
+                            }
+
+                            @Override
+                            public boolean isSuccessful(boolean finished) {
+                                return finished;
+                            }
+                        };
+                    }
+                });
+
+        // One sample per trial, of the time spent in both state machines' "wait"
+        LatencyHistogram waitNanos = results.getTimeInStateNanos().get("StopwatchDelayState - 'wait'");
+
+        Assert.assertEquals(3, waitNanos.getCount());
+        Assert.assertTrue(waitNanos.getMin() >= TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsHardwareMap() {
+        MonteCarloRunner.builder().build();
+    }
+
+    private static MonteCarloRunner runner(int parallelism) {
+        return MonteCarloRunner.builder()
+                .hardwareMapName("sample_hardware_map.xml")
+                .trials(40)
+                .timeLimitSeconds(10)
+                .seed(9929)
+                .parallelism(parallelism)
+                .build();
+    }
+
+    static class DriveTrialFactory implements MonteCarloRunner.TrialFactory {
+        @Override
+        public MonteCarloRunner.Trial newTrial() {
+            return new DriveTrial();
+        }
+    }
+
+    static class DriveTrial implements MonteCarloRunner.Trial {
+        private FakeDcMotorEx motor;
+
+        @Override
+        public void setUp(HardwareMap hardwareMap, SimulationClock clock, Random random) {
+            FakeVoltageSensor voltageSensor = hardwareMap.getAll(FakeVoltageSensor.class).get(0);
+
+            SimulatedBattery battery = SimulatedBattery.builder()
+                    .voltageSensor(voltageSensor)
+                    .openCircuitVoltage(12.5 + random.nextGaussian() * 0.5)
+                    .build();
+            battery.addAllMotors(hardwareMap, DcMotorModel.builder().gearRatio(19.2).loadInertia(0.01).build()
+                    .withVariation(random, 0.05));
+
+            clock.addDevice(battery);
+            clock.addAllDevices(hardwareMap);
+
+            motor = hardwareMap.getAll(FakeDcMotorEx.class).get(0);
+
+            FakeTelemetry telemetry = new FakeTelemetry();
+
+            SequenceOfStates sequence = new SequenceOfStates(clock, telemetry);
+            sequence.addWaitStep("start delay", 1, TimeUnit.SECONDS);
+            sequence.addRunnableStep("drive", new Runnable() {
+                @Override
+                public void run() {
+                    motor.setTargetPosition(TARGET_POSITION);
+                    motor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+                    motor.setPower(0.8);
+                }
+            });
+            sequence.addRepeatingStep("wait for drive", new Function<State, Boolean>() {
+                @Override
+                public Boolean apply(State state) {
+                    return motor.isBusy();
+                }
+            });
+
+            StateMachine stateMachine = new StateMachine(telemetry, clock);
+            stateMachine.addSequence(sequence);
+
+            clock.addStateMachine(stateMachine);
+        }
+
+        @Override
+        public boolean isSuccessful(boolean finished) {
+            return finished && Math.abs(motor.getCurrentPosition() - TARGET_POSITION) <= motor.getTargetPositionTolerance();
+        }
+    }
+}
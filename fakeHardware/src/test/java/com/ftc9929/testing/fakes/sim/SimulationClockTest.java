@@ -0,0 +1,131 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.testing.fakes.sim;
+
+import com.ftc9929.corelib.state.SequenceOfStates;
+import com.ftc9929.corelib.state.State;
+import com.ftc9929.corelib.state.StateMachine;
+import com.ftc9929.testing.fakes.FakeTelemetry;
+import com.ftc9929.testing.fakes.drive.FakeDcMotorEx;
+import com.ftc9929.testing.fakes.sensors.FakeVoltageSensor;
+import com.ftc9929.testing.fakes.util.FakeHardwareMapFactory;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.firstinspires.ftc.robotcore.external.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class SimulationClockTest {
+    @Test
+    public void runsAutonomous() {
+        Autonomous first = new Autonomous();
+        Assert.assertTrue(first.clock.runUntilFinished(30, TimeUnit.SECONDS));
+
+        // 1 second wait, driving to position, then a 25 second wait
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(first.clock.read());
+        Assert.assertTrue(elapsedMillis > 26_000);
+        Assert.assertTrue(elapsedMillis < 28_000);
+        Assert.assertEquals(2000, first.motor.getCurrentPosition(), first.motor.getTargetPositionTolerance());
+
+        // Deterministic
+        Autonomous second = new Autonomous();
+        second.clock.runUntilFinished(30, TimeUnit.SECONDS);
+
+        Assert.assertEquals(first.clock.read(), second.clock.read());
+        Assert.assertEquals(first.clock.getLoopCount(), second.clock.getLoopCount());
+        Assert.assertEquals(first.motor.getCurrentPosition(), second.motor.getCurrentPosition());
+    }
+
+    @Test
+    public void runFor() {
+        SimulationClock clock = new SimulationClock(TimeUnit.MILLISECONDS.toNanos(20));
+        CountingDevice device = new CountingDevice();
+        clock.addDevice(device);
+        clock.addDevice(device);
+
+        clock.runFor(1, TimeUnit.SECONDS);
+
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(1), clock.read());
+        Assert.assertEquals(50, clock.getLoopCount());
+        Assert.assertEquals(50, device.steps);
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(1), device.totalNanos);
+    }
+
+    static class Autonomous {
+        final SimulationClock clock = new SimulationClock();
+
+        final FakeDcMotorEx motor;
+
+        Autonomous() {
+            HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+            FakeVoltageSensor voltageSensor = (FakeVoltageSensor) hardwareMap.voltageSensor.iterator().next();
+
+            SimulatedBattery battery = SimulatedBattery.builder().voltageSensor(voltageSensor).build();
+            battery.addAllMotors(hardwareMap, DcMotorModel.builder().gearRatio(19.2).loadInertia(0.01).build());
+
+            clock.addDevice(battery);
+            clock.addAllDevices(hardwareMap);
+
+            motor = hardwareMap.getAll(FakeDcMotorEx.class).get(0);
+
+            FakeTelemetry telemetry = new FakeTelemetry();
+
+            SequenceOfStates sequence = new SequenceOfStates(clock, telemetry);
+            sequence.addWaitStep("start delay", 1, TimeUnit.SECONDS);
+            sequence.addRunnableStep("drive", new Runnable() {
+                @Override
+                public void run() {
+                    motor.setTargetPosition(2000);
+                    motor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+                    motor.setPower(0.8);
+                }
+            });
+            sequence.addRepeatingStep("wait for drive", new Function<State, Boolean>() {
+                @Override
+                public Boolean apply(State state) {
+                    return motor.isBusy();
+                }
+            });
+            sequence.addWaitStep("park", 25, TimeUnit.SECONDS);
+
+            StateMachine stateMachine = new StateMachine(telemetry, clock);
+            stateMachine.addSequence(sequence);
+
+            clock.addStateMachine(stateMachine);
+        }
+    }
+
+    static class CountingDevice implements SimulatedDevice {
+        int steps;
+
+        long totalNanos;
+
+        @Override
+        public void step(long deltaNanos) {
+            steps++;
+            totalNanos += deltaNanos;
+        }
+    }
+}
@@ -22,14 +22,24 @@
 
 package com.ftc9929.testing.fakes.util;
 
+import com.ftc9929.corelib.hardware.BulkReadCache;
+import com.ftc9929.testing.fakes.FakeLynxModule;
+import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.hardware.rev.RevTouchSensor;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.DigitalChannel;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
 import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.IMU;
+import com.qualcomm.robotcore.hardware.Servo;
 
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.function.Supplier;
 
@@ -39,13 +49,185 @@ public class FakeHardwareMapTest {
 
        HardwareMap fakeHwMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
         List<DcMotorEx> motors = fakeHwMap.getAll(DcMotorEx.class);
-        assertDevicesPresent(fakeHwMap, DcMotorEx.class, 1);
+        assertDevicesPresent(fakeHwMap, DcMotorEx.class, 11); // every motor type
+        assertDevicesPresent(fakeHwMap, DcMotorSimple.class, 13); // and a CRServo, and a SPARK Mini
+        assertDevicesPresent(fakeHwMap, IMU.class, 1);
         assertDevicesPresent(fakeHwMap, RevTouchSensor.class, 1);
         assertDevicesPresent(fakeHwMap, DigitalChannel.class, 1); // because our fake TS is a DC
 
+        Assertions.assertEquals(2, fakeHwMap.colorSensor.size()); // including the v3 sensor
         Assertions.assertEquals(1, fakeHwMap.voltageSensor.size());
     }
 
+    @Test
+    public void eachHardwareMapHasItsOwnDevices() {
+        HardwareMap first = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+        HardwareMap second = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+
+        Assertions.assertNotSame(first, second);
+        Assertions.assertNotSame(first.get(DcMotorEx.class, "motor1"), second.get(DcMotorEx.class, "motor1"));
+        Assertions.assertNotSame(first.voltageSensor.iterator().next(), second.voltageSensor.iterator().next());
+
+        first.get(DigitalChannel.class, "TestDigitalDevice").setState(false);
+        Assertions.assertTrue(second.get(DigitalChannel.class, "TestDigitalDevice").getState());
+    }
+
+    @Test
+    public void reloadsChangedHardwareMapFile() throws Exception {
+        File hardwareMapFile = File.createTempFile("hardware_map", ".xml");
+        hardwareMapFile.deleteOnExit();
+
+        writeHardwareMap(hardwareMapFile, "<DigitalDevice name=\"first\" port=\"1\" />");
+        assertDevicesPresent(FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile), DigitalChannel.class, 1);
+
+        writeHardwareMap(hardwareMapFile, "<DigitalDevice name=\"first\" port=\"1\" />"
+                + "<DigitalDevice name=\"second\" port=\"3\" />");
+        assertDevicesPresent(FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile), DigitalChannel.class, 2);
+    }
+
+    @Test
+    public void loadsDevicesFromEveryHub() throws Exception {
+        File hardwareMapFile = File.createTempFile("hardware_map", ".xml");
+        hardwareMapFile.deleteOnExit();
+
+        writeHardwareMap(hardwareMapFile, "<LynxUsbDevice name=\"Control Hub Portal\">"
+                + "<LynxModule name=\"Control Hub\" port=\"173\">"
+                + "<goBILDA5202SeriesMotor name=\"leftDrive\" port=\"0\" />"
+                + "<ControlHubImuBHI260AP name=\"imu\" port=\"0\" bus=\"0\" />"
+                + "</LynxModule>"
+                + "<LynxModule name=\"Expansion Hub 2\" port=\"2\">"
+                + "<goBILDA5202SeriesMotor name=\"rightDrive\" port=\"0\" />"
+                + "<Webcam name=\"Webcam 1\" serialNumber=\"ABC123\" />"
+                + "</LynxModule>"
+                + "</LynxUsbDevice>");
+
+        HardwareMap fakeHwMap = FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile);
+
+        Assertions.assertNotNull(fakeHwMap.get(DcMotorEx.class, "leftDrive"));
+        Assertions.assertNotNull(fakeHwMap.get(DcMotorEx.class, "rightDrive"));
+        Assertions.assertNotNull(fakeHwMap.get(IMU.class, "imu"));
+        assertDevicesPresent(fakeHwMap, DcMotorEx.class, 2);
+    }
+
+    @Test
+    public void rejectsDuplicateNames() throws Exception {
+        File hardwareMapFile = File.createTempFile("hardware_map", ".xml");
+        hardwareMapFile.deleteOnExit();
+
+        writeHardwareMap(hardwareMapFile, "<LynxUsbDevice name=\"Control Hub Portal\">"
+                + "<LynxModule name=\"Control Hub\" port=\"173\">"
+                + "<Motor name=\"arm\" port=\"0\" />"
+                + "</LynxModule>"
+                + "<LynxModule name=\"Expansion Hub 2\" port=\"2\">"
+                + "<Servo name=\"arm\" port=\"0\" />"
+                + "</LynxModule>"
+                + "</LynxUsbDevice>");
+
+        try {
+            FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile);
+            Assertions.fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            Assertions.assertTrue(expected.getMessage().contains("Expansion Hub 2"));
+        }
+    }
+
+    @Test
+    public void loadsEverySupportedTag() throws Exception {
+        File hardwareMapFile = File.createTempFile("hardware_map", ".xml");
+        hardwareMapFile.deleteOnExit();
+
+        StringBuilder devices = new StringBuilder("<LynxUsbDevice name=\"Control Hub Portal\">"
+                + "<LynxModule name=\"Control Hub\" port=\"173\">");
+
+        for (String tag : FakeHardwareMapFactory.getSupportedDeviceTags()) {
+            devices.append(String.format("<%s name=\"%s device\" port=\"0\" bus=\"0\" />", tag, tag));
+        }
+
+        // Devices we don't have fakes for
+        devices.append("<goBILDAPinpoint name=\"pinpoint\" port=\"0\" bus=\"1\" />")
+                .append("<SparkFunOTOS name=\"otos\" port=\"0\" bus=\"2\" />")
+                .append("<KauaiLabsNavxMicro name=\"navx\" port=\"0\" bus=\"3\" />")
+                .append("</LynxModule></LynxUsbDevice>");
+
+        writeHardwareMap(hardwareMapFile, devices.toString());
+
+        HardwareMap fakeHwMap = FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile);
+
+        for (String tag : FakeHardwareMapFactory.getSupportedDeviceTags()) {
+            Assertions.assertNotNull(fakeHwMap.tryGet(HardwareDevice.class, tag + " device"), tag);
+        }
+
+        Assertions.assertNotNull(fakeHwMap.get(DcMotorEx.class, "RevRoboticsUltraplanetaryHDHexMotor device"));
+        Assertions.assertNotNull(fakeHwMap.get(IMU.class, "RevExternalImu device"));
+        Assertions.assertNotNull(fakeHwMap.get(IMU.class, "AndyMarkIMU device"));
+        Assertions.assertNotNull(fakeHwMap.get(Servo.class, "ServoFullRange device"));
+        Assertions.assertNull(fakeHwMap.tryGet(HardwareDevice.class, "pinpoint"));
+    }
+
+    @Test
+    public void unrecognizedDeviceOnHub() throws Exception {
+        File hardwareMapFile = File.createTempFile("hardware_map", ".xml");
+        hardwareMapFile.deleteOnExit();
+
+        writeHardwareMap(hardwareMapFile, "<LynxUsbDevice name=\"Control Hub Portal\">"
+                + "<LynxModule name=\"Control Hub\" port=\"173\">"
+                + "<RevRoboticsHDHexMotor name=\"arm\" port=\"0\" />"
+                + "</LynxModule>"
+                + "</LynxUsbDevice>");
+
+        try {
+            FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile);
+            Assertions.fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            Assertions.assertTrue(expected.getMessage().contains("RevRoboticsHDHexMotor"));
+            Assertions.assertTrue(expected.getMessage().contains("Control Hub"));
+        }
+    }
+
+    @Test
+    public void hubsWorkWithBulkReadCache() throws Exception {
+        File hardwareMapFile = File.createTempFile("hardware_map", ".xml");
+        hardwareMapFile.deleteOnExit();
+
+        writeHardwareMap(hardwareMapFile, "<LynxUsbDevice name=\"Control Hub Portal\">"
+                + "<LynxModule name=\"Control Hub\" port=\"173\">"
+                + "<goBILDA5202SeriesMotor name=\"leftDrive\" port=\"0\" />"
+                + "</LynxModule>"
+                + "<LynxModule name=\"Expansion Hub 2\" port=\"2\">"
+                + "<goBILDA5202SeriesMotor name=\"rightDrive\" port=\"0\" />"
+                + "</LynxModule>"
+                + "</LynxUsbDevice>");
+
+        HardwareMap fakeHwMap = FakeHardwareMapFactory.getFakeHardwareMap(hardwareMapFile);
+
+        assertDevicesPresent(fakeHwMap, LynxModule.class, 2);
+        Assertions.assertEquals(2, fakeHwMap.get(LynxModule.class, "Expansion Hub 2").getModuleAddress());
+
+        FakeLynxModule controlHub = (FakeLynxModule) fakeHwMap.get(LynxModule.class, "Control Hub");
+        Assertions.assertEquals(173, controlHub.getModuleAddress());
+
+        BulkReadCache bulkReadCache = new BulkReadCache(fakeHwMap);
+        bulkReadCache.clearCache();
+
+        for (LynxModule hub : fakeHwMap.getAll(LynxModule.class)) {
+            Assertions.assertEquals(LynxModule.BulkCachingMode.MANUAL, hub.getBulkCachingMode());
+            Assertions.assertEquals(1, ((FakeLynxModule) hub).getBulkCacheClears());
+        }
+
+        controlHub.setInputVolts(12.5);
+        Assertions.assertEquals(12.5, bulkReadCache.getHub(controlHub).getInputVoltage(), 0.0);
+    }
+
+    private void writeHardwareMap(File hardwareMapFile, String devices) throws Exception {
+        long previousLastModified = hardwareMapFile.lastModified();
+
+        Files.write(hardwareMapFile.toPath(), ("<Robot type=\"FirstInspires-FTC\">" + devices + "</Robot>")
+                .getBytes(StandardCharsets.UTF_8));
+
+        // Timestamps may only have 1 second resolution
+        hardwareMapFile.setLastModified(previousLastModified + 2000);
+    }
+
     private void assertDevicesPresent(final HardwareMap fakeHwMap,
                                       final Class deviceClass,
                                       final int count) {
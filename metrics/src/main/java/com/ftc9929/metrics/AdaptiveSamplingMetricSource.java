@@ -0,0 +1,131 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+/**
+ * An adapter for GaugeMetricSources that reads the real value every pass while it is changing,
+ * and backs off exponentially (every 2nd, 4th, 8th... pass, up to maxInterval) while it isn't.
+ *
+ * A value is "changing" when its recent average change per pass (an exponentially weighted
+ * moving average) is larger than epsilon. Reads can be limited further by a MetricsReadBudget
+ * shared with other sources.
+ */
+public class AdaptiveSamplingMetricSource implements GaugeMetricSource {
+    public static final int DEFAULT_MAX_INTERVAL = 32;
+
+    // Weight of the latest change in the moving average of change per pass
+    private static final double ACTIVITY_WEIGHT = 0.5;
+
+    private final GaugeMetricSource realSource;
+
+    private final MetricsReadBudget readBudget;
+
+    private final double epsilon;
+
+    private final int maxInterval;
+
+    private int interval = 1;
+
+    private int passesSinceRead;
+
+    private boolean haveRead;
+
+    private double lastValue;
+
+    private double activity;
+
+    /**
+     * @param realSource the source to sample
+     * @param readBudget budget shared with other sources, or null for no limit
+     * @param epsilon smallest average change per pass that counts as changing
+     * @param maxInterval most passes to go between reads when the value is not changing
+     */
+    public AdaptiveSamplingMetricSource(GaugeMetricSource realSource, MetricsReadBudget readBudget,
+                                        double epsilon, int maxInterval) {
+        if (maxInterval < 1) {
+            throw new IllegalArgumentException("Maximum interval must be at least 1");
+        }
+
+        this.realSource = realSource;
+        this.readBudget = readBudget;
+        this.epsilon = epsilon;
+        this.maxInterval = maxInterval;
+    }
+
+    public AdaptiveSamplingMetricSource(GaugeMetricSource realSource, MetricsReadBudget readBudget,
+                                        double epsilon) {
+        this(realSource, readBudget, epsilon, DEFAULT_MAX_INTERVAL);
+    }
+
+    @Override
+    public String getSampleName() {
+        return realSource.getSampleName();
+    }
+
+    @Override
+    public double getValue() {
+        passesSinceRead++;
+
+        if (haveRead && passesSinceRead < interval) {
+            return MetricsSampler.NO_REPORT_VALUE;
+        }
+
+        // Sources that have never been read are due from their first pass
+        final int passesWaiting = passesSinceRead - (haveRead ? interval : 1);
+
+        if (readBudget != null && !readBudget.tryAcquire(passesWaiting)) {
+            return MetricsSampler.NO_REPORT_VALUE;
+        }
+
+        final double value = realSource.getValue();
+
+        if (value == MetricsSampler.NO_REPORT_VALUE) {
+            return value;
+        }
+
+        if (haveRead) {
+            final double changePerPass = Math.abs(value - lastValue) / passesSinceRead;
+
+            activity = ACTIVITY_WEIGHT * changePerPass + (1 - ACTIVITY_WEIGHT) * activity;
+        }
+
+        if (!haveRead || activity > epsilon) {
+            interval = 1;
+        } else {
+            interval = Math.min(interval * 2, maxInterval);
+        }
+
+        haveRead = true;
+        lastValue = value;
+        passesSinceRead = 0;
+
+        return value;
+    }
+
+    /**
+     * @return the number of passes until the next read, when not limited by the read budget
+     */
+    public int getInterval() {
+        return interval;
+    }
+}
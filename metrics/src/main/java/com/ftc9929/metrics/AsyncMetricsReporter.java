@@ -0,0 +1,248 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import android.util.Log;
+
+import java.io.Closeable;
+
+import lombok.Builder;
+import lombok.NonNull;
+
+import static com.ftc9929.corelib.Constants.LOG_TAG;
+
+/**
+ * A MetricsReporter that keeps sending metrics out of the OpMode loop. The loop thread only
+ * reads each source's value and stores it in a SampleRingBuffer, a background thread
+ * drains the buffer and hands samples to a SampleSink (for example StatsdMetricsReporter) to
+ * be named, encoded and sent.
+ *
+ * When the background thread falls behind and the buffer fills up, samples are dropped
+ * (and counted) rather than blocking the loop.
+ *
+ * Counters and histograms are thread-safe, so the background thread reads those itself
+ * after each sampling pass.
+ */
+public class AsyncMetricsReporter implements MetricsReporter, Closeable {
+    public static final int DEFAULT_BUFFER_CAPACITY = 4096;
+
+    public static final long DEFAULT_DRAIN_INTERVAL_MILLIS = 5;
+
+    private static final String SAMPLE_TIME_NAME = "metric_sample_time_ms";
+
+    // Outside of the MetricRegistry's id space
+    private static final int SAMPLE_TIME_ID = -1;
+
+    private static final int MAX_SAMPLES_PER_DRAIN = 512;
+
+    private final SampleSink sampleSink;
+
+    private final SampleRingBuffer ringBuffer;
+
+    private final long drainIntervalMillis;
+
+    private final MetricsSelfMonitor selfMonitor;
+
+    // Only used by the loop thread
+    private long recordedDroppedSamples;
+
+    // Written by the loop thread before any sample from the registry is offered,
+    // which makes it visible to the drain thread by the time it sees that sample
+    private volatile MetricRegistry metricRegistry;
+
+    // Incremented by the loop thread after each sampling pass
+    private volatile int passCount;
+
+    // Only used by the drain thread (or by close(), once the drain thread has stopped)
+    private final MetricIntervals metricIntervals = new MetricIntervals();
+
+    private int lastPassSent;
+
+    private final Drainer drainer = new Drainer();
+
+    private final Thread drainThread;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param sampleSink where samples are sent, from the background thread
+     * @param bufferCapacity number of samples that can be waiting to be sent, default 4096
+     * @param drainIntervalMillis how long the background thread sleeps when there is nothing to send, default 5 ms
+     * @param selfMonitor where to record the time spent sending, dropped samples and exceptions
+     */
+    @Builder
+    private AsyncMetricsReporter(@NonNull SampleSink sampleSink,
+                                 int bufferCapacity,
+                                 long drainIntervalMillis,
+                                 MetricsSelfMonitor selfMonitor) {
+        this.sampleSink = sampleSink;
+        this.selfMonitor = selfMonitor;
+        this.ringBuffer = new SampleRingBuffer(bufferCapacity == 0 ? DEFAULT_BUFFER_CAPACITY : bufferCapacity);
+        this.drainIntervalMillis = drainIntervalMillis == 0 ? DEFAULT_DRAIN_INTERVAL_MILLIS : drainIntervalMillis;
+
+        drainThread = new Thread(drainer, "metrics-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @Override
+    public void reportMetrics(MetricRegistry metricRegistry) {
+        try {
+            if (this.metricRegistry != metricRegistry) {
+                this.metricRegistry = metricRegistry;
+            }
+
+            final long beginSamplingTimeMs = System.currentTimeMillis();
+
+            metricRegistry.sampleAll();
+
+            for (int id = 0; id < metricRegistry.size(); id++) {
+                final double value = metricRegistry.getValue(id);
+
+                if (value != MetricsSampler.NO_REPORT_VALUE) {
+                    ringBuffer.offer(id, beginSamplingTimeMs, value);
+                }
+            }
+
+            ringBuffer.offer(SAMPLE_TIME_ID, beginSamplingTimeMs,
+                    System.currentTimeMillis() - beginSamplingTimeMs);
+
+            passCount++;
+
+            if (selfMonitor != null) {
+                final long droppedSamples = ringBuffer.getDropped();
+
+                selfMonitor.addDroppedSamples(droppedSamples - recordedDroppedSamples);
+                recordedDroppedSamples = droppedSamples;
+            }
+        } catch (Throwable t) {
+            // metrics should do no harm
+            Log.e(LOG_TAG, "Caught exception while sampling for metrics", t);
+
+            if (selfMonitor != null) {
+                selfMonitor.countException();
+            }
+        }
+    }
+
+    /**
+     * @return the number of samples dropped because the background thread could not keep up
+     */
+    public long getDroppedSamples() {
+        return ringBuffer.getDropped();
+    }
+
+    /**
+     * Stops the background thread, after sending any samples still waiting
+     */
+    @Override
+    public void close() {
+        running = false;
+        drainThread.interrupt();
+
+        try {
+            drainThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!drainThread.isAlive()) {
+            // Safe to drain from this thread now that the drain thread is done
+            drainAll();
+        }
+    }
+
+    private void drainAll() {
+        while (ringBuffer.drain(drainer, MAX_SAMPLES_PER_DRAIN) > 0) {
+            sampleSink.flush();
+        }
+
+        if (sendCountersAndHistograms()) {
+            sampleSink.flush();
+        }
+    }
+
+    /**
+     * @return true if there was a new sampling pass to send counters and histograms for
+     */
+    private boolean sendCountersAndHistograms() {
+        final int currentPass = passCount;
+        final MetricRegistry currentRegistry = metricRegistry;
+
+        if (currentPass == lastPassSent || currentRegistry == null) {
+            return false;
+        }
+
+        lastPassSent = currentPass;
+
+        metricIntervals.update(currentRegistry);
+        metricIntervals.sendTo(sampleSink, System.currentTimeMillis());
+
+        return true;
+    }
+
+    private class Drainer implements Runnable, SampleRingBuffer.Consumer {
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    final long beginDrainNanos = System.nanoTime();
+
+                    boolean sentSomething = ringBuffer.drain(this, MAX_SAMPLES_PER_DRAIN) > 0;
+
+                    sentSomething |= sendCountersAndHistograms();
+
+                    if (sentSomething) {
+                        sampleSink.flush();
+
+                        if (selfMonitor != null) {
+                            selfMonitor.recordEncodeNanos(System.nanoTime() - beginDrainNanos);
+                        }
+                    } else {
+                        Thread.sleep(drainIntervalMillis);
+                    }
+                } catch (InterruptedException e) {
+                    // we've been asked to stop
+                    return;
+                } catch (Throwable t) {
+                    // metrics should do no harm
+                    Log.e(LOG_TAG, "Caught exception while sending metrics", t);
+
+                    if (selfMonitor != null) {
+                        selfMonitor.countException();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void accept(int sourceId, long timestampMillis, double value) {
+            final String name = sourceId == SAMPLE_TIME_ID
+                    ? SAMPLE_TIME_NAME
+                    // Read after the ring buffer published the sample, so the name is always there
+                    : metricRegistry.getName(sourceId);
+
+            sampleSink.sample(name, timestampMillis, value);
+        }
+    }
+}
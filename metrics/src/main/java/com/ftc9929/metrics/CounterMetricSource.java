@@ -0,0 +1,63 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+
+/**
+ * Counts events (state transitions, hub errors, ...) as they happen. Incrementing is
+ * lock-free, does not allocate and may be done from any thread.
+ *
+ * The count only ever goes up, reporters keep track of what they have already reported and
+ * send the difference (a StatsD "c" metric).
+ */
+public final class CounterMetricSource {
+    private final String sampleName;
+
+    private final AtomicLong total = new AtomicLong();
+
+    public CounterMetricSource(@NonNull String sampleName) {
+        this.sampleName = sampleName;
+    }
+
+    public String getSampleName() {
+        return sampleName;
+    }
+
+    public void increment() {
+        total.incrementAndGet();
+    }
+
+    public void add(long count) {
+        total.addAndGet(count);
+    }
+
+    /**
+     * @return the number of events counted since this counter was created
+     */
+    public long getTotal() {
+        return total.get();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lombok.NonNull;
+
+/**
+ * Records the distribution of a value (loop period, sensor latency, ...) into fixed buckets.
+ * Recording is lock-free, does not allocate and may be done from any thread.
+ *
+ * Buckets have 8 sub-buckets per power of two, so a bucket's representative value is within
+ * about 6% of any value recorded in it. Values from 2^-10 (about 0.001) up to 2^22 (about
+ * 4 million) are bucketed, smaller values (including zero and negatives) go in the first
+ * bucket and larger values in the last.
+ *
+ * Like CounterMetricSource, the counts only ever go up. Reporters use an Interval to see
+ * what was recorded since they last looked.
+ */
+public final class HistogramMetricSource {
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MIN_EXPONENT = -10;
+
+    private static final int MAX_EXPONENT = 21;
+
+    public static final int BUCKET_COUNT = 1 + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+    private static final double[] BUCKET_VALUES = new double[BUCKET_COUNT];
+
+    static {
+        for (int bucket = 1; bucket < BUCKET_COUNT; bucket++) {
+            final int exponent = MIN_EXPONENT + (bucket - 1) / SUB_BUCKETS;
+            final int subBucket = (bucket - 1) % SUB_BUCKETS;
+
+            // Middle of the bucket
+            BUCKET_VALUES[bucket] = Math.scalb(1 + (subBucket + 0.5) / SUB_BUCKETS, exponent);
+        }
+    }
+
+    private final String sampleName;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+
+    public HistogramMetricSource(@NonNull String sampleName) {
+        this.sampleName = sampleName;
+    }
+
+    public String getSampleName() {
+        return sampleName;
+    }
+
+    /**
+     * Records a value, NaN is ignored
+     */
+    public void record(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        bucketCounts.incrementAndGet(bucketIndex(value));
+    }
+
+    /**
+     * @return the number of values recorded in the given bucket since this histogram was created
+     */
+    public long getTotalInBucket(int bucket) {
+        return bucketCounts.get(bucket);
+    }
+
+    public Interval newInterval() {
+        return new Interval(this);
+    }
+
+    /**
+     * @return a value representative of those recorded in the given bucket
+     */
+    public static double getBucketValue(int bucket) {
+        return BUCKET_VALUES[bucket];
+    }
+
+    static int bucketIndex(double value) {
+        if (!(value >= Double.MIN_NORMAL)) {
+            return 0;
+        }
+
+        final int exponent = Math.getExponent(value);
+
+        if (exponent < MIN_EXPONENT) {
+            return 0;
+        }
+
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        final int subBucket = (int) (Double.doubleToRawLongBits(value) >>> (52 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * What a histogram recorded between calls to update(), each reporter keeps its own.
+     * Not thread-safe, meant to be used by one reporter thread.
+     */
+    public static final class Interval {
+        private final HistogramMetricSource histogram;
+
+        private final long[] lastTotals = new long[BUCKET_COUNT];
+
+        private final long[] counts = new long[BUCKET_COUNT];
+
+        private long count;
+
+        private Interval(HistogramMetricSource histogram) {
+            this.histogram = histogram;
+        }
+
+        public HistogramMetricSource getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * Moves this interval along, to cover the values recorded since the last update()
+         */
+        public void update() {
+            count = 0;
+
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                final long total = histogram.bucketCounts.get(bucket);
+
+                counts[bucket] = total - lastTotals[bucket];
+                lastTotals[bucket] = total;
+                count += counts[bucket];
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getCountInBucket(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * @return the (approximate) mean, or NaN if nothing was recorded
+         */
+        public double getMean() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+
+            double sum = 0;
+
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                sum += counts[bucket] * BUCKET_VALUES[bucket];
+            }
+
+            return sum / count;
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return the (approximate) value at the quantile, or NaN if nothing was recorded
+         */
+        public double getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                seen += counts[bucket];
+
+                if (seen >= rank) {
+                    return BUCKET_VALUES[bucket];
+                }
+            }
+
+            return BUCKET_VALUES[BUCKET_COUNT - 1];
+        }
+
+        /**
+         * @return the (approximate) largest value, or NaN if nothing was recorded
+         */
+        public double getMax() {
+            for (int bucket = BUCKET_COUNT - 1; bucket >= 0; bucket--) {
+                if (counts[bucket] > 0) {
+                    return BUCKET_VALUES[bucket];
+                }
+            }
+
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of what a reporter has already reported from the counters and histograms in
+ * a MetricRegistry, which only ever count up. Each call to update() moves on to what was
+ * counted or recorded since the previous call.
+ *
+ * Each reporter needs its own MetricIntervals, and must only use it from one thread.
+ */
+public final class MetricIntervals {
+    private CounterMetricSource[] counters = new CounterMetricSource[0];
+
+    private long[] lastCounterTotals = new long[0];
+
+    private long[] counterDeltas = new long[0];
+
+    private HistogramMetricSource.Interval[] histogramIntervals = new HistogramMetricSource.Interval[0];
+
+    public void update(MetricRegistry metricRegistry) {
+        final CounterMetricSource[] currentCounters = metricRegistry.getCounters();
+
+        if (currentCounters.length != counters.length) {
+            counters = currentCounters;
+            lastCounterTotals = Arrays.copyOf(lastCounterTotals, counters.length);
+            counterDeltas = Arrays.copyOf(counterDeltas, counters.length);
+        }
+
+        for (int id = 0; id < counters.length; id++) {
+            final long total = counters[id].getTotal();
+
+            counterDeltas[id] = total - lastCounterTotals[id];
+            lastCounterTotals[id] = total;
+        }
+
+        final HistogramMetricSource[] histograms = metricRegistry.getHistograms();
+
+        if (histograms.length != histogramIntervals.length) {
+            final int previousLength = histogramIntervals.length;
+
+            histogramIntervals = Arrays.copyOf(histogramIntervals, histograms.length);
+
+            for (int id = previousLength; id < histograms.length; id++) {
+                histogramIntervals[id] = histograms[id].newInterval();
+            }
+        }
+
+        for (HistogramMetricSource.Interval interval : histogramIntervals) {
+            interval.update();
+        }
+    }
+
+    public int getCounterCount() {
+        return counters.length;
+    }
+
+    public String getCounterName(int id) {
+        return counters[id].getSampleName();
+    }
+
+    /**
+     * @return what the counter counted between the last two calls to update()
+     */
+    public long getCounterDelta(int id) {
+        return counterDeltas[id];
+    }
+
+    /**
+     * @return the counter's total as of the last call to update()
+     */
+    public long getCounterTotal(int id) {
+        return lastCounterTotals[id];
+    }
+
+    public int getHistogramCount() {
+        return histogramIntervals.length;
+    }
+
+    /**
+     * @return what the histogram recorded between the last two calls to update()
+     */
+    public HistogramMetricSource.Interval getHistogramInterval(int id) {
+        return histogramIntervals[id];
+    }
+
+    /**
+     * Sends the counters that counted anything, and the non-empty histogram buckets,
+     * from the last call to update() to the given sink
+     */
+    public void sendTo(SampleSink sampleSink, long timestampMillis) {
+        for (int id = 0; id < counters.length; id++) {
+            if (counterDeltas[id] != 0) {
+                sampleSink.count(counters[id].getSampleName(), timestampMillis, counterDeltas[id]);
+            }
+        }
+
+        for (HistogramMetricSource.Interval interval : histogramIntervals) {
+            if (interval.getCount() == 0) {
+                continue;
+            }
+
+            final String name = interval.getHistogram().getSampleName();
+
+            for (int bucket = 0; bucket < HistogramMetricSource.BUCKET_COUNT; bucket++) {
+                final long count = interval.getCountInBucket(bucket);
+
+                if (count > 0) {
+                    sampleSink.histogram(name, timestampMillis, HistogramMetricSource.getBucketValue(bucket), count);
+                }
+            }
+        }
+    }
+}
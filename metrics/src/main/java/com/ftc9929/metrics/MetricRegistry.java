@@ -0,0 +1,355 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.NonNull;
+
+import static com.ftc9929.corelib.Constants.LOG_TAG;
+
+/**
+ * Holds the GaugeMetricSources for a MetricsSampler, giving each one a dense int id
+ * (0, 1, 2...) when it is registered. Names are looked up once, at registration, and
+ * sampleAll() reads every source into a primitive array, so reporters can walk sources
+ * with an index loop:
+ *
+ * <pre>
+ *     registry.sampleAll();
+ *
+ *     for (int id = 0; id < registry.size(); id++) {
+ *         double value = registry.getValue(id);
+ *         ...
+ *     }
+ * </pre>
+ *
+ * Ids never change once assigned, so reporters may use them to index their own per-metric
+ * state. Sources are registered and sampled from the OpMode loop thread, however names may be
+ * read from any thread for ids that have been handed to it after registration.
+ *
+ * CounterMetricSources and HistogramMetricSources are held here too, each kind with its
+ * own ids (starting from 0). Since they can be read from any thread, so can the lists of them.
+ *
+ * When read timing is turned on (see MetricsSelfMonitor), sampleAll() also measures how
+ * long each source takes to read, with System.nanoTime(), which costs a few tens of
+ * nanoseconds per source. Sources that are read before sampleAll() (the real sources of
+ * WindowedAggregateMetricSources) are timed too, see registerReadBeforeSampling().
+ */
+public final class MetricRegistry {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, Integer> idsByName = new HashMap<>();
+
+    private GaugeMetricSource[] sources = new GaugeMetricSource[INITIAL_CAPACITY];
+
+    // Replaced (never modified in place for existing ids) when growing, so another thread
+    // that reads this field after an id was published will see that id's name
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    private long[] readNanos = new long[INITIAL_CAPACITY];
+
+    // Sources that are read before sampleAll(), rather than by it
+    private boolean[] readBeforeSampling = new boolean[INITIAL_CAPACITY];
+
+    // Time spent reading those sources since the last call to sampleAll()
+    private long readBeforeSamplingNanos;
+
+    private int size;
+
+    private boolean readTiming;
+
+    private long lastSampleAllNanos;
+
+    // Copied when a counter or histogram is registered, so may be read from any thread
+    private volatile CounterMetricSource[] counters = new CounterMetricSource[0];
+
+    private volatile HistogramMetricSource[] histograms = new HistogramMetricSource[0];
+
+    /**
+     * Registers the given source, or returns the existing id if a source with the
+     * same sample name has already been registered (the first one is kept)
+     *
+     * @return the id of the source
+     */
+    public int register(@NonNull GaugeMetricSource source) {
+        final String name = source.getSampleName();
+        final Integer existingId = idsByName.get(name);
+
+        if (existingId != null) {
+            if (sources[existingId] != source) {
+                Log.d(LOG_TAG, String.format("Metric %s already registered, ignoring duplicate", name));
+            }
+
+            return existingId;
+        }
+
+        final int id = size;
+
+        if (id == sources.length) {
+            final int newCapacity = sources.length * 2;
+
+            sources = Arrays.copyOf(sources, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+            readNanos = Arrays.copyOf(readNanos, newCapacity);
+            readBeforeSampling = Arrays.copyOf(readBeforeSampling, newCapacity);
+
+            String[] newNames = Arrays.copyOf(names, newCapacity);
+            newNames[id] = name;
+            names = newNames;
+        } else {
+            names[id] = name;
+        }
+
+        sources[id] = source;
+        values[id] = MetricsSampler.NO_REPORT_VALUE;
+        idsByName.put(name, id);
+        size++;
+
+        return id;
+    }
+
+    /**
+     * Registers a source that is read before each sampling pass rather than by sampleAll(),
+     * for example the real source of a WindowedAggregateMetricSource. sampleAll() does not
+     * read it, so it is never reported, but when read timing is on, reads through the
+     * returned source are timed and charged to the given source's name (and included in the
+     * next getLastSampleAllNanos()), so they show up in MetricsSelfMonitor.
+     *
+     * @return the source to read instead of the given one
+     */
+    public GaugeMetricSource registerReadBeforeSampling(@NonNull final GaugeMetricSource source) {
+        final int id = register(source);
+
+        if (sources[id] == source) {
+            readBeforeSampling[id] = true;
+        }
+
+        return new GaugeMetricSource() {
+            @Override
+            public String getSampleName() {
+                return source.getSampleName();
+            }
+
+            @Override
+            public double getValue() {
+                if (!readTiming) {
+                    return source.getValue();
+                }
+
+                final long beginNanos = System.nanoTime();
+                final double value = source.getValue();
+                final long tookNanos = System.nanoTime() - beginNanos;
+
+                readNanos[id] += tookNanos;
+                readBeforeSamplingNanos += tookNanos;
+
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Registers the given counter, unless a counter with the same name has already been
+     * registered (the first one is kept)
+     *
+     * @return the id of the counter
+     */
+    public int registerCounter(@NonNull CounterMetricSource counter) {
+        final CounterMetricSource[] currentCounters = counters;
+
+        for (int id = 0; id < currentCounters.length; id++) {
+            if (currentCounters[id].getSampleName().equals(counter.getSampleName())) {
+                return id;
+            }
+        }
+
+        final CounterMetricSource[] newCounters = Arrays.copyOf(currentCounters, currentCounters.length + 1);
+        newCounters[currentCounters.length] = counter;
+        counters = newCounters;
+
+        return currentCounters.length;
+    }
+
+    /**
+     * Registers the given histogram, unless a histogram with the same name has already been
+     * registered (the first one is kept)
+     *
+     * @return the id of the histogram
+     */
+    public int registerHistogram(@NonNull HistogramMetricSource histogram) {
+        final HistogramMetricSource[] currentHistograms = histograms;
+
+        for (int id = 0; id < currentHistograms.length; id++) {
+            if (currentHistograms[id].getSampleName().equals(histogram.getSampleName())) {
+                return id;
+            }
+        }
+
+        final HistogramMetricSource[] newHistograms = Arrays.copyOf(currentHistograms, currentHistograms.length + 1);
+        newHistograms[currentHistograms.length] = histogram;
+        histograms = newHistograms;
+
+        return currentHistograms.length;
+    }
+
+    /**
+     * @return the registered counters, indexed by id - do not modify
+     */
+    public CounterMetricSource[] getCounters() {
+        return counters;
+    }
+
+    /**
+     * @return the registered histograms, indexed by id - do not modify
+     */
+    public HistogramMetricSource[] getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * @return the number of registered sources, ids range from 0 to size() - 1
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads the current value of every registered source, available from getValue()
+     */
+    public void sampleAll() {
+        if (readTiming) {
+            sampleAllTimed();
+
+            return;
+        }
+
+        for (int id = 0; id < size; id++) {
+            if (!readBeforeSampling[id]) {
+                values[id] = sources[id].getValue();
+            }
+        }
+    }
+
+    private void sampleAllTimed() {
+        final long beginNanos = System.nanoTime();
+        long lastNanos = beginNanos;
+
+        for (int id = 0; id < size; id++) {
+            if (readBeforeSampling[id]) {
+                continue;
+            }
+
+            values[id] = sources[id].getValue();
+
+            final long nowNanos = System.nanoTime();
+            readNanos[id] += nowNanos - lastNanos;
+            lastNanos = nowNanos;
+        }
+
+        lastSampleAllNanos = lastNanos - beginNanos + readBeforeSamplingNanos;
+        readBeforeSamplingNanos = 0;
+    }
+
+    /**
+     * Turns measuring how long each source takes to read in sampleAll() on or off
+     */
+    public void setReadTiming(boolean readTiming) {
+        this.readTiming = readTiming;
+    }
+
+    public boolean isReadTiming() {
+        return readTiming;
+    }
+
+    /**
+     * @return nanoseconds spent reading the source since read timing was turned on, or
+     * since the last call to resetReadNanos()
+     */
+    public long getReadNanos(int id) {
+        checkRegisteredId(id);
+
+        return readNanos[id];
+    }
+
+    public void resetReadNanos() {
+        Arrays.fill(readNanos, 0);
+    }
+
+    /**
+     * @return nanoseconds the last call to sampleAll() took, plus the time spent reading
+     * sources registered with registerReadBeforeSampling() before it, when read timing is on
+     */
+    public long getLastSampleAllNanos() {
+        return lastSampleAllNanos;
+    }
+
+    /**
+     * @return the value read by the last call to sampleAll(), which may be
+     * MetricsSampler.NO_REPORT_VALUE
+     */
+    public double getValue(int id) {
+        checkRegisteredId(id);
+
+        return values[id];
+    }
+
+    /**
+     * May be called from any thread, see the class documentation
+     */
+    public String getName(int id) {
+        final String[] currentNames = names;
+
+        if (id < 0 || id >= currentNames.length || currentNames[id] == null) {
+            throw new IllegalArgumentException(String.format("No metric with id %d", id));
+        }
+
+        return currentNames[id];
+    }
+
+    public GaugeMetricSource getSource(int id) {
+        checkRegisteredId(id);
+
+        return sources[id];
+    }
+
+    /**
+     * @return the id of the source registered with the given name, or -1 if there is none
+     */
+    public int getId(String name) {
+        final Integer id = idsByName.get(name);
+
+        return id == null ? -1 : id;
+    }
+
+    private void checkRegisteredId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException(String.format("No metric with id %d", id));
+        }
+    }
+}
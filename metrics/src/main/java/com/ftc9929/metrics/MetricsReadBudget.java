@@ -0,0 +1,121 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+/**
+ * Limits the number of hardware reads that AdaptiveSamplingMetricSources may make in one
+ * sampling pass, so metrics can't use more than their share of hub bandwidth.
+ *
+ * When there are more sources due for a read than the budget allows, the ones that have been
+ * waiting longest get to read first on the next pass, so every source is eventually read.
+ * Reads are kept back for them however late in the pass they ask, and any reads they don't
+ * need go to other due sources, so no part of the budget is wasted while sources are waiting.
+ * startPass() must be called at the beginning of each pass (RobotMetricsSampler does this).
+ */
+public class MetricsReadBudget {
+    private final int maxReadsPerPass;
+
+    private int readsThisPass;
+
+    // Sources that have been waiting at least this many passes go first
+    private int minPassesWaiting;
+
+    // Reads kept back for sources waiting at least minPassesWaiting, that haven't asked yet
+    private int reservedReads;
+
+    private boolean deniedThisPass;
+
+    private int longestDeniedWait;
+
+    // Number of sources denied this pass after waiting longestDeniedWait passes
+    private int longestDeniedCount;
+
+    private long totalDenied;
+
+    public MetricsReadBudget(int maxReadsPerPass) {
+        if (maxReadsPerPass < 1) {
+            throw new IllegalArgumentException("A metrics read budget must allow at least 1 read per pass");
+        }
+
+        this.maxReadsPerPass = maxReadsPerPass;
+    }
+
+    public void startPass() {
+        minPassesWaiting = deniedThisPass ? longestDeniedWait + 1 : 0;
+        reservedReads = deniedThisPass ? Math.min(longestDeniedCount, maxReadsPerPass) : 0;
+
+        readsThisPass = 0;
+        deniedThisPass = false;
+        longestDeniedWait = 0;
+        longestDeniedCount = 0;
+    }
+
+    /**
+     * @param passesWaiting how many passes the caller has been due for a read, 0 if it
+     *                      just became due
+     * @return true if the caller may read its hardware this pass
+     */
+    public boolean tryAcquire(int passesWaiting) {
+        if (readsThisPass < maxReadsPerPass) {
+            if (reservedReads > 0 && passesWaiting >= minPassesWaiting) {
+                reservedReads--;
+                readsThisPass++;
+
+                return true;
+            }
+
+            if (readsThisPass + reservedReads < maxReadsPerPass) {
+                readsThisPass++;
+
+                return true;
+            }
+        }
+
+        deniedThisPass = true;
+        totalDenied++;
+
+        if (passesWaiting > longestDeniedWait) {
+            longestDeniedWait = passesWaiting;
+            longestDeniedCount = 1;
+        } else if (passesWaiting == longestDeniedWait) {
+            longestDeniedCount++;
+        }
+
+        return false;
+    }
+
+    public int getMaxReadsPerPass() {
+        return maxReadsPerPass;
+    }
+
+    public int getReadsThisPass() {
+        return readsThisPass;
+    }
+
+    /**
+     * @return the number of reads that were put off because of the budget
+     */
+    public long getTotalDenied() {
+        return totalDenied;
+    }
+}
@@ -22,11 +22,13 @@
 
 package com.ftc9929.metrics;
 
-import java.util.Set;
-
 /**
  * Implement this interface to report metrics collected by the RobotMetricsSampler
  */
 public interface MetricsReporter {
-    void reportMetrics(Set<GaugeMetricSource> gaugeSources);
+    /**
+     * Called once per sampling pass, implementations usually call MetricRegistry.sampleAll()
+     * and then report each value by id
+     */
+    void reportMetrics(MetricRegistry metricRegistry);
 }
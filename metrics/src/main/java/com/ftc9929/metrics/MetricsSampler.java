@@ -32,5 +32,9 @@ public interface MetricsSampler {
 
     void addSource(GaugeMetricSource metricSource);
 
+    void addCounter(CounterMetricSource counter);
+
+    void addHistogram(HistogramMetricSource histogram);
+
     void addGamepad(String name, NinjaGamePad gamepad);
 }
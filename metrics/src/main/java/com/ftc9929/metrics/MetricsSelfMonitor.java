@@ -0,0 +1,275 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Builder;
+
+/**
+ * Metrics about the metrics pipeline itself, measured with System.nanoTime(), to find out
+ * which sources are worth their hub bandwidth:
+ *
+ * <ul>
+ *     <li>metric_read_us - histogram of how long each sampling pass took to read every source</li>
+ *     <li>metric_encode_us - histogram of how long reporters took to name, encode and send samples</li>
+ *     <li>metric_bytes_sent and metric_packets_sent - counters, for batched statsd</li>
+ *     <li>metric_dropped_samples - counter, samples that could not be sent</li>
+ *     <li>metric_exceptions - counter, exceptions caught by the metrics pipeline</li>
+ *     <li>metric_read_us_[source name] - gauges of the mean read time of the slowest sources,
+ *     sent once per reportEveryPasses sampling passes</li>
+ * </ul>
+ *
+ * Give the same monitor to the RobotMetricsSampler and to the reporter(s), reporters record
+ * what they can measure. Reporters may record from any thread.
+ */
+public final class MetricsSelfMonitor {
+    public static final int DEFAULT_SLOWEST_SOURCE_COUNT = 5;
+
+    public static final int DEFAULT_REPORT_EVERY_PASSES = 50;
+
+    private static final String READ_LATENCY_PREFIX = "metric_read_us_";
+
+    private final HistogramMetricSource readTime = new HistogramMetricSource("metric_read_us");
+
+    private final HistogramMetricSource encodeTime = new HistogramMetricSource("metric_encode_us");
+
+    private final CounterMetricSource bytesSent = new CounterMetricSource("metric_bytes_sent");
+
+    private final CounterMetricSource packetsSent = new CounterMetricSource("metric_packets_sent");
+
+    private final CounterMetricSource droppedSamples = new CounterMetricSource("metric_dropped_samples");
+
+    private final CounterMetricSource exceptions = new CounterMetricSource("metric_exceptions");
+
+    private final int slowestSourceCount;
+
+    private final int reportEveryPasses;
+
+    // The rest is only used by the OpMode loop thread
+
+    private final Map<String, ReadLatencySource> readLatencySources = new HashMap<>();
+
+    private final int[] slowestIds;
+
+    private MetricsSampler metricsSampler;
+
+    private int passesSinceReport;
+
+    private boolean reportedLastPass;
+
+    /**
+     * @param slowestSourceCount number of slowest sources to report, default 5
+     * @param reportEveryPasses number of sampling passes between reports of the slowest sources, default 50
+     */
+    @Builder
+    private MetricsSelfMonitor(int slowestSourceCount, int reportEveryPasses) {
+        this.slowestSourceCount = slowestSourceCount == 0 ? DEFAULT_SLOWEST_SOURCE_COUNT : slowestSourceCount;
+        this.reportEveryPasses = reportEveryPasses == 0 ? DEFAULT_REPORT_EVERY_PASSES : reportEveryPasses;
+
+        if (this.slowestSourceCount < 0 || this.reportEveryPasses < 0) {
+            throw new IllegalArgumentException("slowestSourceCount and reportEveryPasses must be positive");
+        }
+
+        slowestIds = new int[this.slowestSourceCount];
+    }
+
+    /**
+     * Adds the counters and histograms to the given sampler, and turns on read timing for
+     * its registry. Done by RobotMetricsSampler when built with a monitor.
+     */
+    public void addTo(MetricsSampler metricsSampler, MetricRegistry metricRegistry) {
+        this.metricsSampler = metricsSampler;
+
+        metricsSampler.addHistogram(readTime);
+        metricsSampler.addHistogram(encodeTime);
+        metricsSampler.addCounter(bytesSent);
+        metricsSampler.addCounter(packetsSent);
+        metricsSampler.addCounter(droppedSamples);
+        metricsSampler.addCounter(exceptions);
+
+        metricRegistry.setReadTiming(true);
+    }
+
+    /**
+     * Called by the sampler after each sampling pass (from the OpMode loop thread), and
+     * where the slowest sources are found
+     */
+    public void afterPass(MetricRegistry metricRegistry) {
+        readTime.record(metricRegistry.getLastSampleAllNanos() / 1000.0);
+
+        if (reportedLastPass) {
+            // Only sent in the pass after they were found
+            for (ReadLatencySource source : readLatencySources.values()) {
+                source.value = MetricsSampler.NO_REPORT_VALUE;
+            }
+
+            reportedLastPass = false;
+        }
+
+        if (++passesSinceReport < reportEveryPasses) {
+            return;
+        }
+
+        final int slowestCount = findSlowest(metricRegistry);
+
+        for (int i = 0; i < slowestCount; i++) {
+            final int id = slowestIds[i];
+            final String name = metricRegistry.getName(id);
+
+            ReadLatencySource source = readLatencySources.get(name);
+
+            if (source == null) {
+                // Registered between passes, so never while the registry is being sampled
+                source = new ReadLatencySource(READ_LATENCY_PREFIX + name);
+                readLatencySources.put(name, source);
+
+                if (metricsSampler != null) {
+                    metricsSampler.addSource(source);
+                }
+            }
+
+            source.value = metricRegistry.getReadNanos(id) / 1000.0 / passesSinceReport;
+        }
+
+        metricRegistry.resetReadNanos();
+        passesSinceReport = 0;
+        reportedLastPass = slowestCount > 0;
+    }
+
+    /**
+     * Fills slowestIds with the ids of the slowest sources, slowest first, skipping
+     * our own gauges
+     *
+     * @return how many were found
+     */
+    private int findSlowest(MetricRegistry metricRegistry) {
+        int found = 0;
+
+        for (int id = 0; id < metricRegistry.size(); id++) {
+            if (metricRegistry.getSource(id) instanceof ReadLatencySource) {
+                continue;
+            }
+
+            final long readNanos = metricRegistry.getReadNanos(id);
+
+            if (readNanos == 0) {
+                continue;
+            }
+
+            // Insertion into the (short) list, kept sorted
+            int position;
+
+            if (found < slowestIds.length) {
+                position = found++;
+            } else if (readNanos > metricRegistry.getReadNanos(slowestIds[found - 1])) {
+                position = found - 1;
+            } else {
+                continue;
+            }
+
+            while (position > 0 && metricRegistry.getReadNanos(slowestIds[position - 1]) < readNanos) {
+                slowestIds[position] = slowestIds[position - 1];
+                position--;
+            }
+
+            slowestIds[position] = id;
+        }
+
+        return found;
+    }
+
+    public void recordEncodeNanos(long nanos) {
+        encodeTime.record(nanos / 1000.0);
+    }
+
+    public void addBytesSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    public void addPacketsSent(long packets) {
+        packetsSent.add(packets);
+    }
+
+    public void addDroppedSamples(long samples) {
+        droppedSamples.add(samples);
+    }
+
+    public void countException() {
+        exceptions.increment();
+    }
+
+    public HistogramMetricSource getReadTime() {
+        return readTime;
+    }
+
+    public HistogramMetricSource getEncodeTime() {
+        return encodeTime;
+    }
+
+    public CounterMetricSource getBytesSent() {
+        return bytesSent;
+    }
+
+    public CounterMetricSource getPacketsSent() {
+        return packetsSent;
+    }
+
+    public CounterMetricSource getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    public CounterMetricSource getExceptions() {
+        return exceptions;
+    }
+
+    /**
+     * @return the mean read time, in microseconds, of the named source, to be sent in the
+     * next sampling pass, or MetricsSampler.NO_REPORT_VALUE if nothing is to be sent
+     */
+    public double getReportedReadMicros(String sourceName) {
+        final ReadLatencySource source = readLatencySources.get(sourceName);
+
+        return source == null ? MetricsSampler.NO_REPORT_VALUE : source.value;
+    }
+
+    private static class ReadLatencySource implements GaugeMetricSource {
+        private final String sampleName;
+
+        private double value = MetricsSampler.NO_REPORT_VALUE;
+
+        ReadLatencySource(String sampleName) {
+            this.sampleName = sampleName;
+        }
+
+        @Override
+        public String getSampleName() {
+            return sampleName;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Estimates a quantile (median, 95th percentile...) of a stream of values in fixed memory,
+ * without storing the values, using the P-square algorithm (Jain and Chlamtac, 1985). Five
+ * markers track the minimum, the quantile, the maximum and two points in between, moving
+ * along a parabola fitted through their neighbors as values arrive.
+ *
+ * The estimate is exact for up to 5 values.
+ */
+public final class P2QuantileEstimator {
+    private static final int MARKERS = 5;
+
+    private final double quantile;
+
+    // Marker heights
+    private final double[] heights = new double[MARKERS];
+
+    // Actual marker positions (1-based, as in the paper)
+    private final double[] positions = new double[MARKERS];
+
+    private final double[] desiredPositions = new double[MARKERS];
+
+    private final double[] desiredIncrements;
+
+    private int count;
+
+    /**
+     * @param quantile the quantile to estimate, between 0 and 1 (0.95 for the 95th percentile)
+     */
+    public P2QuantileEstimator(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException(String.format("Quantile %f is not between 0 and 1", quantile));
+        }
+
+        this.quantile = quantile;
+        this.desiredIncrements = new double[] {0, quantile / 2, quantile, (1 + quantile) / 2, 1};
+
+        reset();
+    }
+
+    public double getQuantile() {
+        return quantile;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+
+        for (int i = 0; i < MARKERS; i++) {
+            positions[i] = i + 1;
+        }
+
+        desiredPositions[0] = 1;
+        desiredPositions[1] = 1 + 2 * quantile;
+        desiredPositions[2] = 1 + 4 * quantile;
+        desiredPositions[3] = 3 + 2 * quantile;
+        desiredPositions[4] = 5;
+    }
+
+    public void add(double value) {
+        if (count < MARKERS) {
+            heights[count++] = value;
+
+            if (count == MARKERS) {
+                Arrays.sort(heights);
+            }
+
+            return;
+        }
+
+        count++;
+
+        // Find the cell the value falls in, extending the extremes if needed
+        final int cell;
+
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[MARKERS - 1]) {
+            heights[MARKERS - 1] = value;
+            cell = MARKERS - 2;
+        } else {
+            int i = 1;
+
+            while (value >= heights[i]) {
+                i++;
+            }
+
+            cell = i - 1;
+        }
+
+        for (int i = cell + 1; i < MARKERS; i++) {
+            positions[i]++;
+        }
+
+        for (int i = 0; i < MARKERS; i++) {
+            desiredPositions[i] += desiredIncrements[i];
+        }
+
+        // Move the middle markers towards where they should be
+        for (int i = 1; i < MARKERS - 1; i++) {
+            final double offset = desiredPositions[i] - positions[i];
+
+            if ((offset >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                final int direction = offset > 0 ? 1 : -1;
+
+                double newHeight = parabolic(i, direction);
+
+                if (newHeight <= heights[i - 1] || newHeight >= heights[i + 1]) {
+                    newHeight = linear(i, direction);
+                }
+
+                heights[i] = newHeight;
+                positions[i] += direction;
+            }
+        }
+    }
+
+    /**
+     * @return the estimated quantile of the values added since the last reset, or NaN if there are none
+     */
+    public double getEstimate() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        if (count <= MARKERS) {
+            double[] values = Arrays.copyOf(heights, count);
+            Arrays.sort(values);
+
+            return values[(int) Math.round(quantile * (count - 1))];
+        }
+
+        return heights[2];
+    }
+
+    private double parabolic(int i, int direction) {
+        return heights[i] + direction / (positions[i + 1] - positions[i - 1])
+                * ((positions[i] - positions[i - 1] + direction) * (heights[i + 1] - heights[i])
+                        / (positions[i + 1] - positions[i])
+                    + (positions[i + 1] - positions[i] - direction) * (heights[i] - heights[i - 1])
+                        / (positions[i] - positions[i - 1]));
+    }
+
+    private double linear(int i, int direction) {
+        return heights[i] + direction * (heights[i + direction] - heights[i])
+                / (positions[i + direction] - positions[i]);
+    }
+}
@@ -27,6 +27,7 @@ import android.util.Log;
 import com.ftc9929.corelib.control.NinjaGamePad;
 import com.ftc9929.corelib.control.OnOffButton;
 import com.ftc9929.corelib.control.RangeInput;
+import com.ftc9929.corelib.hardware.BulkReadCache;
 import com.ftc9929.corelib.util.NamedDeviceMap;
 import com.ftc9929.metrics.sources.DcMotorCurrentMetricSource;
 import com.ftc9929.metrics.sources.DcMotorPowerMetricSource;
@@ -43,9 +44,8 @@ import com.qualcomm.robotcore.hardware.DigitalChannel;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.Servo;
 
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import lombok.Builder;
 import lombok.NonNull;
@@ -57,8 +57,9 @@ import static com.ftc9929.corelib.Constants.LOG_TAG;
  * found in the hardware map for an FTC Robot, and report them by the configured MetricsReporter
  */
 public class RobotMetricsSampler implements MetricsSampler {
+    public static final String LOOP_PERIOD_METRIC_NAME = "loop_period_ms";
 
-    private final Set<GaugeMetricSource> gaugeSources = new LinkedHashSet<>();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
 
     private final HardwareMap hardwareMap;
 
@@ -68,16 +69,66 @@ public class RobotMetricsSampler implements MetricsSampler {
 
     private final MetricsReporter metricsReporter;
 
+    private final BulkReadCache bulkReadCache;
+
+    private final int aggregationWindow;
+
+    // Each reads its real source once per call to doSamples()
+    private final List<WindowedAggregateMetricSource> windowedAggregates = new ArrayList<>();
+
+    private final MetricsReadBudget readBudget;
+
+    private final MetricsSelfMonitor selfMonitor;
+
+    // Time between calls to doSamples(), which is called once per OpMode loop
+    private final HistogramMetricSource loopPeriodHistogram = new HistogramMetricSource(LOOP_PERIOD_METRIC_NAME);
+
+    private long lastDoSamplesNanos;
+
+    /**
+     * When a BulkReadCache is given, hardware metrics are read through it, sharing reads with
+     * control code that uses the same cache. The OpMode is responsible for calling clearCache()
+     * at the start of every loop.
+     *
+     * When an aggregationWindow is given, motor and 12V metrics are read on every call to
+     * doSamples(), but only reported as min/max/mean/count/p50/p95 once per that many calls
+     * (see WindowedAggregateMetricSource), rather than only sending "interesting" values.
+     *
+     * When hardwareReadsPerPass is given, hardware metrics are read more often while they are
+     * changing and less often while they aren't (see AdaptiveSamplingMetricSource), with
+     * no more than that many hardware reads for metrics in each call to doSamples().
+     *
+     * When a selfMonitor is given, metrics about the metrics pipeline are sent too, including
+     * the read time of the slowest sources (give the same monitor to the reporter).
+     */
     @Builder
     private RobotMetricsSampler(@NonNull HardwareMap hardwareMap,
                                 NinjaGamePad driverControls, NinjaGamePad operatorControls,
-                                @NonNull MetricsReporter metricsReporter) {
+                                @NonNull MetricsReporter metricsReporter,
+                                BulkReadCache bulkReadCache,
+                                int aggregationWindow,
+                                int hardwareReadsPerPass,
+                                MetricsSelfMonitor selfMonitor) {
+        if (aggregationWindow > 0 && hardwareReadsPerPass > 0) {
+            throw new IllegalArgumentException("Use one of aggregationWindow or hardwareReadsPerPass, not both");
+        }
+
         this.metricsReporter = metricsReporter;
+        this.bulkReadCache = bulkReadCache;
+        this.aggregationWindow = aggregationWindow;
+        this.readBudget = hardwareReadsPerPass > 0 ? new MetricsReadBudget(hardwareReadsPerPass) : null;
+        this.selfMonitor = selfMonitor;
         this.hardwareMap = hardwareMap;
         this.namedDeviceMap = new NamedDeviceMap(hardwareMap);
 
         expansionHubs = hardwareMap.getAll(LynxModule.class);
 
+        addHistogram(loopPeriodHistogram);
+
+        if (selfMonitor != null) {
+            selfMonitor.addTo(this, metricRegistry);
+        }
+
         addAllByHardwareMap();
 
         if (driverControls != null) {
@@ -95,12 +146,58 @@ public class RobotMetricsSampler implements MetricsSampler {
 
     @Override
     public void doSamples() {
-        metricsReporter.reportMetrics(gaugeSources);
+        final long nowNanos = System.nanoTime();
+
+        if (lastDoSamplesNanos != 0) {
+            loopPeriodHistogram.record((nowNanos - lastDoSamplesNanos) / 1000000.0);
+        }
+
+        lastDoSamplesNanos = nowNanos;
+
+        if (readBudget != null) {
+            readBudget.startPass();
+        }
+
+        for (int i = 0; i < windowedAggregates.size(); i++) {
+            windowedAggregates.get(i).sample();
+        }
+
+        metricsReporter.reportMetrics(metricRegistry);
+
+        if (selfMonitor != null) {
+            selfMonitor.afterPass(metricRegistry);
+        }
     }
 
     @Override
     public void addSource(GaugeMetricSource metricSource) {
-        gaugeSources.add(metricSource);
+        metricRegistry.register(metricSource);
+    }
+
+    @Override
+    public void addCounter(CounterMetricSource counter) {
+        metricRegistry.registerCounter(counter);
+    }
+
+    @Override
+    public void addHistogram(HistogramMetricSource histogram) {
+        metricRegistry.registerHistogram(histogram);
+    }
+
+    public HistogramMetricSource getLoopPeriodHistogram() {
+        return loopPeriodHistogram;
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    /**
+     * @return the budget shared by adaptively sampled hardware metrics, or null if
+     * hardwareReadsPerPass was not given
+     */
+    public MetricsReadBudget getReadBudget() {
+        return readBudget;
     }
 
     private void addAllByHardwareMap() {
@@ -155,24 +252,18 @@ public class RobotMetricsSampler implements MetricsSampler {
         List<NamedDeviceMap.NamedDevice<DcMotorEx>> allMotors = namedDeviceMap.getAll(DcMotorEx.class);
 
         for (NamedDeviceMap.NamedDevice<DcMotorEx> namedMotor : allMotors) {
-            GaugeMetricSource metricSource = new DcMotorPowerMetricSource(namedMotor);
-            addSource(toInterestingValues(metricSource));
-
-            metricSource = new MotorVelocityMetricSource(namedMotor);
-            addSource(toInterestingValues(metricSource));
-
-            metricSource = new DcMotorCurrentMetricSource(namedMotor);
-            addSource(toInterestingValues(metricSource));
+            addAnalogSource(new DcMotorPowerMetricSource(namedMotor, bulkReadCache), 0.01);
+            addAnalogSource(new MotorVelocityMetricSource(namedMotor, bulkReadCache), 10);
+            addAnalogSource(new DcMotorCurrentMetricSource(namedMotor, bulkReadCache), 0.05);
         }
     }
 
     private void addVoltages() {
         for (LynxModule hub : expansionHubs) {
-            GaugeMetricSource metricSource = new Voltage5VMetricSource(hub);
+            GaugeMetricSource metricSource = new Voltage5VMetricSource(hub, bulkReadCache);
             addSource(metricSource);
 
-            metricSource = new Voltage12VMetricSource(hub);
-            addSource(toInterestingValues(metricSource));
+            addAnalogSource(new Voltage12VMetricSource(hub, bulkReadCache), 0.05);
         }
     }
 
@@ -180,8 +271,8 @@ public class RobotMetricsSampler implements MetricsSampler {
         List<NamedDeviceMap.NamedDevice<DigitalChannel>> allDigitalChannels = namedDeviceMap.getAll(DigitalChannel.class);
 
         for (NamedDeviceMap.NamedDevice<DigitalChannel> namedDigitalChannel : allDigitalChannels) {
-            GaugeMetricSource metricSource = new DigitalChannelMetricSource(namedDigitalChannel);
-            addSource(toInterestingValues(metricSource));
+            GaugeMetricSource metricSource = new DigitalChannelMetricSource(namedDigitalChannel, bulkReadCache);
+            addHardwareSource(metricSource, 0.1);
         }
     }
 
@@ -190,10 +281,35 @@ public class RobotMetricsSampler implements MetricsSampler {
 
         for (NamedDeviceMap.NamedDevice<Servo> namedServo : allServos) {
             GaugeMetricSource metricSource = new ServoMetricSource(namedServo);
+            addHardwareSource(metricSource, 0.001);
+        }
+    }
+
+    private void addAnalogSource(GaugeMetricSource metricSource, double changingEpsilon) {
+        if (aggregationWindow > 0) {
+            // Read by doSamples(), not by the registry, but timed by it
+            WindowedAggregateMetricSource windowedAggregate = new WindowedAggregateMetricSource(
+                    metricRegistry.registerReadBeforeSampling(metricSource), aggregationWindow, 0.5, 0.95);
+            windowedAggregate.addTo(this);
+            windowedAggregates.add(windowedAggregate);
+        } else {
+            addHardwareSource(metricSource, changingEpsilon);
+        }
+    }
+
+    /**
+     * @param changingEpsilon the smallest change per pass that means the value is
+     *                        changing, when sampling adaptively
+     */
+    private void addHardwareSource(GaugeMetricSource metricSource, double changingEpsilon) {
+        if (readBudget != null) {
+            addSource(new AdaptiveSamplingMetricSource(metricSource, readBudget, changingEpsilon));
+        } else {
             addSource(toInterestingValues(metricSource));
         }
     }
 
+
     private GaugeMetricSource toInterestingValues(GaugeMetricSource originalSource) {
         return new InterestingValueMetricSource(originalSource, 5, 10, 0.001);
     }
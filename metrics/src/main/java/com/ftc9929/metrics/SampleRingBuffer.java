@@ -0,0 +1,156 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size, lock-free queue of (source id, timestamp, value) samples, for handing samples
+ * from exactly one producer thread (the OpMode loop) to exactly one consumer thread.
+ *
+ * Samples are stored in preallocated primitive arrays, so offering a sample never allocates
+ * or blocks - when the buffer is full, the sample is dropped and counted instead.
+ */
+public class SampleRingBuffer {
+    /**
+     * Receives samples drained from the buffer
+     */
+    public interface Consumer {
+        void accept(int sourceId, long timestampMillis, double value);
+    }
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final int[] sourceIds;
+
+    private final long[] timestamps;
+
+    private final double[] values;
+
+    // Next slot the consumer will read, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    // Next slot the producer will write, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // The producer's (possibly out of date) view of head, to avoid reading it for every offer
+    private long producerCachedHead;
+
+    // Only written by the producer
+    private volatile long dropped;
+
+    /**
+     * @param minimumCapacity the buffer holds at least this many samples (rounded up to a power of two)
+     */
+    public SampleRingBuffer(int minimumCapacity) {
+        if (minimumCapacity <= 0 || minimumCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+
+        int powerOfTwoCapacity = 1;
+
+        while (powerOfTwoCapacity < minimumCapacity) {
+            powerOfTwoCapacity <<= 1;
+        }
+
+        capacity = powerOfTwoCapacity;
+        mask = capacity - 1;
+
+        sourceIds = new int[capacity];
+        timestamps = new long[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds a sample, only call from the producer thread
+     *
+     * @return false (and counts the sample as dropped) if the buffer is full
+     */
+    public boolean offer(int sourceId, long timestampMillis, double value) {
+        final long currentTail = tail.get();
+
+        if (currentTail - producerCachedHead >= capacity) {
+            producerCachedHead = head.get();
+
+            if (currentTail - producerCachedHead >= capacity) {
+                dropped++;
+
+                return false;
+            }
+        }
+
+        final int index = (int) currentTail & mask;
+
+        sourceIds[index] = sourceId;
+        timestamps[index] = timestampMillis;
+        values[index] = value;
+
+        // Publishes the slot to the consumer
+        tail.lazySet(currentTail + 1);
+
+        return true;
+    }
+
+    /**
+     * Hands up to maxSamples samples to the consumer, in the order they were offered, only call
+     * from the consumer thread
+     *
+     * @return the number of samples drained
+     */
+    public int drain(Consumer consumer, int maxSamples) {
+        final long currentHead = head.get();
+        final long available = tail.get() - currentHead;
+        final int toDrain = (int) Math.min(available, maxSamples);
+
+        for (int i = 0; i < toDrain; i++) {
+            final int index = (int) (currentHead + i) & mask;
+
+            consumer.accept(sourceIds[index], timestamps[index], values[index]);
+        }
+
+        // Gives the slots back to the producer
+        head.lazySet(currentHead + toDrain);
+
+        return toDrain;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return approximately how many samples are waiting to be drained
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @return the number of samples dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+/**
+ * Receives metric samples that have already been read, by name, for sending
+ * or storing somewhere - the back end of a MetricsReporter.
+ */
+public interface SampleSink {
+    /**
+     * Accepts one sample of the named metric, taken at the given time
+     */
+    void sample(String name, long timestampMillis, double value);
+
+    /**
+     * Accepts the number of events the named counter counted since it was last sent
+     */
+    void count(String name, long timestampMillis, long delta);
+
+    /**
+     * Accepts values recorded by the named histogram since it was last sent, count
+     * of them were about the given value
+     */
+    void histogram(String name, long timestampMillis, double value, long count);
+
+    /**
+     * Called after a batch of samples, sinks that buffer should send what they have
+     */
+    void flush();
+}
@@ -0,0 +1,326 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes statsd metrics ("name:value|g|#_ts:timestamp,tag1,tag2") into as few UDP packets
+ * as possible, one line per metric, writing directly into a reused direct ByteBuffer.
+ *
+ * Metric names and tags are converted to bytes once, and numbers are written digit by digit,
+ * so encoding a metric whose name has been seen before does not allocate.
+ */
+class StatsdBatchEncoder {
+    /**
+     * Sends a full packet, from position to limit of the given buffer
+     */
+    interface PacketSender {
+        /**
+         * @return the number of bytes sent, which is 0 when a non-blocking channel had no
+         * room for the packet
+         */
+        int send(ByteBuffer packet) throws Exception;
+    }
+
+    // Safe payload size for a UDP packet on a typical network without fragmentation
+    static final int DEFAULT_MAX_PACKET_BYTES = 1432;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] GAUGE_TYPE = "|g".getBytes(UTF_8);
+
+    private static final byte[] COUNTER_TYPE = "|c".getBytes(UTF_8);
+
+    private static final byte[] HISTOGRAM_TYPE = "|h".getBytes(UTF_8);
+
+    private static final byte[] DISTRIBUTION_TYPE = "|d".getBytes(UTF_8);
+
+    private static final byte[] SAMPLE_RATE = "|@".getBytes(UTF_8);
+
+    private static final byte[] TIMESTAMP_TAG = "|#_ts:".getBytes(UTF_8);
+
+    private static final int MAX_FRACTION_DIGITS = 6;
+
+    private static final long FRACTION_SCALE = 1000000L;
+
+    private final PacketSender packetSender;
+
+    private final ByteBuffer packet;
+
+    // One gauge line is built here, then copied into the packet if it fits
+    private final byte[] line;
+
+    private int lineLength;
+
+    private final byte[] tagSuffix;
+
+    private final byte[] digits = new byte[20];
+
+    private final Map<String, byte[]> nameBytes = new HashMap<>();
+
+    private long packetsSent;
+
+    private long bytesSent;
+
+    private long linesDropped;
+
+    StatsdBatchEncoder(int maxPacketBytes, String[] tags, PacketSender packetSender) {
+        this.packetSender = packetSender;
+        this.packet = ByteBuffer.allocateDirect(maxPacketBytes);
+        this.line = new byte[maxPacketBytes];
+
+        StringBuilder tagSuffixBuilder = new StringBuilder();
+
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null) {
+                    tagSuffixBuilder.append(',').append(tag);
+                }
+            }
+        }
+
+        tagSuffixBuilder.append('\n');
+        tagSuffix = tagSuffixBuilder.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Adds a gauge to the current packet, sending the packet first if the gauge won't fit
+     */
+    void gauge(String name, double value, long timestampMillis) {
+        addLine(name, value, GAUGE_TYPE, 1, timestampMillis);
+    }
+
+    /**
+     * Adds a counter increment to the current packet
+     */
+    void count(String name, long delta, long timestampMillis) {
+        addLine(name, delta, COUNTER_TYPE, 1, timestampMillis);
+    }
+
+    /**
+     * Adds count values of a histogram (or distribution) to the current packet, as one
+     * value with a sample rate of 1/count, which statsd counts as count values
+     */
+    void histogram(String name, double value, long count, boolean distribution, long timestampMillis) {
+        // Smallest sample rate that survives being written with 6 decimal places
+        final double sampleRate = Math.max(1.0 / count, 0.000001);
+
+        addLine(name, value, distribution ? DISTRIBUTION_TYPE : HISTOGRAM_TYPE, sampleRate, timestampMillis);
+    }
+
+    private void addLine(String name, double value, byte[] type, double sampleRate, long timestampMillis) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            linesDropped++;
+
+            return;
+        }
+
+        lineLength = 0;
+
+        if (!appendToLine(getNameBytes(name))
+                || !appendToLine((byte) ':')
+                || !appendNumber(value)
+                || !appendToLine(type)
+                || (sampleRate < 1 && !(appendToLine(SAMPLE_RATE) && appendNumber(sampleRate)))
+                || !appendToLine(TIMESTAMP_TAG)
+                || !appendLong(timestampMillis)
+                || !appendToLine(tagSuffix)) {
+            // A single line that won't fit in a packet
+            linesDropped++;
+
+            return;
+        }
+
+        if (lineLength > packet.remaining()) {
+            flush();
+        }
+
+        packet.put(line, 0, lineLength);
+    }
+
+    /**
+     * Sends whatever is in the current packet
+     */
+    void flush() {
+        if (packet.position() == 0) {
+            return;
+        }
+
+        packet.flip();
+
+        final int packetBytes = packet.remaining();
+
+        int bytesWritten;
+
+        try {
+            bytesWritten = packetSender.send(packet);
+        } catch (Exception ex) {
+            // metrics should do no harm, count what was lost
+            bytesWritten = 0;
+        }
+
+        // Datagrams are sent whole or not at all
+        if (bytesWritten == packetBytes) {
+            packetsSent++;
+            bytesSent += packetBytes;
+        } else {
+            linesDropped += countLines();
+        }
+
+        packet.clear();
+    }
+
+    long getPacketsSent() {
+        return packetsSent;
+    }
+
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    long getLinesDropped() {
+        return linesDropped;
+    }
+
+    private int countLines() {
+        int lines = 0;
+
+        for (int i = 0; i < packet.limit(); i++) {
+            if (packet.get(i) == '\n') {
+                lines++;
+            }
+        }
+
+        return lines;
+    }
+
+    private byte[] getNameBytes(String name) {
+        byte[] bytes = nameBytes.get(name);
+
+        if (bytes == null) {
+            bytes = name.getBytes(UTF_8);
+            nameBytes.put(name, bytes);
+        }
+
+        return bytes;
+    }
+
+    private boolean appendToLine(byte b) {
+        if (lineLength == line.length) {
+            return false;
+        }
+
+        line[lineLength++] = b;
+
+        return true;
+    }
+
+    private boolean appendToLine(byte[] bytes) {
+        if (lineLength + bytes.length > line.length) {
+            return false;
+        }
+
+        System.arraycopy(bytes, 0, line, lineLength, bytes.length);
+        lineLength += bytes.length;
+
+        return true;
+    }
+
+    /**
+     * Writes the value with up to 6 decimal places, without trailing zeros
+     */
+    private boolean appendNumber(double value) {
+        if (value < 0) {
+            if (!appendToLine((byte) '-')) {
+                return false;
+            }
+
+            value = -value;
+        }
+
+        if (value >= Long.MAX_VALUE / FRACTION_SCALE) {
+            // Too big for fixed point, and with no meaningful fraction anyway
+            return appendLong((long) Math.min(value, Long.MAX_VALUE));
+        }
+
+        long scaled = Math.round(value * FRACTION_SCALE);
+        long integerPart = scaled / FRACTION_SCALE;
+        long fraction = scaled % FRACTION_SCALE;
+
+        if (!appendLong(integerPart)) {
+            return false;
+        }
+
+        if (fraction == 0) {
+            return true;
+        }
+
+        int fractionDigits = MAX_FRACTION_DIGITS;
+
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            fractionDigits--;
+        }
+
+        if (!appendToLine((byte) '.')) {
+            return false;
+        }
+
+        for (int i = fractionDigits - 1; i >= 0; i--) {
+            digits[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+
+        for (int i = 0; i < fractionDigits; i++) {
+            if (!appendToLine(digits[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes a non-negative long
+     */
+    private boolean appendLong(long value) {
+        int numDigits = 0;
+
+        do {
+            digits[numDigits++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        for (int i = numDigits - 1; i >= 0; i--) {
+            if (!appendToLine(digits[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
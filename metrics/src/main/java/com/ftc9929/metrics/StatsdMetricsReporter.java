@@ -28,7 +28,9 @@ import android.util.Log;
 
 import com.timgroup.statsd.NonBlockingStatsDClient;
 
-import java.util.Set;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 import lombok.Builder;
 import lombok.NonNull;
@@ -36,14 +38,50 @@ import lombok.NonNull;
 /**
  * A metrics reporter that sends collected metrics to a statsd implementation
  * that is listening for UDP packets.
+ *
+ * Can also be used as the SampleSink for an AsyncMetricsReporter, to send metrics from
+ * a background thread (don't also call reportMetrics() directly when used this way).
+ *
+ * When built with batchPackets(true), gauges are encoded directly into reused buffers and
+ * packed into as few UDP packets as possible - one packet per sampling pass for most robots -
+ * rather than being handed to the statsd client one at a time.
+ *
+ * Counters are sent as statsd counts ("c"), histograms as statsd histograms ("h"), or
+ * distributions ("d") when built with useDistributions(true). Each non-empty histogram
+ * bucket is sent once with a sample rate of 1/count, which statsd counts as count values.
+ * The statsd client drops values at random when given a sample rate, so histograms are
+ * always encoded by this class, in their own packets when not batching.
  */
-public class StatsdMetricsReporter implements MetricsReporter {
+public class StatsdMetricsReporter implements MetricsReporter, SampleSink {
     public static final int DEFAULT_METRICS_SERVER_PORT_NUMBER = 8126;
 
+    private static final String SAMPLE_TIME_METRIC_NAME = "metric_sample_time_ms";
+
     private final NonBlockingStatsDClient statsDClient;
 
+    private final StatsdBatchEncoder batchEncoder;
+
+    // Only when not batching, see the class documentation
+    private final StatsdBatchEncoder histogramEncoder;
+
     private final String[] tags;
 
+    private final boolean useDistributions;
+
+    private final MetricIntervals metricIntervals = new MetricIntervals();
+
+    private final MetricsSelfMonitor selfMonitor;
+
+    // What the batch encoder had sent/dropped when last recorded in the selfMonitor
+    private long recordedPacketsSent;
+
+    private long recordedBytesSent;
+
+    private long recordedLinesDropped;
+
+    // Used by sample(), only rebuilt when the timestamp changes
+    private long lastSampleTimestampMillis = -1;
+
     /**
      * Create a new statsd metrics reporter configured to send metrics to the
      * statsd server listening on the provided hostname/port
@@ -51,11 +89,21 @@ public class StatsdMetricsReporter implements MetricsReporter {
      * @param metricsServerHost hostname of the statsd server
      * @param metricsServerPortNumber port number of the statsd server - default of 8126 if not given
      * @param tags send the given tags with all metrics, each tag is formatted as tag_name:tag_value
+     * @param batchPackets when true, pack many gauges into each UDP packet
+     * @param maxPacketBytes largest UDP packet to send in batched mode - default of 1432 if not given
+     * @param useDistributions send histograms as distributions, which the server aggregates globally
+     * @param selfMonitor where to record encode time, bytes and packets sent, drops and exceptions
      */
     @Builder
     private StatsdMetricsReporter(@NonNull String metricsServerHost,
                                   int metricsServerPortNumber,
-                                  String[] tags) {
+                                  String[] tags,
+                                  boolean batchPackets,
+                                  int maxPacketBytes,
+                                  boolean useDistributions,
+                                  MetricsSelfMonitor selfMonitor) {
+        this.useDistributions = useDistributions;
+        this.selfMonitor = selfMonitor;
 
         if (metricsServerPortNumber == 0) {
             metricsServerPortNumber = DEFAULT_METRICS_SERVER_PORT_NUMBER;
@@ -72,14 +120,47 @@ public class StatsdMetricsReporter implements MetricsReporter {
             Log.d(LOG_TAG, String.format("Setting up statsd client connection to %s:%d",
                     metricsServerHost, metricsServerPortNumber));
 
-            statsDClient = new NonBlockingStatsDClient("", metricsServerHost, metricsServerPortNumber);
+            if (batchPackets) {
+                if (maxPacketBytes == 0) {
+                    maxPacketBytes = StatsdBatchEncoder.DEFAULT_MAX_PACKET_BYTES;
+                }
+
+                statsDClient = null;
+                batchEncoder = new StatsdBatchEncoder(maxPacketBytes, tags,
+                        openPacketSender(metricsServerHost, metricsServerPortNumber));
+                histogramEncoder = null;
+            } else {
+                statsDClient = new NonBlockingStatsDClient("", metricsServerHost, metricsServerPortNumber);
+                batchEncoder = null;
+                histogramEncoder = new StatsdBatchEncoder(StatsdBatchEncoder.DEFAULT_MAX_PACKET_BYTES, tags,
+                        openPacketSender(metricsServerHost, metricsServerPortNumber));
+            }
         } catch (Exception ex) {
             throw new RuntimeException("Can't open statsd client", ex);
         }
     }
 
+    private static StatsdBatchEncoder.PacketSender openPacketSender(String host, int portNumber) throws Exception {
+        final DatagramChannel channel = DatagramChannel.open();
+        channel.connect(new InetSocketAddress(host, portNumber));
+        channel.configureBlocking(false);
+
+        return new StatsdBatchEncoder.PacketSender() {
+            @Override
+            public int send(ByteBuffer packet) throws Exception {
+                return channel.write(packet);
+            }
+        };
+    }
+
     @Override
-    public void reportMetrics(Set<GaugeMetricSource> gaugeSources) {
+    public void reportMetrics(MetricRegistry metricRegistry) {
+        if (batchEncoder != null) {
+            reportBatchedMetrics(metricRegistry);
+
+            return;
+        }
+
         if (statsDClient == null) {
             return;
         }
@@ -92,22 +173,167 @@ public class StatsdMetricsReporter implements MetricsReporter {
                     + Long.toString(beginSamplingTimeMs)).toString();
 
             tags[tags.length - 1] = timestampTag;
+            lastSampleTimestampMillis = beginSamplingTimeMs;
+
+            metricRegistry.sampleAll();
 
-            for (GaugeMetricSource gaugeSource : gaugeSources) {
-                final double value = gaugeSource.getValue();
+            final long beginEncodeNanos = System.nanoTime();
+
+            for (int id = 0; id < metricRegistry.size(); id++) {
+                final double value = metricRegistry.getValue(id);
 
                 if (value != MetricsSampler.NO_REPORT_VALUE) {
-                    statsDClient.gauge(gaugeSource.getSampleName(), value, tags);
+                    statsDClient.gauge(metricRegistry.getName(id), value, tags);
                 }
             }
 
+            metricIntervals.update(metricRegistry);
+            metricIntervals.sendTo(this, beginSamplingTimeMs);
+            histogramEncoder.flush();
+
             long endSamplingTimeMs = System.currentTimeMillis();
 
-            statsDClient.gauge("metric_sample_time_ms",
+            statsDClient.gauge(SAMPLE_TIME_METRIC_NAME,
                     (endSamplingTimeMs - beginSamplingTimeMs), tags);
+
+            if (selfMonitor != null) {
+                selfMonitor.recordEncodeNanos(System.nanoTime() - beginEncodeNanos);
+            }
         } catch (Throwable t) {
             // metrics should do no harm
             Log.e(LOG_TAG, "Caught exception while sampling for metrics", t);
+
+            if (selfMonitor != null) {
+                selfMonitor.countException();
+            }
+        }
+    }
+
+    private void reportBatchedMetrics(MetricRegistry metricRegistry) {
+        try {
+            long beginSamplingTimeMs = System.currentTimeMillis();
+
+            metricRegistry.sampleAll();
+
+            final long beginEncodeNanos = System.nanoTime();
+
+            for (int id = 0; id < metricRegistry.size(); id++) {
+                final double value = metricRegistry.getValue(id);
+
+                if (value != MetricsSampler.NO_REPORT_VALUE) {
+                    batchEncoder.gauge(metricRegistry.getName(id), value, beginSamplingTimeMs);
+                }
+            }
+
+            metricIntervals.update(metricRegistry);
+            metricIntervals.sendTo(this, beginSamplingTimeMs);
+
+            long endSamplingTimeMs = System.currentTimeMillis();
+
+            batchEncoder.gauge(SAMPLE_TIME_METRIC_NAME,
+                    (endSamplingTimeMs - beginSamplingTimeMs), beginSamplingTimeMs);
+            batchEncoder.flush();
+
+            if (selfMonitor != null) {
+                selfMonitor.recordEncodeNanos(System.nanoTime() - beginEncodeNanos);
+                recordEncoderCounts();
+            }
+        } catch (Throwable t) {
+            // metrics should do no harm
+            Log.e(LOG_TAG, "Caught exception while sampling for metrics", t);
+
+            if (selfMonitor != null) {
+                selfMonitor.countException();
+            }
+        }
+    }
+
+    private void recordEncoderCounts() {
+        final long packetsSent = batchEncoder.getPacketsSent();
+        final long bytesSent = batchEncoder.getBytesSent();
+        final long linesDropped = batchEncoder.getLinesDropped();
+
+        selfMonitor.addPacketsSent(packetsSent - recordedPacketsSent);
+        selfMonitor.addBytesSent(bytesSent - recordedBytesSent);
+        selfMonitor.addDroppedSamples(linesDropped - recordedLinesDropped);
+
+        recordedPacketsSent = packetsSent;
+        recordedBytesSent = bytesSent;
+        recordedLinesDropped = linesDropped;
+    }
+
+    /**
+     * @return the number of UDP packets sent so far in batched mode
+     */
+    public long getPacketsSent() {
+        return batchEncoder == null ? 0 : batchEncoder.getPacketsSent();
+    }
+
+    @Override
+    public void sample(String name, long timestampMillis, double value) {
+        if (batchEncoder != null) {
+            batchEncoder.gauge(name, value, timestampMillis);
+
+            return;
+        }
+
+        if (statsDClient == null) {
+            return;
+        }
+
+        updateTimestampTag(timestampMillis);
+
+        statsDClient.gauge(name, value, tags);
+    }
+
+    @Override
+    public void count(String name, long timestampMillis, long delta) {
+        if (batchEncoder != null) {
+            batchEncoder.count(name, delta, timestampMillis);
+
+            return;
+        }
+
+        if (statsDClient == null) {
+            return;
+        }
+
+        updateTimestampTag(timestampMillis);
+
+        statsDClient.count(name, delta, tags);
+    }
+
+    @Override
+    public void histogram(String name, long timestampMillis, double value, long count) {
+        if (batchEncoder != null) {
+            batchEncoder.histogram(name, value, count, useDistributions, timestampMillis);
+
+            return;
+        }
+
+        if (histogramEncoder != null) {
+            histogramEncoder.histogram(name, value, count, useDistributions, timestampMillis);
+        }
+    }
+
+    private void updateTimestampTag(long timestampMillis) {
+        if (timestampMillis != lastSampleTimestampMillis) {
+            tags[tags.length - 1] = "_ts:" + timestampMillis;
+            lastSampleTimestampMillis = timestampMillis;
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (batchEncoder != null) {
+            batchEncoder.flush();
+
+            if (selfMonitor != null) {
+                recordEncoderCounts();
+            }
+        } else if (histogramEncoder != null) {
+            // otherwise, the statsd client sends on its own schedule
+            histogramEncoder.flush();
         }
     }
 }
@@ -0,0 +1,230 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a GaugeMetricSource on every sampling pass, but only reports aggregates once per
+ * window of passes: the minimum, maximum, mean and count of the values in the window, and
+ * estimates of the requested quantiles (see P2QuantileEstimator). Compared to
+ * SamplingMetricSource, spikes between reports still show up, in the maximum.
+ *
+ * Each aggregate is reported as its own metric, named after the real source with a suffix
+ * of _min, _max, _mean, _count and _p50, _p95 etc. Use addTo() to add them all to a
+ * MetricsSampler.
+ *
+ * The real source is only read by sample(), which must be called once per sampling pass
+ * before the aggregates are sampled - RobotMetricsSampler does this in doSamples(). Reading
+ * the aggregates has no side effects, so they may be sampled in any order.
+ */
+public class WindowedAggregateMetricSource {
+    private final GaugeMetricSource realSource;
+
+    private final int windowSize;
+
+    private final P2QuantileEstimator[] quantileEstimators;
+
+    private final List<GaugeMetricSource> aggregateSources;
+
+    private int passesInWindow;
+
+    private int count;
+
+    private double min;
+
+    private double max;
+
+    private double sum;
+
+    private boolean windowClosed;
+
+    private double windowMin;
+
+    private double windowMax;
+
+    private double windowMean;
+
+    private int windowCount;
+
+    private final double[] windowQuantiles;
+
+    /**
+     * @param realSource the source to aggregate
+     * @param windowSize number of sampling passes in each window
+     * @param quantiles the quantiles to report, between 0 and 1
+     */
+    public WindowedAggregateMetricSource(GaugeMetricSource realSource, int windowSize, double... quantiles) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1");
+        }
+
+        this.realSource = realSource;
+        this.windowSize = windowSize;
+
+        quantileEstimators = new P2QuantileEstimator[quantiles.length];
+        windowQuantiles = new double[quantiles.length];
+
+        for (int i = 0; i < quantiles.length; i++) {
+            quantileEstimators[i] = new P2QuantileEstimator(quantiles[i]);
+        }
+
+        final String name = realSource.getSampleName();
+
+        List<GaugeMetricSource> sources = new ArrayList<>();
+
+        sources.add(new AggregateSource(name + "_min") {
+            @Override
+            public double getValue() {
+                return windowClosed ? windowMin : MetricsSampler.NO_REPORT_VALUE;
+            }
+        });
+
+        sources.add(new AggregateSource(name + "_max") {
+            @Override
+            public double getValue() {
+                return windowClosed ? windowMax : MetricsSampler.NO_REPORT_VALUE;
+            }
+        });
+
+        sources.add(new AggregateSource(name + "_mean") {
+            @Override
+            public double getValue() {
+                return windowClosed ? windowMean : MetricsSampler.NO_REPORT_VALUE;
+            }
+        });
+
+        sources.add(new AggregateSource(name + "_count") {
+            @Override
+            public double getValue() {
+                return windowClosed ? windowCount : MetricsSampler.NO_REPORT_VALUE;
+            }
+        });
+
+        for (int i = 0; i < quantiles.length; i++) {
+            final int quantileIndex = i;
+
+            sources.add(new AggregateSource(name + "_" + quantileSuffix(quantiles[i])) {
+                @Override
+                public double getValue() {
+                    return windowClosed ? windowQuantiles[quantileIndex] : MetricsSampler.NO_REPORT_VALUE;
+                }
+            });
+        }
+
+        aggregateSources = Collections.unmodifiableList(sources);
+
+        resetWindow();
+    }
+
+    /**
+     * @return the sources for each aggregate
+     */
+    public List<GaugeMetricSource> getSources() {
+        return aggregateSources;
+    }
+
+    public void addTo(MetricsSampler metricsSampler) {
+        for (GaugeMetricSource source : aggregateSources) {
+            metricsSampler.addSource(source);
+        }
+    }
+
+    /**
+     * Reads the real source, once per sampling pass, before the aggregates are sampled
+     */
+    public void sample() {
+        windowClosed = false;
+
+        final double value = realSource.getValue();
+
+        if (value != MetricsSampler.NO_REPORT_VALUE) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+
+            for (P2QuantileEstimator estimator : quantileEstimators) {
+                estimator.add(value);
+            }
+        }
+
+        if (++passesInWindow < windowSize) {
+            return;
+        }
+
+        if (count > 0) {
+            windowClosed = true;
+            windowMin = min;
+            windowMax = max;
+            windowMean = sum / count;
+            windowCount = count;
+
+            for (int i = 0; i < quantileEstimators.length; i++) {
+                windowQuantiles[i] = quantileEstimators[i].getEstimate();
+            }
+        }
+
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        passesInWindow = 0;
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+
+        for (P2QuantileEstimator estimator : quantileEstimators) {
+            estimator.reset();
+        }
+    }
+
+    /**
+     * p50 for 0.5, p99_9 for 0.999
+     */
+    static String quantileSuffix(double quantile) {
+        String percentile = Double.toString(Math.round(quantile * 100000) / 1000.0);
+
+        if (percentile.endsWith(".0")) {
+            percentile = percentile.substring(0, percentile.length() - 2);
+        }
+
+        return "p" + percentile.replace('.', '_');
+    }
+
+    private abstract static class AggregateSource implements GaugeMetricSource {
+        private final String sampleName;
+
+        AggregateSource(String sampleName) {
+            this.sampleName = sampleName;
+        }
+
+        @Override
+        public String getSampleName() {
+            return sampleName;
+        }
+    }
+}
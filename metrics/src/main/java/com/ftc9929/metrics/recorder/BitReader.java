@@ -0,0 +1,69 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+/**
+ * Reads values written by a BitWriter
+ */
+final class BitReader {
+    private final byte[] buffer;
+
+    private final long lengthBits;
+
+    private long bitPosition;
+
+    BitReader(byte[] buffer, int lengthBytes) {
+        this.buffer = buffer;
+        this.lengthBits = lengthBytes * 8L;
+    }
+
+    /**
+     * Reads numBits (0 to 64) bits, returned in the low bits of the result
+     */
+    long readBits(int numBits) {
+        if (bitPosition + numBits > lengthBits) {
+            throw new IllegalStateException("Read past the end of the encoded data");
+        }
+
+        long value = 0;
+
+        while (numBits > 0) {
+            final int byteIndex = (int) (bitPosition >>> 3);
+            final int bitsLeftInByte = 8 - (int) (bitPosition & 7);
+            final int bitsToRead = Math.min(bitsLeftInByte, numBits);
+            final int bits = ((buffer[byteIndex] & 0xFF) >>> (bitsLeftInByte - bitsToRead))
+                    & ((1 << bitsToRead) - 1);
+
+            value = (value << bitsToRead) | bits;
+
+            bitPosition += bitsToRead;
+            numBits -= bitsToRead;
+        }
+
+        return value;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Appends values of any number of bits (most significant bit first) to a growable byte array
+ */
+final class BitWriter {
+    private byte[] buffer;
+
+    private long bitPosition;
+
+    BitWriter(int initialCapacityBytes) {
+        buffer = new byte[Math.max(initialCapacityBytes, 8)];
+    }
+
+    /**
+     * Writes the low numBits (0 to 64) of value
+     */
+    void writeBits(long value, int numBits) {
+        ensureCapacity(numBits);
+
+        while (numBits > 0) {
+            final int byteIndex = (int) (bitPosition >>> 3);
+            final int freeBitsInByte = 8 - (int) (bitPosition & 7);
+            final int bitsToWrite = Math.min(freeBitsInByte, numBits);
+            final int bits = (int) (value >>> (numBits - bitsToWrite)) & ((1 << bitsToWrite) - 1);
+
+            buffer[byteIndex] |= bits << (freeBitsInByte - bitsToWrite);
+
+            bitPosition += bitsToWrite;
+            numBits -= bitsToWrite;
+        }
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * @return number of bytes written so far, including a partially filled last byte
+     */
+    int getLengthBytes() {
+        return (int) ((bitPosition + 7) >>> 3);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, getLengthBytes());
+    }
+
+    void reset() {
+        Arrays.fill(buffer, 0, getLengthBytes(), (byte) 0);
+        bitPosition = 0;
+    }
+
+    private void ensureCapacity(int numBits) {
+        final long neededBytes = (bitPosition + numBits + 7) >>> 3;
+
+        if (neededBytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.max(neededBytes, buffer.length * 2L));
+        }
+    }
+}
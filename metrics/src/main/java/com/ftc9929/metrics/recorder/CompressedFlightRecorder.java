@@ -0,0 +1,337 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import android.util.Log;
+
+import com.ftc9929.metrics.MetricRegistry;
+import com.ftc9929.metrics.MetricsReporter;
+import com.ftc9929.metrics.MetricsSampler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import lombok.Builder;
+import lombok.NonNull;
+
+import static com.ftc9929.corelib.Constants.LOG_TAG;
+
+/**
+ * A MetricsReporter that records metrics on the robot, like FlightRecorder, but compresses
+ * them with a MetricCodec (GorillaMetricCodec by default) to use a fraction of the space.
+ *
+ * Counters and histograms are recorded the same way as by FlightRecorder.
+ *
+ * Samples are kept in memory, one encoded series per metric, and finished as a block every
+ * passesPerBlock sampling passes (and when closed). Finished blocks are written to the file
+ * by a background thread, so the loop never waits for storage. If more than maxPendingBlocks
+ * are waiting to be written, new blocks are dropped (and counted) rather than blocking the
+ * loop. A crash loses at most the samples in the block being built and any blocks still
+ * waiting to be written. Use CompressedRecordingReader to read the file back.
+ *
+ * File format, written with DataOutputStream:
+ *
+ * <pre>
+ *     int    magic ("TNTC")
+ *     int    format version
+ *     UTF    codec name
+ *     blocks, each:
+ *         int    number of series in the block
+ *         each series:
+ *             int    metric id
+ *             UTF    metric name
+ *             int    number of samples
+ *             int    encoded length in bytes
+ *             byte[] encoded series
+ * </pre>
+ */
+public class CompressedFlightRecorder implements MetricsReporter, Closeable {
+    static final int MAGIC = 0x544E5443;
+
+    static final int VERSION = 1;
+
+    static final String FILE_EXTENSION = ".tntc";
+
+    public static final int DEFAULT_PASSES_PER_BLOCK = 500;
+
+    public static final int DEFAULT_MAX_PENDING_BLOCKS = 4;
+
+    // Queued by close() after the last block, stops the writer thread
+    private static final byte[] END_OF_RECORDING = new byte[0];
+
+    private final MetricCodec metricCodec;
+
+    private final int passesPerBlock;
+
+    private final File file;
+
+    // Only used by the writer thread, once the header has been written
+    private final DataOutputStream out;
+
+    // Each block is built here on the loop thread, then queued for the writer thread
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream block = new DataOutputStream(blockBytes);
+
+    private final BlockingQueue<byte[]> pendingBlocks;
+
+    private final Thread writerThread;
+
+    // Only written by the loop thread
+    private volatile long droppedBlocks;
+
+    // Indexed by metric id + 1, with the sample time at 0
+    private MetricCodec.Encoder[] encoders = new MetricCodec.Encoder[0];
+
+    private String[] names = new String[0];
+
+    private final RecordedMetrics recordedMetrics = new RecordedMetrics();
+
+    private int passesInBlock;
+
+    private boolean closed;
+
+    /**
+     * @param directory where the recording is written, created if it does not exist
+     * @param filePrefix start of the name of the recording file - default of "metrics" if not given
+     * @param metricCodec how each metric's samples are encoded - default of GorillaMetricCodec if not given
+     * @param passesPerBlock number of sampling passes in each block written to the file - default of 500 if not given
+     * @param maxPendingBlocks number of finished blocks that can be waiting to be written - default of 4 if not given
+     */
+    @Builder
+    private CompressedFlightRecorder(@NonNull File directory,
+                                     String filePrefix,
+                                     MetricCodec metricCodec,
+                                     int passesPerBlock,
+                                     int maxPendingBlocks) {
+        this.metricCodec = metricCodec == null ? new GorillaMetricCodec() : metricCodec;
+        this.passesPerBlock = passesPerBlock == 0 ? DEFAULT_PASSES_PER_BLOCK : passesPerBlock;
+        this.pendingBlocks = new ArrayBlockingQueue<>(maxPendingBlocks == 0
+                ? DEFAULT_MAX_PENDING_BLOCKS : maxPendingBlocks);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException(String.format("Can't create flight recorder directory %s",
+                    directory));
+        }
+
+        file = new File(directory, String.format("%s-%d%s",
+                filePrefix == null ? "metrics" : filePrefix, System.currentTimeMillis(), FILE_EXTENSION));
+
+        try {
+            Log.d(LOG_TAG, String.format("Recording compressed metrics to %s", file));
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(this.metricCodec.getName());
+            out.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException("Can't open flight recording", ex);
+        }
+
+        addEncoder(0, FlightRecorderFormat.SAMPLE_TIME_NAME);
+
+        writerThread = new Thread(new BlockWriter(), "flight-recorder-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void reportMetrics(MetricRegistry metricRegistry) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            final long beginSamplingTimeMs = System.currentTimeMillis();
+
+            recordedMetrics.update(metricRegistry);
+
+            final int metricCount = recordedMetrics.size();
+
+            if (encoders.length != metricCount + 1) {
+                // A new counter or histogram can change the ids of those after it, so
+                // finish the block with the old ids before naming series for the new ones
+                queueBlock(finishBlock());
+
+                for (int id = 0; id < metricCount; id++) {
+                    addEncoder(id + 1, recordedMetrics.getName(id));
+                }
+            }
+
+            for (int id = 0; id < metricCount; id++) {
+                final double value = recordedMetrics.getValue(id);
+
+                if (value != MetricsSampler.NO_REPORT_VALUE) {
+                    encoders[id + 1].append(beginSamplingTimeMs, value);
+                }
+            }
+
+            encoders[0].append(beginSamplingTimeMs, System.currentTimeMillis() - beginSamplingTimeMs);
+
+            if (++passesInBlock == passesPerBlock) {
+                queueBlock(finishBlock());
+            }
+        } catch (Throwable t) {
+            // metrics should do no harm
+            Log.e(LOG_TAG, "Caught exception while recording metrics", t);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of blocks dropped because the writer thread could not keep up
+     */
+    public long getDroppedBlocks() {
+        return droppedBlocks;
+    }
+
+    /**
+     * Writes any samples not yet written, waiting for the writer thread to finish, and
+     * closes the recording
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            final byte[] lastBlock = finishBlock();
+
+            if (lastBlock != null) {
+                pendingBlocks.put(lastBlock);
+            }
+
+            pendingBlocks.put(END_OF_RECORDING);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void addEncoder(int index, String name) {
+        if (index >= encoders.length) {
+            encoders = Arrays.copyOf(encoders, index + 1);
+            names = Arrays.copyOf(names, index + 1);
+
+            encoders[index] = metricCodec.newEncoder();
+        }
+
+        names[index] = name;
+    }
+
+    /**
+     * Encodes the samples since the last block, and starts a new block
+     *
+     * @return the encoded block, or null if there were no samples
+     */
+    private byte[] finishBlock() throws IOException {
+        int seriesCount = 0;
+
+        for (MetricCodec.Encoder encoder : encoders) {
+            if (encoder.getSampleCount() > 0) {
+                seriesCount++;
+            }
+        }
+
+        passesInBlock = 0;
+
+        if (seriesCount == 0) {
+            return null;
+        }
+
+        blockBytes.reset();
+        block.writeInt(seriesCount);
+
+        for (int index = 0; index < encoders.length; index++) {
+            final MetricCodec.Encoder encoder = encoders[index];
+
+            if (encoder.getSampleCount() == 0) {
+                continue;
+            }
+
+            block.writeInt(index - 1);
+            block.writeUTF(names[index]);
+            block.writeInt(encoder.getSampleCount());
+            block.writeInt(encoder.getEncodedLength());
+            encoder.writeTo(block);
+
+            encoder.reset();
+        }
+
+        block.flush();
+
+        return blockBytes.toByteArray();
+    }
+
+    private void queueBlock(byte[] finishedBlock) {
+        if (finishedBlock != null && !pendingBlocks.offer(finishedBlock)) {
+            droppedBlocks++;
+        }
+    }
+
+    private class BlockWriter implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final byte[] finishedBlock = pendingBlocks.take();
+
+                    if (finishedBlock == END_OF_RECORDING) {
+                        return;
+                    }
+
+                    try {
+                        out.write(finishedBlock);
+                        out.flush();
+                    } catch (IOException ex) {
+                        // metrics should do no harm
+                        Log.e(LOG_TAG, "Caught exception while writing flight recording", ex);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // we've been asked to stop
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                    Log.e(LOG_TAG, "Caught exception while closing flight recording", ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import lombok.NonNull;
+
+/**
+ * Reads a file written by CompressedFlightRecorder, decoding one block at a time.
+ *
+ * Within a block samples are grouped by metric (all samples for one metric, then the next),
+ * rather than in the order they were recorded.
+ */
+public class CompressedRecordingReader implements Closeable {
+    private final DataInputStream in;
+
+    private final MetricCodec metricCodec;
+
+    /**
+     * @param extraCodecs codecs other than FixedMetricCodec and GorillaMetricCodec that
+     *                    the recording may have been written with
+     */
+    public CompressedRecordingReader(@NonNull File recording, MetricCodec... extraCodecs) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(recording)));
+
+        try {
+            if (in.readInt() != CompressedFlightRecorder.MAGIC) {
+                throw new IllegalArgumentException(String.format("%s is not a compressed flight recording",
+                        recording));
+            }
+
+            final int version = in.readInt();
+
+            if (version != CompressedFlightRecorder.VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "%s is compressed flight recording version %d, can only read version %d",
+                        recording, version, CompressedFlightRecorder.VERSION));
+            }
+
+            metricCodec = findCodec(in.readUTF(), extraCodecs);
+        } catch (RuntimeException | IOException ex) {
+            in.close();
+
+            throw ex;
+        }
+    }
+
+    public MetricCodec getMetricCodec() {
+        return metricCodec;
+    }
+
+    /**
+     * Decodes the rest of the recording, passing each sample to the visitor. A block that
+     * was only partly written (the robot lost power while writing it) ends the recording.
+     */
+    public void forEachRecord(@NonNull FlightRecordingReader.RecordVisitor visitor) throws IOException {
+        while (true) {
+            final int seriesCount;
+
+            try {
+                seriesCount = in.readInt();
+            } catch (EOFException endOfRecording) {
+                return;
+            }
+
+            for (int i = 0; i < seriesCount; i++) {
+                final int metricId;
+                final String metricName;
+                final int sampleCount;
+                final byte[] encoded;
+
+                try {
+                    metricId = in.readInt();
+                    metricName = in.readUTF();
+                    sampleCount = in.readInt();
+                    encoded = new byte[in.readInt()];
+                    in.readFully(encoded);
+                } catch (EOFException truncatedBlock) {
+                    return;
+                }
+
+                final MetricCodec.Decoder decoder = metricCodec.newDecoder(encoded, sampleCount);
+
+                while (decoder.next()) {
+                    visitor.record(metricId, metricName, decoder.getTimestampMillis(), decoder.getValue());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static MetricCodec findCodec(String name, MetricCodec[] extraCodecs) {
+        if (FixedMetricCodec.NAME.equals(name)) {
+            return new FixedMetricCodec();
+        }
+
+        if (GorillaMetricCodec.NAME.equals(name)) {
+            return new GorillaMetricCodec();
+        }
+
+        if (extraCodecs != null) {
+            for (MetricCodec codec : extraCodecs) {
+                if (codec.getName().equals(name)) {
+                    return codec;
+                }
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("No codec named '%s'", name));
+    }
+}
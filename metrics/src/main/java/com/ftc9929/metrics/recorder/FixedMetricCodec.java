@@ -0,0 +1,121 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stores every sample as a 64-bit timestamp and a 64-bit value, 16 bytes per sample,
+ * the same as FlightRecorder's records (less the metric id)
+ */
+public class FixedMetricCodec implements MetricCodec {
+    public static final String NAME = "fixed";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Encoder newEncoder() {
+        return new FixedEncoder();
+    }
+
+    @Override
+    public Decoder newDecoder(byte[] encoded, int sampleCount) {
+        return new FixedDecoder(encoded, sampleCount);
+    }
+
+    private static class FixedEncoder implements Encoder {
+        private final BitWriter bitWriter = new BitWriter(1024);
+
+        private int sampleCount;
+
+        @Override
+        public void append(long timestampMillis, double value) {
+            bitWriter.writeBits(timestampMillis, 64);
+            bitWriter.writeBits(Double.doubleToRawLongBits(value), 64);
+            sampleCount++;
+        }
+
+        @Override
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        @Override
+        public int getEncodedLength() {
+            return bitWriter.getLengthBytes();
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            bitWriter.writeTo(out);
+        }
+
+        @Override
+        public void reset() {
+            bitWriter.reset();
+            sampleCount = 0;
+        }
+    }
+
+    private static class FixedDecoder implements Decoder {
+        private final BitReader bitReader;
+
+        private int samplesLeft;
+
+        private long timestampMillis;
+
+        private double value;
+
+        FixedDecoder(byte[] encoded, int sampleCount) {
+            bitReader = new BitReader(encoded, encoded.length);
+            samplesLeft = sampleCount;
+        }
+
+        @Override
+        public boolean next() {
+            if (samplesLeft == 0) {
+                return false;
+            }
+
+            timestampMillis = bitReader.readBits(64);
+            value = Double.longBitsToDouble(bitReader.readBits(64));
+            samplesLeft--;
+
+            return true;
+        }
+
+        @Override
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+}
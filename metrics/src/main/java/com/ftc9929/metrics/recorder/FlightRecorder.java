@@ -0,0 +1,337 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import android.util.Log;
+
+import com.ftc9929.metrics.MetricRegistry;
+import com.ftc9929.metrics.MetricsReporter;
+import com.ftc9929.metrics.MetricsSampler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.NonNull;
+
+import static com.ftc9929.corelib.Constants.LOG_TAG;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.DICTIONARY_OFFSET;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.FILE_EXTENSION;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.MAGIC;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.RECORD_BYTES;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.RECORD_COUNT_OFFSET;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.SAMPLE_TIME_ID;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.SAMPLE_TIME_NAME;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.UTF_8;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.VERSION;
+
+/**
+ * A MetricsReporter that records metrics on the robot, for when there is no network to send
+ * them over (at competition, for example). Samples are appended as fixed-size records to a
+ * memory-mapped file, so recording a value is a few stores into memory, and the operating
+ * system writes the file out even if the robot controller app crashes.
+ *
+ * Counters are recorded as running totals, and histograms as a summary of each sampling
+ * pass (name_count, name_mean, name_p50, name_p99 and name_max).
+ *
+ * When a file is full, or a new metric is registered, the recorder moves on to a new file
+ * (each file starts with the names of all metrics recorded in it), deleting the oldest
+ * files beyond maxFiles - including files left in the directory by earlier runs with the
+ * same filePrefix. Use FlightRecordingReader to export or replay recordings.
+ */
+public class FlightRecorder implements MetricsReporter, Closeable {
+    public static final int DEFAULT_MAX_FILE_BYTES = 8 * 1024 * 1024;
+
+    public static final int DEFAULT_MAX_FILES = 10;
+
+    private final File directory;
+
+    private final String filePrefix;
+
+    private final int maxFileBytes;
+
+    private final int maxFiles;
+
+    private final Deque<File> recordedFiles = new ArrayDeque<>();
+
+    private final RecordedMetrics recordedMetrics = new RecordedMetrics();
+
+    private File currentFile;
+
+    private RandomAccessFile currentRecording;
+
+    private MappedByteBuffer mappedFile;
+
+    // Number of metrics in the current file's dictionary
+    private int recordedMetricCount;
+
+    private int recordCount;
+
+    private int fileSequence;
+
+    private boolean closed;
+
+    /**
+     * @param directory where recordings are written, created if it does not exist
+     * @param filePrefix start of the name of each recording file - default of "metrics" if not given
+     * @param maxFileBytes size of each recording file - default of 8 MiB if not given
+     * @param maxFiles number of recording files to keep - default of 10 if not given
+     */
+    @Builder
+    private FlightRecorder(@NonNull File directory,
+                           String filePrefix,
+                           int maxFileBytes,
+                           int maxFiles) {
+        this.directory = directory;
+        this.filePrefix = filePrefix == null ? "metrics" : filePrefix;
+        this.maxFileBytes = maxFileBytes == 0 ? DEFAULT_MAX_FILE_BYTES : maxFileBytes;
+        this.maxFiles = maxFiles == 0 ? DEFAULT_MAX_FILES : maxFiles;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException(String.format("Can't create flight recorder directory %s",
+                    directory));
+        }
+
+        addEarlierRecordings();
+    }
+
+    @Override
+    public void reportMetrics(MetricRegistry metricRegistry) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            final long beginSamplingTimeMs = System.currentTimeMillis();
+
+            recordedMetrics.update(metricRegistry);
+
+            final int metricCount = recordedMetrics.size();
+
+            // Room for every metric, plus the sample time
+            final int passBytes = (metricCount + 1) * RECORD_BYTES;
+
+            if (mappedFile == null
+                    || metricCount != recordedMetricCount
+                    || mappedFile.remaining() < passBytes) {
+                startNewFile(passBytes);
+            }
+
+            int recordsThisPass = 0;
+
+            for (int id = 0; id < metricCount; id++) {
+                final double value = recordedMetrics.getValue(id);
+
+                if (value != MetricsSampler.NO_REPORT_VALUE) {
+                    putRecord(id, beginSamplingTimeMs, value);
+                    recordsThisPass++;
+                }
+            }
+
+            putRecord(SAMPLE_TIME_ID, beginSamplingTimeMs,
+                    System.currentTimeMillis() - beginSamplingTimeMs);
+            recordsThisPass++;
+
+            // Readers only look at records up to this count, so a partially
+            // written pass is never seen
+            recordCount += recordsThisPass;
+            mappedFile.putInt(RECORD_COUNT_OFFSET, recordCount);
+        } catch (Throwable t) {
+            // metrics should do no harm
+            Log.e(LOG_TAG, "Caught exception while recording metrics", t);
+        }
+    }
+
+    /**
+     * @return the file currently being recorded to, or null if nothing has been recorded yet
+     */
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * Writes out and closes the current recording file
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+
+        closeCurrentFile();
+    }
+
+    private void putRecord(int id, long timestampMillis, double value) {
+        mappedFile.putInt(id);
+        mappedFile.putLong(timestampMillis);
+        mappedFile.putDouble(value);
+    }
+
+    private void startNewFile(int passBytes) throws IOException {
+        closeCurrentFile();
+
+        final byte[][] nameBytes = new byte[recordedMetrics.size()][];
+        int headerBytes = DICTIONARY_OFFSET + 4 + dictionaryEntryBytes(SAMPLE_TIME_NAME.getBytes(UTF_8));
+
+        for (int id = 0; id < nameBytes.length; id++) {
+            nameBytes[id] = recordedMetrics.getName(id).getBytes(UTF_8);
+            headerBytes += dictionaryEntryBytes(nameBytes[id]);
+        }
+
+        if (headerBytes + passBytes > maxFileBytes) {
+            throw new IllegalArgumentException(String.format(
+                    "Flight recorder files of %d bytes are too small for %d metrics",
+                    maxFileBytes, nameBytes.length));
+        }
+
+        final long startTimeMs = System.currentTimeMillis();
+        File file;
+
+        do {
+            // Another recorder may already have used this name within the same millisecond
+            file = new File(directory, String.format("%s-%d-%d%s", filePrefix,
+                    startTimeMs, fileSequence++, FILE_EXTENSION));
+        } while (file.exists());
+
+        Log.d(LOG_TAG, String.format("Recording metrics to %s", file));
+
+        currentFile = file;
+        currentRecording = new RandomAccessFile(file, "rw");
+        mappedFile = currentRecording.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, maxFileBytes);
+
+        mappedFile.putInt(MAGIC);
+        mappedFile.putInt(VERSION);
+        mappedFile.putInt(0); // record count
+        mappedFile.putInt(headerBytes);
+        mappedFile.putInt(nameBytes.length + 1);
+
+        putDictionaryEntry(SAMPLE_TIME_ID, SAMPLE_TIME_NAME.getBytes(UTF_8));
+
+        for (int id = 0; id < nameBytes.length; id++) {
+            putDictionaryEntry(id, nameBytes[id]);
+        }
+
+        recordedMetricCount = nameBytes.length;
+        recordCount = 0;
+
+        recordedFiles.addLast(file);
+
+        while (recordedFiles.size() > maxFiles) {
+            File oldestFile = recordedFiles.removeFirst();
+
+            if (!oldestFile.delete()) {
+                Log.w(LOG_TAG, String.format("Could not delete old flight recording %s", oldestFile));
+            }
+        }
+    }
+
+    /**
+     * Counts recordings already in the directory towards maxFiles, oldest first, so they
+     * are deleted as this recorder starts new files
+     */
+    private void addEarlierRecordings() {
+        final File[] files = directory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        final List<File> earlierRecordings = new ArrayList<>();
+
+        for (File file : files) {
+            if (file.isFile() && parseFileName(file) != null) {
+                earlierRecordings.add(file);
+            }
+        }
+
+        Collections.sort(earlierRecordings, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                final long[] firstParts = parseFileName(first);
+                final long[] secondParts = parseFileName(second);
+
+                final int byStartTime = Long.compare(firstParts[0], secondParts[0]);
+
+                return byStartTime != 0 ? byStartTime : Long.compare(firstParts[1], secondParts[1]);
+            }
+        });
+
+        recordedFiles.addAll(earlierRecordings);
+    }
+
+    /**
+     * @return the start time and sequence number from the name of a file written by a
+     * recorder with this filePrefix, or null for any other file
+     */
+    private long[] parseFileName(File file) {
+        final String name = file.getName();
+        final String start = filePrefix + "-";
+
+        if (!name.startsWith(start) || !name.endsWith(FILE_EXTENSION)) {
+            return null;
+        }
+
+        final String[] parts = name.substring(start.length(),
+                name.length() - FILE_EXTENSION.length()).split("-");
+
+        if (parts.length != 2) {
+            return null;
+        }
+
+        try {
+            return new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static int dictionaryEntryBytes(byte[] nameBytes) {
+        return 4 + 2 + nameBytes.length;
+    }
+
+    private void putDictionaryEntry(int id, byte[] nameBytes) {
+        mappedFile.putInt(id);
+        mappedFile.putShort((short) nameBytes.length);
+        mappedFile.put(nameBytes);
+    }
+
+    private void closeCurrentFile() throws IOException {
+        if (mappedFile != null) {
+            mappedFile.force();
+            mappedFile = null;
+        }
+
+        if (currentRecording != null) {
+            currentRecording.close();
+            currentRecording = null;
+        }
+    }
+}
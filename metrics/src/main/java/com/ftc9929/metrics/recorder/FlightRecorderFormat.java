@@ -0,0 +1,69 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the files written by FlightRecorder, all values big-endian:
+ *
+ * <pre>
+ *     int    magic ("TNTM")
+ *     int    format version
+ *     int    number of records in the file, updated after every sampling pass
+ *     int    offset of the first record
+ *     int    number of dictionary entries
+ *     each dictionary entry:
+ *         int    metric id
+ *         short  length of the name in bytes
+ *         byte[] name, UTF-8
+ *     records, starting at the first record offset:
+ *         int    metric id
+ *         long   timestamp, milliseconds since the epoch
+ *         double value
+ * </pre>
+ */
+final class FlightRecorderFormat {
+    static final int MAGIC = 0x544E544D;
+
+    static final int VERSION = 1;
+
+    static final int RECORD_COUNT_OFFSET = 8;
+
+    static final int FIRST_RECORD_OFFSET_OFFSET = 12;
+
+    static final int DICTIONARY_OFFSET = 16;
+
+    static final int RECORD_BYTES = 4 + 8 + 8;
+
+    static final int SAMPLE_TIME_ID = -1;
+
+    static final String SAMPLE_TIME_NAME = "metric_sample_time_ms";
+
+    static final String FILE_EXTENSION = ".tntm";
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private FlightRecorderFormat() {
+    }
+}
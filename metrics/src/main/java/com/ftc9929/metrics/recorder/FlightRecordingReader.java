@@ -0,0 +1,197 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import com.ftc9929.metrics.SampleSink;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.NonNull;
+
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.DICTIONARY_OFFSET;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.FIRST_RECORD_OFFSET_OFFSET;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.MAGIC;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.RECORD_BYTES;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.RECORD_COUNT_OFFSET;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.UTF_8;
+import static com.ftc9929.metrics.recorder.FlightRecorderFormat.VERSION;
+
+/**
+ * Reads a file written by FlightRecorder, to export it as CSV or to replay it into
+ * a SampleSink - for example a StatsdMetricsReporter, to get a match's metrics into
+ * the usual dashboards once the robot is back on a network.
+ */
+public class FlightRecordingReader implements Closeable {
+    /**
+     * Receives each record in a recording, in the order they were recorded
+     */
+    public interface RecordVisitor {
+        void record(int metricId, String metricName, long timestampMillis, double value);
+    }
+
+    private final RandomAccessFile file;
+
+    private final MappedByteBuffer mappedFile;
+
+    private final Map<Integer, String> namesById;
+
+    private final int recordCount;
+
+    private final int firstRecordOffset;
+
+    public FlightRecordingReader(@NonNull File recording) throws IOException {
+        file = new RandomAccessFile(recording, "r");
+
+        try {
+            mappedFile = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+            if (file.length() < DICTIONARY_OFFSET + 4 || mappedFile.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException(String.format("%s is not a flight recording", recording));
+            }
+
+            final int version = mappedFile.getInt(4);
+
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "%s is flight recording version %d, can only read version %d", recording, version, VERSION));
+            }
+
+            recordCount = mappedFile.getInt(RECORD_COUNT_OFFSET);
+            firstRecordOffset = mappedFile.getInt(FIRST_RECORD_OFFSET_OFFSET);
+
+            mappedFile.position(DICTIONARY_OFFSET);
+
+            final int dictionarySize = mappedFile.getInt();
+            final Map<Integer, String> names = new HashMap<>();
+
+            for (int i = 0; i < dictionarySize; i++) {
+                final int id = mappedFile.getInt();
+                final byte[] nameBytes = new byte[mappedFile.getShort()];
+                mappedFile.get(nameBytes);
+
+                names.put(id, new String(nameBytes, UTF_8));
+            }
+
+            namesById = Collections.unmodifiableMap(names);
+        } catch (RuntimeException | IOException ex) {
+            file.close();
+
+            throw ex;
+        }
+    }
+
+    /**
+     * @return the names of the metrics in this recording, by metric id
+     */
+    public Map<Integer, String> getNames() {
+        return namesById;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public void forEachRecord(@NonNull RecordVisitor visitor) {
+        for (int i = 0; i < recordCount; i++) {
+            final int recordOffset = firstRecordOffset + i * RECORD_BYTES;
+
+            final int id = mappedFile.getInt(recordOffset);
+            final long timestampMillis = mappedFile.getLong(recordOffset + 4);
+            final double value = mappedFile.getDouble(recordOffset + 12);
+
+            visitor.record(id, namesById.get(id), timestampMillis, value);
+        }
+    }
+
+    /**
+     * Writes the recording as CSV, with columns of timestamp_ms,metric,value
+     */
+    public void exportCsv(@NonNull final Writer writer) throws IOException {
+        writer.write("timestamp_ms,metric,value\n");
+
+        final IOException[] failure = new IOException[1];
+
+        forEachRecord(new RecordVisitor() {
+            @Override
+            public void record(int metricId, String metricName, long timestampMillis, double value) {
+                if (failure[0] != null) {
+                    return;
+                }
+
+                try {
+                    writer.write(Long.toString(timestampMillis));
+                    writer.write(',');
+                    writer.write(metricName);
+                    writer.write(',');
+                    writer.write(Double.toString(value));
+                    writer.write('\n');
+                } catch (IOException ex) {
+                    failure[0] = ex;
+                }
+            }
+        });
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Sends every record to the given sink, with its original timestamp, flushing
+     * the sink after each sampling pass
+     */
+    public void replay(@NonNull final SampleSink sampleSink) {
+        final long[] passTimestampMillis = new long[] {-1};
+
+        forEachRecord(new RecordVisitor() {
+            @Override
+            public void record(int metricId, String metricName, long timestampMillis, double value) {
+                if (passTimestampMillis[0] != -1 && timestampMillis != passTimestampMillis[0]) {
+                    sampleSink.flush();
+                }
+
+                passTimestampMillis[0] = timestampMillis;
+
+                sampleSink.sample(metricName, timestampMillis, value);
+            }
+        });
+
+        sampleSink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
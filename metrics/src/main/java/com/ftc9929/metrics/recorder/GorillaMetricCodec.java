@@ -0,0 +1,281 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses a series the way Facebook's Gorilla time series database does: timestamps are
+ * stored as the change in the time between samples (delta-of-delta), which is usually zero
+ * when sampling from a steady loop, and each value is XOR-ed with the previous one, storing
+ * only the bits that changed - a single bit when the value did not change at all.
+ *
+ * Gauges that rarely change (servos, buttons, digital channels) take about 2 bits
+ * per sample, compared to 128 bits for FixedMetricCodec.
+ */
+public class GorillaMetricCodec implements MetricCodec {
+    public static final String NAME = "gorilla";
+
+    // Delta-of-delta ranges, and the number of bits used to store them, after
+    // the control bits '10', '110', '1110' respectively. Anything larger is stored
+    // in 64 bits after '1111'
+    private static final int[] DOD_BITS = {7, 9, 12};
+
+    private static final long[] DOD_MIN = {-63, -255, -2047};
+
+    private static final long[] DOD_MAX = {64, 256, 2048};
+
+    private static final int LEADING_ZEROS_BITS = 5;
+
+    private static final int MAX_LEADING_ZEROS = (1 << LEADING_ZEROS_BITS) - 1;
+
+    private static final int MEANINGFUL_BITS_BITS = 6;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Encoder newEncoder() {
+        return new GorillaEncoder();
+    }
+
+    @Override
+    public Decoder newDecoder(byte[] encoded, int sampleCount) {
+        return new GorillaDecoder(encoded, sampleCount);
+    }
+
+    private static class GorillaEncoder implements Encoder {
+        private final BitWriter bitWriter = new BitWriter(256);
+
+        private int sampleCount;
+
+        private long previousTimestamp;
+
+        private long previousDelta;
+
+        private long previousValueBits;
+
+        private int previousLeadingZeros;
+
+        private int previousTrailingZeros;
+
+        @Override
+        public void append(long timestampMillis, double value) {
+            final long valueBits = Double.doubleToRawLongBits(value);
+
+            if (sampleCount == 0) {
+                bitWriter.writeBits(timestampMillis, 64);
+                bitWriter.writeBits(valueBits, 64);
+
+                previousDelta = 0;
+                previousLeadingZeros = -1;
+            } else {
+                final long delta = timestampMillis - previousTimestamp;
+
+                writeDeltaOfDelta(delta - previousDelta);
+                writeValue(valueBits);
+
+                previousDelta = delta;
+            }
+
+            previousTimestamp = timestampMillis;
+            previousValueBits = valueBits;
+            sampleCount++;
+        }
+
+        private void writeDeltaOfDelta(long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                bitWriter.writeBit(false);
+
+                return;
+            }
+
+            for (int i = 0; i < DOD_BITS.length; i++) {
+                if (deltaOfDelta >= DOD_MIN[i] && deltaOfDelta <= DOD_MAX[i]) {
+                    // i + 1 one bits, then a zero bit
+                    bitWriter.writeBits(((1 << (i + 1)) - 1) << 1, i + 2);
+                    bitWriter.writeBits(deltaOfDelta - DOD_MIN[i], DOD_BITS[i]);
+
+                    return;
+                }
+            }
+
+            bitWriter.writeBits(0xF, 4);
+            bitWriter.writeBits(deltaOfDelta, 64);
+        }
+
+        private void writeValue(long valueBits) {
+            final long xor = valueBits ^ previousValueBits;
+
+            if (xor == 0) {
+                bitWriter.writeBit(false);
+
+                return;
+            }
+
+            bitWriter.writeBit(true);
+
+            final int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+            final int trailingZeros = Long.numberOfTrailingZeros(xor);
+
+            if (previousLeadingZeros != -1
+                    && leadingZeros >= previousLeadingZeros
+                    && trailingZeros >= previousTrailingZeros) {
+                // The changed bits fit in the previous window
+                bitWriter.writeBit(false);
+                bitWriter.writeBits(xor >>> previousTrailingZeros,
+                        64 - previousLeadingZeros - previousTrailingZeros);
+            } else {
+                final int meaningfulBits = 64 - leadingZeros - trailingZeros;
+
+                bitWriter.writeBit(true);
+                bitWriter.writeBits(leadingZeros, LEADING_ZEROS_BITS);
+                // 64 meaningful bits is stored as 0, there is never a window of 0 bits
+                bitWriter.writeBits(meaningfulBits & 0x3F, MEANINGFUL_BITS_BITS);
+                bitWriter.writeBits(xor >>> trailingZeros, meaningfulBits);
+
+                previousLeadingZeros = leadingZeros;
+                previousTrailingZeros = trailingZeros;
+            }
+        }
+
+        @Override
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        @Override
+        public int getEncodedLength() {
+            return bitWriter.getLengthBytes();
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            bitWriter.writeTo(out);
+        }
+
+        @Override
+        public void reset() {
+            bitWriter.reset();
+            sampleCount = 0;
+        }
+    }
+
+    private static class GorillaDecoder implements Decoder {
+        private final BitReader bitReader;
+
+        private final int sampleCount;
+
+        private int samplesRead;
+
+        private long timestamp;
+
+        private long delta;
+
+        private long valueBits;
+
+        private int leadingZeros;
+
+        private int trailingZeros;
+
+        GorillaDecoder(byte[] encoded, int sampleCount) {
+            this.bitReader = new BitReader(encoded, encoded.length);
+            this.sampleCount = sampleCount;
+        }
+
+        @Override
+        public boolean next() {
+            if (samplesRead == sampleCount) {
+                return false;
+            }
+
+            if (samplesRead == 0) {
+                timestamp = bitReader.readBits(64);
+                valueBits = bitReader.readBits(64);
+            } else {
+                delta += readDeltaOfDelta();
+                timestamp += delta;
+                readValue();
+            }
+
+            samplesRead++;
+
+            return true;
+        }
+
+        private long readDeltaOfDelta() {
+            int onesRead = 0;
+
+            while (onesRead < DOD_BITS.length + 1 && bitReader.readBit()) {
+                onesRead++;
+            }
+
+            if (onesRead == 0) {
+                return 0;
+            }
+
+            if (onesRead > DOD_BITS.length) {
+                return bitReader.readBits(64);
+            }
+
+            final int i = onesRead - 1;
+
+            return bitReader.readBits(DOD_BITS[i]) + DOD_MIN[i];
+        }
+
+        private void readValue() {
+            if (!bitReader.readBit()) {
+                return;
+            }
+
+            if (bitReader.readBit()) {
+                leadingZeros = (int) bitReader.readBits(LEADING_ZEROS_BITS);
+
+                int meaningfulBits = (int) bitReader.readBits(MEANINGFUL_BITS_BITS);
+
+                if (meaningfulBits == 0) {
+                    meaningfulBits = 64;
+                }
+
+                trailingZeros = 64 - leadingZeros - meaningfulBits;
+            }
+
+            final int meaningfulBits = 64 - leadingZeros - trailingZeros;
+
+            valueBits ^= bitReader.readBits(meaningfulBits) << trailingZeros;
+        }
+
+        @Override
+        public long getTimestampMillis() {
+            return timestamp;
+        }
+
+        @Override
+        public double getValue() {
+            return Double.longBitsToDouble(valueBits);
+        }
+    }
+}
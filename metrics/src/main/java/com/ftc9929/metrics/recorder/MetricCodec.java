@@ -0,0 +1,77 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes one metric's series of (timestamp, value) samples, used by CompressedFlightRecorder.
+ * Each series is encoded independently, so a codec can exploit how similar consecutive
+ * samples of the same metric are.
+ */
+public interface MetricCodec {
+    /**
+     * @return the name recorded in files, used to find the codec when reading them back
+     */
+    String getName();
+
+    Encoder newEncoder();
+
+    /**
+     * @param encoded bytes written by an Encoder from this codec
+     * @param sampleCount the number of samples that were appended to the Encoder
+     */
+    Decoder newDecoder(byte[] encoded, int sampleCount);
+
+    interface Encoder {
+        void append(long timestampMillis, double value);
+
+        int getSampleCount();
+
+        int getEncodedLength();
+
+        void writeTo(OutputStream out) throws IOException;
+
+        /**
+         * Starts a new series, reusing this encoder's memory
+         */
+        void reset();
+    }
+
+    /**
+     * Decodes samples one at a time, without decoding the whole series up front
+     */
+    interface Decoder {
+        /**
+         * Moves to the next sample
+         *
+         * @return false when there are no more samples
+         */
+        boolean next();
+
+        long getTimestampMillis();
+
+        double getValue();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import com.ftc9929.metrics.HistogramMetricSource;
+import com.ftc9929.metrics.MetricIntervals;
+import com.ftc9929.metrics.MetricRegistry;
+import com.ftc9929.metrics.MetricsSampler;
+
+/**
+ * What the flight recorders record from a MetricRegistry, as one list of metrics: the
+ * gauges (with the same ids as in the registry), then the counters as running totals, then
+ * a summary of each histogram's values from each sampling pass (count, mean, p50, p99, max).
+ */
+final class RecordedMetrics {
+    private static final String[] HISTOGRAM_SUFFIXES = {"_count", "_mean", "_p50", "_p99", "_max"};
+
+    private final MetricIntervals metricIntervals = new MetricIntervals();
+
+    private MetricRegistry metricRegistry;
+
+    private int gaugeCount;
+
+    private int counterCount;
+
+    private int histogramCount;
+
+    /**
+     * Samples the registry's gauges, and moves on to the counts recorded since the last update
+     */
+    void update(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+
+        metricRegistry.sampleAll();
+        metricIntervals.update(metricRegistry);
+
+        gaugeCount = metricRegistry.size();
+        counterCount = metricIntervals.getCounterCount();
+        histogramCount = metricIntervals.getHistogramCount();
+    }
+
+    int size() {
+        return gaugeCount + counterCount + histogramCount * HISTOGRAM_SUFFIXES.length;
+    }
+
+    String getName(int id) {
+        if (id < gaugeCount) {
+            return metricRegistry.getName(id);
+        }
+
+        id -= gaugeCount;
+
+        if (id < counterCount) {
+            return metricIntervals.getCounterName(id);
+        }
+
+        id -= counterCount;
+
+        return metricIntervals.getHistogramInterval(id / HISTOGRAM_SUFFIXES.length).getHistogram().getSampleName()
+                + HISTOGRAM_SUFFIXES[id % HISTOGRAM_SUFFIXES.length];
+    }
+
+    /**
+     * @return the value from the last update(), or MetricsSampler.NO_REPORT_VALUE
+     */
+    double getValue(int id) {
+        if (id < gaugeCount) {
+            return metricRegistry.getValue(id);
+        }
+
+        id -= gaugeCount;
+
+        if (id < counterCount) {
+            return metricIntervals.getCounterTotal(id);
+        }
+
+        id -= counterCount;
+
+        final HistogramMetricSource.Interval interval =
+                metricIntervals.getHistogramInterval(id / HISTOGRAM_SUFFIXES.length);
+
+        if (interval.getCount() == 0) {
+            return MetricsSampler.NO_REPORT_VALUE;
+        }
+
+        switch (id % HISTOGRAM_SUFFIXES.length) {
+            case 0:
+                return interval.getCount();
+            case 1:
+                return interval.getMean();
+            case 2:
+                return interval.getValueAtQuantile(0.5);
+            case 3:
+                return interval.getValueAtQuantile(0.99);
+            default:
+                return interval.getMax();
+        }
+    }
+}
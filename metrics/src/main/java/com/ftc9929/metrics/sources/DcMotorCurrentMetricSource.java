@@ -22,22 +22,28 @@
 
 package com.ftc9929.metrics.sources;
 
+import com.ftc9929.corelib.hardware.BulkReadCache;
 import com.ftc9929.corelib.util.NamedDeviceMap;
 import com.ftc9929.metrics.GaugeMetricSource;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 
 import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
 
-import lombok.EqualsAndHashCode;
-
-@EqualsAndHashCode
 public class DcMotorCurrentMetricSource implements GaugeMetricSource {
     private final DcMotorEx dcMotorEx;
 
     private final String name;
 
+    private final BulkReadCache.MotorReads cachedReads;
+
     public DcMotorCurrentMetricSource(NamedDeviceMap.NamedDevice<DcMotorEx> namedMotor) {
+        this(namedMotor, null);
+    }
+
+    public DcMotorCurrentMetricSource(NamedDeviceMap.NamedDevice<DcMotorEx> namedMotor,
+                                      BulkReadCache bulkReadCache) {
         this.dcMotorEx = namedMotor.getDevice();
+        this.cachedReads = bulkReadCache != null ? bulkReadCache.getMotor(dcMotorEx) : null;
 
         name = String.format("dcm_curr_%s", namedMotor.getName());
 
@@ -50,6 +56,10 @@ public class DcMotorCurrentMetricSource implements GaugeMetricSource {
 
     @Override
     public double getValue() {
+        if (cachedReads != null) {
+            return cachedReads.getCurrentAmps();
+        }
+
         return dcMotorEx.getCurrent(CurrentUnit.AMPS);
     }
 }
@@ -22,23 +22,30 @@
 
 package com.ftc9929.metrics.sources;
 
+import com.ftc9929.corelib.hardware.BulkReadCache;
 import com.ftc9929.corelib.util.NamedDeviceMap;
 import com.ftc9929.metrics.GaugeMetricSource;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 
-import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 
 ;
 
-@EqualsAndHashCode
 public class DcMotorPowerMetricSource implements GaugeMetricSource {
     private final DcMotorEx motor;
 
     private final String sampleName;
 
+    private final BulkReadCache.MotorReads cachedReads;
+
     public DcMotorPowerMetricSource(@NonNull final NamedDeviceMap.NamedDevice<DcMotorEx> namedMotor) {
+        this(namedMotor, null);
+    }
+
+    public DcMotorPowerMetricSource(@NonNull final NamedDeviceMap.NamedDevice<DcMotorEx> namedMotor,
+                                    BulkReadCache bulkReadCache) {
         this.motor = namedMotor.getDevice();
+        this.cachedReads = bulkReadCache != null ? bulkReadCache.getMotor(motor) : null;
 
         sampleName = String.format("dcm_pow_%s", namedMotor.getName());
     }
@@ -50,6 +57,10 @@ public class DcMotorPowerMetricSource implements GaugeMetricSource {
 
     @Override
     public double getValue() {
+        if (cachedReads != null) {
+            return cachedReads.getPower();
+        }
+
         return motor.getPower();
     }
 }
@@ -22,22 +22,28 @@
 
 package com.ftc9929.metrics.sources;
 
+import com.ftc9929.corelib.hardware.BulkReadCache;
 import com.ftc9929.corelib.util.NamedDeviceMap;
 import com.ftc9929.metrics.GaugeMetricSource;
 import com.qualcomm.robotcore.hardware.DigitalChannel;
 
-import lombok.EqualsAndHashCode;
-
 ;
 
-@EqualsAndHashCode
 public class DigitalChannelMetricSource implements GaugeMetricSource {
     private final DigitalChannel digitalChannel;
 
     private final String name;
 
+    private final BulkReadCache.DigitalChannelReads cachedReads;
+
     public DigitalChannelMetricSource(final NamedDeviceMap.NamedDevice<DigitalChannel> namedDigitalChannel) {
+        this(namedDigitalChannel, null);
+    }
+
+    public DigitalChannelMetricSource(final NamedDeviceMap.NamedDevice<DigitalChannel> namedDigitalChannel,
+                                      BulkReadCache bulkReadCache) {
         this.digitalChannel = namedDigitalChannel.getDevice();
+        this.cachedReads = bulkReadCache != null ? bulkReadCache.getDigitalChannel(digitalChannel) : null;
         this.name = "sensor_" + namedDigitalChannel.getName();
     }
 
@@ -48,7 +54,9 @@ public class DigitalChannelMetricSource implements GaugeMetricSource {
 
     @Override
     public double getValue() {
-        if (digitalChannel.getState()) {
+        boolean state = cachedReads != null ? cachedReads.getState() : digitalChannel.getState();
+
+        if (state) {
             return 1;
         }
 
@@ -22,22 +22,29 @@
 
 package com.ftc9929.metrics.sources;
 
+import com.ftc9929.corelib.hardware.BulkReadCache;
 import com.ftc9929.corelib.util.NamedDeviceMap;
 import com.ftc9929.metrics.GaugeMetricSource;
 import com.ftc9929.metrics.MetricsSampler;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 
-import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 
-@EqualsAndHashCode
 public class MotorVelocityMetricSource implements GaugeMetricSource {
     private final DcMotorEx motor;
 
     private final String sampleName;
 
+    private final BulkReadCache.MotorReads cachedReads;
+
     public MotorVelocityMetricSource(@NonNull final NamedDeviceMap.NamedDevice<DcMotorEx> namedMotor) {
+        this(namedMotor, null);
+    }
+
+    public MotorVelocityMetricSource(@NonNull final NamedDeviceMap.NamedDevice<DcMotorEx> namedMotor,
+                                     BulkReadCache bulkReadCache) {
         this.motor = namedMotor.getDevice();
+        this.cachedReads = bulkReadCache != null ? bulkReadCache.getMotor(motor) : null;
 
         sampleName = String.format("dcm_vel_%s", namedMotor.getName());
     }
@@ -49,6 +56,10 @@ public class MotorVelocityMetricSource implements GaugeMetricSource {
 
     @Override
     public double getValue() {
-       return motor.getVelocity();
+        if (cachedReads != null) {
+            return cachedReads.getVelocity();
+        }
+
+        return motor.getVelocity();
     }
 }
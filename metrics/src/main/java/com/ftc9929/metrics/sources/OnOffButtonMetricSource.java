@@ -25,11 +25,8 @@ package com.ftc9929.metrics.sources;
 import com.ftc9929.corelib.control.OnOffButton;
 import com.ftc9929.metrics.GaugeMetricSource;
 
-import lombok.EqualsAndHashCode;
-
 ;
 
-@EqualsAndHashCode
 public class OnOffButtonMetricSource implements GaugeMetricSource {
     private final OnOffButton onOffButton;
 
@@ -25,11 +25,8 @@ package com.ftc9929.metrics.sources;
 import com.ftc9929.corelib.control.RangeInput;
 import com.ftc9929.metrics.GaugeMetricSource;
 
-import lombok.EqualsAndHashCode;
-
 ;
 
-@EqualsAndHashCode
 public class RangeInputMetricSource implements GaugeMetricSource {
     private final RangeInput rangeInput;
 
@@ -28,12 +28,10 @@ import com.qualcomm.hardware.rev.Rev2mDistanceSensor;
 
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 
-import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 
 ;
 
-@EqualsAndHashCode
 public class Rev2MDistanceSensorMetricSource implements GaugeMetricSource {
     private final Rev2mDistanceSensor distanceSensor;
 
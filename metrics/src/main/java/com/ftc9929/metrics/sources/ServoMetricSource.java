@@ -26,10 +26,8 @@ import com.ftc9929.corelib.util.NamedDeviceMap;
 import com.ftc9929.metrics.GaugeMetricSource;
 import com.qualcomm.robotcore.hardware.Servo;
 
-import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 
-@EqualsAndHashCode
 public class ServoMetricSource implements GaugeMetricSource {
     private final Servo servo;
 
@@ -22,22 +22,27 @@
 
 package com.ftc9929.metrics.sources;
 
+import com.ftc9929.corelib.hardware.BulkReadCache;
 import com.ftc9929.metrics.GaugeMetricSource;
 import com.qualcomm.hardware.lynx.LynxModule;
 
 import org.firstinspires.ftc.robotcore.external.navigation.VoltageUnit;
 
-import lombok.EqualsAndHashCode;
-
-@EqualsAndHashCode
 public class Voltage12VMetricSource implements GaugeMetricSource {
 
     private final LynxModule lynxModule;
 
     private final String name;
 
+    private final BulkReadCache.HubReads cachedReads;
+
     public Voltage12VMetricSource(LynxModule lynxModule) {
+        this(lynxModule, null);
+    }
+
+    public Voltage12VMetricSource(LynxModule lynxModule, BulkReadCache bulkReadCache) {
         this.lynxModule = lynxModule;
+        this.cachedReads = bulkReadCache != null ? bulkReadCache.getHub(lynxModule) : null;
         int moduleAddress = lynxModule.getModuleAddress();
 
         name = String.format("hub_%d_12V", moduleAddress);
@@ -50,6 +55,10 @@ public class Voltage12VMetricSource implements GaugeMetricSource {
 
     @Override
     public double getValue() {
+        if (cachedReads != null) {
+            return cachedReads.getInputVoltage();
+        }
+
         return lynxModule.getInputVoltage(VoltageUnit.VOLTS);
     }
 }
@@ -0,0 +1,179 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+public class AdaptiveSamplingMetricSourceTest {
+    @Test
+    public void backsOffWhileIdle() {
+        SettableSource source = new SettableSource("servo_claw");
+        AdaptiveSamplingMetricSource adaptive = new AdaptiveSamplingMetricSource(source, null, 0.001, 8);
+
+        int reported = 0;
+
+        for (int pass = 0; pass < 100; pass++) {
+            if (adaptive.getValue() != MetricsSampler.NO_REPORT_VALUE) {
+                reported++;
+            }
+        }
+
+        // 1 + 2 + 4 + 8 + 8...
+        Assertions.assertEquals(8, adaptive.getInterval());
+        Assertions.assertTrue(reported < 20, "Reported " + reported + " times");
+        Assertions.assertEquals(reported, source.reads);
+    }
+
+    @Test
+    public void readsEveryPassWhileChanging() {
+        SettableSource source = new SettableSource("dcm_curr_motor1");
+        AdaptiveSamplingMetricSource adaptive = new AdaptiveSamplingMetricSource(source, null, 0.01, 32);
+
+        // Idle long enough to back off all the way
+        for (int pass = 0; pass < 200; pass++) {
+            adaptive.getValue();
+        }
+
+        Assertions.assertEquals(32, adaptive.getInterval());
+
+        source.value = 5;
+
+        // Seen at the next read...
+        int passesUntilSeen = 0;
+
+        while (adaptive.getValue() == MetricsSampler.NO_REPORT_VALUE) {
+            passesUntilSeen++;
+        }
+
+        Assertions.assertTrue(passesUntilSeen < 32);
+
+        // ...and then read every pass while it keeps changing
+        for (int pass = 0; pass < 20; pass++) {
+            source.value += 0.1;
+
+            Assertions.assertEquals(source.value, adaptive.getValue(), 0.0);
+        }
+    }
+
+    @Test
+    public void budgetLimitsReadsFairly() {
+        MetricsReadBudget budget = new MetricsReadBudget(2);
+
+        SettableSource[] sources = new SettableSource[5];
+        AdaptiveSamplingMetricSource[] adaptiveSources = new AdaptiveSamplingMetricSource[sources.length];
+
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new SettableSource("source_" + i);
+            adaptiveSources[i] = new AdaptiveSamplingMetricSource(sources[i], budget, 0.01, 32);
+        }
+
+        for (int pass = 0; pass < 100; pass++) {
+            budget.startPass();
+
+            for (int i = 0; i < sources.length; i++) {
+                // All changing, all the time
+                sources[i].value += 1;
+                adaptiveSources[i].getValue();
+            }
+
+            Assertions.assertTrue(budget.getReadsThisPass() <= 2);
+        }
+
+        Assertions.assertTrue(budget.getTotalDenied() > 0);
+
+        // Nobody is starved, the last source gets about as many reads as the first
+        for (SettableSource source : sources) {
+            Assertions.assertTrue(source.reads >= 30, source.getSampleName() + " was read " + source.reads + " times");
+        }
+    }
+
+    @Test
+    public void budgetIsUsedWhileSourcesAreWaiting() {
+        for (int sourceCount = 1; sourceCount <= 6; sourceCount++) {
+            MetricsReadBudget budget = new MetricsReadBudget(3);
+
+            SettableSource[] sources = new SettableSource[sourceCount];
+            AdaptiveSamplingMetricSource[] adaptiveSources = new AdaptiveSamplingMetricSource[sourceCount];
+
+            for (int i = 0; i < sourceCount; i++) {
+                sources[i] = new SettableSource("source_" + i);
+                adaptiveSources[i] = new AdaptiveSamplingMetricSource(sources[i], budget, 0.01, 32);
+            }
+
+            for (int pass = 0; pass < 50; pass++) {
+                budget.startPass();
+
+                for (int i = 0; i < sourceCount; i++) {
+                    // All changing, so all due every pass
+                    sources[i].value += 1;
+                    adaptiveSources[i].getValue();
+                }
+
+                Assertions.assertEquals(Math.min(sourceCount, 3), budget.getReadsThisPass(),
+                        sourceCount + " sources, pass " + pass);
+            }
+        }
+    }
+
+    @Test
+    public void longestWaitingSourcesGoFirst() {
+        MetricsReadBudget budget = new MetricsReadBudget(2);
+
+        budget.startPass();
+        Assertions.assertTrue(budget.tryAcquire(0));
+        Assertions.assertTrue(budget.tryAcquire(0));
+        Assertions.assertFalse(budget.tryAcquire(0));
+
+        // One read is kept for the source that waited, even though it asks last
+        budget.startPass();
+        Assertions.assertTrue(budget.tryAcquire(0));
+        Assertions.assertFalse(budget.tryAcquire(0));
+        Assertions.assertTrue(budget.tryAcquire(1));
+        Assertions.assertEquals(2, budget.getReadsThisPass());
+    }
+
+    static class SettableSource implements GaugeMetricSource {
+        private final String name;
+
+        double value;
+
+        int reads;
+
+        SettableSource(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getSampleName() {
+            return name;
+        }
+
+        @Override
+        public double getValue() {
+            reads++;
+
+            return value;
+        }
+    }
+}
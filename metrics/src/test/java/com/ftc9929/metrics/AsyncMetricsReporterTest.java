@@ -0,0 +1,216 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncMetricsReporterTest {
+    @Test
+    public void sendsFromBackgroundThread() {
+        RecordingSink sink = new RecordingSink();
+
+        MetricRegistry sources = new MetricRegistry();
+        sources.register(new FixedSource("first", 1));
+        sources.register(new FixedSource("second", 2));
+        sources.register(new FixedSource("skipped", MetricsSampler.NO_REPORT_VALUE));
+
+        AsyncMetricsReporter reporter = AsyncMetricsReporter.builder().sampleSink(sink).build();
+
+        try {
+            reporter.reportMetrics(sources);
+            reporter.reportMetrics(sources);
+        } finally {
+            reporter.close();
+        }
+
+        List<String> samples = sink.getSamples();
+
+        // 2 sources plus the sample time, twice
+        assertEquals(6, samples.size());
+        assertEquals("first=1.0", samples.get(0));
+        assertEquals("second=2.0", samples.get(1));
+        assertTrue(samples.get(2).startsWith("metric_sample_time_ms="));
+        assertEquals("first=1.0", samples.get(3));
+
+        assertTrue(sink.getFlushes() > 0);
+        assertEquals(0, reporter.getDroppedSamples());
+    }
+
+    @Test
+    public void dropsWhenBufferFull() {
+        BlockingSink sink = new BlockingSink();
+
+        MetricRegistry sources = new MetricRegistry();
+
+        for (int i = 0; i < 20; i++) {
+            sources.register(new FixedSource("source_" + i, i));
+        }
+
+        AsyncMetricsReporter reporter = AsyncMetricsReporter.builder().sampleSink(sink)
+                .bufferCapacity(8).build();
+
+        try {
+            reporter.reportMetrics(sources);
+
+            // 21 samples into a buffer of 8, with a drain thread that (at most) took one
+            assertTrue(reporter.getDroppedSamples() >= 12);
+        } finally {
+            sink.release();
+            reporter.close();
+        }
+    }
+
+    @Test
+    public void sendsCounterDeltas() {
+        RecordingSink sink = new RecordingSink();
+
+        MetricRegistry sources = new MetricRegistry();
+        CounterMetricSource counter = new CounterMetricSource("events");
+        sources.registerCounter(counter);
+
+        AsyncMetricsReporter reporter = AsyncMetricsReporter.builder().sampleSink(sink).build();
+
+        try {
+            counter.add(3);
+            reporter.reportMetrics(sources);
+            reporter.reportMetrics(sources);
+            counter.increment();
+            reporter.reportMetrics(sources);
+        } finally {
+            reporter.close();
+        }
+
+        int total = 0;
+
+        for (String sample : sink.getSamples()) {
+            if (sample.startsWith("events+")) {
+                total += Integer.parseInt(sample.substring("events+".length()));
+            }
+        }
+
+        // However the drain thread grouped the passes, no events are lost or sent twice
+        assertEquals(4, total);
+    }
+
+    static class FixedSource implements GaugeMetricSource {
+        private final String name;
+
+        private final double value;
+
+        FixedSource(String name, double value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String getSampleName() {
+            return name;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+
+    static class RecordingSink implements SampleSink {
+        private final List<String> samples = new ArrayList<>();
+
+        private int flushes;
+
+        @Override
+        public synchronized void sample(String name, long timestampMillis, double value) {
+            samples.add(name + "=" + value);
+        }
+
+        @Override
+        public synchronized void count(String name, long timestampMillis, long delta) {
+            samples.add(name + "+" + delta);
+        }
+
+        @Override
+        public synchronized void histogram(String name, long timestampMillis, double value, long count) {
+            samples.add(name + "~" + value + "x" + count);
+        }
+
+        @Override
+        public synchronized void flush() {
+            flushes++;
+        }
+
+        synchronized List<String> getSamples() {
+            return new ArrayList<>(samples);
+        }
+
+        synchronized int getFlushes() {
+            return flushes;
+        }
+    }
+
+    static class BlockingSink implements SampleSink {
+        private final Object lock = new Object();
+
+        private boolean released;
+
+        @Override
+        public void sample(String name, long timestampMillis, double value) {
+            synchronized (lock) {
+                while (!released) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // keep waiting until released
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void count(String name, long timestampMillis, long delta) {
+
+        }
+
+        @Override
+        public void histogram(String name, long timestampMillis, double value, long count) {
+
+        }
+
+        @Override
+        public void flush() {
+
+        }
+
+        void release() {
+            synchronized (lock) {
+                released = true;
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramMetricSourceTest {
+    @Test
+    public void bucketsAreWithinAboutSixPercent() {
+        for (double value = 0.01; value < 1_000_000; value *= 1.07) {
+            final double bucketValue = HistogramMetricSource.getBucketValue(HistogramMetricSource.bucketIndex(value));
+
+            assertTrue(Math.abs(bucketValue - value) / value <= 1.0 / 16, "value " + value + " in bucket " + bucketValue);
+        }
+    }
+
+    @Test
+    public void tinyAndNegativeValuesShareTheFirstBucket() {
+        assertEquals(0, HistogramMetricSource.bucketIndex(0));
+        assertEquals(0, HistogramMetricSource.bucketIndex(-5));
+        assertEquals(0, HistogramMetricSource.bucketIndex(0.0001));
+        assertEquals(HistogramMetricSource.BUCKET_COUNT - 1, HistogramMetricSource.bucketIndex(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void intervalsCoverValuesSinceLastUpdate() {
+        HistogramMetricSource histogram = new HistogramMetricSource("loop");
+        HistogramMetricSource.Interval interval = histogram.newInterval();
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        histogram.record(Double.NaN);
+
+        interval.update();
+
+        assertEquals(100, interval.getCount());
+        assertEquals(50.5, interval.getMean(), 50.5 / 16);
+        assertEquals(50, interval.getValueAtQuantile(0.5), 50 / 16.0);
+        assertEquals(99, interval.getValueAtQuantile(0.99), 99 / 16.0);
+        assertEquals(100, interval.getMax(), 100 / 16.0);
+
+        histogram.record(1000);
+        interval.update();
+
+        assertEquals(1, interval.getCount());
+        assertEquals(1000, interval.getMax(), 1000 / 16.0);
+
+        interval.update();
+
+        assertEquals(0, interval.getCount());
+        assertTrue(Double.isNaN(interval.getMean()));
+        assertTrue(Double.isNaN(interval.getValueAtQuantile(0.5)));
+        assertTrue(Double.isNaN(interval.getMax()));
+    }
+}
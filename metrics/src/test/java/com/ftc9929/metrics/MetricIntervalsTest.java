@@ -0,0 +1,101 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MetricIntervalsTest {
+    @Test
+    public void sendsWhatChangedSinceLastUpdate() {
+        MetricRegistry registry = new MetricRegistry();
+        CounterMetricSource counter = new CounterMetricSource("events");
+        HistogramMetricSource histogram = new HistogramMetricSource("loop");
+
+        assertEquals(0, registry.registerCounter(counter));
+        assertEquals(0, registry.registerCounter(new CounterMetricSource("events")));
+        assertEquals(0, registry.registerHistogram(histogram));
+        assertEquals(1, registry.getCounters().length);
+
+        MetricIntervals intervals = new MetricIntervals();
+        List<String> sent = new ArrayList<>();
+        SampleSink sink = new ListSink(sent);
+
+        counter.add(5);
+        histogram.record(10);
+        histogram.record(10);
+        histogram.record(100);
+
+        intervals.update(registry);
+        intervals.sendTo(sink, 1);
+
+        assertEquals(3, sent.size());
+        assertEquals("events+5", sent.get(0));
+        assertEquals("loop~" + HistogramMetricSource.getBucketValue(HistogramMetricSource.bucketIndex(10)) + "x2", sent.get(1));
+        assertEquals("loop~" + HistogramMetricSource.getBucketValue(HistogramMetricSource.bucketIndex(100)) + "x1", sent.get(2));
+
+        sent.clear();
+        intervals.update(registry);
+        intervals.sendTo(sink, 2);
+
+        assertEquals(0, sent.size());
+
+        counter.increment();
+        intervals.update(registry);
+
+        assertEquals(1, intervals.getCounterDelta(0));
+        assertEquals(6, intervals.getCounterTotal(0));
+        assertEquals(0, intervals.getHistogramInterval(0).getCount());
+    }
+
+    static class ListSink implements SampleSink {
+        private final List<String> sent;
+
+        ListSink(List<String> sent) {
+            this.sent = sent;
+        }
+
+        @Override
+        public void sample(String name, long timestampMillis, double value) {
+            sent.add(name + "=" + value);
+        }
+
+        @Override
+        public void count(String name, long timestampMillis, long delta) {
+            sent.add(name + "+" + delta);
+        }
+
+        @Override
+        public void histogram(String name, long timestampMillis, double value, long count) {
+            sent.add(name + "~" + value + "x" + count);
+        }
+
+        @Override
+        public void flush() {
+
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+public class MetricRegistryTest {
+    @Test
+    public void assignsDenseIds() {
+        MetricRegistry registry = new MetricRegistry();
+
+        // More than the initial capacity, to exercise growing
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(i, registry.register(new AsyncMetricsReporterTest.FixedSource("source_" + i, i)));
+        }
+
+        Assertions.assertEquals(100, registry.size());
+
+        registry.sampleAll();
+
+        for (int id = 0; id < registry.size(); id++) {
+            Assertions.assertEquals("source_" + id, registry.getName(id));
+            Assertions.assertEquals(id, registry.getValue(id), 0.0);
+            Assertions.assertEquals(id, registry.getId("source_" + id));
+        }
+
+        Assertions.assertEquals(-1, registry.getId("not_registered"));
+    }
+
+    @Test
+    public void duplicateNamesKeepFirstSource() {
+        MetricRegistry registry = new MetricRegistry();
+
+        GaugeMetricSource first = new AsyncMetricsReporterTest.FixedSource("motor", 1);
+
+        Assertions.assertEquals(0, registry.register(first));
+        Assertions.assertEquals(0, registry.register(first));
+        Assertions.assertEquals(0, registry.register(new AsyncMetricsReporterTest.FixedSource("motor", 2)));
+        Assertions.assertEquals(1, registry.size());
+        Assertions.assertSame(first, registry.getSource(0));
+
+        registry.sampleAll();
+        Assertions.assertEquals(1, registry.getValue(0), 0.0);
+    }
+
+    @Test
+    public void valuesOnlyChangeWhenSampled() {
+        MetricRegistry registry = new MetricRegistry();
+
+        final double[] current = new double[] {1};
+
+        registry.register(new GaugeMetricSource() {
+            @Override
+            public String getSampleName() {
+                return "changing";
+            }
+
+            @Override
+            public double getValue() {
+                return current[0];
+            }
+        });
+
+        Assertions.assertEquals(MetricsSampler.NO_REPORT_VALUE, registry.getValue(0), 0.0);
+
+        registry.sampleAll();
+        current[0] = 2;
+        Assertions.assertEquals(1, registry.getValue(0), 0.0);
+
+        registry.sampleAll();
+        Assertions.assertEquals(2, registry.getValue(0), 0.0);
+    }
+
+    @Test
+    public void rejectsUnknownIds() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.register(new AsyncMetricsReporterTest.FixedSource("only", 1));
+
+        try {
+            registry.getValue(1);
+            Assertions.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+
+        try {
+            registry.getName(-1);
+            Assertions.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
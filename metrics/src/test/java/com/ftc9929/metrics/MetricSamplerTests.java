@@ -22,10 +22,13 @@
 
 package com.ftc9929.metrics;
 
+import com.ftc9929.corelib.hardware.BulkReadCache;
+import com.ftc9929.testing.fakes.drive.FakeDcMotorEx;
 import com.ftc9929.testing.fakes.util.FakeHardwareMapFactory;
 import com.google.common.base.Stopwatch;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
@@ -46,6 +49,126 @@ public class MetricSamplerTests {
         s.doSamples();
     }
 
+    @Test
+    public void withBulkReadCache() {
+        HardwareMap hardwareMap = new HardwareMap(null, null);
+        CurrentCountingDcMotorEx motor = new CurrentCountingDcMotorEx();
+        hardwareMap.dcMotor.put("motor1", motor);
+        hardwareMap.put("motor1", motor);
+
+        BulkReadCache bulkReadCache = new BulkReadCache(hardwareMap);
+
+        MetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("").build();
+        RobotMetricsSampler s = RobotMetricsSampler.builder().metricsReporter(r)
+                .hardwareMap(hardwareMap).bulkReadCache(bulkReadCache).build();
+
+        MetricRegistry registry = s.getMetricRegistry();
+        int currentId = registry.getId("dcm_curr_motor1");
+        BulkReadCache.MotorReads motorReads = bulkReadCache.getMotor(motor);
+
+        for (int i = 1; i <= 3; i++) {
+            bulkReadCache.clearCache();
+
+            // Control code and metrics in the same loop share one read from the hub
+            double controlCodeAmps = motorReads.getCurrentAmps();
+            s.doSamples();
+
+            Assertions.assertEquals(i, motor.currentReads);
+            Assertions.assertEquals(controlCodeAmps, registry.getValue(currentId), 0.0);
+        }
+
+        // Without clearCache(), metrics see the same value and the hub is not read again
+        s.doSamples();
+        Assertions.assertEquals(3, motor.currentReads);
+        Assertions.assertEquals(3, registry.getValue(currentId), 0.0);
+    }
+
+    /**
+     * Counts reads of motor current, and returns the count as the current so each read
+     * is distinguishable
+     */
+    private static class CurrentCountingDcMotorEx extends FakeDcMotorEx {
+        int currentReads;
+
+        @Override
+        public double getCurrent(CurrentUnit unit) {
+            currentReads++;
+
+            return currentReads;
+        }
+    }
+
+    @Test
+    public void recordsLoopPeriod() {
+        HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+
+        MetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("").build();
+        RobotMetricsSampler s = RobotMetricsSampler.builder().metricsReporter(r).hardwareMap(hardwareMap).build();
+
+        HistogramMetricSource.Interval interval = s.getLoopPeriodHistogram().newInterval();
+
+        // Nothing to measure until the second pass
+        s.doSamples();
+        interval.update();
+        Assertions.assertEquals(0, interval.getCount());
+
+        s.doSamples();
+        s.doSamples();
+        interval.update();
+        Assertions.assertEquals(2, interval.getCount());
+    }
+
+    @Test
+    public void withAggregationWindow() {
+        HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+
+        MetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("").build();
+        RobotMetricsSampler s = RobotMetricsSampler.builder().metricsReporter(r)
+                .hardwareMap(hardwareMap).aggregationWindow(10).build();
+
+        MetricRegistry registry = s.getMetricRegistry();
+
+        Assertions.assertNotEquals(-1, registry.getId("dcm_curr_motor1_max"));
+        Assertions.assertNotEquals(-1, registry.getId("dcm_curr_motor1_p95"));
+
+        // Not aggregated
+        Assertions.assertNotEquals(-1, registry.getId("servo_servo1"));
+
+        for (int i = 0; i < 10; i++) {
+            s.doSamples();
+        }
+
+        Assertions.assertEquals(10, registry.getValue(registry.getId("dcm_curr_motor1_count")), 0.0);
+
+        // Registered only so its reads are timed, never reported itself
+        Assertions.assertEquals(MetricsSampler.NO_REPORT_VALUE,
+                registry.getValue(registry.getId("dcm_curr_motor1")), 0.0);
+    }
+
+    @Test
+    public void withHardwareReadBudget() {
+        HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+
+        MetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("").build();
+        RobotMetricsSampler s = RobotMetricsSampler.builder().metricsReporter(r)
+                .hardwareMap(hardwareMap).hardwareReadsPerPass(2).build();
+
+        for (int i = 0; i < 10; i++) {
+            s.doSamples();
+
+            Assertions.assertTrue(s.getReadBudget().getReadsThisPass() <= 2);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aggregationAndReadBudgetDoNotMix() {
+        HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+
+        MetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("").build();
+        RobotMetricsSampler.builder().metricsReporter(r).hardwareMap(hardwareMap)
+                .aggregationWindow(10).hardwareReadsPerPass(2).build();
+    }
+
     @Test
     public void happyPath() throws IOException {
         final String[] messagePrefixes = new String[] {
@@ -92,6 +215,98 @@ public class MetricSamplerTests {
         }
     }
 
+    @Test
+    public void batchedPackets() throws IOException {
+        try (TestStatsdServer statsDServer = new TestStatsdServer()) {
+            int port = statsDServer.getPortNumber();
+
+            HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+            StatsdMetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("127.0.0.1")
+                    .metricsServerPortNumber(port).tags(new String[]{"abcd"}).batchPackets(true).build();
+            RobotMetricsSampler s = RobotMetricsSampler.builder().metricsReporter(r).hardwareMap(hardwareMap).build();
+            s.doSamples();
+
+            // Everything from one pass fits in one packet
+            Assertions.assertEquals(1, r.getPacketsSent());
+
+            List<String> messagesReceived = null;
+
+            Stopwatch stopwatch = Stopwatch.createStarted();
+
+            while (true) {
+                if (stopwatch.elapsed(TimeUnit.SECONDS) > 60) {
+                    Assertions.fail("Timed out waiting for statsd messages");
+                }
+
+                messagesReceived = statsDServer.messagesReceived();
+
+                if (messagesReceived.size() >= 6) {
+                    break;
+                }
+            }
+
+            Assertions.assertEquals(1, statsDServer.packetsReceived());
+
+            boolean sawSampleTime = false;
+
+            for (String message : messagesReceived) {
+                assertContains(message, "|g|#_ts:");
+                assertContains(message, ",abcd");
+
+                if (message.startsWith("metric_sample_time_ms:")) {
+                    sawSampleTime = true;
+                }
+            }
+
+            Assertions.assertTrue(sawSampleTime);
+        }
+    }
+
+    @Test
+    public void unbatchedHistogramBucketsAreSentOnce() throws IOException {
+        try (TestStatsdServer statsDServer = new TestStatsdServer()) {
+            StatsdMetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("127.0.0.1")
+                    .metricsServerPortNumber(statsDServer.getPortNumber()).build();
+
+            r.histogram("loop_many", 1234, 20, 1000);
+            r.histogram("loop_one", 1234, 12.5, 1);
+            r.flush();
+
+            List<String> messagesReceived = null;
+            boolean sawLoopOne = false;
+
+            Stopwatch stopwatch = Stopwatch.createStarted();
+
+            while (!sawLoopOne) {
+                if (stopwatch.elapsed(TimeUnit.SECONDS) > 60) {
+                    Assertions.fail("Timed out waiting for statsd messages");
+                }
+
+                messagesReceived = statsDServer.messagesReceived();
+
+                for (String message : messagesReceived) {
+                    if (message.startsWith("loop_one:")) {
+                        sawLoopOne = true;
+                    }
+                }
+            }
+
+            int loopManyMessages = 0;
+
+            for (String message : messagesReceived) {
+                if (message.startsWith("loop_one:")) {
+                    assertContains(message, "loop_one:12.5|h|");
+                } else if (message.startsWith("loop_many:")) {
+                    assertContains(message, "loop_many:20|h|@0.001|");
+                    loopManyMessages++;
+                }
+            }
+
+            // Sent in order, so loop_many has already arrived
+            Assertions.assertEquals(1, loopManyMessages, "loop_many was sent " + loopManyMessages + " times");
+        }
+    }
+
     private void assertContains(String lookIn, String lookFor) {
         if (!lookIn.contains(lookFor)) {
             Assertions.fail(String.format("Failed to find '%s' in '%s'", lookFor, lookIn));
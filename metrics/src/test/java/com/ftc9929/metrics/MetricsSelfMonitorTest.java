@@ -0,0 +1,171 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+package com.ftc9929.metrics;
+
+import com.ftc9929.testing.fakes.util.FakeHardwareMapFactory;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.IOException;
+
+public class MetricsSelfMonitorTest {
+    @Test
+    public void reportsSlowestSources() {
+        HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+        MetricsSelfMonitor selfMonitor = MetricsSelfMonitor.builder()
+                .slowestSourceCount(2).reportEveryPasses(10).build();
+
+        RobotMetricsSampler s = RobotMetricsSampler.builder().metricsReporter(new SamplingReporter())
+                .hardwareMap(hardwareMap).selfMonitor(selfMonitor).build();
+        s.addSource(new SlowSource("slow", 200_000));
+        s.addSource(new SlowSource("slower", 400_000));
+
+        MetricRegistry registry = s.getMetricRegistry();
+
+        for (int i = 0; i < 9; i++) {
+            s.doSamples();
+        }
+
+        Assertions.assertEquals(-1, registry.getId("metric_read_us_slow"));
+
+        // The first report includes reading everything for the first time, use the second
+        for (int i = 0; i < 11; i++) {
+            s.doSamples();
+        }
+
+        Assertions.assertTrue(selfMonitor.getReportedReadMicros("slower") >= 400);
+        Assertions.assertTrue(selfMonitor.getReportedReadMicros("slow") >= 200);
+        Assertions.assertTrue(selfMonitor.getReportedReadMicros("slow") < selfMonitor.getReportedReadMicros("slower"));
+        Assertions.assertEquals(MetricsSampler.NO_REPORT_VALUE, selfMonitor.getReportedReadMicros("servo_servo1"));
+
+        int slowId = registry.getId("metric_read_us_slow");
+        Assertions.assertNotEquals(-1, slowId);
+        Assertions.assertNotEquals(-1, registry.getId("metric_read_us_slower"));
+
+        // Sent once, in the next pass
+        s.doSamples();
+        Assertions.assertTrue(registry.getValue(slowId) >= 200);
+
+        s.doSamples();
+        Assertions.assertEquals(MetricsSampler.NO_REPORT_VALUE, registry.getValue(slowId));
+
+        HistogramMetricSource.Interval readTime = selfMonitor.getReadTime().newInterval();
+        readTime.update();
+        Assertions.assertEquals(22, readTime.getCount());
+        Assertions.assertTrue(readTime.getMax() >= 600 * 15 / 16.0);
+    }
+
+    @Test
+    public void timesReadsBeforeSampling() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.setReadTiming(true);
+
+        WindowedAggregateMetricSource aggregate = new WindowedAggregateMetricSource(
+                registry.registerReadBeforeSampling(new SlowSource("slow", 200_000)), 2);
+
+        for (GaugeMetricSource source : aggregate.getSources()) {
+            registry.register(source);
+        }
+
+        MetricsSelfMonitor selfMonitor = MetricsSelfMonitor.builder()
+                .slowestSourceCount(1).reportEveryPasses(4).build();
+
+        for (int i = 0; i < 4; i++) {
+            aggregate.sample();
+            registry.sampleAll();
+            selfMonitor.afterPass(registry);
+        }
+
+        Assertions.assertTrue(selfMonitor.getReportedReadMicros("slow") >= 200);
+
+        // Read by the aggregate, never sampled (or reported) itself
+        Assertions.assertEquals(MetricsSampler.NO_REPORT_VALUE, registry.getValue(registry.getId("slow")));
+        Assertions.assertEquals(1, registry.getValue(registry.getId("slow_max")), 0);
+
+        HistogramMetricSource.Interval readTime = selfMonitor.getReadTime().newInterval();
+        readTime.update();
+        Assertions.assertEquals(4, readTime.getCount());
+        Assertions.assertTrue(readTime.getValueAtQuantile(0) >= 200 * 15 / 16.0);
+    }
+
+    @Test
+    public void recordsWhatReportersSent() throws IOException {
+        try (TestStatsdServer statsDServer = new TestStatsdServer()) {
+            MetricsSelfMonitor selfMonitor = MetricsSelfMonitor.builder().build();
+
+            HardwareMap hardwareMap = FakeHardwareMapFactory.getFakeHardwareMap("sample_hardware_map.xml");
+            StatsdMetricsReporter r = StatsdMetricsReporter.builder().metricsServerHost("127.0.0.1")
+                    .metricsServerPortNumber(statsDServer.getPortNumber()).batchPackets(true)
+                    .selfMonitor(selfMonitor).build();
+            RobotMetricsSampler s = RobotMetricsSampler.builder().metricsReporter(r)
+                    .hardwareMap(hardwareMap).selfMonitor(selfMonitor).build();
+
+            s.doSamples();
+            s.doSamples();
+
+            Assertions.assertEquals(r.getPacketsSent(), selfMonitor.getPacketsSent().getTotal());
+            Assertions.assertTrue(selfMonitor.getBytesSent().getTotal() > 0);
+            Assertions.assertEquals(0, selfMonitor.getDroppedSamples().getTotal());
+            Assertions.assertEquals(0, selfMonitor.getExceptions().getTotal());
+
+            HistogramMetricSource.Interval encodeTime = selfMonitor.getEncodeTime().newInterval();
+            encodeTime.update();
+            Assertions.assertEquals(2, encodeTime.getCount());
+        }
+    }
+
+    static class SamplingReporter implements MetricsReporter {
+        @Override
+        public void reportMetrics(MetricRegistry metricRegistry) {
+            metricRegistry.sampleAll();
+        }
+    }
+
+    static class SlowSource implements GaugeMetricSource {
+        private final String name;
+
+        private final long readNanos;
+
+        SlowSource(String name, long readNanos) {
+            this.name = name;
+            this.readNanos = readNanos;
+        }
+
+        @Override
+        public String getSampleName() {
+            return name;
+        }
+
+        @Override
+        public double getValue() {
+            final long beginNanos = System.nanoTime();
+
+            while (System.nanoTime() - beginNanos < readNanos) {
+                // like waiting on a hub
+            }
+
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class P2QuantileEstimatorTest {
+    @Test
+    public void exactForFewValues() {
+        P2QuantileEstimator median = new P2QuantileEstimator(0.5);
+
+        Assertions.assertTrue(Double.isNaN(median.getEstimate()));
+
+        median.add(3);
+        median.add(1);
+        median.add(2);
+
+        Assertions.assertEquals(2, median.getEstimate(), 0.0);
+    }
+
+    @Test
+    public void exactForFiveValues() {
+        P2QuantileEstimator p95 = new P2QuantileEstimator(0.95);
+
+        p95.add(4);
+        p95.add(1);
+        p95.add(5);
+        p95.add(3);
+        p95.add(2);
+
+        // Not the middle marker, which is where the estimate is kept after 5 values
+        Assertions.assertEquals(5, p95.getEstimate(), 0.0);
+    }
+
+    @Test
+    public void estimatesQuantilesOfLargeStreams() {
+        Random random = new Random(9929);
+
+        P2QuantileEstimator median = new P2QuantileEstimator(0.5);
+        P2QuantileEstimator p95 = new P2QuantileEstimator(0.95);
+
+        double[] values = new double[10000];
+
+        for (int i = 0; i < values.length; i++) {
+            // Skewed, like a motor's current draw with occasional stalls
+            values[i] = random.nextDouble() < 0.9 ? 1 + random.nextGaussian() * 0.1 : 4 + random.nextDouble() * 4;
+
+            median.add(values[i]);
+            p95.add(values[i]);
+        }
+
+        Arrays.sort(values);
+
+        Assertions.assertEquals(values[5000], median.getEstimate(), 0.05);
+        Assertions.assertEquals(values[9500], p95.getEstimate(), 0.25);
+        Assertions.assertEquals(10000, median.getCount());
+    }
+
+    @Test
+    public void resetStartsOver() {
+        P2QuantileEstimator median = new P2QuantileEstimator(0.5);
+
+        for (int i = 0; i < 100; i++) {
+            median.add(1000 + i);
+        }
+
+        median.reset();
+
+        for (int i = 0; i < 101; i++) {
+            median.add(i);
+        }
+
+        Assertions.assertEquals(50, median.getEstimate(), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadQuantile() {
+        new P2QuantileEstimator(95);
+    }
+}
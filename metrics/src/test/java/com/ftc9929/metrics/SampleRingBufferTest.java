@@ -0,0 +1,128 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SampleRingBufferTest {
+    @Test
+    public void roundsUpCapacity() {
+        assertEquals(1, new SampleRingBuffer(1).getCapacity());
+        assertEquals(8, new SampleRingBuffer(5).getCapacity());
+        assertEquals(16, new SampleRingBuffer(16).getCapacity());
+
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                new SampleRingBuffer(0);
+            }
+        });
+    }
+
+    @Test
+    public void dropsWhenFull() {
+        SampleRingBuffer ringBuffer = new SampleRingBuffer(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ringBuffer.offer(i, 1000 + i, i * 1.5));
+        }
+
+        assertFalse(ringBuffer.offer(4, 1004, 6));
+        assertEquals(1, ringBuffer.getDropped());
+        assertEquals(4, ringBuffer.size());
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        assertEquals(2, ringBuffer.drain(consumer, 2));
+        assertEquals("0@1000=0.0", consumer.samples.get(0));
+        assertEquals("1@1001=1.5", consumer.samples.get(1));
+
+        // Wraps around
+        assertTrue(ringBuffer.offer(5, 1005, 7.5));
+        assertTrue(ringBuffer.offer(6, 1006, 9));
+
+        assertEquals(4, ringBuffer.drain(consumer, 100));
+        assertEquals("6@1006=9.0", consumer.samples.get(5));
+        assertEquals(0, ringBuffer.size());
+    }
+
+    @Test
+    public void producerAndConsumerThreads() throws Exception {
+        final SampleRingBuffer ringBuffer = new SampleRingBuffer(64);
+        final int toSend = 200000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int sent = 0;
+
+                while (sent < toSend) {
+                    if (ringBuffer.offer(sent, sent, sent)) {
+                        sent++;
+                    }
+                }
+            }
+        });
+
+        final long[] nextExpected = new long[1];
+        final boolean[] outOfOrder = new boolean[1];
+
+        SampleRingBuffer.Consumer checkingConsumer = new SampleRingBuffer.Consumer() {
+            @Override
+            public void accept(int sourceId, long timestampMillis, double value) {
+                if (sourceId != nextExpected[0] || timestampMillis != sourceId || value != sourceId) {
+                    outOfOrder[0] = true;
+                }
+
+                nextExpected[0]++;
+            }
+        };
+
+        producer.start();
+
+        while (nextExpected[0] < toSend) {
+            ringBuffer.drain(checkingConsumer, 16);
+        }
+
+        producer.join();
+
+        assertFalse(outOfOrder[0]);
+    }
+
+    static class RecordingConsumer implements SampleRingBuffer.Consumer {
+        final List<String> samples = new ArrayList<>();
+
+        @Override
+        public void accept(int sourceId, long timestampMillis, double value) {
+            samples.add(sourceId + "@" + timestampMillis + "=" + value);
+        }
+    }
+}
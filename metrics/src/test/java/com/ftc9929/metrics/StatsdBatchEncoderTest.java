@@ -0,0 +1,184 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatsdBatchEncoderTest {
+    private final List<String> packets = new ArrayList<>();
+
+    private final StatsdBatchEncoder.PacketSender capturingSender = new StatsdBatchEncoder.PacketSender() {
+        @Override
+        public int send(ByteBuffer packet) {
+            final int bytes = packet.remaining();
+            packets.add(StandardCharsets.UTF_8.decode(packet).toString());
+
+            return bytes;
+        }
+    };
+
+    @Test
+    public void formatsGauges() {
+        StatsdBatchEncoder encoder = new StatsdBatchEncoder(1432, new String[] {"robot:ninja", "abcd"}, capturingSender);
+
+        encoder.gauge("zero", 0, 1234);
+        encoder.gauge("integral", 42, 1234);
+        encoder.gauge("negative", -3.5, 1234);
+        encoder.gauge("fraction", 0.000125, 1234);
+        encoder.gauge("rounded", 1.23456789, 1234);
+        encoder.gauge("rounds_up", 0.9999999, 1234);
+        encoder.flush();
+
+        Assertions.assertEquals(1, packets.size());
+        Assertions.assertEquals(
+                "zero:0|g|#_ts:1234,robot:ninja,abcd\n"
+                        + "integral:42|g|#_ts:1234,robot:ninja,abcd\n"
+                        + "negative:-3.5|g|#_ts:1234,robot:ninja,abcd\n"
+                        + "fraction:0.000125|g|#_ts:1234,robot:ninja,abcd\n"
+                        + "rounded:1.234568|g|#_ts:1234,robot:ninja,abcd\n"
+                        + "rounds_up:1|g|#_ts:1234,robot:ninja,abcd\n",
+                packets.get(0));
+    }
+
+    @Test
+    public void formatsCountersAndHistograms() {
+        StatsdBatchEncoder encoder = new StatsdBatchEncoder(1432, new String[] {"robot:ninja"}, capturingSender);
+
+        encoder.count("events", 3, 1234);
+        encoder.histogram("loop", 12.5, 1, false, 1234);
+        encoder.histogram("loop", 20, 4, false, 1234);
+        encoder.histogram("loop", 40, 4, true, 1234);
+        encoder.flush();
+
+        Assertions.assertEquals(1, packets.size());
+        Assertions.assertEquals(
+                "events:3|c|#_ts:1234,robot:ninja\n"
+                        + "loop:12.5|h|#_ts:1234,robot:ninja\n"
+                        + "loop:20|h|@0.25|#_ts:1234,robot:ninja\n"
+                        + "loop:40|d|@0.25|#_ts:1234,robot:ninja\n",
+                packets.get(0));
+    }
+
+    @Test
+    public void skipsValuesStatsdCanNotParse() {
+        StatsdBatchEncoder encoder = new StatsdBatchEncoder(1432, null, capturingSender);
+
+        encoder.gauge("nan", Double.NaN, 1);
+        encoder.gauge("infinite", Double.POSITIVE_INFINITY, 1);
+        encoder.flush();
+
+        Assertions.assertTrue(packets.isEmpty());
+        Assertions.assertEquals(2, encoder.getLinesDropped());
+    }
+
+    @Test
+    public void splitsAtPacketSize() {
+        // Each line is "m00:1|g|#_ts:5\n", 15 bytes
+        StatsdBatchEncoder encoder = new StatsdBatchEncoder(50, null, capturingSender);
+
+        for (int i = 0; i < 10; i++) {
+            encoder.gauge(String.format("m%02d", i), 1, 5);
+        }
+
+        encoder.flush();
+
+        Assertions.assertEquals(4, packets.size());
+        Assertions.assertEquals(4, encoder.getPacketsSent());
+
+        int lines = 0;
+
+        for (String packet : packets) {
+            Assertions.assertTrue(packet.length() <= 50);
+            Assertions.assertTrue(packet.endsWith("\n"));
+            lines += packet.split("\n").length;
+        }
+
+        Assertions.assertEquals(10, lines);
+
+        // Nothing left to send
+        encoder.flush();
+        Assertions.assertEquals(4, packets.size());
+    }
+
+    @Test
+    public void dropsGaugesLargerThanPacket() {
+        StatsdBatchEncoder encoder = new StatsdBatchEncoder(16, null, capturingSender);
+
+        encoder.gauge("a_very_long_metric_name", 1, 5);
+        encoder.gauge("m", 1, 5);
+        encoder.flush();
+
+        Assertions.assertEquals(1, encoder.getLinesDropped());
+        Assertions.assertEquals(1, packets.size());
+        Assertions.assertEquals("m:1|g|#_ts:5\n", packets.get(0));
+    }
+
+    @Test
+    public void countsFailedSends() {
+        StatsdBatchEncoder encoder = new StatsdBatchEncoder(1432, null, new StatsdBatchEncoder.PacketSender() {
+            @Override
+            public int send(ByteBuffer packet) throws Exception {
+                throw new IOException("network is down");
+            }
+        });
+
+        encoder.gauge("a", 1, 5);
+        encoder.gauge("b", 2, 5);
+        encoder.flush();
+
+        Assertions.assertEquals(0, encoder.getPacketsSent());
+        Assertions.assertEquals(2, encoder.getLinesDropped());
+    }
+
+    @Test
+    public void countsPacketsWithNoRoomToSend() {
+        StatsdBatchEncoder encoder = new StatsdBatchEncoder(1432, null, new StatsdBatchEncoder.PacketSender() {
+            @Override
+            public int send(ByteBuffer packet) {
+                // What a non-blocking DatagramChannel returns when its send buffer is full
+                return 0;
+            }
+        });
+
+        encoder.gauge("a", 1, 5);
+        encoder.gauge("b", 2, 5);
+        encoder.flush();
+
+        Assertions.assertEquals(0, encoder.getPacketsSent());
+        Assertions.assertEquals(0, encoder.getBytesSent());
+        Assertions.assertEquals(2, encoder.getLinesDropped());
+
+        // The next packet starts empty
+        encoder.gauge("c", 3, 5);
+        encoder.flush();
+
+        Assertions.assertEquals(3, encoder.getLinesDropped());
+    }
+}
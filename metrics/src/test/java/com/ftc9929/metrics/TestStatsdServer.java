@@ -61,6 +61,10 @@ public class TestStatsdServer implements Closeable {
         return statsDServer.messagesReceived();
     }
 
+    public int packetsReceived() {
+        return statsDServer.packetsReceived();
+    }
+
     @Override
     public void close() throws IOException {
         statsDServer.close();
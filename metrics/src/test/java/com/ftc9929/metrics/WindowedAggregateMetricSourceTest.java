@@ -0,0 +1,143 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class WindowedAggregateMetricSourceTest {
+    @Test
+    public void reportsOncePerWindow() {
+        SequenceSource current = new SequenceSource("dcm_curr_motor1",
+                1, 1, 9, 1, 1,  // a spike mid-window
+                2, MetricsSampler.NO_REPORT_VALUE, 2, 2, 2);
+
+        WindowedAggregateMetricSource aggregate = new WindowedAggregateMetricSource(current, 5, 0.5, 0.999);
+
+        MetricRegistry registry = new MetricRegistry();
+
+        for (GaugeMetricSource source : aggregate.getSources()) {
+            registry.register(source);
+        }
+
+        Assertions.assertEquals(6, registry.size());
+        Assertions.assertEquals("dcm_curr_motor1_min", registry.getName(0));
+        Assertions.assertEquals("dcm_curr_motor1_max", registry.getName(1));
+        Assertions.assertEquals("dcm_curr_motor1_mean", registry.getName(2));
+        Assertions.assertEquals("dcm_curr_motor1_count", registry.getName(3));
+        Assertions.assertEquals("dcm_curr_motor1_p50", registry.getName(4));
+        Assertions.assertEquals("dcm_curr_motor1_p99_9", registry.getName(5));
+
+        for (int pass = 0; pass < 4; pass++) {
+            aggregate.sample();
+            registry.sampleAll();
+
+            for (int id = 0; id < registry.size(); id++) {
+                Assertions.assertEquals(MetricsSampler.NO_REPORT_VALUE, registry.getValue(id), 0.0);
+            }
+        }
+
+        aggregate.sample();
+        registry.sampleAll();
+
+        Assertions.assertEquals(1, registry.getValue(0), 0.0);
+        Assertions.assertEquals(9, registry.getValue(1), 0.0);
+        Assertions.assertEquals(2.6, registry.getValue(2), 0.000001);
+        Assertions.assertEquals(5, registry.getValue(3), 0.0);
+        Assertions.assertEquals(1, registry.getValue(4), 0.0);
+
+        // Second window, one pass without a value
+        for (int pass = 0; pass < 5; pass++) {
+            aggregate.sample();
+            registry.sampleAll();
+        }
+
+        Assertions.assertEquals(2, registry.getValue(0), 0.0);
+        Assertions.assertEquals(2, registry.getValue(1), 0.0);
+        Assertions.assertEquals(4, registry.getValue(3), 0.0);
+
+        Assertions.assertEquals(10, current.reads);
+    }
+
+    @Test
+    public void aggregatesCanBeSampledInAnyOrder() {
+        SequenceSource current = new SequenceSource("dcm_curr_motor1", 3, 1, 2);
+
+        WindowedAggregateMetricSource aggregate = new WindowedAggregateMetricSource(current, 3, 0.5);
+
+        MetricRegistry registry = new MetricRegistry();
+        List<GaugeMetricSource> sources = new ArrayList<>(aggregate.getSources());
+        Collections.reverse(sources);
+
+        for (GaugeMetricSource source : sources) {
+            registry.register(source);
+        }
+
+        for (int pass = 0; pass < 3; pass++) {
+            aggregate.sample();
+            registry.sampleAll();
+        }
+
+        Assertions.assertEquals(1, registry.getValue(registry.getId("dcm_curr_motor1_min")), 0.0);
+        Assertions.assertEquals(3, registry.getValue(registry.getId("dcm_curr_motor1_max")), 0.0);
+        Assertions.assertEquals(2, registry.getValue(registry.getId("dcm_curr_motor1_p50")), 0.0);
+
+        // Reading the aggregates again doesn't read the real source
+        registry.sampleAll();
+        Assertions.assertEquals(3, current.reads);
+    }
+
+    @Test
+    public void quantileSuffixes() {
+        Assertions.assertEquals("p50", WindowedAggregateMetricSource.quantileSuffix(0.5));
+        Assertions.assertEquals("p95", WindowedAggregateMetricSource.quantileSuffix(0.95));
+        Assertions.assertEquals("p99_9", WindowedAggregateMetricSource.quantileSuffix(0.999));
+    }
+
+    static class SequenceSource implements GaugeMetricSource {
+        private final String name;
+
+        private final double[] values;
+
+        int reads;
+
+        SequenceSource(String name, double... values) {
+            this.name = name;
+            this.values = values;
+        }
+
+        @Override
+        public String getSampleName() {
+            return name;
+        }
+
+        @Override
+        public double getValue() {
+            return values[reads++ % values.length];
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import com.ftc9929.metrics.MetricRegistry;
+import com.ftc9929.metrics.MetricsSampler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompressedFlightRecorderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void recordAndRead() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        FlightRecorderTest.ChangingSource servo = new FlightRecorderTest.ChangingSource("servo_claw", 0.5);
+        registry.register(servo);
+        registry.register(new FlightRecorderTest.ChangingSource("skipped", MetricsSampler.NO_REPORT_VALUE));
+
+        CompressedFlightRecorder recorder = CompressedFlightRecorder.builder()
+                .directory(temporaryFolder.newFolder("recordings")).passesPerBlock(4).build();
+
+        for (int i = 0; i < 10; i++) {
+            if (i == 5) {
+                // Added part way through
+                registry.register(new FlightRecorderTest.ChangingSource("late", 7));
+            }
+
+            servo.value = i < 7 ? 0.5 : 1.0;
+            recorder.reportMetrics(registry);
+        }
+
+        recorder.close();
+
+        Map<String, List<Double>> valuesByName = readAll(recorder.getFile());
+
+        Assertions.assertEquals(10, valuesByName.get("metric_sample_time_ms").size());
+        Assertions.assertEquals(5, valuesByName.get("late").size());
+        Assertions.assertFalse(valuesByName.containsKey("skipped"));
+
+        List<Double> servoValues = valuesByName.get("servo_claw");
+        Assertions.assertEquals(10, servoValues.size());
+        Assertions.assertEquals(0.5, servoValues.get(6), 0.0);
+        Assertions.assertEquals(1.0, servoValues.get(7), 0.0);
+    }
+
+    @Test
+    public void writesBlocksWhileRecording() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        registry.register(new FlightRecorderTest.ChangingSource("a"));
+
+        CompressedFlightRecorder recorder = CompressedFlightRecorder.builder()
+                .directory(temporaryFolder.newFolder("recordings")).passesPerBlock(3).build();
+
+        for (int i = 0; i < 7; i++) {
+            recorder.reportMetrics(registry);
+        }
+
+        // Two finished blocks are written by the background thread, without closing
+        final long deadline = System.currentTimeMillis() + 10000;
+        Map<String, List<Double>> valuesByName = readAll(recorder.getFile());
+
+        while (!valuesByName.containsKey("a") || valuesByName.get("a").size() < 6) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline,
+                    "Timed out waiting for blocks to be written");
+
+            Thread.sleep(10);
+            valuesByName = readAll(recorder.getFile());
+        }
+
+        Assertions.assertEquals(6, valuesByName.get("a").size());
+
+        recorder.close();
+
+        Assertions.assertEquals(0, recorder.getDroppedBlocks());
+        Assertions.assertEquals(7, readAll(recorder.getFile()).get("a").size());
+    }
+
+    @Test
+    public void truncatedRecordingKeepsCompleteBlocks() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.register(new FlightRecorderTest.ChangingSource("a"));
+
+        CompressedFlightRecorder recorder = CompressedFlightRecorder.builder()
+                .directory(temporaryFolder.newFolder("recordings"))
+                .metricCodec(new FixedMetricCodec()).passesPerBlock(3).build();
+
+        for (int i = 0; i < 6; i++) {
+            recorder.reportMetrics(registry);
+        }
+
+        recorder.close();
+
+        // Chop off part of the second block, as if the robot lost power while writing it
+        try (RandomAccessFile file = new RandomAccessFile(recorder.getFile(), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        Map<String, List<Double>> valuesByName = readAll(recorder.getFile());
+
+        // The sample time is written first in each block, so survives
+        Assertions.assertEquals(6, valuesByName.get("metric_sample_time_ms").size());
+        Assertions.assertEquals(3, valuesByName.get("a").size());
+    }
+
+    private static Map<String, List<Double>> readAll(File recording) throws IOException {
+        final Map<String, List<Double>> valuesByName = new HashMap<>();
+
+        try (CompressedRecordingReader reader = new CompressedRecordingReader(recording)) {
+            reader.forEachRecord(new FlightRecordingReader.RecordVisitor() {
+                @Override
+                public void record(int metricId, String metricName, long timestampMillis, double value) {
+                    if (!valuesByName.containsKey(metricName)) {
+                        valuesByName.put(metricName, new ArrayList<Double>());
+                    }
+
+                    valuesByName.get(metricName).add(value);
+                }
+            });
+        }
+
+        return valuesByName;
+    }
+}
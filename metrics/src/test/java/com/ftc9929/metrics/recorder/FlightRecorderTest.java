@@ -0,0 +1,338 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import com.ftc9929.metrics.CounterMetricSource;
+import com.ftc9929.metrics.GaugeMetricSource;
+import com.ftc9929.metrics.HistogramMetricSource;
+import com.ftc9929.metrics.MetricRegistry;
+import com.ftc9929.metrics.MetricsSampler;
+import com.ftc9929.metrics.SampleSink;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FlightRecorderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void recordAndRead() throws IOException {
+        File directory = temporaryFolder.newFolder("recordings");
+
+        MetricRegistry registry = new MetricRegistry();
+        ChangingSource motorPower = new ChangingSource("dcm_pow_motor1");
+        registry.register(motorPower);
+        registry.register(new ChangingSource("skipped", MetricsSampler.NO_REPORT_VALUE));
+
+        FlightRecorder recorder = FlightRecorder.builder().directory(directory).build();
+
+        motorPower.value = 0.25;
+        recorder.reportMetrics(registry);
+        motorPower.value = 0.5;
+        recorder.reportMetrics(registry);
+
+        File recording = recorder.getCurrentFile();
+
+        // Readable while still recording
+        try (FlightRecordingReader reader = new FlightRecordingReader(recording)) {
+            Assertions.assertEquals(4, reader.getRecordCount());
+        }
+
+        recorder.close();
+
+        try (FlightRecordingReader reader = new FlightRecordingReader(recording)) {
+            Assertions.assertEquals("dcm_pow_motor1", reader.getNames().get(0));
+            Assertions.assertEquals("skipped", reader.getNames().get(1));
+
+            final List<String> records = new ArrayList<>();
+
+            reader.forEachRecord(new FlightRecordingReader.RecordVisitor() {
+                @Override
+                public void record(int metricId, String metricName, long timestampMillis, double value) {
+                    if (!"metric_sample_time_ms".equals(metricName)) {
+                        records.add(metricName + "=" + value);
+                    }
+                }
+            });
+
+            Assertions.assertEquals(2, records.size());
+            Assertions.assertEquals("dcm_pow_motor1=0.25", records.get(0));
+            Assertions.assertEquals("dcm_pow_motor1=0.5", records.get(1));
+
+            StringWriter csv = new StringWriter();
+            reader.exportCsv(csv);
+
+            String[] lines = csv.toString().split("\n");
+            Assertions.assertEquals(5, lines.length);
+            Assertions.assertEquals("timestamp_ms,metric,value", lines[0]);
+            Assertions.assertTrue(lines[1].endsWith(",dcm_pow_motor1,0.25"));
+            Assertions.assertTrue(lines[2].contains(",metric_sample_time_ms,"));
+        }
+    }
+
+    @Test
+    public void recordsCountersAndHistogramSummaries() throws IOException {
+        File directory = temporaryFolder.newFolder("recordings");
+
+        MetricRegistry registry = new MetricRegistry();
+        registry.register(new ChangingSource("gauge"));
+
+        FlightRecorder recorder = FlightRecorder.builder().directory(directory).build();
+        recorder.reportMetrics(registry);
+
+        CounterMetricSource counter = new CounterMetricSource("events");
+        HistogramMetricSource histogram = new HistogramMetricSource("loop");
+        registry.registerCounter(counter);
+        registry.registerHistogram(histogram);
+
+        counter.add(2);
+        histogram.record(8);
+        histogram.record(8);
+        recorder.reportMetrics(registry);
+        counter.increment();
+        recorder.reportMetrics(registry);
+        recorder.close();
+
+        // New metrics start a new file: the gauge, the counter, 5 histogram summaries and the sample time
+        try (FlightRecordingReader reader = new FlightRecordingReader(recorder.getCurrentFile())) {
+            Assertions.assertEquals(8, reader.getNames().size());
+            Assertions.assertEquals("events", reader.getNames().get(1));
+            Assertions.assertEquals("loop_count", reader.getNames().get(2));
+            Assertions.assertEquals("loop_max", reader.getNames().get(6));
+
+            final List<String> records = new ArrayList<>();
+
+            reader.forEachRecord(new FlightRecordingReader.RecordVisitor() {
+                @Override
+                public void record(int metricId, String metricName, long timestampMillis, double value) {
+                    if (metricName.startsWith("events") || metricName.equals("loop_count")) {
+                        records.add(metricName + "=" + value);
+                    }
+                }
+            });
+
+            // Counters are recorded as totals, empty histograms are not recorded
+            Assertions.assertEquals(3, records.size());
+            Assertions.assertEquals("events=2.0", records.get(0));
+            Assertions.assertEquals("loop_count=2.0", records.get(1));
+            Assertions.assertEquals("events=3.0", records.get(2));
+        }
+    }
+
+    @Test
+    public void replayFlushesEachPass() throws IOException {
+        File directory = temporaryFolder.newFolder("recordings");
+
+        MetricRegistry registry = new MetricRegistry();
+        registry.register(new ChangingSource("a"));
+        registry.register(new ChangingSource("b"));
+
+        FlightRecorder recorder = FlightRecorder.builder().directory(directory).build();
+
+        for (int i = 0; i < 3; i++) {
+            recorder.reportMetrics(registry);
+
+            // Make sure each pass has its own timestamp
+            sleepForAMillisecond();
+        }
+
+        recorder.close();
+
+        RecordingSink sink = new RecordingSink();
+
+        try (FlightRecordingReader reader = new FlightRecordingReader(recorder.getCurrentFile())) {
+            reader.replay(sink);
+        }
+
+        // a, b and the sample time for each pass
+        Assertions.assertEquals(9, sink.samples.size());
+        Assertions.assertEquals(3, sink.flushes);
+    }
+
+    @Test
+    public void rotatesFiles() throws IOException {
+        File directory = temporaryFolder.newFolder("recordings");
+
+        MetricRegistry registry = new MetricRegistry();
+        registry.register(new ChangingSource("a"));
+
+        // Room for the header and a handful of passes
+        FlightRecorder recorder = FlightRecorder.builder().directory(directory)
+                .maxFileBytes(256).maxFiles(2).build();
+
+        recorder.reportMetrics(registry);
+        File firstFile = recorder.getCurrentFile();
+
+        for (int i = 0; i < 20; i++) {
+            recorder.reportMetrics(registry);
+        }
+
+        Assertions.assertNotEquals(firstFile, recorder.getCurrentFile());
+        Assertions.assertFalse(firstFile.exists());
+        Assertions.assertEquals(2, directory.listFiles().length);
+
+        // A new metric starts a new file, so every file's dictionary is complete
+        File beforeNewMetric = recorder.getCurrentFile();
+        registry.register(new ChangingSource("b"));
+        recorder.reportMetrics(registry);
+        Assertions.assertNotEquals(beforeNewMetric, recorder.getCurrentFile());
+
+        recorder.close();
+
+        try (FlightRecordingReader reader = new FlightRecordingReader(recorder.getCurrentFile())) {
+            Assertions.assertEquals("b", reader.getNames().get(1));
+            Assertions.assertEquals(3, reader.getRecordCount());
+        }
+    }
+
+    @Test
+    public void rotatesFilesFromEarlierRecorders() throws IOException {
+        File directory = temporaryFolder.newFolder("recordings");
+        File otherPrefix = new File(directory, "other-1-0.tntm");
+        Assertions.assertTrue(otherPrefix.createNewFile());
+
+        MetricRegistry registry = new MetricRegistry();
+        registry.register(new ChangingSource("a"));
+
+        FlightRecorder firstRecorder = FlightRecorder.builder().directory(directory)
+                .maxFileBytes(256).maxFiles(2).build();
+
+        List<File> firstRecorderFiles = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            firstRecorder.reportMetrics(registry);
+
+            if (!firstRecorderFiles.contains(firstRecorder.getCurrentFile())) {
+                firstRecorderFiles.add(firstRecorder.getCurrentFile());
+            }
+        }
+
+        firstRecorder.close();
+
+        File newestFromFirstRecorder = firstRecorderFiles.get(firstRecorderFiles.size() - 1);
+        File oldestKept = firstRecorderFiles.get(firstRecorderFiles.size() - 2);
+        Assertions.assertTrue(oldestKept.exists());
+
+        // As if the robot controller app was restarted
+        FlightRecorder secondRecorder = FlightRecorder.builder().directory(directory)
+                .maxFileBytes(256).maxFiles(2).build();
+        Assertions.assertNull(secondRecorder.getCurrentFile());
+
+        secondRecorder.reportMetrics(registry);
+        secondRecorder.close();
+
+        Assertions.assertFalse(oldestKept.exists());
+        Assertions.assertTrue(newestFromFirstRecorder.exists());
+        Assertions.assertTrue(secondRecorder.getCurrentFile().exists());
+        Assertions.assertNotEquals(newestFromFirstRecorder, secondRecorder.getCurrentFile());
+
+        // Only files with this recorder's prefix are counted or deleted
+        Assertions.assertTrue(otherPrefix.exists());
+        Assertions.assertEquals(3, directory.listFiles().length);
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        File notARecording = temporaryFolder.newFile("not_a_recording.tntm");
+
+        try (FileWriter writer = new FileWriter(notARecording)) {
+            writer.write("timestamp_ms,metric,value\n");
+        }
+
+        try {
+            new FlightRecordingReader(notARecording);
+            Assertions.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    private static void sleepForAMillisecond() {
+        long start = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() == start) {
+            Thread.yield();
+        }
+    }
+
+    static class ChangingSource implements GaugeMetricSource {
+        private final String name;
+
+        double value;
+
+        ChangingSource(String name) {
+            this(name, 1);
+        }
+
+        ChangingSource(String name, double value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String getSampleName() {
+            return name;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+
+    static class RecordingSink implements SampleSink {
+        final List<String> samples = new ArrayList<>();
+
+        int flushes;
+
+        @Override
+        public void sample(String name, long timestampMillis, double value) {
+            samples.add(name + "=" + value);
+        }
+
+        @Override
+        public void count(String name, long timestampMillis, long delta) {
+            samples.add(name + "+" + delta);
+        }
+
+        @Override
+        public void histogram(String name, long timestampMillis, double value, long count) {
+            samples.add(name + "~" + value + "x" + count);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ Copyright (c) 2020 The Tech Ninja Team (https://ftc9929.com)
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+package com.ftc9929.metrics.recorder;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+public class MetricCodecTest {
+    private final MetricCodec[] codecs = {new FixedMetricCodec(), new GorillaMetricCodec()};
+
+    @Test
+    public void roundTripsAwkwardValues() throws IOException {
+        long[] timestamps = new long[] {
+                1600000000000L, 1600000000010L, 1600000000020L, 1600000000031L, // steady, then jitter
+                1600000000100L, 1600000000400L, 1600000003000L, // increasingly large gaps
+                1600001000000L, 1600000999000L, // a huge gap, then backwards
+                1600000999000L};
+
+        double[] values = new double[] {
+                0, 0, 1, -1, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE, -0.0, 12.3456789, 12.3456788};
+
+        for (MetricCodec codec : codecs) {
+            assertRoundTrip(codec, timestamps, values);
+        }
+    }
+
+    @Test
+    public void roundTripsRandomSeries() throws IOException {
+        Random random = new Random(9929);
+
+        long[] timestamps = new long[5000];
+        double[] values = new double[timestamps.length];
+
+        long timestamp = System.currentTimeMillis();
+
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamp += 10 + random.nextInt(3) - 1;
+            timestamps[i] = timestamp;
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    values[i] = random.nextDouble() * 20 - 10;
+                    break;
+                case 1:
+                    values[i] = random.nextInt(4) * 0.25;
+                    break;
+                default:
+                    values[i] = i == 0 ? 0 : values[i - 1];
+            }
+        }
+
+        for (MetricCodec codec : codecs) {
+            assertRoundTrip(codec, timestamps, values);
+        }
+    }
+
+    @Test
+    public void compressesSteadySeries() throws IOException {
+        MetricCodec.Encoder fixed = new FixedMetricCodec().newEncoder();
+        MetricCodec.Encoder gorilla = new GorillaMetricCodec().newEncoder();
+
+        // A servo that moves once, sampled every 10ms
+        for (int i = 0; i < 1000; i++) {
+            double position = i < 500 ? 0.25 : 0.75;
+
+            fixed.append(10L * i, position);
+            gorilla.append(10L * i, position);
+        }
+
+        Assertions.assertEquals(16000, fixed.getEncodedLength());
+
+        // 2 bits per sample, plus the first sample and the move
+        Assertions.assertTrue(gorilla.getEncodedLength() < 300,
+                "Encoded to " + gorilla.getEncodedLength() + " bytes");
+    }
+
+    @Test
+    public void encodersCanBeReused() throws IOException {
+        for (MetricCodec codec : codecs) {
+            MetricCodec.Encoder encoder = codec.newEncoder();
+
+            encoder.append(100, 1.5);
+            encoder.append(110, 2.5);
+            encoder.reset();
+
+            Assertions.assertEquals(0, encoder.getSampleCount());
+
+            encoder.append(5000, -3);
+
+            MetricCodec.Decoder decoder = codec.newDecoder(toBytes(encoder), encoder.getSampleCount());
+
+            Assertions.assertTrue(decoder.next());
+            Assertions.assertEquals(5000, decoder.getTimestampMillis());
+            Assertions.assertEquals(-3, decoder.getValue(), 0.0);
+            Assertions.assertFalse(decoder.next());
+        }
+    }
+
+    private static void assertRoundTrip(MetricCodec codec, long[] timestamps, double[] values) throws IOException {
+        MetricCodec.Encoder encoder = codec.newEncoder();
+
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+
+        Assertions.assertEquals(timestamps.length, encoder.getSampleCount());
+
+        MetricCodec.Decoder decoder = codec.newDecoder(toBytes(encoder), encoder.getSampleCount());
+
+        for (int i = 0; i < timestamps.length; i++) {
+            Assertions.assertTrue(decoder.next(), codec.getName());
+            Assertions.assertEquals(timestamps[i], decoder.getTimestampMillis(), codec.getName() + " sample " + i);
+            Assertions.assertEquals(Double.doubleToRawLongBits(values[i]),
+                    Double.doubleToRawLongBits(decoder.getValue()), codec.getName() + " sample " + i);
+        }
+
+        Assertions.assertFalse(decoder.next());
+    }
+
+    private static byte[] toBytes(MetricCodec.Encoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+
+        Assertions.assertEquals(encoder.getEncodedLength(), out.size());
+
+        return out.toByteArray();
+    }
+}